@@ -0,0 +1,103 @@
+package org.infy.benchmark;
+
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.asm.Advice;
+import net.bytebuddy.dynamic.loading.ClassReloadingStrategy;
+import net.bytebuddy.matcher.ElementMatchers;
+import org.infy.TestMethods;
+import org.infy.profiler.MethodMetrics;
+import org.infy.profiler.PerformanceProfiler;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Measures the per-call cost of the timing advice on the {@link TestMethods} workload.
+ * The class is run unwoven, then woven with the string-keyed advice the profiler used
+ * to ship (origin string plus map lookup on every exit), then with the current
+ * slot-bound advice.
+ *
+ * <p>Run with {@code java -cp benchmarks/target/benchmarks.jar org.infy.benchmark.AdviceOverheadBenchmark}.
+ */
+public class AdviceOverheadBenchmark {
+    private static final int QUICK_CALLS = 20_000_000;
+    private static final int HEAVY_CALLS = 2_000;
+    private static final int ROUNDS = 5;
+
+    public static final ConcurrentHashMap<String, MethodMetrics> STRING_KEYED_METRICS = new ConcurrentHashMap<>();
+
+    private static volatile int sink;
+
+    public static class StringKeyedAdvice {
+        @Advice.OnMethodEnter
+        static long enter(@Advice.Origin("#t.#m") String methodName) {
+            return System.nanoTime();
+        }
+
+        @Advice.OnMethodExit
+        static void exit(@Advice.Origin("#t.#m") String methodName,
+                         @Advice.Enter long startTime) {
+            long executionTime = System.nanoTime() - startTime;
+            AdviceOverheadBenchmark.STRING_KEYED_METRICS
+                .computeIfAbsent(methodName, MethodMetrics::new)
+                .recordExecution(executionTime);
+        }
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("net.bytebuddy.experimental", "true");
+        PerformanceProfiler profiler = PerformanceProfiler.getInstance();
+        TestMethods testMethods = new TestMethods();
+
+        Result unwoven = measure(testMethods);
+
+        new ByteBuddy()
+            .redefine(TestMethods.class)
+            .visit(Advice.to(StringKeyedAdvice.class)
+                .on(ElementMatchers.not(ElementMatchers.isConstructor())
+                    .and(ElementMatchers.not(ElementMatchers.isStatic()))))
+            .make()
+            .load(TestMethods.class.getClassLoader(), ClassReloadingStrategy.fromInstalledAgent());
+        Result stringKeyed = measure(testMethods);
+
+        profiler.startProfiling(TestMethods.class.getName());
+        Result slotBound = measure(testMethods);
+
+        System.out.printf("%-14s %16s %16s%n", "mode", "quickMethod ns", "testMethod2 ns");
+        print("unwoven", unwoven);
+        print("string-keyed", stringKeyed);
+        print("slot-bound", slotBound);
+        System.out.printf("advice overhead per call: string-keyed %.1f ns, slot-bound %.1f ns%n",
+            stringKeyed.quickNanos - unwoven.quickNanos,
+            slotBound.quickNanos - unwoven.quickNanos);
+
+        profiler.shutdown();
+    }
+
+    private static Result measure(TestMethods testMethods) {
+        double quick = Double.MAX_VALUE;
+        double heavy = Double.MAX_VALUE;
+        // Best of several rounds, the first ones double as JIT warm-up
+        for (int round = 0; round < ROUNDS; round++) {
+            int acc = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < QUICK_CALLS; i++) {
+                acc += testMethods.quickMethod(i);
+            }
+            quick = Math.min(quick, (System.nanoTime() - start) / (double) QUICK_CALLS);
+            sink = acc;
+
+            start = System.nanoTime();
+            for (int i = 0; i < HEAVY_CALLS; i++) {
+                testMethods.testMethod2();
+            }
+            heavy = Math.min(heavy, (System.nanoTime() - start) / (double) HEAVY_CALLS);
+        }
+        return new Result(quick, heavy);
+    }
+
+    private static void print(String mode, Result result) {
+        System.out.printf("%-14s %16.1f %16.1f%n", mode, result.quickNanos, result.heavyNanos);
+    }
+
+    private record Result(double quickNanos, double heavyNanos) {}
+}
@@ -0,0 +1,135 @@
+package org.infy.benchmark;
+
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.agent.builder.AgentBuilder;
+import net.bytebuddy.agent.builder.ResettableClassFileTransformer;
+import net.bytebuddy.description.modifier.Visibility;
+import net.bytebuddy.implementation.FixedValue;
+import net.bytebuddy.dynamic.DynamicType;
+import org.infy.profiler.PerformanceProfiler;
+import org.infy.profiler.agent.AgentOptions;
+import org.infy.profiler.agent.ProfilerAgent;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.instrument.Instrumentation;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the startup cost of profiling a growing code base with per-class redefinition
+ * ({@code startProfiling}) against the lazy agent transformer. Synthetic classes with a handful
+ * of methods are written to a temporary directory and loaded through a fresh class loader per
+ * run. The agent is measured both for an application that loads every class and for one that
+ * only touches a tenth of them at startup.
+ *
+ * <p>Run with {@code java -cp benchmarks/target/benchmarks.jar org.infy.benchmark.AgentStartupBenchmark}.
+ */
+public class AgentStartupBenchmark {
+    private static final int[] CLASS_COUNTS = {250, 500, 1000, 2000, 4000};
+    private static final int METHODS_PER_CLASS = 8;
+    private static final String PACKAGE = "bench.generated";
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("net.bytebuddy.experimental", "true");
+        PerformanceProfiler profiler = PerformanceProfiler.getInstance();
+        Instrumentation instrumentation = profiler.getInstrumentation();
+        File directory = Files.createTempDirectory("profiler-startup").toFile();
+        List<String> classNames = generateClasses(directory, CLASS_COUNTS[CLASS_COUNTS.length - 1]);
+
+        // Warm up ByteBuddy and the JIT on a small run of each mode
+        loadOnly(directory, classNames.subList(0, 200));
+        agent(instrumentation, directory, classNames.subList(0, 200), 1);
+
+        // Agent runs go first: redefined classes stay reachable through the profiler and
+        // would otherwise be retransformed by every later agent install
+        double[][] results = new double[CLASS_COUNTS.length][];
+        for (int i = 0; i < CLASS_COUNTS.length; i++) {
+            List<String> names = classNames.subList(0, CLASS_COUNTS[i]);
+            double load = loadOnly(directory, names);
+            double[] agent = agent(instrumentation, directory, names, 1);
+            double[] agentPartial = agent(instrumentation, directory, names, 10);
+            results[i] = new double[] {load, 0, agent[0], agent[1], agentPartial[1]};
+        }
+        redefine(profiler, directory, classNames.subList(0, 200));
+        for (int i = 0; i < CLASS_COUNTS.length; i++) {
+            results[i][1] = redefine(profiler, directory, classNames.subList(0, CLASS_COUNTS[i]));
+        }
+
+        System.out.printf("%8s %10s %13s %15s %15s %17s%n",
+            "classes", "load ms", "redefine ms", "agent inst. ms", "agent load ms", "agent 10% load ms");
+        for (int i = 0; i < CLASS_COUNTS.length; i++) {
+            double[] row = results[i];
+            System.out.printf("%8d %10.1f %13.1f %15.1f %15.1f %17.1f%n",
+                CLASS_COUNTS[i], row[0], row[1], row[2], row[3], row[4]);
+        }
+        profiler.shutdown();
+    }
+
+    private static List<String> generateClasses(File directory, int count) throws IOException {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String name = PACKAGE + ".p" + (i / 100) + ".Generated" + i;
+            DynamicType.Builder<Object> builder = new ByteBuddy().subclass(Object.class).name(name);
+            for (int m = 0; m < METHODS_PER_CLASS; m++) {
+                builder = builder.defineMethod("method" + m, int.class, Visibility.PUBLIC)
+                    .withParameters(int.class)
+                    .intercept(FixedValue.value(m));
+            }
+            builder.make().saveIn(directory);
+            names.add(name);
+        }
+        return names;
+    }
+
+    private static double loadOnly(File directory, List<String> names) throws Exception {
+        try (URLClassLoader loader = newLoader(directory)) {
+            long start = System.nanoTime();
+            for (String name : names) {
+                Class.forName(name, false, loader);
+            }
+            return (System.nanoTime() - start) / 1e6;
+        }
+    }
+
+    private static double redefine(PerformanceProfiler profiler, File directory, List<String> names) throws Exception {
+        try (URLClassLoader loader = newLoader(directory)) {
+            long start = System.nanoTime();
+            for (String name : names) {
+                profiler.startProfiling(Class.forName(name, false, loader));
+            }
+            return (System.nanoTime() - start) / 1e6;
+        }
+    }
+
+    /**
+     * Returns the install time, which includes the scan of already loaded classes, and the time
+     * to load every stride-th class, as an application would that only touches part of its code
+     * at startup.
+     */
+    private static double[] agent(Instrumentation instrumentation, File directory, List<String> names, int stride)
+            throws Exception {
+        // Let the loaders of earlier runs go so the install scan only sees this run's classes
+        System.gc();
+        try (URLClassLoader loader = newLoader(directory)) {
+            long start = System.nanoTime();
+            ResettableClassFileTransformer transformer =
+                ProfilerAgent.install(AgentOptions.parse("include=" + PACKAGE + ".**"), instrumentation);
+            long installed = System.nanoTime();
+            for (int i = 0; i < names.size(); i += stride) {
+                Class.forName(names.get(i), false, loader);
+            }
+            long loaded = System.nanoTime();
+            transformer.reset(instrumentation, AgentBuilder.RedefinitionStrategy.DISABLED);
+            return new double[] {(installed - start) / 1e6, (loaded - installed) / 1e6};
+        }
+    }
+
+    private static URLClassLoader newLoader(File directory) throws IOException {
+        return new URLClassLoader(new URL[] {directory.toURI().toURL()},
+            AgentStartupBenchmark.class.getClassLoader());
+    }
+}
@@ -0,0 +1,104 @@
+package org.infy.benchmark;
+
+import org.infy.TestMethods;
+import org.infy.profiler.MethodMetrics;
+import org.infy.profiler.PerformanceProfiler;
+import org.infy.profiler.ProfilerConfig;
+import org.infy.profiler.interceptor.ThreadCounters;
+
+/**
+ * Measures what allocation tracking costs: first a bare read of the thread's allocated-bytes
+ * counter next to {@code System.nanoTime()}, then the per-call cost on {@link TestMethods}
+ * unwoven, with the timing advice only, and with timing plus allocation advice. Next to each
+ * caller-side cost it prints the time the profiler recorded for {@code quickMethod}, which
+ * should not grow with allocation tracking since the counter reads are outside the timed window.
+ *
+ * <p>Run with {@code java -cp benchmarks/target/benchmarks.jar org.infy.benchmark.AllocationTrackingBenchmark}.
+ */
+public class AllocationTrackingBenchmark {
+    private static final int COUNTER_READS = 20_000_000;
+    private static final int QUICK_CALLS = 20_000_000;
+    private static final int HEAVY_CALLS = 2_000;
+    private static final int ROUNDS = 5;
+
+    private static volatile long sink;
+
+    public static void main(String[] args) {
+        System.setProperty("net.bytebuddy.experimental", "true");
+        if (!ThreadCounters.enableAllocatedBytes()) {
+            System.out.println("This JVM cannot count allocated bytes per thread");
+            return;
+        }
+        double nanoTime = Double.MAX_VALUE;
+        double allocated = Double.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long acc = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < COUNTER_READS; i++) {
+                acc += System.nanoTime();
+            }
+            nanoTime = Math.min(nanoTime, (System.nanoTime() - start) / (double) COUNTER_READS);
+            start = System.nanoTime();
+            for (int i = 0; i < COUNTER_READS; i++) {
+                acc += ThreadCounters.allocatedBytes();
+            }
+            allocated = Math.min(allocated, (System.nanoTime() - start) / (double) COUNTER_READS);
+            sink = acc;
+        }
+        System.out.printf("System.nanoTime %.1f ns, allocated-bytes counter %.1f ns per read%n", nanoTime, allocated);
+
+        PerformanceProfiler profiler = PerformanceProfiler.getInstance();
+        TestMethods testMethods = new TestMethods();
+        MethodMetrics quick = profiler.getMethodRegistry().getOrRegister(TestMethods.class.getName() + ".quickMethod");
+        Result unwoven = measure(testMethods, quick);
+        profiler.startProfiling(TestMethods.class);
+        Result timing = measure(testMethods, quick);
+        // Re-weaves the already profiled class with the allocation advice added
+        profiler.configure(new ProfilerConfig.Builder().allocationTracking(true).build());
+        Result withAllocation = measure(testMethods, quick);
+
+        System.out.printf("%-20s %16s %16s %16s%n", "mode", "quickMethod ns", "recorded ns", "testMethod2 ns");
+        print("unwoven", unwoven);
+        print("timing", timing);
+        print("timing + allocation", withAllocation);
+        System.out.printf("allocation tracking adds %.1f ns per call%n",
+            withAllocation.quickNanos - timing.quickNanos);
+        MethodMetrics heavy = profiler.getMetrics(TestMethods.class.getName() + ".testMethod2");
+        System.out.printf("testMethod2 allocates %d bytes per call (p99 %d)%n",
+            heavy.getAverageAllocatedBytes(), heavy.getP99AllocatedBytes());
+
+        profiler.shutdown();
+    }
+
+    private static Result measure(TestMethods testMethods, MethodMetrics recorded) {
+        double quick = Double.MAX_VALUE;
+        double heavy = Double.MAX_VALUE;
+        long countBefore = recorded.getInvocationCount();
+        long totalBefore = recorded.getTotalExecutionTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            int acc = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < QUICK_CALLS; i++) {
+                acc += testMethods.quickMethod(i);
+            }
+            quick = Math.min(quick, (System.nanoTime() - start) / (double) QUICK_CALLS);
+            sink = acc;
+
+            start = System.nanoTime();
+            for (int i = 0; i < HEAVY_CALLS; i++) {
+                testMethods.testMethod2();
+            }
+            heavy = Math.min(heavy, (System.nanoTime() - start) / (double) HEAVY_CALLS);
+        }
+        long calls = recorded.getInvocationCount() - countBefore;
+        double recordedNanos = calls > 0 ? (recorded.getTotalExecutionTime() - totalBefore) / (double) calls : 0;
+        return new Result(quick, recordedNanos, heavy);
+    }
+
+    private static void print(String mode, Result result) {
+        System.out.printf("%-20s %16.1f %16.1f %16.1f%n", mode, result.quickNanos, result.recordedNanos,
+            result.heavyNanos);
+    }
+
+    private record Result(double quickNanos, double recordedNanos, double heavyNanos) {}
+}
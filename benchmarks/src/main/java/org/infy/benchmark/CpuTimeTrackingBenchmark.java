@@ -0,0 +1,93 @@
+package org.infy.benchmark;
+
+import org.infy.TestMethods;
+import org.infy.profiler.MethodMetrics;
+import org.infy.profiler.PerformanceProfiler;
+import org.infy.profiler.ProfilerConfig;
+import org.infy.profiler.interceptor.ThreadCounters;
+
+/**
+ * Measures what CPU time tracking costs: a bare read of the thread CPU clock next to
+ * {@code System.nanoTime()}, then the per-call cost on {@link TestMethods} with the timing
+ * advice only and with the CPU timing advice, reading the CPU clock on every timed call and on
+ * one call in 16. Finishes by printing wall, CPU and wait
+ * time for a CPU-bound and a sleeping method.
+ *
+ * <p>Run with {@code java -cp benchmarks/target/benchmarks.jar org.infy.benchmark.CpuTimeTrackingBenchmark}.
+ */
+public class CpuTimeTrackingBenchmark {
+    private static final int COUNTER_READS = 5_000_000;
+    private static final int QUICK_CALLS = 20_000_000;
+    private static final int ROUNDS = 5;
+
+    private static volatile long sink;
+
+    public static void main(String[] args) {
+        System.setProperty("net.bytebuddy.experimental", "true");
+        if (!ThreadCounters.enableCpuTime()) {
+            System.out.println("This JVM cannot measure thread CPU time");
+            return;
+        }
+        double nanoTime = Double.MAX_VALUE;
+        double cpuTime = Double.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long acc = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < COUNTER_READS; i++) {
+                acc += System.nanoTime();
+            }
+            nanoTime = Math.min(nanoTime, (System.nanoTime() - start) / (double) COUNTER_READS);
+            start = System.nanoTime();
+            for (int i = 0; i < COUNTER_READS; i++) {
+                acc += ThreadCounters.cpuTime();
+            }
+            cpuTime = Math.min(cpuTime, (System.nanoTime() - start) / (double) COUNTER_READS);
+            sink = acc;
+        }
+        System.out.printf("System.nanoTime %.1f ns, thread CPU time %.1f ns per read%n", nanoTime, cpuTime);
+
+        PerformanceProfiler profiler = PerformanceProfiler.getInstance();
+        TestMethods testMethods = new TestMethods();
+        profiler.startProfiling(TestMethods.class);
+        double timing = measureQuick(testMethods);
+        // Re-weaves the already profiled class with the CPU timing advice
+        profiler.configure(new ProfilerConfig.Builder().cpuTimeTracking(true).build());
+        double withCpuTime = measureQuick(testMethods);
+        profiler.configure(new ProfilerConfig.Builder().cpuTimeTracking(true).cpuTimeSamplingPeriod(16).build());
+        double withSampledCpuTime = measureQuick(testMethods);
+        System.out.printf("quickMethod: timing %.1f ns, + CPU time every call %.1f ns, + CPU time 1 in 16 %.1f ns%n",
+            timing, withCpuTime, withSampledCpuTime);
+        profiler.configure(new ProfilerConfig.Builder().cpuTimeTracking(true).build());
+
+        for (int i = 0; i < 200; i++) {
+            testMethods.testMethod1();
+            testMethods.sleepingMethod();
+        }
+        System.out.printf("%-16s %12s %12s %12s%n", "method", "wall ms", "cpu ms", "wait ms");
+        print(profiler.getMetrics(TestMethods.class.getName() + ".testMethod1"));
+        print(profiler.getMetrics(TestMethods.class.getName() + ".sleepingMethod"));
+
+        profiler.shutdown();
+    }
+
+    private static double measureQuick(TestMethods testMethods) {
+        double quick = Double.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            int acc = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < QUICK_CALLS; i++) {
+                acc += testMethods.quickMethod(i);
+            }
+            quick = Math.min(quick, (System.nanoTime() - start) / (double) QUICK_CALLS);
+            sink = acc;
+        }
+        return quick;
+    }
+
+    private static void print(MethodMetrics metrics) {
+        String name = metrics.getMethodName().substring(metrics.getMethodName().lastIndexOf('.') + 1);
+        System.out.printf("%-16s %12.3f %12.3f %12.3f%n", name,
+            metrics.getAverageExecutionTime() / 1e6, metrics.getAverageCpuTime() / 1e6,
+            metrics.getAverageWaitTime() / 1e6);
+    }
+}
@@ -0,0 +1,110 @@
+package org.infy.benchmark;
+
+import org.infy.profiler.MethodRegistry;
+import org.infy.profiler.recording.BufferedRecorder;
+import org.infy.profiler.recording.OverflowPolicy;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures recording throughput as the number of threads hitting the same few methods
+ * grows, comparing direct updates of the shared aggregates with per-thread buffering.
+ *
+ * <p>Run with {@code java -cp benchmarks/target/benchmarks.jar org.infy.benchmark.RecordingContentionBenchmark}.
+ */
+public class RecordingContentionBenchmark {
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32, 64};
+    private static final int METHOD_COUNT = 4;
+    private static final long RUN_MILLIS = 1_000;
+    private static final int BUFFER_SIZE = 4096;
+    private static final int DRAIN_INTERVAL_MILLIS = 10;
+
+    private interface Recorder {
+        void record(int methodId, long executionTime);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        System.out.printf("%d available processors%n", Runtime.getRuntime().availableProcessors());
+        System.out.printf("%8s %16s %16s %16s %10s%n",
+            "threads", "direct ops/s", "buffered ops/s", "drop ops/s", "dropped");
+
+        for (int threads : THREAD_COUNTS) {
+            MethodRegistry directRegistry = newRegistry();
+            double direct = run(threads, (id, time) -> directRegistry.get(id).recordExecution(time));
+
+            double buffered = runBuffered(threads, OverflowPolicy.RECORD_DIRECT)[0];
+            double[] dropping = runBuffered(threads, OverflowPolicy.DROP);
+
+            System.out.printf("%8d %16.0f %16.0f %16.0f %9.1f%%%n",
+                threads, direct, buffered, dropping[0], dropping[1] * 100.0);
+        }
+    }
+
+    private static double[] runBuffered(int threads, OverflowPolicy policy) throws InterruptedException {
+        MethodRegistry registry = newRegistry();
+        BufferedRecorder recorder = new BufferedRecorder(registry, BUFFER_SIZE, policy);
+        ScheduledExecutorService drainer = Executors.newSingleThreadScheduledExecutor();
+        drainer.scheduleAtFixedRate(recorder::drain, DRAIN_INTERVAL_MILLIS, DRAIN_INTERVAL_MILLIS,
+            TimeUnit.MILLISECONDS);
+        LongAdder operations = new LongAdder();
+        double throughput = run(threads, (methodId, duration) -> recorder.record(methodId, duration, 1), operations);
+        drainer.shutdown();
+        drainer.awaitTermination(10, TimeUnit.SECONDS);
+        recorder.drain();
+        return new double[] {throughput, recorder.getDroppedCount() / (double) operations.sum()};
+    }
+
+    private static MethodRegistry newRegistry() {
+        MethodRegistry registry = new MethodRegistry();
+        for (int i = 0; i < METHOD_COUNT; i++) {
+            registry.register("benchmark.Method.m" + i);
+        }
+        return registry;
+    }
+
+    private static double run(int threads, Recorder recorder) throws InterruptedException {
+        return run(threads, recorder, new LongAdder());
+    }
+
+    private static double run(int threads, Recorder recorder, LongAdder operations) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch go = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                long local = 0;
+                ready.countDown();
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                while (running.get()) {
+                    for (int i = 0; i < 1024; i++) {
+                        recorder.record(i & (METHOD_COUNT - 1), 100 + (i & 127));
+                    }
+                    local += 1024;
+                }
+                operations.add(local);
+                done.countDown();
+            });
+            worker.setDaemon(true);
+            worker.start();
+        }
+        ready.await();
+        long start = System.nanoTime();
+        go.countDown();
+        Thread.sleep(RUN_MILLIS);
+        running.set(false);
+        done.await();
+        long elapsed = System.nanoTime() - start;
+        return operations.sum() / (elapsed / 1e9);
+    }
+}
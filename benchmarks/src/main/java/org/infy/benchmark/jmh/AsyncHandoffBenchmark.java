@@ -0,0 +1,97 @@
+package org.infy.benchmark.jmh;
+
+import org.infy.profiler.PerformanceProfiler;
+import org.infy.profiler.ProfilerConfig;
+import org.infy.profiler.async.AsyncContext;
+import org.infy.profiler.async.AsyncOrigins;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What async profiling adds per handoff and per call. Tasks go to an executor that runs them
+ * on the submitting thread, so the difference to the plain handoff is the wrapping, the context
+ * swap and the two recorded samples rather than any queueing. The woven methods return an
+ * already completed future, timed with and without the async advice.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AsyncHandoffBenchmark {
+    private final Executor direct = Runnable::run;
+    private final Executor propagating = AsyncContext.propagating(direct);
+    private final PlainWorkload plain = new PlainWorkload();
+    private final WovenWorkload woven = new WovenWorkload();
+    private final Runnable task = this::increment;
+    private AsyncContext context;
+    private int value;
+
+    public static class PlainWorkload {
+        public CompletableFuture<Integer> lookup(int value) {
+            return CompletableFuture.completedFuture(value * 31 + 7);
+        }
+    }
+
+    // Same body as PlainWorkload, only this class gets woven
+    public static class WovenWorkload {
+        public CompletableFuture<Integer> lookup(int value) {
+            return CompletableFuture.completedFuture(value * 31 + 7);
+        }
+    }
+
+    private void increment() {
+        value++;
+    }
+
+    @Setup
+    public void setUp() {
+        PerformanceProfiler profiler = PerformanceProfiler.getInstance();
+        profiler.configure(new ProfilerConfig.Builder().asyncProfiling(true).build());
+        profiler.startProfiling(WovenWorkload.class);
+        int originId = profiler.getMethodRegistry().register("org.infy.benchmark.Async.origin");
+        context = AsyncContext.enter(new AsyncOrigins(profiler.getMethodRegistry()).get(originId));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.exit();
+        PerformanceProfiler.getInstance().shutdown();
+    }
+
+    @Benchmark
+    public int handoffPlain() {
+        direct.execute(task);
+        return value;
+    }
+
+    @Benchmark
+    public int handoffPropagating() {
+        propagating.execute(task);
+        return value;
+    }
+
+    @Benchmark
+    public CompletableFuture<Integer> completedFutureUnwoven() {
+        return plain.lookup(value++);
+    }
+
+    @Benchmark
+    public CompletableFuture<Integer> completedFutureWoven() {
+        return woven.lookup(value++);
+    }
+}
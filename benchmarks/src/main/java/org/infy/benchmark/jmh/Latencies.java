@@ -0,0 +1,28 @@
+package org.infy.benchmark.jmh;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.SplittableRandom;
+
+/**
+ * Per-thread source of recorded durations, spread log-uniformly from 100 ns to about 100 ms
+ * so that recording touches many histogram buckets rather than one hot counter.
+ */
+@State(Scope.Thread)
+public class Latencies {
+    private static final int SIZE = 1024;
+    private final long[] values = new long[SIZE];
+    private int next;
+
+    public Latencies() {
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < SIZE; i++) {
+            values[i] = (long) Math.pow(10, 2 + random.nextDouble() * 6);
+        }
+    }
+
+    public long next() {
+        return values[next++ & (SIZE - 1)];
+    }
+}
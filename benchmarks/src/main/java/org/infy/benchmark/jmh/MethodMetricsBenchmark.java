@@ -0,0 +1,59 @@
+package org.infy.benchmark.jmh;
+
+import org.infy.profiler.MethodMetrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link MethodMetrics#recordExecution(long)} on one shared instance, as when every
+ * thread calls the same hot method, from one thread up to one per available processor.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MethodMetricsBenchmark {
+    private MethodMetrics metrics;
+
+    @Setup
+    public void setUp() {
+        metrics = new MethodMetrics("org.infy.benchmark.Shared.method");
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void recordExecution1Thread(Latencies latencies) {
+        metrics.recordExecution(latencies.next());
+    }
+
+    @Benchmark
+    @Threads(2)
+    public void recordExecution2Threads(Latencies latencies) {
+        metrics.recordExecution(latencies.next());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordExecution4Threads(Latencies latencies) {
+        metrics.recordExecution(latencies.next());
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void recordExecutionMaxThreads(Latencies latencies) {
+        metrics.recordExecution(latencies.next());
+    }
+}
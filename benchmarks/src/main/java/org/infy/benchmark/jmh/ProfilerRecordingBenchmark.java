@@ -0,0 +1,76 @@
+package org.infy.benchmark.jmh;
+
+import org.infy.profiler.PerformanceProfiler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link PerformanceProfiler#recordMethodExecution} as the number of distinct methods
+ * grows: by signature, which looks the method up on every call, and by the id woven code
+ * binds as a constant. Calls cycle through all keys, so large key counts also pay for cache
+ * misses. Each key count runs in its own fork since methods cannot be unregistered.
+ * {@code registryCap=0} gives every key metrics of its own; with a cap of 1000, keys past the
+ * first thousand record into the shared folded bucket, so the larger key counts measure that path.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProfilerRecordingBenchmark {
+    @Param({"1", "100", "10000", "100000"})
+    private int keyCount;
+
+    @Param({"0", "1000"})
+    private int registryCap;
+
+    private PerformanceProfiler profiler;
+    private String[] signatures;
+    private int[] methodIds;
+
+    @Setup
+    public void setUp() {
+        profiler = PerformanceProfiler.getInstance();
+        // Set before registering, folding is decided when a method is first seen
+        profiler.getMethodRegistry().setMaxMethods(registryCap);
+        signatures = new String[keyCount];
+        methodIds = new int[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            signatures[i] = "org.infy.benchmark.Generated" + (i / 100) + ".method" + i;
+            methodIds[i] = profiler.getMethodRegistry().register(signatures[i]);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        int next(int bound) {
+            int index = next;
+            next = index + 1 == bound ? 0 : index + 1;
+            return index;
+        }
+    }
+
+    @Benchmark
+    public void recordBySignature(Cursor cursor, Latencies latencies) {
+        profiler.recordMethodExecution(signatures[cursor.next(keyCount)], latencies.next());
+    }
+
+    @Benchmark
+    public void recordById(Cursor cursor, Latencies latencies) {
+        profiler.recordMethodExecution(methodIds[cursor.next(keyCount)], latencies.next(), 1);
+    }
+}
@@ -0,0 +1,92 @@
+package org.infy.benchmark.jmh;
+
+import org.infy.profiler.MethodMetrics;
+import org.infy.profiler.MetricsSnapshot;
+import org.infy.profiler.PerformanceProfiler;
+import org.infy.profiler.reporting.ReportCompression;
+import org.infy.profiler.reporting.ReportGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * What reading the metrics costs as the number of methods grows: a consistent snapshot, a
+ * streamed report (plain and zstd) and the in-memory JSON report. Run with {@code -prof gc}
+ * to see the allocation per operation alongside the time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class SnapshotBenchmark {
+    @Param({"100", "1000", "10000"})
+    private int methodCount;
+
+    private PerformanceProfiler profiler;
+    private ReportGenerator reportGenerator;
+    private Path reportDirectory;
+
+    @Setup
+    public void setUp() throws IOException {
+        profiler = PerformanceProfiler.getInstance();
+        Latencies latencies = new Latencies();
+        for (int i = 0; i < methodCount; i++) {
+            MethodMetrics metrics = profiler.getMethodRegistry()
+                .getOrRegister("org.infy.benchmark.Generated" + (i / 100) + ".method" + i);
+            for (int call = 0; call < 100; call++) {
+                metrics.recordExecution(latencies.next());
+            }
+        }
+        reportGenerator = new ReportGenerator(profiler);
+        reportDirectory = Files.createTempDirectory("profiler-benchmark");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(reportDirectory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public int snapshot() {
+        try (MetricsSnapshot snapshot = profiler.snapshot()) {
+            return snapshot.size();
+        }
+    }
+
+    @Benchmark
+    public Path streamReport() throws IOException {
+        return reportGenerator.streamReport(reportDirectory.toString(), ReportCompression.NONE, false);
+    }
+
+    @Benchmark
+    public Path streamReportZstd() throws IOException {
+        return reportGenerator.streamReport(reportDirectory.toString(), ReportCompression.ZSTD, false);
+    }
+
+    @Benchmark
+    public void generateReport() throws IOException {
+        reportGenerator.generateReport(reportDirectory.toString());
+    }
+}
@@ -0,0 +1,100 @@
+package org.infy.benchmark.jmh;
+
+import org.infy.profiler.PerformanceProfiler;
+import org.infy.profiler.ProfilerConfig;
+import org.infy.profiler.recording.RecordingMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The full woven enter/exit path: the same two methods on a class the profiler has woven and
+ * on an identical one it has not, so the difference is what the timing advice costs per call
+ * in each recording mode.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TimingAdviceBenchmark {
+    @Param({"DIRECT", "BUFFERED"})
+    private RecordingMode recordingMode;
+
+    private final PlainWorkload plain = new PlainWorkload();
+    private final WovenWorkload woven = new WovenWorkload();
+    private int value;
+
+    public static class PlainWorkload {
+        public int quick(int value) {
+            return value * 31 + 7;
+        }
+
+        public long loop(int value) {
+            long sum = 0;
+            for (int i = 0; i < 200; i++) {
+                sum += (long) value * i ^ i;
+            }
+            return sum;
+        }
+    }
+
+    // Same bodies as PlainWorkload, only this class gets woven
+    public static class WovenWorkload {
+        public int quick(int value) {
+            return value * 31 + 7;
+        }
+
+        public long loop(int value) {
+            long sum = 0;
+            for (int i = 0; i < 200; i++) {
+                sum += (long) value * i ^ i;
+            }
+            return sum;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        PerformanceProfiler profiler = PerformanceProfiler.getInstance();
+        profiler.configure(new ProfilerConfig.Builder().recordingMode(recordingMode).build());
+        profiler.startProfiling(WovenWorkload.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        PerformanceProfiler.getInstance().shutdown();
+    }
+
+    @Benchmark
+    public int quickUnwoven() {
+        return plain.quick(value++);
+    }
+
+    @Benchmark
+    public int quickWoven() {
+        return woven.quick(value++);
+    }
+
+    @Benchmark
+    public long loopUnwoven() {
+        return plain.loop(value++);
+    }
+
+    @Benchmark
+    public long loopWoven() {
+        return woven.loop(value++);
+    }
+}
@@ -15,4 +15,18 @@ public class TestMethods {
             sb.append(i);
         }
     }
-} 
\ No newline at end of file
+    
+    public void sleepingMethod() {
+        // Simulate a call that mostly waits, e.g. on I/O
+        try {
+            Thread.sleep(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    public int quickMethod(int value) {
+        // Simulate a tiny, frequently called method
+        return value * 31 + 7;
+    }
+}
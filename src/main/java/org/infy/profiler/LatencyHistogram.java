@@ -0,0 +1,178 @@
+package org.infy.profiler;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-memory, log-linear latency histogram in the spirit of HdrHistogram.
+ *
+ * <p>Values below {@code 2^SUB_BUCKET_BITS} nanoseconds get exact buckets; above that each
+ * power of two is split into {@code 2^SUB_BUCKET_BITS} equal sub-buckets, which bounds the
+ * relative error of any reported value to about 3%. Recording is a single atomic increment
+ * with no locks and no allocation. Values beyond the tracked range are clamped into the
+ * last bucket.
+ */
+public class LatencyHistogram {
+    static final int SUB_BUCKET_BITS = 5;
+    static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    static final int SUB_BUCKET_MASK = SUB_BUCKET_COUNT - 1;
+    // 2^44 ns is a little under five hours
+    static final int MAX_VALUE_BITS = 44;
+    static final long MAX_TRACKABLE_VALUE = (1L << MAX_VALUE_BITS) - 1;
+    public static final int BUCKET_COUNT = (MAX_VALUE_BITS - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS;
+
+    private final AtomicLongArray counts;
+
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(BUCKET_COUNT);
+    }
+
+    public void record(long value) {
+        counts.incrementAndGet(indexOf(value));
+    }
+
+    public void record(long value, long count) {
+        counts.addAndGet(indexOf(value), count);
+    }
+
+    public void addAtIndex(int index, long count) {
+        counts.addAndGet(index, count);
+    }
+
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long count = other.counts.get(i);
+            if (count != 0) {
+                counts.addAndGet(i, count);
+            }
+        }
+    }
+
+    public LatencyHistogram copy() {
+        LatencyHistogram copy = new LatencyHistogram();
+        copy.add(this);
+        return copy;
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+    }
+
+    public long getCountAt(int index) {
+        return counts.get(index);
+    }
+
+    public long getTotalCount() {
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    // Bucket bounds, so both are within the histogram's relative error of the true extremes
+    public long getMinValue() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (counts.get(i) != 0) {
+                return lowestEquivalentValue(i);
+            }
+        }
+        return 0;
+    }
+
+    public long getMaxValue() {
+        for (int i = BUCKET_COUNT - 1; i >= 0; i--) {
+            if (counts.get(i) != 0) {
+                return highestEquivalentValue(i);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the highest value equivalent to the given percentile (0-100), or 0 when
+     * nothing has been recorded. The bucket counts are copied first so that concurrent
+     * recording cannot make the walk overshoot.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] snapshot = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        return valueAtPercentile(snapshot, total, percentile);
+    }
+
+    /**
+     * Fills {@code values} with the values at several ascending percentiles from one pass over a
+     * single copy of the counts, taken into {@code scratch} (at least {@link #BUCKET_COUNT} longs),
+     * so callers walking many histograms allocate nothing per histogram.
+     */
+    public void getValuesAtPercentiles(double[] percentiles, long[] values, long[] scratch) {
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            scratch[i] = counts.get(i);
+            total += scratch[i];
+        }
+        int next = 0;
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT && next < percentiles.length && total > 0; i++) {
+            seen += scratch[i];
+            while (next < percentiles.length && seen >= targetCount(percentiles[next], total)) {
+                values[next++] = highestEquivalentValue(i);
+            }
+        }
+        for (; next < percentiles.length; next++) {
+            values[next] = total == 0 ? 0 : MAX_TRACKABLE_VALUE;
+        }
+    }
+
+    private static long targetCount(double percentile, long total) {
+        double clamped = Math.min(Math.max(percentile, 0.0), 100.0);
+        return Math.max(1, (long) Math.ceil(clamped / 100.0 * total));
+    }
+
+    static long valueAtPercentile(long[] snapshot, long total, double percentile) {
+        if (total == 0) {
+            return 0;
+        }
+        long target = targetCount(percentile, total);
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= target) {
+                return highestEquivalentValue(i);
+            }
+        }
+        return MAX_TRACKABLE_VALUE;
+    }
+
+    static int indexOf(long value) {
+        long clamped = Math.min(Math.max(value, 0), MAX_TRACKABLE_VALUE);
+        int msb = 63 - Long.numberOfLeadingZeros(clamped | 1);
+        if (msb < SUB_BUCKET_BITS) {
+            return (int) clamped;
+        }
+        int shift = msb - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) | (int) ((clamped >>> shift) & SUB_BUCKET_MASK);
+    }
+
+    static long lowestEquivalentValue(int index) {
+        int bucket = index >>> SUB_BUCKET_BITS;
+        int subBucket = index & SUB_BUCKET_MASK;
+        if (bucket == 0) {
+            return subBucket;
+        }
+        return ((long) (SUB_BUCKET_COUNT + subBucket)) << (bucket - 1);
+    }
+
+    public static long highestEquivalentValue(int index) {
+        int bucket = index >>> SUB_BUCKET_BITS;
+        if (bucket == 0) {
+            return index;
+        }
+        return lowestEquivalentValue(index) + (1L << (bucket - 1)) - 1;
+    }
+}
@@ -1,5 +1,13 @@
 package org.infy.profiler;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.infy.profiler.snapshot.MethodSnapshot;
+import org.infy.profiler.snapshot.SparseHistogram;
+import org.infy.profiler.snapshot.WindowTotals;
+import org.infy.profiler.window.MetricsWindow;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.LongAdder;
 
@@ -9,6 +17,23 @@ public class MethodMetrics {
     private final AtomicLong totalExecutionTime;
     private final AtomicLong maxExecutionTime;
     private final AtomicLong minExecutionTime;
+    private final LatencyHistogram histogram;
+    // Sampling period minus one; periods are powers of two so the check is a mask
+    private volatile int samplingMask;
+    private volatile boolean instrumented = true;
+    // Allocation tracking is opt-in, so its histogram is only created on first use
+    private final LongAdder allocatedBytes;
+    private final LongAdder allocationSamples;
+    private volatile LatencyHistogram allocationHistogram;
+    // Sampled like the wall time, both are scaled back up to the calls they stand for
+    private final LongAdder cpuTime;
+    private final LongAdder cpuTimeCalls;
+    // Bumped before each write, while the call count above closes it; see copyTo
+    private final LongAdder pendingCalls;
+    private final LongAdder pendingCpuTimeCalls;
+    private final LongAdder pendingAllocationSamples;
+    // Bumped before and after each absorb, so it is odd while one is under way; see getAbsorptions
+    private volatile int absorptions;
     
     public MethodMetrics(String methodName) {
         this.methodName = methodName;
@@ -16,13 +41,154 @@ public class MethodMetrics {
         this.totalExecutionTime = new AtomicLong(0);
         this.maxExecutionTime = new AtomicLong(Long.MIN_VALUE);
         this.minExecutionTime = new AtomicLong(Long.MAX_VALUE);
+        this.histogram = new LatencyHistogram();
+        this.allocatedBytes = new LongAdder();
+        this.allocationSamples = new LongAdder();
+        this.cpuTime = new LongAdder();
+        this.cpuTimeCalls = new LongAdder();
+        this.pendingCalls = new LongAdder();
+        this.pendingCpuTimeCalls = new LongAdder();
+        this.pendingAllocationSamples = new LongAdder();
+    }
+    
+    /**
+     * Builds metrics from an already aggregated count, total and distribution, such as the
+     * calls of one method inside a time window. Min and max are taken from the histogram.
+     */
+    public static MethodMetrics fromHistogram(String methodName, long count, long totalTime, LatencyHistogram histogram) {
+        MethodMetrics metrics = new MethodMetrics(methodName);
+        metrics.pendingCalls.add(count);
+        metrics.invocationCount.add(count);
+        metrics.totalExecutionTime.set(totalTime);
+        if (count > 0) {
+            metrics.minExecutionTime.set(histogram.getMinValue());
+            metrics.maxExecutionTime.set(histogram.getMaxValue());
+        }
+        metrics.histogram.add(histogram);
+        return metrics;
+    }
+    
+    /**
+     * Builds metrics from a snapshot, typically one merged from many processes. Unlike
+     * {@link #fromHistogram}, min and max are the exact figures the snapshot carries.
+     */
+    public static MethodMetrics fromSnapshot(MethodSnapshot snapshot) {
+        MethodMetrics metrics = new MethodMetrics(snapshot.methodName());
+        metrics.pendingCalls.add(snapshot.count());
+        metrics.invocationCount.add(snapshot.count());
+        metrics.totalExecutionTime.set(snapshot.totalTime());
+        metrics.minExecutionTime.set(snapshot.minTime());
+        metrics.maxExecutionTime.set(snapshot.maxTime());
+        snapshot.histogram().addTo(metrics.histogram);
+        metrics.pendingCpuTimeCalls.add(snapshot.cpuTimeCalls());
+        metrics.cpuTime.add(snapshot.cpuTime());
+        metrics.cpuTimeCalls.add(snapshot.cpuTimeCalls());
+        if (snapshot.allocationSamples() > 0) {
+            metrics.pendingAllocationSamples.add(snapshot.allocationSamples());
+            metrics.allocatedBytes.add(snapshot.allocatedBytes());
+            snapshot.allocationHistogram().addTo(metrics.createAllocationHistogram());
+            metrics.allocationSamples.add(snapshot.allocationSamples());
+        }
+        return metrics;
     }
     
     public void recordExecution(long executionTime) {
-        invocationCount.increment();
-        totalExecutionTime.addAndGet(executionTime);
+        recordExecution(executionTime, 1);
+    }
+    
+    // A sample taken at period N stands for N calls, so counts and totals are scaled back up
+    public void recordSample(long executionTime) {
+        recordExecution(executionTime, samplingMask + 1);
+    }
+    
+    public void recordExecution(long executionTime, long weight) {
+        pendingCalls.add(weight);
+        totalExecutionTime.addAndGet(executionTime * weight);
         updateMaxExecutionTime(executionTime);
         updateMinExecutionTime(executionTime);
+        invocationCount.add(weight);
+        histogram.record(executionTime, weight);
+    }
+    
+    /**
+     * Adds another method's figures to these, as when a capped registry folds an evicted
+     * method into its other bucket. Follows the same pending-first order as recording. Calls
+     * must not overlap, as they do not under the registry's lock.
+     */
+    public void absorb(MethodMetrics source) {
+        absorptions++;
+        long count = source.invocationCount.sum();
+        pendingCalls.add(count);
+        totalExecutionTime.addAndGet(source.totalExecutionTime.get());
+        if (count > 0) {
+            updateMaxExecutionTime(source.maxExecutionTime.get());
+            updateMinExecutionTime(source.minExecutionTime.get());
+        }
+        histogram.add(source.histogram);
+        invocationCount.add(count);
+        
+        long cpuCalls = source.cpuTimeCalls.sum();
+        pendingCpuTimeCalls.add(cpuCalls);
+        cpuTime.add(source.cpuTime.sum());
+        cpuTimeCalls.add(cpuCalls);
+        
+        LatencyHistogram sourceAllocations = source.allocationHistogram;
+        if (sourceAllocations != null) {
+            LatencyHistogram allocations = allocationHistogram;
+            if (allocations == null) {
+                allocations = createAllocationHistogram();
+            }
+            long samples = source.allocationSamples.sum();
+            pendingAllocationSamples.add(samples);
+            allocatedBytes.add(source.allocatedBytes.sum());
+            allocations.add(sourceAllocations);
+            allocationSamples.add(samples);
+        }
+        absorptions++;
+    }
+    
+    /**
+     * Changes whenever another method's figures are folded into these, and is odd while that is
+     * under way. Those figures are not calls made since a consumer diffing the cumulative ones
+     * last looked, so it takes a change as a new baseline instead of as an interval's calls.
+     */
+    @JsonIgnore
+    public int getAbsorptions() {
+        return absorptions;
+    }
+    
+    public void recordCpuTime(long nanos, long weight) {
+        pendingCpuTimeCalls.add(weight);
+        cpuTime.add(nanos * weight);
+        cpuTimeCalls.add(weight);
+    }
+    
+    public void recordAllocation(long bytes) {
+        LatencyHistogram histogram = allocationHistogram;
+        if (histogram == null) {
+            histogram = createAllocationHistogram();
+        }
+        pendingAllocationSamples.increment();
+        allocatedBytes.add(bytes);
+        allocationSamples.increment();
+        histogram.record(bytes);
+    }
+    
+    private synchronized LatencyHistogram createAllocationHistogram() {
+        if (allocationHistogram == null) {
+            allocationHistogram = new LatencyHistogram();
+        }
+        return allocationHistogram;
+    }
+    
+    public boolean shouldSample() {
+        return samplePeriod() != 0;
+    }
+    
+    // The period this call is sampled at, or 0 when it is skipped, from a single read of the mask
+    public int samplePeriod() {
+        int mask = samplingMask;
+        return mask == 0 || (ThreadLocalRandom.current().nextInt() & mask) == 0 ? mask + 1 : 0;
     }
     
     private void updateMaxExecutionTime(long executionTime) {
@@ -70,4 +236,210 @@ public class MethodMetrics {
     public long getMinExecutionTime() {
         return minExecutionTime.get();
     }
-} 
\ No newline at end of file
+    
+    // Histogram buckets report their upper bound, which can exceed the largest sample seen
+    public long getPercentileExecutionTime(double percentile) {
+        if (getInvocationCount() == 0) {
+            return 0;
+        }
+        return Math.min(histogram.getValueAtPercentile(percentile), maxExecutionTime.get());
+    }
+    
+    public long getP50ExecutionTime() {
+        return getPercentileExecutionTime(50.0);
+    }
+    
+    public long getP90ExecutionTime() {
+        return getPercentileExecutionTime(90.0);
+    }
+    
+    public long getP99ExecutionTime() {
+        return getPercentileExecutionTime(99.0);
+    }
+    
+    public long getP999ExecutionTime() {
+        return getPercentileExecutionTime(99.9);
+    }
+    
+    public boolean isCpuTimeTracked() {
+        return cpuTimeCalls.sum() > 0;
+    }
+    
+    public long getTotalCpuTime() {
+        return cpuTime.sum();
+    }
+    
+    public long getAverageCpuTime() {
+        long calls = cpuTimeCalls.sum();
+        return calls > 0 ? cpuTime.sum() / calls : 0;
+    }
+    
+    // Wall time not spent on the CPU: blocked, waiting, sleeping or descheduled
+    public long getAverageWaitTime() {
+        if (!isCpuTimeTracked()) {
+            return 0;
+        }
+        return Math.max(0, getAverageExecutionTime() - getAverageCpuTime());
+    }
+    
+    public long getTotalWaitTime() {
+        return getAverageWaitTime() * getInvocationCount();
+    }
+    
+    public long getTotalAllocatedBytes() {
+        return allocatedBytes.sum();
+    }
+    
+    public long getAverageAllocatedBytes() {
+        long samples = allocationSamples.sum();
+        return samples > 0 ? allocatedBytes.sum() / samples : 0;
+    }
+    
+    public long getAllocatedBytesPercentile(double percentile) {
+        LatencyHistogram histogram = allocationHistogram;
+        return histogram != null ? histogram.getValueAtPercentile(percentile) : 0;
+    }
+    
+    public long getP50AllocatedBytes() {
+        return getAllocatedBytesPercentile(50.0);
+    }
+    
+    public long getP99AllocatedBytes() {
+        return getAllocatedBytesPercentile(99.0);
+    }
+    
+    public long getMaxAllocatedBytes() {
+        LatencyHistogram histogram = allocationHistogram;
+        return histogram != null ? histogram.getMaxValue() : 0;
+    }
+    
+    /**
+     * Copies this method's figures into slot {@code index} of a snapshot. Writers bump a pending
+     * counter first and the matching call counter last, so a read is consistent when the call
+     * counter read before the fields equals the pending counter read after them; otherwise a
+     * write overlapped and the read is retried, yielding after a few spins in case the writer
+     * was descheduled mid-write. Percentiles are taken from a copy of the
+     * histogram in {@code scratch} and are consistent among themselves. Returns false when a
+     * write still overlapped after every retry.
+     */
+    boolean copyTo(MetricsSnapshot snapshot, int index, long[] scratch) {
+        int absorptionsBefore = absorptions;
+        boolean consistent = false;
+        for (int attempt = 0; attempt < MetricsSnapshot.READ_ATTEMPTS && !consistent; attempt++) {
+            MetricsSnapshot.backOff(attempt);
+            long count = invocationCount.sum();
+            snapshot.totals[index] = totalExecutionTime.get();
+            snapshot.mins[index] = minExecutionTime.get();
+            snapshot.maxes[index] = maxExecutionTime.get();
+            snapshot.counts[index] = count;
+            consistent = pendingCalls.sum() == count;
+        }
+        boolean cpuConsistent = false;
+        for (int attempt = 0; attempt < MetricsSnapshot.READ_ATTEMPTS && !cpuConsistent; attempt++) {
+            MetricsSnapshot.backOff(attempt);
+            long calls = cpuTimeCalls.sum();
+            snapshot.cpuTimes[index] = cpuTime.sum();
+            snapshot.cpuTimeCalls[index] = calls;
+            cpuConsistent = pendingCpuTimeCalls.sum() == calls;
+        }
+        boolean allocationConsistent = false;
+        for (int attempt = 0; attempt < MetricsSnapshot.READ_ATTEMPTS && !allocationConsistent; attempt++) {
+            MetricsSnapshot.backOff(attempt);
+            long samples = allocationSamples.sum();
+            snapshot.allocatedBytes[index] = allocatedBytes.sum();
+            snapshot.allocationSamples[index] = samples;
+            allocationConsistent = pendingAllocationSamples.sum() == samples;
+        }
+        snapshot.names[index] = methodName;
+        snapshot.samplingPeriods[index] = samplingMask + 1;
+        histogram.getValuesAtPercentiles(MetricsSnapshot.PERCENTILES, snapshot.percentileValues, scratch);
+        // Clamped to the consistent max rather than the live one
+        for (int p = 0; p < MetricsSnapshot.PERCENTILES.length; p++) {
+            snapshot.percentiles[p][index] = snapshot.counts[index] > 0
+                ? Math.min(snapshot.percentileValues[p], snapshot.maxes[index]) : 0;
+        }
+        snapshot.copyDurationBuckets(index, scratch);
+        LatencyHistogram allocations = allocationHistogram;
+        if (allocations != null) {
+            allocations.getValuesAtPercentiles(MetricsSnapshot.ALLOCATION_PERCENTILES,
+                snapshot.percentileValues, scratch);
+            snapshot.p99AllocatedBytes[index] = snapshot.percentileValues[0];
+        } else {
+            snapshot.p99AllocatedBytes[index] = 0;
+        }
+        // -1 when figures were being absorbed while they were read, so they may hold part of them
+        snapshot.absorptions[index] = (absorptionsBefore & 1) == 0 && absorptions == absorptionsBefore
+            ? absorptionsBefore : -1;
+        return consistent && cpuConsistent && allocationConsistent;
+    }
+    
+    /**
+     * The figures that add up across processes, for a snapshot file. Counts and sums are read
+     * with the same retries as {@link #copyTo}; the histograms are read after them and may
+     * include a few calls the counts do not.
+     */
+    public MethodSnapshot toSnapshot(Map<MetricsWindow, WindowTotals> windows) {
+        long count = 0;
+        long total = 0;
+        long min = 0;
+        long max = 0;
+        for (int attempt = 0; attempt < MetricsSnapshot.READ_ATTEMPTS; attempt++) {
+            MetricsSnapshot.backOff(attempt);
+            count = invocationCount.sum();
+            total = totalExecutionTime.get();
+            min = minExecutionTime.get();
+            max = maxExecutionTime.get();
+            if (pendingCalls.sum() == count) {
+                break;
+            }
+        }
+        long cpu = 0;
+        long cpuCalls = 0;
+        for (int attempt = 0; attempt < MetricsSnapshot.READ_ATTEMPTS; attempt++) {
+            MetricsSnapshot.backOff(attempt);
+            cpuCalls = cpuTimeCalls.sum();
+            cpu = cpuTime.sum();
+            if (pendingCpuTimeCalls.sum() == cpuCalls) {
+                break;
+            }
+        }
+        long bytes = 0;
+        long samples = 0;
+        for (int attempt = 0; attempt < MetricsSnapshot.READ_ATTEMPTS; attempt++) {
+            MetricsSnapshot.backOff(attempt);
+            samples = allocationSamples.sum();
+            bytes = allocatedBytes.sum();
+            if (pendingAllocationSamples.sum() == samples) {
+                break;
+            }
+        }
+        LatencyHistogram allocations = allocationHistogram;
+        return new MethodSnapshot(methodName, count, total, min, max, cpu, cpuCalls, bytes, samples,
+            SparseHistogram.of(histogram), allocations != null ? SparseHistogram.of(allocations) : SparseHistogram.EMPTY,
+            windows);
+    }
+    
+    @JsonIgnore
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+    
+    public int getSamplingPeriod() {
+        return samplingMask + 1;
+    }
+    
+    public void setSamplingPeriod(int period) {
+        if (period < 1 || Integer.bitCount(period) != 1) {
+            throw new IllegalArgumentException("Sampling period must be a power of two: " + period);
+        }
+        this.samplingMask = period - 1;
+    }
+    
+    public boolean isInstrumented() {
+        return instrumented;
+    }
+    
+    public void markDeinstrumented() {
+        this.instrumented = false;
+    }
+}
@@ -0,0 +1,345 @@
+package org.infy.profiler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Assigns every profiled method a stable integer id and keeps its {@link MethodMetrics}
+ * in an array slot indexed by that id. Ids are handed out once, when a class is woven,
+ * so the recording path is a plain array access instead of a string-keyed map lookup.
+ *
+ * <p>The number of methods with metrics of their own can be capped. Ids are woven into
+ * bytecode as constants, so they are never taken back; once the cap is reached, new methods
+ * share the {@value #OTHER_BUCKET} bucket instead. Calls to those folded methods are counted
+ * in a {@link SpaceSavingSummary}, and {@link #rebalance()} swaps the ones called clearly more
+ * often than the quietest tracked methods in for them, folding the evicted figures into the
+ * bucket. Iteration ({@link #slotCount()}, {@link #getSlot(int)}, {@link #forEach}) covers the
+ * tracked methods and the bucket, so its cost is bounded by the cap as well.
+ */
+public class MethodRegistry {
+    public static final String OTHER_BUCKET = "other";
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int TAIL_COUNTERS = 256;
+    // A folded method must be called this many times as often as the quietest tracked one to replace it
+    private static final int PROMOTION_FACTOR = 2;
+    // Rough heap cost of a tracked method, dominated by its histogram, and of a registered signature
+    private static final long METRICS_BYTES = LatencyHistogram.BUCKET_COUNT * 8L + 512;
+    private static final long SIGNATURE_BYTES = 128;
+
+    private final ConcurrentHashMap<String, Integer> ids;
+    // Registered for figures derived from woven methods, so their metrics are never woven themselves
+    private final Set<Integer> derivedIds = ConcurrentHashMap.newKeySet();
+    private final MethodMetrics other;
+    private final SpaceSavingSummary tail = new SpaceSavingSummary(TAIL_COUNTERS);
+    private volatile int maxMethods = Integer.MAX_VALUE;
+    // By method id; folded ids point at the other bucket
+    private volatile MethodMetrics[] byId;
+    private volatile String[] signatures;
+    private volatile int size;
+    // Tracked metrics packed densely, plus the other bucket once anything has been folded
+    private volatile MethodMetrics[] slots;
+    private volatile int slotCount;
+    private volatile int foldedCount;
+    private volatile long evictions;
+    private volatile long promotions;
+    private volatile boolean otherSlotted;
+    // Guarded by this: method id per slot (-1 for the bucket) and its call count at the last rebalance
+    private int[] slotOwners;
+    private long[] slotCalls;
+
+    public MethodRegistry() {
+        this.ids = new ConcurrentHashMap<>();
+        this.byId = new MethodMetrics[INITIAL_CAPACITY];
+        this.signatures = new String[INITIAL_CAPACITY];
+        this.slots = new MethodMetrics[INITIAL_CAPACITY];
+        this.slotOwners = new int[INITIAL_CAPACITY];
+        this.slotCalls = new long[INITIAL_CAPACITY];
+        this.other = new MethodMetrics(OTHER_BUCKET);
+        // Nothing is woven under this name, so adaptive sampling leaves it alone
+        this.other.markDeinstrumented();
+    }
+
+    /** Caps the methods with metrics of their own; 0 or less removes the cap. A lower cap applies at the next rebalance. */
+    public void setMaxMethods(int maxMethods) {
+        this.maxMethods = maxMethods > 0 ? maxMethods : Integer.MAX_VALUE;
+    }
+
+    public int register(String methodSignature) {
+        Integer id = ids.get(methodSignature);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = ids.get(methodSignature);
+            if (id != null) {
+                return id;
+            }
+            int next = size;
+            MethodMetrics[] current = byId;
+            String[] names = signatures;
+            if (next == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+                names = Arrays.copyOf(names, names.length * 2);
+            }
+            names[next] = methodSignature;
+            if (trackedCount() < maxMethods) {
+                current[next] = new MethodMetrics(methodSignature);
+                addSlot(next, current[next]);
+            } else {
+                current[next] = other;
+                foldedCount++;
+                if (!otherSlotted) {
+                    addSlot(-1, other);
+                    otherSlotted = true;
+                }
+            }
+            // Publish the slot before the id can be observed by any caller
+            signatures = names;
+            byId = current;
+            size = next + 1;
+            ids.put(methodSignature, next);
+            return next;
+        }
+    }
+
+    /** As {@link #register}, for figures such as async latencies that are recorded by id but never woven. */
+    public int registerDerived(String signature) {
+        int id = register(signature);
+        derivedIds.add(id);
+        get(id).markDeinstrumented();
+        return id;
+    }
+
+    public MethodMetrics get(int methodId) {
+        return byId[methodId];
+    }
+
+    // The other bucket for folded methods
+    public MethodMetrics get(String methodSignature) {
+        Integer id = ids.get(methodSignature);
+        return id != null ? byId[id] : null;
+    }
+
+    public MethodMetrics getOrRegister(String methodSignature) {
+        return get(register(methodSignature));
+    }
+
+    /** The signature an id was registered with, also for folded methods. */
+    public String getSignature(int methodId) {
+        return signatures[methodId];
+    }
+
+    public boolean isFolded(int methodId) {
+        return byId[methodId] == other;
+    }
+
+    /**
+     * Hot path shared by direct and buffered recording. {@code period} is the sampling period
+     * the call was taken at, which the controller may have changed since.
+     */
+    public void recordSample(int methodId, long executionTime, int period) {
+        MethodMetrics metrics = byId[methodId];
+        metrics.recordExecution(executionTime, period);
+        if (metrics == other) {
+            tail.offer(methodId, period);
+        }
+    }
+
+    public void recordExecution(int methodId, long executionTime) {
+        MethodMetrics metrics = byId[methodId];
+        metrics.recordExecution(executionTime);
+        if (metrics == other) {
+            tail.offer(methodId, 1);
+        }
+    }
+
+    /** Registered signatures, which is also one more than the largest id handed out. */
+    public int size() {
+        return size;
+    }
+
+    /** Tracked methods plus the other bucket once it is in use; slots are renumbered when the cap is lowered. */
+    public int slotCount() {
+        return slotCount;
+    }
+
+    // Null for a slot beyond the count while a lowered cap is being applied
+    public MethodMetrics getSlot(int slot) {
+        return slots[slot];
+    }
+
+    public void forEach(Consumer<MethodMetrics> action) {
+        int count = slotCount;
+        MethodMetrics[] current = slots;
+        for (int i = 0; i < count && current[i] != null; i++) {
+            action.accept(current[i]);
+        }
+    }
+
+    public Map<String, MethodMetrics> toMap() {
+        Map<String, MethodMetrics> result = new HashMap<>();
+        forEach(metrics -> result.put(metrics.getMethodName(), metrics));
+        return result;
+    }
+
+    /**
+     * Promotes the folded methods called clearly more often since the last rebalance than the
+     * quietest tracked ones, evicting those into the other bucket, and enforces a lowered cap.
+     * A candidate qualifies on its guaranteed calls, its count less its Space-Saving error. Calls
+     * recorded while a method changes hands may be lost. Returns the number of methods moved.
+     */
+    public synchronized int rebalance() {
+        int count = slotCount;
+        long[] calls = new long[count];
+        long[] totals = new long[count];
+        // Ties, as when nothing was called since the last rebalance, go to the method called less overall
+        PriorityQueue<Integer> quietest = new PriorityQueue<>(Comparator.comparingLong((Integer slot) -> calls[slot])
+            .thenComparingLong(slot -> totals[slot]));
+        for (int slot = 0; slot < count; slot++) {
+            long invocations = slots[slot].getInvocationCount();
+            calls[slot] = invocations - slotCalls[slot];
+            totals[slot] = invocations;
+            slotCalls[slot] = invocations;
+            if (slotOwners[slot] >= 0) {
+                quietest.add(slot);
+            }
+        }
+        List<long[]> candidates = new ArrayList<>();
+        tail.drainTo((id, calledTimes, error) -> {
+            if (byId[id] == other) {
+                candidates.add(new long[] {id, calledTimes, error});
+            }
+        });
+
+        int moved = 0;
+        for (long[] candidate : candidates) {
+            int id = (int) candidate[0];
+            long guaranteed = candidate[1] - candidate[2];
+            if (guaranteed <= 0) {
+                continue;
+            }
+            if (trackedCount() < maxMethods) {
+                addSlot(id, promote(id));
+                moved++;
+                continue;
+            }
+            Integer slot = quietest.peek();
+            // Candidates come in descending count order, so once one cannot qualify none can
+            if (slot == null || candidate[1] <= PROMOTION_FACTOR * calls[slot]) {
+                break;
+            }
+            if (guaranteed > PROMOTION_FACTOR * calls[slot]) {
+                quietest.poll();
+                evict(slot);
+                slots[slot] = promote(id);
+                slotOwners[slot] = id;
+                slotCalls[slot] = 0;
+                moved += 2;
+            }
+        }
+        if (trackedCount() > maxMethods) {
+            moved += shrink(quietest);
+        }
+        return moved;
+    }
+
+    // Evicts the quietest methods down to the cap and packs the remaining slots
+    private int shrink(PriorityQueue<Integer> quietest) {
+        if (!otherSlotted) {
+            addSlot(-1, other);
+            otherSlotted = true;
+        }
+        boolean[] removed = new boolean[slotCount];
+        int evicted = 0;
+        while (trackedCount() - evicted > maxMethods && !quietest.isEmpty()) {
+            int slot = quietest.poll();
+            evict(slot);
+            removed[slot] = true;
+            evicted++;
+        }
+        MethodMetrics[] packed = new MethodMetrics[slots.length];
+        int kept = 0;
+        for (int slot = 0; slot < removed.length; slot++) {
+            if (!removed[slot]) {
+                packed[kept] = slots[slot];
+                slotOwners[kept] = slotOwners[slot];
+                slotCalls[kept] = slotCalls[slot];
+                kept++;
+            }
+        }
+        slots = packed;
+        slotCount = kept;
+        return evicted;
+    }
+
+    private void evict(int slot) {
+        int id = slotOwners[slot];
+        MethodMetrics evicted = slots[slot];
+        // Redirect first so that new calls go to the bucket while the old figures are folded in
+        byId[id] = other;
+        other.absorb(evicted);
+        foldedCount++;
+        evictions++;
+        if (!otherSlotted) {
+            addSlot(-1, other);
+            otherSlotted = true;
+        }
+    }
+
+    private MethodMetrics promote(int id) {
+        MethodMetrics metrics = new MethodMetrics(signatures[id]);
+        if (derivedIds.contains(id)) {
+            metrics.markDeinstrumented();
+        }
+        byId[id] = metrics;
+        foldedCount--;
+        promotions++;
+        return metrics;
+    }
+
+    private void addSlot(int ownerId, MethodMetrics metrics) {
+        int next = slotCount;
+        MethodMetrics[] current = slots;
+        if (next == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+            slotOwners = Arrays.copyOf(slotOwners, current.length);
+            slotCalls = Arrays.copyOf(slotCalls, current.length);
+        }
+        current[next] = metrics;
+        slotOwners[next] = ownerId;
+        slotCalls[next] = metrics.getInvocationCount();
+        slots = current;
+        slotCount = next + 1;
+    }
+
+    private int trackedCount() {
+        return otherSlotted ? slotCount - 1 : slotCount;
+    }
+
+    public RegistryStats getStats() {
+        int slotsUsed = slotCount;
+        int max = maxMethods;
+        boolean bucketUsed = otherSlotted;
+        return new RegistryStats(
+            max == Integer.MAX_VALUE ? 0 : max,
+            bucketUsed ? slotsUsed - 1 : slotsUsed,
+            size,
+            foldedCount,
+            bucketUsed ? other.getInvocationCount() : 0,
+            evictions,
+            promotions,
+            TAIL_COUNTERS,
+            tail.total(),
+            tail.maxError(),
+            slotsUsed * METRICS_BYTES + size * SIGNATURE_BYTES
+        );
+    }
+}
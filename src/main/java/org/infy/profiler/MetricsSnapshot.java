@@ -0,0 +1,306 @@
+package org.infy.profiler;
+
+import org.infy.profiler.calibration.OverheadCalibration;
+import org.infy.profiler.monitoring.CpuMetrics;
+import org.infy.profiler.monitoring.GcMetrics;
+import org.infy.profiler.monitoring.MemoryMetrics;
+import org.infy.profiler.monitoring.ThreadMetrics;
+
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Point-in-time copy of every method's metrics and the latest system metrics, read by index.
+ * Each method's figures are internally consistent (see {@link MethodMetrics#copyTo}); methods
+ * are read one after another, so two methods may be a few microseconds apart.
+ *
+ * <p>Snapshots come from {@link PerformanceProfiler#snapshot()} and should be closed when done,
+ * which hands their arrays back for the next snapshot instead of allocating new ones. A closed
+ * snapshot must not be read again. One that is never closed is simply garbage collected.
+ */
+public final class MetricsSnapshot implements AutoCloseable {
+    static final int READ_ATTEMPTS = 16;
+    private static final int SPIN_ATTEMPTS = 4;
+    static final double[] PERCENTILES = {50.0, 90.0, 99.0, 99.9};
+    static final double[] ALLOCATION_PERCENTILES = {99.0};
+    /** Upper bounds, in nanoseconds, of the cumulative duration buckets kept per method for exporters. */
+    public static final long[] DURATION_BUCKET_BOUNDS = {
+        1_000, 5_000, 10_000, 50_000, 100_000, 500_000,
+        1_000_000, 5_000_000, 10_000_000, 50_000_000, 100_000_000, 500_000_000,
+        1_000_000_000, 5_000_000_000L, 10_000_000_000L
+    };
+    // Histogram index holding each bound; a bucket straddling a bound counts as below it
+    private static final int[] DURATION_BUCKET_INDEXES = new int[DURATION_BUCKET_BOUNDS.length];
+
+    static {
+        for (int b = 0; b < DURATION_BUCKET_BOUNDS.length; b++) {
+            DURATION_BUCKET_INDEXES[b] = LatencyHistogram.indexOf(DURATION_BUCKET_BOUNDS[b]);
+        }
+    }
+
+    private final BlockingQueue<MetricsSnapshot> pool;
+    private final long[] scratch = new long[LatencyHistogram.BUCKET_COUNT];
+    final long[] percentileValues = new long[PERCENTILES.length];
+    private int size;
+    private long timestamp;
+    private int inconsistentMethods;
+    private boolean closed;
+    String[] names = new String[0];
+    MethodMetrics[] sources = new MethodMetrics[0];
+    int[] absorptions = new int[0];
+    long[] counts = new long[0];
+    long[] totals = new long[0];
+    long[] mins = new long[0];
+    long[] maxes = new long[0];
+    long[][] percentiles = new long[PERCENTILES.length][0];
+    long[] cpuTimes = new long[0];
+    long[] cpuTimeCalls = new long[0];
+    long[] allocatedBytes = new long[0];
+    long[] allocationSamples = new long[0];
+    long[] p99AllocatedBytes = new long[0];
+    int[] samplingPeriods = new int[0];
+    long[][] durationBuckets = new long[DURATION_BUCKET_BOUNDS.length][0];
+    long[] histogramCounts = new long[0];
+    private MemoryMetrics memoryMetrics;
+    private CpuMetrics cpuMetrics;
+    private ThreadMetrics threadMetrics;
+    private GcMetrics gcMetrics;
+    private OverheadCalibration overheadCalibration;
+    private RegistryStats registryStats;
+
+    MetricsSnapshot(BlockingQueue<MetricsSnapshot> pool) {
+        this.pool = pool;
+    }
+
+    static void backOff(int attempt) {
+        if (attempt == 0) {
+            return;
+        }
+        if (attempt < SPIN_ATTEMPTS) {
+            Thread.onSpinWait();
+        } else {
+            Thread.yield();
+        }
+    }
+
+    void fill(MethodRegistry registry, MemoryMetrics memory, CpuMetrics cpu, ThreadMetrics threads, GcMetrics gc,
+              OverheadCalibration calibration) {
+        closed = false;
+        timestamp = System.currentTimeMillis();
+        memoryMetrics = memory;
+        cpuMetrics = cpu;
+        threadMetrics = threads;
+        gcMetrics = gc;
+        overheadCalibration = calibration;
+        registryStats = registry.getStats();
+        int count = registry.slotCount();
+        ensureCapacity(count);
+        inconsistentMethods = 0;
+        int filled = 0;
+        for (int slot = 0; slot < count; slot++) {
+            MethodMetrics metrics = registry.getSlot(slot);
+            if (metrics == null) {
+                break;
+            }
+            sources[filled] = metrics;
+            if (!metrics.copyTo(this, filled++, scratch)) {
+                inconsistentMethods++;
+            }
+        }
+        size = filled;
+    }
+
+    private void ensureCapacity(int count) {
+        if (count <= names.length) {
+            return;
+        }
+        // Headroom so a slowly growing registry does not reallocate on every snapshot
+        int capacity = Math.max(count, names.length + (names.length >> 1) + 16);
+        names = Arrays.copyOf(names, capacity);
+        sources = new MethodMetrics[capacity];
+        absorptions = new int[capacity];
+        counts = new long[capacity];
+        totals = new long[capacity];
+        mins = new long[capacity];
+        maxes = new long[capacity];
+        for (int p = 0; p < percentiles.length; p++) {
+            percentiles[p] = new long[capacity];
+        }
+        cpuTimes = new long[capacity];
+        cpuTimeCalls = new long[capacity];
+        allocatedBytes = new long[capacity];
+        allocationSamples = new long[capacity];
+        p99AllocatedBytes = new long[capacity];
+        samplingPeriods = new int[capacity];
+        for (int b = 0; b < durationBuckets.length; b++) {
+            durationBuckets[b] = new long[capacity];
+        }
+        histogramCounts = new long[capacity];
+    }
+
+    // scratch holds a copy of the method's histogram counts
+    void copyDurationBuckets(int index, long[] scratch) {
+        long cumulative = 0;
+        int next = 0;
+        for (int i = 0; i < LatencyHistogram.BUCKET_COUNT; i++) {
+            cumulative += scratch[i];
+            while (next < DURATION_BUCKET_INDEXES.length && DURATION_BUCKET_INDEXES[next] == i) {
+                durationBuckets[next++][index] = cumulative;
+            }
+        }
+        histogramCounts[index] = cumulative;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Wall-clock time the snapshot was taken, in epoch milliseconds. */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /** Methods still being written to after every read attempt; their figures may be torn. */
+    public int getInconsistentMethods() {
+        return inconsistentMethods;
+    }
+
+    public String getMethodName(int index) {
+        return names[index];
+    }
+
+    /**
+     * The metrics the figures at {@code index} were copied from. A bounded registry hands a
+     * position to another method when it rebalances, and a method promoted again gets new metrics.
+     */
+    public MethodMetrics getSource(int index) {
+        return sources[index];
+    }
+
+    /**
+     * {@link MethodMetrics#getAbsorptions()} of the source when its figures were copied, or -1
+     * if figures were absorbed during the copy.
+     */
+    public int getAbsorptions(int index) {
+        return absorptions[index];
+    }
+
+    public long getInvocationCount(int index) {
+        return counts[index];
+    }
+
+    public long getTotalExecutionTime(int index) {
+        return totals[index];
+    }
+
+    public long getAverageExecutionTime(int index) {
+        return counts[index] > 0 ? totals[index] / counts[index] : 0;
+    }
+
+    public long getMinExecutionTime(int index) {
+        return mins[index];
+    }
+
+    public long getMaxExecutionTime(int index) {
+        return maxes[index];
+    }
+
+    public long getP50ExecutionTime(int index) {
+        return percentiles[0][index];
+    }
+
+    public long getP90ExecutionTime(int index) {
+        return percentiles[1][index];
+    }
+
+    public long getP99ExecutionTime(int index) {
+        return percentiles[2][index];
+    }
+
+    public long getP999ExecutionTime(int index) {
+        return percentiles[3][index];
+    }
+
+    public boolean isCpuTimeTracked(int index) {
+        return cpuTimeCalls[index] > 0;
+    }
+
+    public long getTotalCpuTime(int index) {
+        return cpuTimes[index];
+    }
+
+    public long getAverageCpuTime(int index) {
+        return cpuTimeCalls[index] > 0 ? cpuTimes[index] / cpuTimeCalls[index] : 0;
+    }
+
+    public long getAverageWaitTime(int index) {
+        if (!isCpuTimeTracked(index)) {
+            return 0;
+        }
+        return Math.max(0, getAverageExecutionTime(index) - getAverageCpuTime(index));
+    }
+
+    public long getTotalAllocatedBytes(int index) {
+        return allocatedBytes[index];
+    }
+
+    public long getAverageAllocatedBytes(int index) {
+        return allocationSamples[index] > 0 ? allocatedBytes[index] / allocationSamples[index] : 0;
+    }
+
+    public long getP99AllocatedBytes(int index) {
+        return p99AllocatedBytes[index];
+    }
+
+    /** Calls at most {@code DURATION_BUCKET_BOUNDS[bound]} long, within the histogram's ~3% error. */
+    public long getDurationBucketCount(int index, int bound) {
+        return durationBuckets[bound][index];
+    }
+
+    /**
+     * Calls in the duration histogram. Usually equal to the invocation count, but the histogram
+     * is updated just after the count, so it can trail by calls still being recorded.
+     */
+    public long getHistogramCount(int index) {
+        return histogramCounts[index];
+    }
+
+    public int getSamplingPeriod(int index) {
+        return samplingPeriods[index];
+    }
+
+    public MemoryMetrics getMemoryMetrics() {
+        return memoryMetrics;
+    }
+
+    public CpuMetrics getCpuMetrics() {
+        return cpuMetrics;
+    }
+
+    public ThreadMetrics getThreadMetrics() {
+        return threadMetrics;
+    }
+
+    public GcMetrics getGcMetrics() {
+        return gcMetrics;
+    }
+
+    /** The timing overhead calibration current when the snapshot was taken, or null. */
+    public OverheadCalibration getOverheadCalibration() {
+        return overheadCalibration;
+    }
+
+    /** Cardinality, eviction and memory figures of the method registry when the snapshot was taken. */
+    public RegistryStats getRegistryStats() {
+        return registryStats;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        pool.offer(this);
+    }
+}
@@ -2,56 +2,460 @@ package org.infy.profiler;
 
 import net.bytebuddy.ByteBuddy;
 import net.bytebuddy.agent.ByteBuddyAgent;
+import net.bytebuddy.agent.builder.ResettableClassFileTransformer;
 import net.bytebuddy.dynamic.loading.ClassReloadingStrategy;
 import net.bytebuddy.implementation.MethodDelegation;
 import net.bytebuddy.implementation.SuperMethodCall;
 import net.bytebuddy.implementation.bind.annotation.Morph;
 import net.bytebuddy.matcher.ElementMatchers;
 import net.bytebuddy.asm.Advice;
+import net.bytebuddy.asm.AsmVisitorWrapper;
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.matcher.ElementMatcher;
+import org.infy.profiler.async.AsyncContext;
+import org.infy.profiler.async.AsyncOrigins;
+import org.infy.profiler.calltree.CallTree;
+import org.infy.profiler.calltree.CallTreeSnapshot;
+import org.infy.profiler.calibration.OverheadCalibration;
+import org.infy.profiler.calibration.OverheadCalibrator;
+import org.infy.profiler.contention.ContentionCollector;
+import org.infy.profiler.contention.ContentionSnapshot;
+import org.infy.profiler.contention.LockAcquisitionTimer;
+import org.infy.profiler.export.MetricsEndpoint;
+import org.infy.profiler.interceptor.MethodIdBinding;
+import org.infy.profiler.jfr.JfrMode;
+import org.infy.profiler.jfr.JfrSession;
+import org.infy.profiler.jfr.MethodTimingEvent;
 import org.infy.profiler.interceptor.MethodInterceptor;
+import org.infy.profiler.interceptor.ThreadCounters;
 import org.infy.profiler.monitoring.SystemMetricsCollector;
 import org.infy.profiler.monitoring.MemoryMetrics;
+import org.infy.profiler.monitoring.BufferPoolMetrics;
 import org.infy.profiler.monitoring.CpuMetrics;
+import org.infy.profiler.monitoring.GcEvent;
+import org.infy.profiler.monitoring.GcEventCollector;
+import org.infy.profiler.monitoring.GcMetrics;
 import org.infy.profiler.monitoring.ThreadMetrics;
+import org.infy.profiler.recording.BufferedRecorder;
+import org.infy.profiler.recording.RecordingMode;
+import org.infy.profiler.sampling.AdaptiveSamplingController;
+import org.infy.profiler.slowcall.SlowCallCollector;
+import org.infy.profiler.slowcall.SlowCallSummary;
+import org.infy.profiler.stacksampling.StackSampler;
+import org.infy.profiler.snapshot.SnapshotWriter;
+import org.infy.profiler.store.TimeSeriesStore;
+import org.infy.profiler.window.MetricsWindow;
+import org.infy.profiler.window.WindowedMetricsCollector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.lang.instrument.Instrumentation;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.Map;
-import java.util.HashMap;
 
 public class PerformanceProfiler {
     private static final Logger logger = LoggerFactory.getLogger(PerformanceProfiler.class);
     private static final PerformanceProfiler INSTANCE = new PerformanceProfiler();
     
-    private final ConcurrentHashMap<String, MethodMetrics> methodMetrics;
-    private final Instrumentation instrumentation;
+    private final MethodRegistry methodRegistry;
+    private volatile Instrumentation instrumentation;
     private final SystemMetricsCollector metricsCollector;
     private final ScheduledExecutorService scheduler;
     private ProfilerConfig config;
     private MemoryMetrics latestMemoryMetrics;
     private CpuMetrics latestCpuMetrics;
     private ThreadMetrics latestThreadMetrics;
+    private volatile BufferedRecorder bufferedRecorder;
+    private final Map<String, Class<?>> profiledClasses;
+    private final Set<String> deinstrumentedMethods;
+    private volatile AdaptiveSamplingController samplingController;
+    private volatile ResettableClassFileTransformer agentTransformer;
+    private volatile boolean metricsCollection;
+    private volatile CallTree callTree;
+    private volatile WindowedMetricsCollector windowedMetrics;
+    private volatile StackSampler stackSampler;
+    private volatile ContentionCollector contentionCollector;
+    private volatile boolean lockInstrumentation;
+    private volatile JfrSession jfrSession;
+    private volatile GcEventCollector gcEventCollector;
+    private volatile TimeSeriesStore timeSeriesStore;
+    private volatile SnapshotWriter snapshotWriter;
+    private volatile MetricsEndpoint metricsEndpoint;
+    private volatile OverheadCalibrator overheadCalibrator;
+    private volatile ScheduledExecutorService calibrationExecutor;
+    private volatile AsyncOrigins asyncOrigins;
+    private volatile SlowCallCollector slowCalls;
+    private volatile boolean slowCallArguments;
+    private volatile OverheadCalibration overheadCalibration;
+    // Calibrated advice bias taken off every woven call's time, 0 unless subtraction is on
+    private volatile long timingCorrection;
+    // Long.MAX_VALUE keeps the exit check a single comparison that never passes
+    private volatile long jfrEventThreshold = Long.MAX_VALUE;
+    private volatile boolean aggregateTimings = true;
+    private volatile boolean registryRebalancing;
+    private volatile boolean allocationTracking;
+    private volatile boolean cpuTimeTracking;
+    private volatile int cpuTimeSamplingMask;
+    private final long startTime;
+    // Closed snapshots wait here to be refilled; a few cover concurrent readers
+    private final BlockingQueue<MetricsSnapshot> snapshotPool = new ArrayBlockingQueue<>(4);
     
     private PerformanceProfiler() {
-        this.methodMetrics = new ConcurrentHashMap<>();
-        this.instrumentation = ByteBuddyAgent.install();
+        this.methodRegistry = new MethodRegistry();
+        this.profiledClasses = new ConcurrentHashMap<>();
+        this.deinstrumentedMethods = ConcurrentHashMap.newKeySet();
         this.metricsCollector = new SystemMetricsCollector();
         this.scheduler = Executors.newScheduledThreadPool(1);
         this.config = new ProfilerConfig.Builder().build();
+        this.startTime = System.nanoTime();
         logger.info("Performance Profiler initialized");
     }
     
     public void configure(ProfilerConfig config) {
+        if (config.getJfrMode() == JfrMode.JFR_ONLY && config.getJfrRecordingFile() == null) {
+            // Timings are not aggregated in this mode, so without a recording they would be lost
+            throw new IllegalArgumentException("JFR_ONLY mode needs a JFR recording file");
+        }
         this.config = config;
-        startMetricsCollection();
+        methodRegistry.setMaxMethods(config.getRegistryMaxMethods());
+        if (config.getRegistryMaxMethods() > 0 && !registryRebalancing) {
+            startRegistryRebalancing();
+        }
+        if (config.getJfrMode() == JfrMode.OFF) {
+            if (!metricsCollection) {
+                startMetricsCollection();
+            }
+        } else {
+            startJfrSession();
+        }
+        if (config.getRecordingMode() == RecordingMode.BUFFERED && bufferedRecorder == null) {
+            startRecordingDrainer();
+        }
+        if (config.isRollingWindows() && windowedMetrics == null) {
+            startWindowRotation();
+        }
+        if (config.isTimeSeriesStore() && timeSeriesStore == null) {
+            startTimeSeriesStore();
+        }
+        if (config.isSnapshots() && snapshotWriter == null) {
+            startSnapshots();
+        }
+        if (config.isMetricsEndpoint() && metricsEndpoint == null) {
+            MetricsEndpoint endpoint = new MetricsEndpoint(this, config.getMetricsEndpointHost(),
+                config.getMetricsEndpointPort(), config.getMetricsCacheInterval());
+            try {
+                endpoint.start();
+                metricsEndpoint = endpoint;
+            } catch (IOException e) {
+                logger.error("Could not start the metrics endpoint on port {}", config.getMetricsEndpointPort(), e);
+            }
+        }
+        if (config.isAsyncProfiling() && asyncOrigins == null) {
+            asyncOrigins = new AsyncOrigins(methodRegistry);
+            // Methods woven earlier do not carry the async advice
+            profiledClasses.values().forEach(this::instrument);
+            logger.info("Async profiling enabled");
+        }
+        if (config.isSlowCallCapture() && slowCalls == null) {
+            startSlowCallCapture();
+        }
+        if (config.isGcNotifications() && gcEventCollector == null) {
+            GcEventCollector collector = new GcEventCollector(config.getGcHistorySize());
+            collector.start();
+            gcEventCollector = collector;
+        }
+        if (config.isAllocationTracking() && !allocationTracking) {
+            enableAllocationTracking();
+        }
+        if (config.isCpuTimeTracking()) {
+            enableCpuTimeTracking();
+        }
+        if (config.isStackSampling() && stackSampler == null) {
+            // Runs on its own thread so a slow stack walk never delays the collectors
+            StackSampler sampler = new StackSampler(config.getStackSamplingInterval(),
+                config.getStackSamplingMaxDepth(), config.getStackSamplingStates());
+            sampler.start();
+            stackSampler = sampler;
+        }
+        if (config.isContentionProfiling()) {
+            startContentionProfiling();
+        }
+        if (config.isCallTreeProfiling() && callTree == null) {
+            callTree = new CallTree(methodRegistry, config.getCallTreeMaxDepth(), config.getCallTreeMaxNodes());
+            logger.info("Call-tree profiling enabled (max depth {}, max nodes {})",
+                config.getCallTreeMaxDepth(), config.getCallTreeMaxNodes());
+        }
+        if (config.isAdaptiveSampling() && samplingController == null) {
+            if (callTree != null) {
+                logger.warn("Adaptive sampling is not applied in call-tree mode, every call is timed");
+            } else {
+                startSamplingController();
+            }
+        }
+        // Last, so the first calibration sees the advice this configuration weaves
+        if (config.isOverheadCalibration() && overheadCalibrator == null) {
+            startOverheadCalibration();
+        } else if (config.isOverheadSubtraction() && !config.isOverheadCalibration()) {
+            logger.warn("Overhead subtraction needs overhead calibration, recorded times are left as measured");
+        }
+    }
+    
+    private void startSamplingController() {
+        AdaptiveSamplingController controller =
+            new AdaptiveSamplingController(methodRegistry, config, this::deinstrument);
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                controller.adjust();
+            } catch (Exception e) {
+                logger.error("Error adjusting sampling rates", e);
+            }
+        }, config.getSamplingAdjustmentInterval(), config.getSamplingAdjustmentInterval(),
+            TimeUnit.MILLISECONDS);
+        samplingController = controller;
+    }
+    
+    private void startRegistryRebalancing() {
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                int moved = methodRegistry.rebalance();
+                if (moved > 0) {
+                    logger.debug("Registry rebalance moved {} methods: {}", moved, methodRegistry.getStats());
+                }
+            } catch (Exception e) {
+                logger.error("Error rebalancing the method registry", e);
+            }
+        }, config.getRegistryRebalanceInterval(), config.getRegistryRebalanceInterval(), TimeUnit.MILLISECONDS);
+        registryRebalancing = true;
+    }
+    
+    private void startSlowCallCapture() {
+        SlowCallCollector collector = new SlowCallCollector(methodRegistry, config.getSlowCallThreshold(),
+            config.getSlowCallThresholds(), config.getSlowCallPercentile(), config.getSlowCallMinThreshold(),
+            config.getSlowCallRate(), config.getSlowCallExemplars(), config.getSlowCallStackDepth(),
+            config.getSlowCallArgumentLength());
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                collector.updateThresholds();
+            } catch (Exception e) {
+                logger.error("Error updating slow call thresholds", e);
+            }
+        }, 0, config.getSlowCallThresholdInterval(), TimeUnit.MILLISECONDS);
+        slowCalls = collector;
+        if (config.isSlowCallArguments()) {
+            slowCallArguments = true;
+            // Classes woven earlier do not pass their arguments to the exit advice
+            profiledClasses.values().forEach(this::instrument);
+        }
+        logger.info("Slow call capture enabled (at most {} per second{})", config.getSlowCallRate(),
+            slowCallArguments ? ", with arguments" : "");
+    }
+    
+    private void startContentionProfiling() {
+        ContentionCollector.configureProbes(config.getLockSamplingPeriod(), config.getLockContentionThreshold());
+        if (contentionCollector == null) {
+            // Like the stack sampler, on its own thread so a round at a safepoint never delays the collectors
+            ContentionCollector collector = new ContentionCollector(config.getContentionSamplingInterval(),
+                config.getContentionOverheadBudget());
+            collector.start();
+            contentionCollector = collector;
+        }
+        if (config.isLockInstrumentation() && !lockInstrumentation) {
+            lockInstrumentation = true;
+            profiledClasses.values().forEach(this::instrument);
+            logger.info("Lock instrumentation enabled (1 in {} synchronized entries timed, contended from {} ns)",
+                config.getLockSamplingPeriod(), config.getLockContentionThreshold());
+        }
+    }
+    
+    // Each probe class takes most of a second to generate and a calibration keeps a core busy, so
+    // calibration has a thread of its own rather than holding up the shared scheduler's tasks
+    private void startOverheadCalibration() {
+        overheadCalibrator = new OverheadCalibrator();
+        calibrationExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "profiler-overhead-calibration");
+            thread.setDaemon(true);
+            return thread;
+        });
+        calibrationExecutor.scheduleWithFixedDelay(() -> {
+            try {
+                calibrateOverhead();
+            } catch (Exception e) {
+                logger.error("Error calibrating the timing overhead", e);
+            }
+        }, 0, config.getCalibrationInterval(), TimeUnit.MILLISECONDS);
+    }
+    
+    private void calibrateOverhead() {
+        boolean subtract = config.isOverheadSubtraction();
+        // Calibrates the advice woven now; classes woven under an earlier configuration may differ
+        OverheadCalibration calibration = overheadCalibrator.calibrate(subtract, allocationTracking,
+            cpuTimeTracking ? cpuTimeSamplingMask + 1 : 0);
+        timingCorrection = subtract ? Math.round(calibration.meanNanos()) : 0;
+        if (overheadCalibration == null) {
+            logger.info("Timing overhead ~{} ns per call (std dev {} ns), noise floor {} ns{}",
+                String.format("%.1f", calibration.meanNanos()), String.format("%.1f", calibration.stdDevNanos()),
+                calibration.noiseFloorNanos(), subtract ? ", subtracted from recorded times" : "");
+        }
+        overheadCalibration = calibration;
+    }
+    
+    private void enableAllocationTracking() {
+        if (!ThreadCounters.enableAllocatedBytes()) {
+            logger.warn("This JVM cannot count allocated bytes per thread, allocation tracking stays off");
+            return;
+        }
+        allocationTracking = true;
+        // Classes woven earlier only carry the timing advice
+        profiledClasses.values().forEach(this::instrument);
+        logger.info("Allocation tracking enabled");
+    }
+    
+    private void enableCpuTimeTracking() {
+        int period = config.getCpuTimeSamplingPeriod();
+        if (period < 1 || Integer.bitCount(period) != 1) {
+            throw new IllegalArgumentException("CPU time sampling period must be a power of two: " + period);
+        }
+        cpuTimeSamplingMask = period - 1;
+        if (cpuTimeTracking) {
+            return;
+        }
+        if (!ThreadCounters.enableCpuTime()) {
+            logger.warn("This JVM cannot measure thread CPU time, CPU time tracking stays off");
+            return;
+        }
+        cpuTimeTracking = true;
+        profiledClasses.values().forEach(this::instrument);
+        logger.info("CPU time tracking enabled (1 in {} timed calls)", period);
+    }
+    
+    private void startJfrSession() {
+        if (jfrSession == null) {
+            String file = config.getJfrRecordingFile();
+            JfrSession session = new JfrSession(Duration.ofMillis(config.getSamplingRate()),
+                file != null ? Path.of(file) : null);
+            try {
+                session.start();
+                jfrSession = session;
+            } catch (IOException | RuntimeException e) {
+                logger.error("Could not start JFR, falling back to polled metrics", e);
+                startMetricsCollection();
+                return;
+            }
+        }
+        jfrEventThreshold = config.getJfrEventThreshold();
+        aggregateTimings = config.getJfrMode() != JfrMode.JFR_ONLY;
+        logger.info("JFR mode {}: calls of at least {} ns are emitted as events",
+            config.getJfrMode(), jfrEventThreshold);
+    }
+    
+    private void startWindowRotation() {
+        WindowedMetricsCollector collector = new WindowedMetricsCollector(methodRegistry,
+            config.getWindowBucketInterval(), config.getWindowRetention());
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                collector.rotate();
+            } catch (Exception e) {
+                logger.error("Error rotating metrics windows", e);
+            }
+        }, config.getWindowBucketInterval(), config.getWindowBucketInterval(), TimeUnit.MILLISECONDS);
+        windowedMetrics = collector;
+    }
+    
+    private void startTimeSeriesStore() {
+        TimeSeriesStore store;
+        try {
+            store = new TimeSeriesStore(Path.of(config.getStoreDirectory()), config.getStoreSegmentSize(),
+                config.getStoreMaxSegments(), config.getStoreRetention());
+        } catch (IOException | RuntimeException e) {
+            logger.error("Could not open the time-series store, history will not be kept", e);
+            return;
+        }
+        WindowedMetricsCollector collector = windowedMetrics;
+        if (collector != null) {
+            // Runs inside window rotation, which nothing thrown here may cut short
+            collector.setIntervalListener(interval -> {
+                try {
+                    store.appendMethodInterval(interval);
+                } catch (IOException | RuntimeException e) {
+                    logger.error("Error storing interval for {}", interval.methodName(), e);
+                }
+            });
+        } else {
+            logger.warn("Rolling windows are off, only system metrics are stored");
+        }
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                long now = System.currentTimeMillis();
+                MemoryMetrics memory = getLatestMemoryMetrics();
+                if (memory != null) {
+                    store.appendMemory(now, memory);
+                }
+                CpuMetrics cpu = getLatestCpuMetrics();
+                if (cpu != null) {
+                    store.appendCpu(now, cpu);
+                }
+                ThreadMetrics threads = getLatestThreadMetrics();
+                if (threads != null) {
+                    store.appendThreads(now, threads);
+                }
+            } catch (Exception e) {
+                logger.error("Error storing system metrics", e);
+            }
+        }, config.getStoreSampleInterval(), config.getStoreSampleInterval(), TimeUnit.MILLISECONDS);
+        timeSeriesStore = store;
+        logger.info("Time-series store at {} ({} segments)", store.getDirectory(), store.getSegmentCount());
+    }
+    
+    private void startSnapshots() {
+        String directory = config.getSnapshotDirectory();
+        String socket = config.getSnapshotSocket();
+        if (directory == null && socket == null) {
+            logger.warn("Snapshots need a directory or a socket, none will be written");
+            return;
+        }
+        SnapshotWriter writer = new SnapshotWriter(this, config.getSnapshotSourceId(),
+            directory != null ? Path.of(directory) : null, socket != null ? Path.of(socket) : null);
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                writer.write();
+            } catch (Exception e) {
+                logger.error("Error writing a snapshot", e);
+            }
+        }, config.getSnapshotInterval(), config.getSnapshotInterval(), TimeUnit.MILLISECONDS);
+        snapshotWriter = writer;
+        logger.info("Writing snapshots as {} every {} ms", writer.getSourceId(), config.getSnapshotInterval());
+    }
+    
+    private void startRecordingDrainer() {
+        BufferedRecorder recorder = new BufferedRecorder(methodRegistry,
+            config.getRecordingBufferSize(), config.getOverflowPolicy());
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                recorder.drain();
+            } catch (Exception e) {
+                logger.error("Error draining recording buffers", e);
+            }
+        }, config.getDrainInterval(), config.getDrainInterval(), TimeUnit.MILLISECONDS);
+        bufferedRecorder = recorder;
+        logger.info("Buffered recording enabled ({} entries per thread, {} on overflow)",
+            config.getRecordingBufferSize(), config.getOverflowPolicy());
     }
     
     private void startMetricsCollection() {
+        metricsCollection = true;
         scheduler.scheduleAtFixedRate(() -> {
             if (config.isCaptureMemoryMetrics()) {
                 latestMemoryMetrics = metricsCollector.collectMemoryMetrics();
@@ -65,39 +469,307 @@ public class PerformanceProfiler {
         }, 0, config.getSamplingRate(), TimeUnit.MILLISECONDS);
     }
     
+    // When running as a -javaagent the JVM hands us an Instrumentation, otherwise attach to ourselves
+    public synchronized Instrumentation getInstrumentation() {
+        if (instrumentation == null) {
+            instrumentation = ByteBuddyAgent.install();
+        }
+        return instrumentation;
+    }
+    
+    public synchronized void useInstrumentation(Instrumentation instrumentation) {
+        if (this.instrumentation == null) {
+            this.instrumentation = instrumentation;
+        }
+    }
+    
+    // CPU time is read inside the timing advice, which has the sampling decision and period it needs
+    public Advice createTimingAdvice() {
+        Class<?> advice;
+        if (cpuTimeTracking) {
+            advice = slowCallArguments ? MethodInterceptor.ArgumentCapturingCpuTimingAdvice.class
+                : MethodInterceptor.CpuTimingAdvice.class;
+        } else {
+            advice = slowCallArguments ? MethodInterceptor.ArgumentCapturingTimingAdvice.class
+                : MethodInterceptor.TimingAdvice.class;
+        }
+        return Advice.withCustomMapping()
+            .bind(new MethodIdBinding(methodRegistry))
+            .to(advice);
+    }
+    
+    /**
+     * Returns everything to weave into the matched methods: the timing advice in the form the
+     * configuration needs, plus, when enabled, the allocation and async advice and the lock
+     * acquisition timer. Both weave paths call this per class so a configuration change applies
+     * to classes woven afterwards.
+     */
+    public AsmVisitorWrapper createAdvice(ElementMatcher<? super MethodDescription> methods) {
+        List<AsmVisitorWrapper> wrappers = new ArrayList<>();
+        if (allocationTracking) {
+            wrappers.add(Advice.withCustomMapping()
+                .bind(new MethodIdBinding(methodRegistry))
+                .to(MethodInterceptor.AllocationAdvice.class)
+                .on(methods));
+        }
+        if (asyncOrigins != null) {
+            wrappers.add(Advice.withCustomMapping()
+                .bind(new MethodIdBinding(methodRegistry))
+                .to(MethodInterceptor.AsyncAdvice.class)
+                .on(ElementMatchers.<MethodDescription>returns(ElementMatchers.isSubTypeOf(CompletionStage.class))
+                    .and(methods)));
+        }
+        if (lockInstrumentation) {
+            wrappers.add(new AsmVisitorWrapper.ForDeclaredMethods().method(methods, new LockAcquisitionTimer()));
+        }
+        // The advice added first ends up outermost, so timing goes last and the other advice's
+        // counter reads stay outside the timed window
+        wrappers.add(createTimingAdvice().on(methods));
+        return wrappers.size() == 1 ? wrappers.get(0) : new AsmVisitorWrapper.Compound(wrappers);
+    }
+    
     public void startProfiling(String className) {
         try {
-            Class<?> targetClass = Class.forName(className);
-            new ByteBuddy()
-                .redefine(targetClass)
-                .visit(Advice.to(MethodInterceptor.TimingAdvice.class)
-                    .on(ElementMatchers.any()
-                        .and(ElementMatchers.not(ElementMatchers.isConstructor()))
-                        .and(ElementMatchers.not(ElementMatchers.isStatic()))
-                        .and(ElementMatchers.not(ElementMatchers.isSynthetic()))))
-                .make()
-                .load(targetClass.getClassLoader(), ClassReloadingStrategy.fromInstalledAgent());
-            
-            logger.info("Started profiling for class: {}", className);
+            startProfiling(Class.forName(className));
         } catch (ClassNotFoundException e) {
             logger.error("Failed to start profiling for class: " + className, e);
         }
     }
     
+    public void startProfiling(Class<?> targetClass) {
+        instrument(targetClass);
+        profiledClasses.put(targetClass.getName(), targetClass);
+        
+        logger.info("Started profiling for class: {}", targetClass.getName());
+    }
+    
+    // Redefinition starts from the original class file, so methods dropped here lose their advice
+    private void instrument(Class<?> targetClass) {
+        String prefix = targetClass.getName() + ".";
+        new ByteBuddy()
+            .redefine(targetClass)
+            .visit(createAdvice(ElementMatchers.any()
+                .and(ElementMatchers.not(ElementMatchers.isConstructor()))
+                .and(ElementMatchers.not(ElementMatchers.isStatic()))
+                .and(ElementMatchers.not(ElementMatchers.isSynthetic()))
+                .and(ElementMatchers.not(method ->
+                    deinstrumentedMethods.contains(prefix + method.getName())))))
+            .make()
+            .load(targetClass.getClassLoader(), ClassReloadingStrategy.of(getInstrumentation()));
+    }
+    
+    public void deinstrument(MethodMetrics metrics) {
+        String methodName = metrics.getMethodName();
+        String className = methodName.substring(0, methodName.lastIndexOf('.'));
+        Class<?> targetClass = profiledClasses.get(className);
+        metrics.markDeinstrumented();
+        if (!deinstrumentedMethods.add(methodName)) {
+            return;
+        }
+        try {
+            if (targetClass != null) {
+                instrument(targetClass);
+            } else if (agentTransformer != null) {
+                // The agent's method matcher consults the de-instrumented set on retransformation
+                for (Class<?> loaded : getInstrumentation().getAllLoadedClasses()) {
+                    if (loaded.getName().equals(className)) {
+                        getInstrumentation().retransformClasses(loaded);
+                    }
+                }
+            } else {
+                return;
+            }
+            logger.info("Removed instrumentation from {}", methodName);
+        } catch (Exception e) {
+            logger.error("Failed to de-instrument " + methodName, e);
+        }
+    }
+    
+    public boolean isDeinstrumented(String methodSignature) {
+        return deinstrumentedMethods.contains(methodSignature);
+    }
+    
+    public void registerAgentTransformer(ResettableClassFileTransformer transformer) {
+        this.agentTransformer = transformer;
+    }
+    
     public void recordMethodExecution(String methodSignature, long executionTime) {
-        methodMetrics.computeIfAbsent(methodSignature, MethodMetrics::new)
-                    .recordExecution(executionTime);
+        methodRegistry.recordExecution(methodRegistry.register(methodSignature), executionTime);
+    }
+    
+    /**
+     * Entry hook for woven code: returns the sampling period the call stands for, or 0 when it
+     * is skipped. The advice keeps the period until exit, so the call is weighted by the period
+     * it was sampled at.
+     */
+    public int enterMethod(int methodId) {
+        CallTree tree = callTree;
+        if (tree != null) {
+            tree.enter(methodId);
+            return 1;
+        }
+        return methodRegistry.get(methodId).samplePeriod();
+    }
+    
+    public void exitMethod(int methodId, long startTime, int period) {
+        checkSlowCall(methodId, recordExit(methodId, startTime, period));
+    }
+    
+    public void exitMethod(int methodId, long executionTime, int period, long cpuTime, long cpuWeight) {
+        checkSlowCall(methodId, recordExit(methodId, executionTime, period, cpuTime, cpuWeight));
+    }
+    
+    private void checkSlowCall(int methodId, long executionTime) {
+        SlowCallCollector collector = slowCalls;
+        if (collector != null && executionTime >= collector.getThreshold(methodId)) {
+            collector.capture(methodId, executionTime, null);
+        }
+    }
+    
+    // Records a woven call and returns its time, for advice that handles slow calls itself
+    public long recordExit(int methodId, long startTime, int period) {
+        return recordCall(methodId, System.nanoTime() - startTime, period);
+    }
+    
+    /**
+     * Records a call whose wall and CPU times the advice took before recording either, so neither
+     * includes the other's bookkeeping. A {@code cpuWeight} of 0 means the CPU clock was not read.
+     */
+    public long recordExit(int methodId, long executionTime, int period, long cpuTime, long cpuWeight) {
+        if (cpuWeight != 0) {
+            methodRegistry.get(methodId).recordCpuTime(cpuTime, cpuWeight);
+        }
+        return recordCall(methodId, executionTime, period);
+    }
+    
+    private long recordCall(int methodId, long executionTime, int period) {
+        long correction = timingCorrection;
+        if (correction != 0) {
+            executionTime = Math.max(0, executionTime - correction);
+        }
+        CallTree tree = callTree;
+        if (tree != null) {
+            tree.exit(methodId, executionTime);
+        }
+        if (executionTime >= jfrEventThreshold) {
+            MethodTimingEvent.emit(methodRegistry.getSignature(methodId), executionTime);
+        }
+        if (aggregateTimings) {
+            recordMethodExecution(methodId, executionTime, period);
+        }
+        return executionTime;
+    }
+    
+    public boolean isSlowCall(int methodId, long executionTime) {
+        SlowCallCollector collector = slowCalls;
+        return collector != null && executionTime >= collector.getThreshold(methodId);
+    }
+    
+    public void captureSlowCall(int methodId, long executionTime, Object[] arguments) {
+        SlowCallCollector collector = slowCalls;
+        if (collector != null) {
+            collector.capture(methodId, executionTime, arguments);
+        }
+    }
+    
+    /**
+     * For a call already sampled at {@code period}: the weight its CPU time carries, or 0 when
+     * its CPU clock is not read. The thread CPU clock is a system call, far dearer than nanoTime,
+     * so only 1 in N timed calls reads it.
+     */
+    public long cpuTimeWeight(int period) {
+        int mask = cpuTimeSamplingMask;
+        return mask == 0 || (ThreadLocalRandom.current().nextInt() & mask) == 0 ? (long) period * (mask + 1) : 0;
+    }
+    
+    // Not sampled: the context has to be current on every call for handoffs to be attributed
+    public AsyncContext enterAsync(int methodId) {
+        return AsyncContext.enter(asyncOrigins.get(methodId));
+    }
+    
+    /**
+     * Restores the caller's context and, when the method returned a stage, records the time
+     * from the call until the stage completes, normally or not.
+     */
+    public void exitAsync(AsyncContext context, Object returned) {
+        context.exit();
+        if (returned instanceof CompletionStage<?> stage) {
+            int asyncId = context.getOrigin().asyncId();
+            long start = context.getStartTime();
+            stage.whenComplete((result, failure) -> recordMethodExecution(asyncId, System.nanoTime() - start, 1));
+        }
+    }
+    
+    public void recordAllocation(int methodId, long bytes) {
+        methodRegistry.get(methodId).recordAllocation(bytes);
+    }
+    
+    // Hot path used by woven code: the id is a constant bound at transformation time
+    public void recordMethodExecution(int methodId, long executionTime, int period) {
+        BufferedRecorder recorder = bufferedRecorder;
+        if (recorder != null) {
+            recorder.record(methodId, executionTime, period);
+        } else {
+            methodRegistry.recordSample(methodId, executionTime, period);
+        }
     }
     
     public static PerformanceProfiler getInstance() {
         return INSTANCE;
     }
     
+    public RegistryStats getRegistryStats() {
+        return methodRegistry.getStats();
+    }
+    
+    // Null unless slow call capture is enabled
+    public SlowCallSummary getSlowCallSummary() {
+        SlowCallCollector collector = slowCalls;
+        return collector != null ? collector.getSummary() : null;
+    }
+    
+    public SlowCallCollector getSlowCallCollector() {
+        return slowCalls;
+    }
+    
+    // Returns the shared other bucket for a method folded by the registry cap
     public MethodMetrics getMetrics(String methodSignature) {
-        return methodMetrics.get(methodSignature);
+        return methodRegistry.get(methodSignature);
+    }
+    
+    public ProfilerConfig getConfig() {
+        return config;
+    }
+    
+    public MethodRegistry getMethodRegistry() {
+        return methodRegistry;
     }
     
     public void shutdown() {
+        MetricsEndpoint endpoint = metricsEndpoint;
+        if (endpoint != null) {
+            endpoint.close();
+        }
+        GcEventCollector collector = gcEventCollector;
+        if (collector != null) {
+            collector.stop();
+        }
+        JfrSession session = jfrSession;
+        if (session != null) {
+            session.stop();
+        }
+        StackSampler sampler = stackSampler;
+        if (sampler != null) {
+            sampler.stop();
+        }
+        ContentionCollector contention = contentionCollector;
+        if (contention != null) {
+            contention.stop();
+        }
+        ScheduledExecutorService calibration = calibrationExecutor;
+        if (calibration != null) {
+            calibration.shutdownNow();
+        }
         scheduler.shutdown();
         try {
             if (!scheduler.awaitTermination(60, TimeUnit.SECONDS)) {
@@ -107,21 +779,132 @@ public class PerformanceProfiler {
             scheduler.shutdownNow();
             Thread.currentThread().interrupt();
         }
+        // The drainer has stopped, so this thread can safely fold in what is left
+        BufferedRecorder recorder = bufferedRecorder;
+        if (recorder != null) {
+            recorder.drain();
+        }
+        // Last, so the aggregator gets this process's final figures
+        SnapshotWriter writer = snapshotWriter;
+        if (writer != null) {
+            try {
+                writer.write();
+            } catch (IOException e) {
+                logger.error("Error writing the final snapshot", e);
+            }
+        }
+        TimeSeriesStore store = timeSeriesStore;
+        if (store != null) {
+            store.close();
+        }
+    }
+    
+    /**
+     * Takes a consistent copy of all method metrics and the latest system metrics. Close the
+     * snapshot when done so its buffers are reused by the next call.
+     */
+    public MetricsSnapshot snapshot() {
+        MetricsSnapshot snapshot = snapshotPool.poll();
+        if (snapshot == null) {
+            snapshot = new MetricsSnapshot(snapshotPool);
+        }
+        snapshot.fill(methodRegistry, getLatestMemoryMetrics(), getLatestCpuMetrics(),
+            getLatestThreadMetrics(), getLatestGcMetrics(), overheadCalibration);
+        return snapshot;
     }
     
     public Map<String, MethodMetrics> getAllMetrics() {
-        return new HashMap<>(methodMetrics);
+        return methodRegistry.toMap();
+    }
+    
+    // Without rolling windows enabled only the cumulative metrics exist
+    public Map<String, MethodMetrics> getAllMetrics(MetricsWindow window) {
+        WindowedMetricsCollector collector = windowedMetrics;
+        if (window.isCumulative() || collector == null) {
+            return getAllMetrics();
+        }
+        return collector.getMetrics(window);
+    }
+    
+    public WindowedMetricsCollector getWindowedMetrics() {
+        return windowedMetrics;
+    }
+    
+    public Duration getProfilingDuration() {
+        return Duration.ofNanos(System.nanoTime() - startTime);
+    }
+    
+    public BufferedRecorder getBufferedRecorder() {
+        return bufferedRecorder;
+    }
+    
+    public CallTreeSnapshot getCallTreeSnapshot() {
+        CallTree tree = callTree;
+        return tree != null ? tree.snapshot() : null;
+    }
+    
+    public StackSampler getStackSampler() {
+        return stackSampler;
+    }
+    
+    // Null unless contention profiling is enabled
+    public ContentionSnapshot getContentionSnapshot() {
+        ContentionCollector collector = contentionCollector;
+        return collector != null ? collector.snapshot(config.getContentionTopLocks()) : null;
+    }
+    
+    public AdaptiveSamplingController getSamplingController() {
+        return samplingController;
     }
     
     public MemoryMetrics getLatestMemoryMetrics() {
-        return latestMemoryMetrics;
+        JfrSession session = jfrSession;
+        return session != null ? session.getLatestMemoryMetrics() : latestMemoryMetrics;
     }
     
     public CpuMetrics getLatestCpuMetrics() {
-        return latestCpuMetrics;
+        JfrSession session = jfrSession;
+        return session != null ? session.getLatestCpuMetrics() : latestCpuMetrics;
     }
     
     public ThreadMetrics getLatestThreadMetrics() {
-        return latestThreadMetrics;
+        JfrSession session = jfrSession;
+        return session != null ? session.getLatestThreadMetrics() : latestThreadMetrics;
+    }
+    
+    // The notification collector is preferred as it also tracks promotion
+    public GcMetrics getLatestGcMetrics() {
+        GcEventCollector collector = gcEventCollector;
+        if (collector != null) {
+            return collector.getGcMetrics();
+        }
+        JfrSession session = jfrSession;
+        return session != null ? session.getLatestGcMetrics() : null;
+    }
+    
+    public List<GcEvent> getGcHistory() {
+        GcEventCollector collector = gcEventCollector;
+        return collector != null ? collector.getHistory() : List.of();
+    }
+    
+    /** The latest timing overhead calibration, or null when calibration is off or has not finished yet. */
+    public OverheadCalibration getOverheadCalibration() {
+        return overheadCalibration;
+    }
+    
+    public MetricsEndpoint getMetricsEndpoint() {
+        return metricsEndpoint;
+    }
+    
+    public SnapshotWriter getSnapshotWriter() {
+        return snapshotWriter;
+    }
+    
+    public TimeSeriesStore getTimeSeriesStore() {
+        return timeSeriesStore;
+    }
+    
+    public List<BufferPoolMetrics> getBufferPoolMetrics() {
+        return metricsCollector.collectBufferPoolMetrics();
     }
 } 
\ No newline at end of file
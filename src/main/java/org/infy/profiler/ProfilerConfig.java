@@ -1,10 +1,88 @@
 package org.infy.profiler;
 
+import org.infy.profiler.jfr.JfrMode;
+import org.infy.profiler.recording.OverflowPolicy;
+import org.infy.profiler.recording.RecordingMode;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
 public class ProfilerConfig {
     private int samplingRate = 100; // Default sampling rate in milliseconds
     private boolean captureMemoryMetrics = true;
     private boolean captureCpuMetrics = true;
     private boolean captureThreadMetrics = true;
+    private RecordingMode recordingMode = RecordingMode.DIRECT;
+    private int recordingBufferSize = 4096; // Entries per thread, must be a power of two
+    private int drainInterval = 50; // Buffer drain interval in milliseconds
+    private OverflowPolicy overflowPolicy = OverflowPolicy.RECORD_DIRECT;
+    private boolean adaptiveSampling = false;
+    private double overheadBudgetPercent = 2.0; // Share of process CPU time spent on timing
+    private int samplingAdjustmentInterval = 1000; // Controller interval in milliseconds
+    private long deinstrumentThreshold = 100; // Average call time in ns below which a method is trivial, 0 disables
+    private int deinstrumentAfterIntervals = 10;
+    private boolean callTreeProfiling = false; // Times every call, adaptive sampling is not applied
+    private int callTreeMaxDepth = 64;
+    private int callTreeMaxNodes = 10_000;
+    private boolean rollingWindows = false; // Per-window metrics; without them windowed queries return all-time figures
+    private long windowBucketInterval = 5000; // Rolling window resolution in milliseconds
+    private long windowRetention = 15 * 60 * 1000; // Longest window kept, in milliseconds
+    private boolean stackSampling = false;
+    private long stackSamplingInterval = 10; // Milliseconds between stack samples
+    private int stackSamplingMaxDepth = 128;
+    private Set<Thread.State> stackSamplingStates = EnumSet.of(Thread.State.RUNNABLE); // Empty means all states
+    private boolean gcNotifications = false; // Record every collection from GarbageCollectorMXBean notifications
+    private int gcHistorySize = 1000; // Collections kept, oldest dropped first
+    private boolean timeSeriesStore = false; // Persist window intervals and system metrics to mapped segment files
+    private String storeDirectory = "reports/store";
+    private int storeSegmentSize = 16 * 1024 * 1024; // Bytes per segment file
+    private int storeMaxSegments = 64; // Oldest segments deleted beyond this count (0 keeps all)
+    private long storeRetention = 24 * 60 * 60 * 1000; // Segments older than this many milliseconds are deleted
+    private long storeSampleInterval = 1000; // Milliseconds between stored memory, CPU and thread samples
+    private long dashboardRefreshInterval = 1000; // Milliseconds between dashboard refreshes, updates in between are merged
+    private int dashboardTopMethods = 10; // Methods in the top-methods bar chart
+    private int dashboardMaxPoints = 3600; // Points kept per dashboard time series, oldest dropped first
+    private long dashboardExportInterval = 60_000; // Milliseconds between headless dashboard exports
+    private boolean metricsEndpoint = false; // Serve OpenMetrics at /metrics from the JDK HTTP server
+    private String metricsEndpointHost = "0.0.0.0";
+    private int metricsEndpointPort = 9404;
+    private long metricsCacheInterval = 1000; // Scrapes within this many milliseconds share one rendering
+    private boolean allocationTracking = false; // Bytes allocated per call, read from the thread's counter
+    private boolean cpuTimeTracking = false; // Thread CPU time per call, wait time is wall minus CPU
+    private int cpuTimeSamplingPeriod = 1; // Read the CPU clock on 1 in N timed calls, a power of two
+    private boolean overheadCalibration = false; // Measure what the timing advice adds to each recorded call
+    private long calibrationInterval = 60_000; // Milliseconds between recalibrations, after one at startup
+    private boolean overheadSubtraction = false; // Subtract the calibrated mean from every woven call's time
+    private int registryMaxMethods = 0; // Methods with metrics of their own (~11 KB each), the rest share "other"; 0 for no cap
+    private long registryRebalanceInterval = 10_000; // Milliseconds between swapping heavy hitters in from "other"
+    private boolean asyncProfiling = false; // Time returned CompletionStages to completion and attribute handed-off tasks
+    private boolean slowCallCapture = false; // Keep stack snapshots of calls slower than their method's threshold
+    private long slowCallThreshold = 0; // Threshold in ns for every method, 0 derives each from its live percentile
+    private Map<String, Long> slowCallThresholds = Map.of(); // Thresholds in ns by method signature, ahead of the above
+    private double slowCallPercentile = 99.0; // Derived thresholds sit at this percentile of the method's latency
+    private long slowCallMinThreshold = 1_000_000; // Derived thresholds are never below this many ns
+    private long slowCallThresholdInterval = 5_000; // Milliseconds between recomputing thresholds
+    private int slowCallRate = 10; // Snapshots per second across all methods, further slow calls are only counted
+    private int slowCallExemplars = 256; // Snapshots kept, the oldest are overwritten
+    private int slowCallStackDepth = 32; // Frames kept per snapshot
+    private boolean slowCallArguments = false; // Also keep the arguments' toString, re-weaves profiled classes
+    private int slowCallArgumentLength = 128; // Characters kept per argument
+    private boolean contentionProfiling = false; // Sample blocked threads and their lock owners with contention monitoring on
+    private long contentionSamplingInterval = 100; // Milliseconds between samples, stretched to stay within the budget
+    private double contentionOverheadBudget = 1.0; // Percent of one CPU the contention sampler may use
+    private boolean lockInstrumentation = false; // Also time synchronized blocks and Lock.lock() calls in profiled classes
+    private int lockSamplingPeriod = 1; // Time 1 in N synchronized block entries, a power of two
+    private long lockContentionThreshold = 1_000; // Acquisitions taking at least this many ns count as contended
+    private int contentionTopLocks = 20; // Locks, sites and threads listed in reports and the dashboard
+    private boolean snapshots = false; // Periodically write mergeable binary snapshots for a fleet aggregator
+    private String snapshotDirectory = "reports/snapshots"; // One file per process, replaced on each write; null for none
+    private String snapshotSocket = null; // Unix domain socket of a running aggregator, null for none
+    private long snapshotInterval = 10_000; // Milliseconds between snapshots
+    private String snapshotSourceId = null; // Names this process in the fleet, null for pid@host
+    private JfrMode jfrMode = JfrMode.OFF;
+    private long jfrEventThreshold = 1_000_000; // Calls faster than this many ns emit no JFR event
+    private String jfrRecordingFile = "reports/profiler.jfr"; // Null streams metrics without keeping a recording
     
     // Builder pattern
     public static class Builder {
@@ -34,6 +112,356 @@ public class ProfilerConfig {
             return this;
         }
         
+        public Builder recordingMode(RecordingMode mode) {
+            config.recordingMode = mode;
+            return this;
+        }
+        
+        public Builder recordingBufferSize(int size) {
+            config.recordingBufferSize = size;
+            return this;
+        }
+        
+        public Builder drainInterval(int interval) {
+            config.drainInterval = interval;
+            return this;
+        }
+        
+        public Builder overflowPolicy(OverflowPolicy policy) {
+            config.overflowPolicy = policy;
+            return this;
+        }
+        
+        public Builder adaptiveSampling(boolean enabled) {
+            config.adaptiveSampling = enabled;
+            return this;
+        }
+        
+        public Builder overheadBudgetPercent(double percent) {
+            config.overheadBudgetPercent = percent;
+            return this;
+        }
+        
+        public Builder samplingAdjustmentInterval(int interval) {
+            config.samplingAdjustmentInterval = interval;
+            return this;
+        }
+        
+        public Builder deinstrumentThreshold(long nanos) {
+            config.deinstrumentThreshold = nanos;
+            return this;
+        }
+        
+        public Builder deinstrumentAfterIntervals(int intervals) {
+            config.deinstrumentAfterIntervals = intervals;
+            return this;
+        }
+        
+        public Builder callTreeProfiling(boolean enabled) {
+            config.callTreeProfiling = enabled;
+            return this;
+        }
+        
+        public Builder callTreeMaxDepth(int depth) {
+            config.callTreeMaxDepth = depth;
+            return this;
+        }
+        
+        public Builder callTreeMaxNodes(int nodes) {
+            config.callTreeMaxNodes = nodes;
+            return this;
+        }
+        
+        public Builder rollingWindows(boolean enabled) {
+            config.rollingWindows = enabled;
+            return this;
+        }
+        
+        public Builder windowBucketInterval(long interval) {
+            config.windowBucketInterval = interval;
+            return this;
+        }
+        
+        public Builder windowRetention(long retention) {
+            config.windowRetention = retention;
+            return this;
+        }
+        
+        public Builder stackSampling(boolean enabled) {
+            config.stackSampling = enabled;
+            return this;
+        }
+        
+        public Builder stackSamplingInterval(long interval) {
+            config.stackSamplingInterval = interval;
+            return this;
+        }
+        
+        public Builder stackSamplingMaxDepth(int depth) {
+            config.stackSamplingMaxDepth = depth;
+            return this;
+        }
+        
+        public Builder stackSamplingStates(Set<Thread.State> states) {
+            config.stackSamplingStates = states;
+            return this;
+        }
+        
+        public Builder gcNotifications(boolean enabled) {
+            config.gcNotifications = enabled;
+            return this;
+        }
+        
+        public Builder gcHistorySize(int size) {
+            config.gcHistorySize = size;
+            return this;
+        }
+        
+        public Builder timeSeriesStore(boolean enabled) {
+            config.timeSeriesStore = enabled;
+            return this;
+        }
+        
+        public Builder storeDirectory(String directory) {
+            config.storeDirectory = directory;
+            return this;
+        }
+        
+        public Builder storeSegmentSize(int bytes) {
+            config.storeSegmentSize = bytes;
+            return this;
+        }
+        
+        public Builder storeMaxSegments(int segments) {
+            config.storeMaxSegments = segments;
+            return this;
+        }
+        
+        public Builder storeRetention(long millis) {
+            config.storeRetention = millis;
+            return this;
+        }
+        
+        public Builder storeSampleInterval(long millis) {
+            config.storeSampleInterval = millis;
+            return this;
+        }
+        
+        public Builder dashboardRefreshInterval(long millis) {
+            config.dashboardRefreshInterval = millis;
+            return this;
+        }
+        
+        public Builder dashboardTopMethods(int methods) {
+            config.dashboardTopMethods = methods;
+            return this;
+        }
+        
+        public Builder dashboardMaxPoints(int points) {
+            config.dashboardMaxPoints = points;
+            return this;
+        }
+        
+        public Builder dashboardExportInterval(long millis) {
+            config.dashboardExportInterval = millis;
+            return this;
+        }
+        
+        public Builder metricsEndpoint(boolean enabled) {
+            config.metricsEndpoint = enabled;
+            return this;
+        }
+        
+        public Builder metricsEndpointHost(String host) {
+            config.metricsEndpointHost = host;
+            return this;
+        }
+        
+        public Builder metricsEndpointPort(int port) {
+            config.metricsEndpointPort = port;
+            return this;
+        }
+        
+        public Builder metricsCacheInterval(long millis) {
+            config.metricsCacheInterval = millis;
+            return this;
+        }
+        
+        public Builder allocationTracking(boolean enabled) {
+            config.allocationTracking = enabled;
+            return this;
+        }
+        
+        public Builder cpuTimeTracking(boolean enabled) {
+            config.cpuTimeTracking = enabled;
+            return this;
+        }
+        
+        public Builder cpuTimeSamplingPeriod(int period) {
+            config.cpuTimeSamplingPeriod = period;
+            return this;
+        }
+        
+        public Builder overheadCalibration(boolean enabled) {
+            config.overheadCalibration = enabled;
+            return this;
+        }
+        
+        public Builder calibrationInterval(long millis) {
+            config.calibrationInterval = millis;
+            return this;
+        }
+        
+        public Builder overheadSubtraction(boolean enabled) {
+            config.overheadSubtraction = enabled;
+            return this;
+        }
+        
+        public Builder registryMaxMethods(int maxMethods) {
+            config.registryMaxMethods = maxMethods;
+            return this;
+        }
+        
+        public Builder registryRebalanceInterval(long millis) {
+            config.registryRebalanceInterval = millis;
+            return this;
+        }
+        
+        public Builder asyncProfiling(boolean enabled) {
+            config.asyncProfiling = enabled;
+            return this;
+        }
+        
+        public Builder slowCallCapture(boolean enabled) {
+            config.slowCallCapture = enabled;
+            return this;
+        }
+        
+        public Builder slowCallThreshold(long nanos) {
+            config.slowCallThreshold = nanos;
+            return this;
+        }
+        
+        public Builder slowCallThresholds(Map<String, Long> thresholds) {
+            config.slowCallThresholds = thresholds;
+            return this;
+        }
+        
+        public Builder slowCallPercentile(double percentile) {
+            config.slowCallPercentile = percentile;
+            return this;
+        }
+        
+        public Builder slowCallMinThreshold(long nanos) {
+            config.slowCallMinThreshold = nanos;
+            return this;
+        }
+        
+        public Builder slowCallThresholdInterval(long millis) {
+            config.slowCallThresholdInterval = millis;
+            return this;
+        }
+        
+        public Builder slowCallRate(int perSecond) {
+            config.slowCallRate = perSecond;
+            return this;
+        }
+        
+        public Builder slowCallExemplars(int exemplars) {
+            config.slowCallExemplars = exemplars;
+            return this;
+        }
+        
+        public Builder slowCallStackDepth(int depth) {
+            config.slowCallStackDepth = depth;
+            return this;
+        }
+        
+        public Builder slowCallArguments(boolean enabled) {
+            config.slowCallArguments = enabled;
+            return this;
+        }
+        
+        public Builder slowCallArgumentLength(int length) {
+            config.slowCallArgumentLength = length;
+            return this;
+        }
+        
+        public Builder contentionProfiling(boolean enabled) {
+            config.contentionProfiling = enabled;
+            return this;
+        }
+        
+        public Builder contentionSamplingInterval(long millis) {
+            config.contentionSamplingInterval = millis;
+            return this;
+        }
+        
+        public Builder contentionOverheadBudget(double percent) {
+            config.contentionOverheadBudget = percent;
+            return this;
+        }
+        
+        public Builder lockInstrumentation(boolean enabled) {
+            config.lockInstrumentation = enabled;
+            return this;
+        }
+        
+        public Builder lockSamplingPeriod(int period) {
+            config.lockSamplingPeriod = period;
+            return this;
+        }
+        
+        public Builder lockContentionThreshold(long nanos) {
+            config.lockContentionThreshold = nanos;
+            return this;
+        }
+        
+        public Builder contentionTopLocks(int count) {
+            config.contentionTopLocks = count;
+            return this;
+        }
+        
+        public Builder snapshots(boolean enabled) {
+            config.snapshots = enabled;
+            return this;
+        }
+        
+        public Builder snapshotDirectory(String directory) {
+            config.snapshotDirectory = directory;
+            return this;
+        }
+        
+        public Builder snapshotSocket(String path) {
+            config.snapshotSocket = path;
+            return this;
+        }
+        
+        public Builder snapshotInterval(long millis) {
+            config.snapshotInterval = millis;
+            return this;
+        }
+        
+        public Builder snapshotSourceId(String sourceId) {
+            config.snapshotSourceId = sourceId;
+            return this;
+        }
+        
+        public Builder jfrMode(JfrMode mode) {
+            config.jfrMode = mode;
+            return this;
+        }
+        
+        public Builder jfrEventThreshold(long nanos) {
+            config.jfrEventThreshold = nanos;
+            return this;
+        }
+        
+        public Builder jfrRecordingFile(String file) {
+            config.jfrRecordingFile = file;
+            return this;
+        }
+        
         public ProfilerConfig build() {
             return config;
         }
@@ -55,4 +483,284 @@ public class ProfilerConfig {
     public boolean isCaptureThreadMetrics() {
         return captureThreadMetrics;
     }
-} 
\ No newline at end of file
+    
+    public RecordingMode getRecordingMode() {
+        return recordingMode;
+    }
+    
+    public int getRecordingBufferSize() {
+        return recordingBufferSize;
+    }
+    
+    public int getDrainInterval() {
+        return drainInterval;
+    }
+    
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+    
+    public boolean isAdaptiveSampling() {
+        return adaptiveSampling;
+    }
+    
+    public double getOverheadBudgetPercent() {
+        return overheadBudgetPercent;
+    }
+    
+    public int getSamplingAdjustmentInterval() {
+        return samplingAdjustmentInterval;
+    }
+    
+    public long getDeinstrumentThreshold() {
+        return deinstrumentThreshold;
+    }
+    
+    public int getDeinstrumentAfterIntervals() {
+        return deinstrumentAfterIntervals;
+    }
+    
+    public boolean isCallTreeProfiling() {
+        return callTreeProfiling;
+    }
+    
+    public int getCallTreeMaxDepth() {
+        return callTreeMaxDepth;
+    }
+    
+    public int getCallTreeMaxNodes() {
+        return callTreeMaxNodes;
+    }
+    
+    public boolean isRollingWindows() {
+        return rollingWindows;
+    }
+    
+    public long getWindowBucketInterval() {
+        return windowBucketInterval;
+    }
+    
+    public long getWindowRetention() {
+        return windowRetention;
+    }
+    
+    public boolean isStackSampling() {
+        return stackSampling;
+    }
+    
+    public long getStackSamplingInterval() {
+        return stackSamplingInterval;
+    }
+    
+    public int getStackSamplingMaxDepth() {
+        return stackSamplingMaxDepth;
+    }
+    
+    public Set<Thread.State> getStackSamplingStates() {
+        return stackSamplingStates;
+    }
+    
+    public boolean isGcNotifications() {
+        return gcNotifications;
+    }
+    
+    public int getGcHistorySize() {
+        return gcHistorySize;
+    }
+    
+    public boolean isTimeSeriesStore() {
+        return timeSeriesStore;
+    }
+    
+    public String getStoreDirectory() {
+        return storeDirectory;
+    }
+    
+    public int getStoreSegmentSize() {
+        return storeSegmentSize;
+    }
+    
+    public int getStoreMaxSegments() {
+        return storeMaxSegments;
+    }
+    
+    public long getStoreRetention() {
+        return storeRetention;
+    }
+    
+    public long getStoreSampleInterval() {
+        return storeSampleInterval;
+    }
+    
+    public long getDashboardRefreshInterval() {
+        return dashboardRefreshInterval;
+    }
+    
+    public int getDashboardTopMethods() {
+        return dashboardTopMethods;
+    }
+    
+    public int getDashboardMaxPoints() {
+        return dashboardMaxPoints;
+    }
+    
+    public long getDashboardExportInterval() {
+        return dashboardExportInterval;
+    }
+    
+    public boolean isMetricsEndpoint() {
+        return metricsEndpoint;
+    }
+    
+    public String getMetricsEndpointHost() {
+        return metricsEndpointHost;
+    }
+    
+    public int getMetricsEndpointPort() {
+        return metricsEndpointPort;
+    }
+    
+    public long getMetricsCacheInterval() {
+        return metricsCacheInterval;
+    }
+    
+    public boolean isAllocationTracking() {
+        return allocationTracking;
+    }
+    
+    public boolean isCpuTimeTracking() {
+        return cpuTimeTracking;
+    }
+    
+    public int getCpuTimeSamplingPeriod() {
+        return cpuTimeSamplingPeriod;
+    }
+    
+    public boolean isOverheadCalibration() {
+        return overheadCalibration;
+    }
+    
+    public long getCalibrationInterval() {
+        return calibrationInterval;
+    }
+    
+    public boolean isOverheadSubtraction() {
+        return overheadSubtraction;
+    }
+    
+    public int getRegistryMaxMethods() {
+        return registryMaxMethods;
+    }
+    
+    public long getRegistryRebalanceInterval() {
+        return registryRebalanceInterval;
+    }
+    
+    public boolean isAsyncProfiling() {
+        return asyncProfiling;
+    }
+    
+    public boolean isSlowCallCapture() {
+        return slowCallCapture;
+    }
+    
+    public long getSlowCallThreshold() {
+        return slowCallThreshold;
+    }
+    
+    public Map<String, Long> getSlowCallThresholds() {
+        return slowCallThresholds;
+    }
+    
+    public double getSlowCallPercentile() {
+        return slowCallPercentile;
+    }
+    
+    public long getSlowCallMinThreshold() {
+        return slowCallMinThreshold;
+    }
+    
+    public long getSlowCallThresholdInterval() {
+        return slowCallThresholdInterval;
+    }
+    
+    public int getSlowCallRate() {
+        return slowCallRate;
+    }
+    
+    public int getSlowCallExemplars() {
+        return slowCallExemplars;
+    }
+    
+    public int getSlowCallStackDepth() {
+        return slowCallStackDepth;
+    }
+    
+    public boolean isSlowCallArguments() {
+        return slowCallArguments;
+    }
+    
+    public int getSlowCallArgumentLength() {
+        return slowCallArgumentLength;
+    }
+    
+    public boolean isContentionProfiling() {
+        return contentionProfiling;
+    }
+    
+    public long getContentionSamplingInterval() {
+        return contentionSamplingInterval;
+    }
+    
+    public double getContentionOverheadBudget() {
+        return contentionOverheadBudget;
+    }
+    
+    public boolean isLockInstrumentation() {
+        return lockInstrumentation;
+    }
+    
+    public int getLockSamplingPeriod() {
+        return lockSamplingPeriod;
+    }
+    
+    public long getLockContentionThreshold() {
+        return lockContentionThreshold;
+    }
+    
+    public int getContentionTopLocks() {
+        return contentionTopLocks;
+    }
+    
+    public boolean isSnapshots() {
+        return snapshots;
+    }
+    
+    public String getSnapshotDirectory() {
+        return snapshotDirectory;
+    }
+    
+    public String getSnapshotSocket() {
+        return snapshotSocket;
+    }
+    
+    public long getSnapshotInterval() {
+        return snapshotInterval;
+    }
+    
+    public String getSnapshotSourceId() {
+        return snapshotSourceId;
+    }
+    
+    public JfrMode getJfrMode() {
+        return jfrMode;
+    }
+    
+    public long getJfrEventThreshold() {
+        return jfrEventThreshold;
+    }
+    
+    public String getJfrRecordingFile() {
+        return jfrRecordingFile;
+    }
+}
@@ -0,0 +1,23 @@
+package org.infy.profiler;
+
+/**
+ * State of a bounded {@link MethodRegistry}. Folded signatures are woven methods without
+ * metrics of their own whose calls land in the {@code other} bucket. Tail figures cover the
+ * calls of folded signatures since the last rebalance: {@code tailMaxError} bounds how far a
+ * candidate's counted calls may exceed its true calls, and any folded method called more than
+ * {@code tailCalls / tailCounters} times in that period is certain to be a candidate.
+ */
+public record RegistryStats(
+    int maxMethods,
+    int trackedMethods,
+    int registeredSignatures,
+    int foldedSignatures,
+    long otherCalls,
+    long evictions,
+    long promotions,
+    int tailCounters,
+    long tailCalls,
+    long tailMaxError,
+    long estimatedBytes
+) {
+}
@@ -0,0 +1,205 @@
+package org.infy.profiler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Space-Saving heavy-hitter summary over method ids (Metwally et al.). With {@code capacity}
+ * counters, every id called more than {@code total / capacity} times since the last
+ * {@link #drainTo} is guaranteed to hold a counter, and no count is over by more than the
+ * error stored with it, which is at most the smallest count.
+ *
+ * <p>Calls are offered from the recording path, so threads offer into one of several stripes
+ * picked by thread id, each a summary of its own kept as a min-heap on count, and the stripes
+ * are merged when drained. An id missing from a stripe may have been called there up to that
+ * stripe's smallest count, which the merge adds to both its count and its error, so the merged
+ * counts keep both bounds.
+ */
+final class SpaceSavingSummary {
+    private static final int MAX_STRIPES = 8;
+
+    private final Stripe[] stripes;
+
+    SpaceSavingSummary(int capacity) {
+        this(capacity, Math.min(MAX_STRIPES,
+            Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1))));
+    }
+
+    // The stripe count must be a power of two
+    SpaceSavingSummary(int capacity, int stripeCount) {
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(capacity);
+        }
+    }
+
+    void offer(int id, long weight) {
+        stripes[(int) Thread.currentThread().getId() & (stripes.length - 1)].offer(id, weight);
+    }
+
+    /** Largest amount by which any merged count may exceed the true one. */
+    long maxError() {
+        long error = 0;
+        for (Stripe stripe : stripes) {
+            error += stripe.maxError();
+        }
+        return error;
+    }
+
+    long total() {
+        long total = 0;
+        for (Stripe stripe : stripes) {
+            total += stripe.total();
+        }
+        return total;
+    }
+
+    /**
+     * Hands the merged counters to {@code sink} as (id, count, error) in descending count order
+     * and starts a new period with empty stripes.
+     */
+    void drainTo(CounterSink sink) {
+        // Per id: summed count, summed error, and the smallest counts of the stripes it was found in
+        Map<Integer, long[]> merged = new HashMap<>();
+        long missingError = 0;
+        for (Stripe stripe : stripes) {
+            missingError += stripe.drainTo((id, count, error, stripeError) -> {
+                long[] counter = merged.computeIfAbsent(id, k -> new long[3]);
+                counter[0] += count;
+                counter[1] += error;
+                counter[2] += stripeError;
+            });
+        }
+        List<long[]> counters = new ArrayList<>(merged.size());
+        for (Map.Entry<Integer, long[]> entry : merged.entrySet()) {
+            long[] counter = entry.getValue();
+            long absent = missingError - counter[2];
+            counters.add(new long[] {entry.getKey(), counter[0] + absent, counter[1] + absent});
+        }
+        counters.sort((a, b) -> Long.compare(b[1], a[1]));
+        for (long[] counter : counters) {
+            sink.accept((int) counter[0], counter[1], counter[2]);
+        }
+    }
+
+    @FunctionalInterface
+    interface CounterSink {
+        void accept(int id, long count, long error);
+    }
+
+    @FunctionalInterface
+    private interface StripeSink {
+        void accept(int id, long count, long error, long stripeError);
+    }
+
+    // One summary, with its counters kept as a min-heap on count so a newcomer finds the smallest at the root
+    private static final class Stripe {
+        private final int[] ids;
+        private final long[] counts;
+        private final long[] errors;
+        // Heap index plus one by method id, 0 when the id holds no counter
+        private int[] positions = new int[64];
+        private int size;
+        private long total;
+
+        Stripe(int capacity) {
+            this.ids = new int[capacity];
+            this.counts = new long[capacity];
+            this.errors = new long[capacity];
+        }
+
+        synchronized void offer(int id, long weight) {
+            total += weight;
+            if (id >= positions.length) {
+                positions = Arrays.copyOf(positions, Math.max(id + 1, positions.length * 2));
+            }
+            int position = positions[id] - 1;
+            if (position >= 0) {
+                counts[position] += weight;
+                siftDown(position);
+            } else if (size < ids.length) {
+                position = size++;
+                ids[position] = id;
+                counts[position] = weight;
+                errors[position] = 0;
+                positions[id] = position + 1;
+                siftUp(position);
+            } else {
+                // The newcomer takes over the smallest counter and inherits its count as error
+                positions[ids[0]] = 0;
+                ids[0] = id;
+                errors[0] = counts[0];
+                counts[0] += weight;
+                positions[id] = 1;
+                siftDown(0);
+            }
+        }
+
+        synchronized long maxError() {
+            return size < ids.length ? 0 : counts[0];
+        }
+
+        synchronized long total() {
+            return total;
+        }
+
+        // Hands every counter to the sink with the stripe's largest error, which it returns, and empties the stripe
+        synchronized long drainTo(StripeSink sink) {
+            long error = size < ids.length ? 0 : counts[0];
+            for (int i = 0; i < size; i++) {
+                sink.accept(ids[i], counts[i], errors[i], error);
+                positions[ids[i]] = 0;
+            }
+            Arrays.fill(counts, 0, size, 0);
+            Arrays.fill(errors, 0, size, 0);
+            size = 0;
+            total = 0;
+            return error;
+        }
+
+        private void siftUp(int position) {
+            while (position > 0) {
+                int parent = (position - 1) >>> 1;
+                if (counts[parent] <= counts[position]) {
+                    break;
+                }
+                swap(position, parent);
+                position = parent;
+            }
+        }
+
+        private void siftDown(int position) {
+            while (true) {
+                int child = 2 * position + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && counts[child + 1] < counts[child]) {
+                    child++;
+                }
+                if (counts[position] <= counts[child]) {
+                    break;
+                }
+                swap(position, child);
+                position = child;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int id = ids[a];
+            ids[a] = ids[b];
+            ids[b] = id;
+            long count = counts[a];
+            counts[a] = counts[b];
+            counts[b] = count;
+            long error = errors[a];
+            errors[a] = errors[b];
+            errors[b] = error;
+            positions[ids[a]] = a + 1;
+            positions[ids[b]] = b + 1;
+        }
+    }
+}
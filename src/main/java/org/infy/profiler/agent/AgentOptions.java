@@ -0,0 +1,219 @@
+package org.infy.profiler.agent;
+
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.matcher.ElementMatcher;
+import net.bytebuddy.matcher.ElementMatchers;
+import org.infy.profiler.ProfilerConfig;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Agent arguments, given as {@code key=value} pairs separated by commas, where each value is a
+ * {@code ;}-separated list:
+ * <pre>
+ * -javaagent:profiler.jar=include=com.acme.**;org.shop.api.*,exclude=com.acme.generated.**,annotation=com.acme.Profiled
+ * </pre>
+ * In package globs {@code *} matches within one package segment and {@code **} across segments;
+ * a glob without wildcards covers the package and all of its subpackages. Classes annotated with
+ * one of the annotations are profiled in full, other classes only in their annotated methods.
+ * {@code static=false} leaves static methods alone.
+ * <p>
+ * Any other key names a {@link ProfilerConfig.Builder} setter, as in
+ * {@code metricsEndpoint=true,samplingRate=500,recordingMode=BUFFERED}. Enums are given by name
+ * and thread state sets as {@code ;}-separated lists; map-valued settings are not available here.
+ */
+public class AgentOptions {
+    private final List<String> includes = new ArrayList<>();
+    private final List<String> excludes = new ArrayList<>();
+    private final List<String> annotations = new ArrayList<>();
+    private boolean staticMethods = true;
+    private final Map<String, String> settings = new LinkedHashMap<>();
+
+    public static AgentOptions parse(String arguments) {
+        AgentOptions options = new AgentOptions();
+        if (arguments == null || arguments.isBlank()) {
+            return options;
+        }
+        for (String pair : arguments.split(",")) {
+            int separator = pair.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Expected key=value in agent arguments: " + pair);
+            }
+            String key = pair.substring(0, separator).trim();
+            String value = pair.substring(separator + 1).trim();
+            switch (key) {
+                case "include" -> options.includes.addAll(split(value));
+                case "exclude" -> options.excludes.addAll(split(value));
+                case "annotation" -> options.annotations.addAll(split(value));
+                case "static" -> options.staticMethods = Boolean.parseBoolean(value);
+                default -> {
+                    // Checked here so a misspelt key or value fails at startup rather than being ignored
+                    convert(key, value, setter(key).getParameterTypes()[0]);
+                    options.settings.put(key, value);
+                }
+            }
+        }
+        return options;
+    }
+
+    private static Method setter(String key) {
+        for (Method method : ProfilerConfig.Builder.class.getMethods()) {
+            if (method.getName().equals(key) && method.getParameterCount() == 1
+                    && method.getReturnType() == ProfilerConfig.Builder.class) {
+                return method;
+            }
+        }
+        throw new IllegalArgumentException("Unknown agent argument: " + key);
+    }
+
+    public ProfilerConfig toConfig() {
+        ProfilerConfig.Builder builder = new ProfilerConfig.Builder();
+        settings.forEach((key, value) -> {
+            Method setter = setter(key);
+            try {
+                setter.invoke(builder, convert(key, value, setter.getParameterTypes()[0]));
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            } catch (InvocationTargetException e) {
+                throw new IllegalArgumentException("Invalid agent argument " + key + "=" + value, e.getCause());
+            }
+        });
+        return builder.build();
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object convert(String key, String value, Class<?> type) {
+        try {
+            if (type == boolean.class) {
+                if (!value.equalsIgnoreCase("true") && !value.equalsIgnoreCase("false")) {
+                    throw new IllegalArgumentException("Expected true or false");
+                }
+                return Boolean.parseBoolean(value);
+            } else if (type == int.class) {
+                return Integer.parseInt(value);
+            } else if (type == long.class) {
+                return Long.parseLong(value);
+            } else if (type == double.class) {
+                return Double.parseDouble(value);
+            } else if (type == String.class) {
+                return value.isEmpty() ? null : value;
+            } else if (type.isEnum()) {
+                return Enum.valueOf((Class<Enum>) type, value.toUpperCase());
+            } else if (type == Set.class) {
+                // The only set-valued setter takes thread states
+                Set<Thread.State> states = EnumSet.noneOf(Thread.State.class);
+                for (String state : split(value)) {
+                    states.add(Thread.State.valueOf(state.toUpperCase()));
+                }
+                return states;
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid agent argument " + key + "=" + value, e);
+        }
+        throw new IllegalArgumentException("Agent argument " + key + " cannot be set from the command line");
+    }
+
+    private static List<String> split(String value) {
+        List<String> parts = new ArrayList<>();
+        for (String part : value.split(";")) {
+            if (!part.isBlank()) {
+                parts.add(part.trim());
+            }
+        }
+        return parts;
+    }
+
+    public boolean isEmpty() {
+        return includes.isEmpty() && annotations.isEmpty();
+    }
+
+    // Types whose every method is profiled
+    public ElementMatcher.Junction<TypeDescription> fullyProfiledTypes() {
+        ElementMatcher.Junction<TypeDescription> matcher = ElementMatchers.none();
+        for (String include : includes) {
+            matcher = matcher.or(ElementMatchers.nameMatches(toRegex(include)));
+        }
+        for (String annotation : annotations) {
+            matcher = matcher.or(ElementMatchers.isAnnotatedWith(ElementMatchers.named(annotation)));
+        }
+        return matcher.and(notExcluded());
+    }
+
+    // Types that are only profiled in their annotated methods
+    public ElementMatcher.Junction<TypeDescription> partiallyProfiledTypes() {
+        ElementMatcher.Junction<TypeDescription> matcher = ElementMatchers.none();
+        for (String annotation : annotations) {
+            matcher = matcher.or(ElementMatchers.declaresMethod(
+                ElementMatchers.isAnnotatedWith(ElementMatchers.named(annotation))));
+        }
+        return matcher.and(notExcluded());
+    }
+
+    public ElementMatcher.Junction<MethodDescription> annotatedMethods() {
+        ElementMatcher.Junction<MethodDescription> matcher = ElementMatchers.none();
+        for (String annotation : annotations) {
+            matcher = matcher.or(ElementMatchers.isAnnotatedWith(ElementMatchers.named(annotation)));
+        }
+        return matcher;
+    }
+
+    private ElementMatcher.Junction<TypeDescription> notExcluded() {
+        ElementMatcher.Junction<TypeDescription> excluded = ElementMatchers.none();
+        for (String exclude : excludes) {
+            excluded = excluded.or(ElementMatchers.nameMatches(toRegex(exclude)));
+        }
+        return ElementMatchers.not(excluded);
+    }
+
+    static String toRegex(String glob) {
+        if (!glob.contains("*")) {
+            return Pattern.quote(glob) + "\\..+";
+        }
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '*') {
+                if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                    regex.append(".*");
+                    i++;
+                } else {
+                    regex.append("[^.]*");
+                }
+            } else if (c == '.' || c == '$') {
+                regex.append('\\').append(c);
+            } else {
+                regex.append(c);
+            }
+        }
+        return regex.toString();
+    }
+
+    public List<String> getIncludes() {
+        return includes;
+    }
+
+    public List<String> getExcludes() {
+        return excludes;
+    }
+
+    public List<String> getAnnotations() {
+        return annotations;
+    }
+
+    public boolean isStaticMethods() {
+        return staticMethods;
+    }
+
+    public Map<String, String> getSettings() {
+        return settings;
+    }
+}
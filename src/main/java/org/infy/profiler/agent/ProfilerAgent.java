@@ -0,0 +1,113 @@
+package org.infy.profiler.agent;
+
+import net.bytebuddy.agent.builder.AgentBuilder;
+import net.bytebuddy.agent.builder.ResettableClassFileTransformer;
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.dynamic.DynamicType;
+import net.bytebuddy.matcher.ElementMatcher;
+import net.bytebuddy.utility.JavaModule;
+import org.infy.profiler.PerformanceProfiler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.instrument.Instrumentation;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static net.bytebuddy.matcher.ElementMatchers.isAbstract;
+import static net.bytebuddy.matcher.ElementMatchers.isBootstrapClassLoader;
+import static net.bytebuddy.matcher.ElementMatchers.isExtensionClassLoader;
+import static net.bytebuddy.matcher.ElementMatchers.isMethod;
+import static net.bytebuddy.matcher.ElementMatchers.isNative;
+import static net.bytebuddy.matcher.ElementMatchers.isStatic;
+import static net.bytebuddy.matcher.ElementMatchers.isSynthetic;
+import static net.bytebuddy.matcher.ElementMatchers.nameStartsWith;
+import static net.bytebuddy.matcher.ElementMatchers.not;
+
+/**
+ * {@code -javaagent} entry point. Instead of redefining named classes one at a time, the agent
+ * registers a transformer that weaves the timing advice into matching classes as they are
+ * loaded, so classes that are never loaded cost nothing. See {@link AgentOptions} for the
+ * argument syntax.
+ */
+public class ProfilerAgent {
+    private static final Logger logger = LoggerFactory.getLogger(ProfilerAgent.class);
+    private static final AtomicLong transformedTypes = new AtomicLong();
+
+    public static void premain(String arguments, Instrumentation instrumentation) {
+        install(AgentOptions.parse(arguments), instrumentation);
+    }
+
+    public static void agentmain(String arguments, Instrumentation instrumentation) {
+        install(AgentOptions.parse(arguments), instrumentation);
+    }
+
+    public static ResettableClassFileTransformer install(AgentOptions options, Instrumentation instrumentation) {
+        PerformanceProfiler profiler = PerformanceProfiler.getInstance();
+        profiler.useInstrumentation(instrumentation);
+        // Without this no collectors, reports or endpoints would start unless the application configures the profiler
+        profiler.configure(options.toConfig());
+        if (options.isEmpty()) {
+            logger.warn("Profiler agent installed without include patterns or annotations, nothing will be profiled");
+        }
+
+        ElementMatcher.Junction<TypeDescription> fullyProfiled = options.fullyProfiledTypes();
+        ElementMatcher.Junction<MethodDescription> annotated = options.annotatedMethods();
+        ElementMatcher.Junction<MethodDescription> profilable = isMethod()
+            .and(not(isAbstract()))
+            .and(not(isNative()))
+            .and(not(isSynthetic()));
+        if (!options.isStaticMethods()) {
+            profilable = profilable.and(not(isStatic()));
+        }
+        ElementMatcher.Junction<MethodDescription> methods = profilable;
+
+        WeakTypePoolCache typePoolCache = new WeakTypePoolCache();
+        ResettableClassFileTransformer transformer = new AgentBuilder.Default()
+            .with(typePoolCache)
+            .with(AgentBuilder.TypeStrategy.Default.DECORATE)
+            .with(AgentBuilder.InitializationStrategy.NoOp.INSTANCE)
+            .with(AgentBuilder.DescriptionStrategy.Default.HYBRID)
+            .with(AgentBuilder.RedefinitionStrategy.RETRANSFORMATION)
+            .with(typePoolCache.clearingListener())
+            .with(new LoggingListener())
+            // Replaces ByteBuddy's default ignore matcher, so JDK classes are excluded here by loader
+            .ignore(nameStartsWith("net.bytebuddy.")
+                .or(nameStartsWith("org.infy.profiler."))
+                .or(isSynthetic()),
+                isBootstrapClassLoader().or(isExtensionClassLoader()))
+            .type(fullyProfiled.or(options.partiallyProfiledTypes()))
+            .transform((builder, type, classLoader, module, protectionDomain) -> {
+                String prefix = type.getName() + ".";
+                ElementMatcher.Junction<MethodDescription> target = methods
+                    .and(not(method -> profiler.isDeinstrumented(prefix + method.getName())));
+                return builder.visit(profiler.createAdvice(fullyProfiled.matches(type) ? target : target.and(annotated)));
+            })
+            .installOn(instrumentation);
+
+        profiler.registerAgentTransformer(transformer);
+        logger.info("Profiler agent installed (include={}, exclude={}, annotations={}, static={}, settings={})",
+            options.getIncludes(), options.getExcludes(), options.getAnnotations(), options.isStaticMethods(),
+            options.getSettings());
+        return transformer;
+    }
+
+    public static long getTransformedTypeCount() {
+        return transformedTypes.get();
+    }
+
+    private static class LoggingListener extends AgentBuilder.Listener.Adapter {
+        @Override
+        public void onTransformation(TypeDescription typeDescription, ClassLoader classLoader,
+                                     JavaModule module, boolean loaded, DynamicType dynamicType) {
+            transformedTypes.incrementAndGet();
+            logger.debug("Instrumented {}", typeDescription.getName());
+        }
+
+        @Override
+        public void onError(String typeName, ClassLoader classLoader, JavaModule module,
+                            boolean loaded, Throwable throwable) {
+            logger.warn("Failed to instrument " + typeName, throwable);
+        }
+    }
+}
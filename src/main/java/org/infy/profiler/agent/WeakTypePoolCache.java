@@ -0,0 +1,64 @@
+package org.infy.profiler.agent;
+
+import net.bytebuddy.agent.builder.AgentBuilder;
+import net.bytebuddy.pool.TypePool;
+
+import java.lang.ref.SoftReference;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Keeps one type pool cache per class loader so that each class file is parsed at most once
+ * while matching, no matter how many types reference it. Loaders are held weakly and caches
+ * softly: a cached type can reach its loader, so a cache held strongly would keep its own key
+ * alive. Caches are also emptied after each retransformation batch, whose parsed types are not
+ * needed again.
+ */
+class WeakTypePoolCache extends AgentBuilder.PoolStrategy.WithTypePoolCache {
+    private final Map<ClassLoader, SoftReference<TypePool.CacheProvider>> cacheProviders;
+    private final TypePool.CacheProvider bootstrapCacheProvider;
+
+    WeakTypePoolCache() {
+        super(TypePool.Default.ReaderMode.FAST);
+        this.cacheProviders = Collections.synchronizedMap(new WeakHashMap<>());
+        this.bootstrapCacheProvider = TypePool.CacheProvider.Simple.withObjectType();
+    }
+
+    @Override
+    protected TypePool.CacheProvider locate(ClassLoader classLoader) {
+        if (classLoader == null) {
+            return bootstrapCacheProvider;
+        }
+        synchronized (cacheProviders) {
+            SoftReference<TypePool.CacheProvider> reference = cacheProviders.get(classLoader);
+            TypePool.CacheProvider cacheProvider = reference != null ? reference.get() : null;
+            if (cacheProvider == null) {
+                cacheProvider = TypePool.CacheProvider.Simple.withObjectType();
+                cacheProviders.put(classLoader, new SoftReference<>(cacheProvider));
+            }
+            return cacheProvider;
+        }
+    }
+
+    void clear() {
+        cacheProviders.clear();
+        bootstrapCacheProvider.clear();
+    }
+
+    /** Empties the caches before each retransformation batch, so none outlives the one after it. */
+    AgentBuilder.RedefinitionStrategy.Listener clearingListener() {
+        return new AgentBuilder.RedefinitionStrategy.Listener.Adapter() {
+            @Override
+            public void onBatch(int index, List<Class<?>> batch, List<Class<?>> types) {
+                clear();
+            }
+
+            @Override
+            public void onComplete(int amount, List<Class<?>> types, Map<List<Class<?>>, Throwable> failures) {
+                clear();
+            }
+        };
+    }
+}
@@ -0,0 +1,124 @@
+package org.infy.profiler.async;
+
+import org.infy.profiler.PerformanceProfiler;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * The profiling context of the innermost woven method returning a {@code CompletionStage} on
+ * the current thread. Tasks wrapped while a context is current carry it to the thread that
+ * runs them, where it is current again, so further handoffs from there keep the same origin.
+ *
+ * <p>A handoff costs one small object and a {@link System#nanoTime()} read at submission, and
+ * a thread-local swap, two more clock reads and two recorded samples when the task runs.
+ * Wrapping a task while no context is current returns the task itself.
+ */
+public final class AsyncContext {
+    private static final ThreadLocal<AsyncContext> CURRENT = new ThreadLocal<>();
+
+    private final AsyncOrigin origin;
+    private final long startTime;
+    // Only set while the creating method runs, so contexts held by tasks do not chain up
+    private AsyncContext previous;
+
+    private AsyncContext(AsyncOrigin origin, long startTime, AsyncContext previous) {
+        this.origin = origin;
+        this.startTime = startTime;
+        this.previous = previous;
+    }
+
+    /** Makes a new context for {@code origin} current on this thread; pair with {@link #exit()}. */
+    public static AsyncContext enter(AsyncOrigin origin) {
+        AsyncContext context = new AsyncContext(origin, System.nanoTime(), CURRENT.get());
+        CURRENT.set(context);
+        return context;
+    }
+
+    /** Restores the context that was current when this one was entered. */
+    public void exit() {
+        CURRENT.set(previous);
+        previous = null;
+    }
+
+    public static AsyncContext current() {
+        return CURRENT.get();
+    }
+
+    public AsyncOrigin getOrigin() {
+        return origin;
+    }
+
+    // System.nanoTime() when the originating method was entered
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public static Runnable wrap(Runnable task) {
+        AsyncContext context = CURRENT.get();
+        return context != null ? new ContextRunnable(context, task, System.nanoTime()) : task;
+    }
+
+    public static <V> Callable<V> wrap(Callable<V> task) {
+        AsyncContext context = CURRENT.get();
+        if (context == null) {
+            return task;
+        }
+        long submitted = System.nanoTime();
+        return () -> context.call(submitted, task);
+    }
+
+    /**
+     * Returns an executor that wraps every task with the submitting thread's context. Pass it
+     * to the {@code *Async} methods of {@code CompletableFuture}, whose default pool is not
+     * covered otherwise.
+     */
+    public static Executor propagating(Executor executor) {
+        return executor instanceof ExecutorService service ? propagating(service) : task -> executor.execute(wrap(task));
+    }
+
+    /** As {@link #propagating(Executor)}, for pools such as {@code ForkJoinPool} or a virtual thread executor. */
+    public static ExecutorService propagating(ExecutorService executor) {
+        return executor instanceof ContextPropagatingExecutorService ? executor
+            : new ContextPropagatingExecutorService(executor);
+    }
+
+    private <V> V call(long submitted, Callable<V> task) throws Exception {
+        long start = begin(submitted);
+        AsyncContext outer = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return task.call();
+        } finally {
+            CURRENT.set(outer);
+            end(start);
+        }
+    }
+
+    // Records how long the task queued and returns when it started
+    private long begin(long submitted) {
+        long start = System.nanoTime();
+        PerformanceProfiler.getInstance().recordMethodExecution(origin.queuedId(), start - submitted, 1);
+        return start;
+    }
+
+    private void end(long start) {
+        PerformanceProfiler.getInstance().recordMethodExecution(origin.taskId(), System.nanoTime() - start, 1);
+    }
+
+    private record ContextRunnable(AsyncContext context, Runnable task, long submitted) implements Runnable {
+        @Override
+        public void run() {
+            long start = context.begin(submitted);
+            AsyncContext outer = CURRENT.get();
+            CURRENT.set(context);
+            try {
+                task.run();
+            } finally {
+                CURRENT.set(outer);
+                context.end(start);
+            }
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package org.infy.profiler.async;
+
+/**
+ * Registry ids of the metrics kept for a method that returns a {@code CompletionStage}: the
+ * latency of the returned stage from the call until it completes, and for tasks handed to a
+ * propagating executor while the method's context was current, the time they queued before
+ * starting and the time they ran.
+ */
+public record AsyncOrigin(int asyncId, int queuedId, int taskId) {
+}
@@ -0,0 +1,46 @@
+package org.infy.profiler.async;
+
+import org.infy.profiler.MethodRegistry;
+
+import java.util.Arrays;
+
+/**
+ * Looks up the {@link AsyncOrigin} of a woven method by its registry id. The metrics are
+ * registered under the method's signature plus a suffix the first time it is called, so
+ * they show up in reports next to the synchronous timing.
+ */
+public final class AsyncOrigins {
+    public static final String ASYNC_SUFFIX = " [async]";
+    public static final String QUEUED_SUFFIX = " [queued]";
+    public static final String TASK_SUFFIX = " [task]";
+
+    private final MethodRegistry registry;
+    private volatile AsyncOrigin[] origins = new AsyncOrigin[64];
+
+    public AsyncOrigins(MethodRegistry registry) {
+        this.registry = registry;
+    }
+
+    public AsyncOrigin get(int methodId) {
+        AsyncOrigin[] current = origins;
+        AsyncOrigin origin = methodId < current.length ? current[methodId] : null;
+        return origin != null ? origin : register(methodId);
+    }
+
+    private synchronized AsyncOrigin register(int methodId) {
+        AsyncOrigin[] current = origins;
+        if (methodId < current.length && current[methodId] != null) {
+            return current[methodId];
+        }
+        if (methodId >= current.length) {
+            current = Arrays.copyOf(current, Math.max(methodId + 1, current.length * 2));
+        }
+        String name = registry.getSignature(methodId);
+        AsyncOrigin origin = new AsyncOrigin(registry.registerDerived(name + ASYNC_SUFFIX),
+            registry.registerDerived(name + QUEUED_SUFFIX), registry.registerDerived(name + TASK_SUFFIX));
+        // The record's fields are final, so readers that see the slot see the ids
+        current[methodId] = origin;
+        origins = current;
+        return origin;
+    }
+}
@@ -0,0 +1,27 @@
+package org.infy.profiler.calibration;
+
+/**
+ * What the timing advice adds to each recorded duration, measured on an empty woven method.
+ * {@code noiseFloorNanos} is the mean plus three standard deviations, or only the three
+ * standard deviations when the mean is already subtracted from recorded times: methods whose
+ * median stays at or below it cannot be told apart from an empty method. The median rather
+ * than the mean, because the mean of a very short method is dominated by the rare call that
+ * was interrupted.
+ */
+public record OverheadCalibration(
+    long calibratedAt,
+    int samples,
+    double meanNanos,
+    double varianceNanos,
+    long noiseFloorNanos,
+    boolean subtracted
+) {
+    public double stdDevNanos() {
+        return Math.sqrt(varianceNanos);
+    }
+
+    /** Whether a method with this median recorded duration is within the noise floor. */
+    public boolean isWithinNoiseFloor(long medianNanos) {
+        return medianNanos <= noiseFloorNanos;
+    }
+}
@@ -0,0 +1,187 @@
+package org.infy.profiler.calibration;
+
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.asm.Advice;
+import net.bytebuddy.description.modifier.Visibility;
+import net.bytebuddy.dynamic.DynamicType;
+import net.bytebuddy.dynamic.loading.ClassLoadingStrategy;
+import net.bytebuddy.implementation.StubMethod;
+import net.bytebuddy.matcher.ElementMatchers;
+import org.infy.profiler.interceptor.MethodInterceptor;
+import org.infy.profiler.interceptor.ThreadCounters;
+
+import java.util.Arrays;
+
+/**
+ * Measures the bias the timing advice adds to every recorded duration by timing an empty
+ * method woven with advice that takes its timestamps the way
+ * {@link MethodInterceptor.TimingAdvice} does, or {@link MethodInterceptor.CpuTimingAdvice}
+ * when CPU time is tracked, next to allocation advice when that is on, in the same order as
+ * on profiled methods. Each combination's probe class is generated in its own class loader, so
+ * calibration needs no instrumentation and never shows up among profiled methods.
+ *
+ * <p>The slowest 1% of calls are dropped before the mean and variance are taken; those are
+ * interrupts and safepoints rather than advice cost.
+ */
+public class OverheadCalibrator {
+    private static final int WARMUP_CALLS = 50_000;
+    private static final int ROUNDS = 5;
+    private static final int CALLS_PER_ROUND = 10_000;
+    private static final double TRIM_FRACTION = 0.01;
+    private static final int NOISE_FLOOR_DEVIATIONS = 3;
+
+    // Written by the probe's inlined advice, only while calibrate() holds the lock
+    private static final long[] samples = new long[ROUNDS * CALLS_PER_ROUND];
+    private static int sampleCount;
+    private static int cpuTimeMask;
+    private static int probeCalls;
+    // Keeps the counters the probe reads from being optimized away
+    private static long counterSink;
+
+    // By advice combination, each generated on first use, which takes most of a second
+    private final Runnable[] probes = new Runnable[4];
+
+    // Like the timing advice, the end time is read in the method the exit calls
+    public static class ProbeAdvice {
+        @Advice.OnMethodEnter
+        static long enter() {
+            return System.nanoTime();
+        }
+
+        @Advice.OnMethodExit(onThrowable = Throwable.class)
+        static void exit(@Advice.Enter long startTime) {
+            if (startTime != MethodInterceptor.NOT_SAMPLED) {
+                OverheadCalibrator.exit(startTime);
+            }
+        }
+    }
+
+    public static class CpuProbeAdvice {
+        @Advice.OnMethodEnter
+        static long enter(@Advice.Local("cpuWeight") long cpuWeight,
+                          @Advice.Local("cpuStart") long cpuStart) {
+            cpuWeight = OverheadCalibrator.cpuTimeWeight();
+            cpuStart = cpuWeight != 0 ? ThreadCounters.cpuTime() : 0;
+            return System.nanoTime();
+        }
+
+        @Advice.OnMethodExit(onThrowable = Throwable.class)
+        static void exit(@Advice.Enter long startTime,
+                        @Advice.Local("cpuWeight") long cpuWeight,
+                        @Advice.Local("cpuStart") long cpuStart) {
+            if (startTime != MethodInterceptor.NOT_SAMPLED) {
+                long executionTime = System.nanoTime() - startTime;
+                long cpuTime = cpuWeight != 0 ? ThreadCounters.cpuTime() - cpuStart : 0;
+                OverheadCalibrator.record(executionTime, cpuTime);
+            }
+        }
+    }
+
+    public static class AllocationProbeAdvice {
+        @Advice.OnMethodEnter
+        static long enter() {
+            return ThreadCounters.allocatedBytes();
+        }
+
+        @Advice.OnMethodExit(onThrowable = Throwable.class)
+        static void exit(@Advice.Enter long allocatedBefore) {
+            OverheadCalibrator.consume(ThreadCounters.allocatedBytes() - allocatedBefore);
+        }
+    }
+
+    // Advice code is inlined into the probe, so it may only reach public members
+    public static void exit(long startTime) {
+        record(System.nanoTime() - startTime);
+    }
+
+    public static void record(long duration) {
+        if (sampleCount < samples.length) {
+            samples[sampleCount++] = duration;
+        }
+    }
+
+    public static void record(long duration, long cpuTime) {
+        consume(cpuTime);
+        record(duration);
+    }
+
+    public static long cpuTimeWeight() {
+        return (probeCalls++ & cpuTimeMask) == 0 ? cpuTimeMask + 1 : 0;
+    }
+
+    public static void consume(long value) {
+        counterSink += value;
+    }
+
+    /**
+     * Runs one calibration, a few tens of milliseconds of calls to the probe on the calling
+     * thread. Rounds are spread out by yielding in between, so that the samples, pooled,
+     * reflect ordinary scheduling noise rather than one quiet or one disturbed moment.
+     * {@code cpuTimeSamplingPeriod} is 0 when CPU time is not tracked.
+     */
+    public OverheadCalibration calibrate(boolean subtracted, boolean allocationTracking, int cpuTimeSamplingPeriod) {
+        synchronized (OverheadCalibrator.class) {
+            boolean cpuTime = cpuTimeSamplingPeriod > 0;
+            int combination = (allocationTracking ? 1 : 0) | (cpuTime ? 2 : 0);
+            if (probes[combination] == null) {
+                probes[combination] = createProbe(allocationTracking, cpuTime);
+            }
+            Runnable probe = probes[combination];
+            cpuTimeMask = cpuTime ? cpuTimeSamplingPeriod - 1 : 0;
+            // Until the JIT has compiled the probe and this loop, calls time the interpreter
+            for (int i = 0; i < WARMUP_CALLS; i++) {
+                if (sampleCount == samples.length) {
+                    sampleCount = 0;
+                }
+                probe.run();
+            }
+            sampleCount = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                for (int i = 0; i < CALLS_PER_ROUND; i++) {
+                    probe.run();
+                }
+                Thread.yield();
+            }
+            Arrays.sort(samples, 0, sampleCount);
+            int kept = (int) (sampleCount * (1 - TRIM_FRACTION));
+            double mean = 0;
+            for (int i = 0; i < kept; i++) {
+                mean += samples[i];
+            }
+            mean /= kept;
+            double variance = 0;
+            for (int i = 0; i < kept; i++) {
+                variance += (samples[i] - mean) * (samples[i] - mean);
+            }
+            variance /= kept - 1;
+            double deviations = NOISE_FLOOR_DEVIATIONS * Math.sqrt(variance);
+            long noiseFloor = (long) Math.ceil(subtracted ? deviations : mean + deviations);
+            return new OverheadCalibration(System.currentTimeMillis(), kept, mean, variance, noiseFloor, subtracted);
+        }
+    }
+
+    private static Runnable createProbe(boolean allocationTracking, boolean cpuTime) {
+        DynamicType.Builder<Object> builder = new ByteBuddy()
+            .subclass(Object.class)
+            .implement(Runnable.class)
+            .name(OverheadCalibrator.class.getName() + "$EmptyProbe" + (allocationTracking ? "A" : "") + (cpuTime ? "C" : ""))
+            .defineMethod("run", void.class, Visibility.PUBLIC)
+            .intercept(StubMethod.INSTANCE);
+        // As on profiled methods, the advice added first is outermost and timing comes last
+        if (allocationTracking) {
+            builder = builder.visit(Advice.to(AllocationProbeAdvice.class).on(ElementMatchers.named("run")));
+        }
+        builder = builder.visit(Advice.to(cpuTime ? CpuProbeAdvice.class : ProbeAdvice.class)
+            .on(ElementMatchers.named("run")));
+        try {
+            return (Runnable) builder
+                .make()
+                .load(OverheadCalibrator.class.getClassLoader(), ClassLoadingStrategy.Default.WRAPPER)
+                .getLoaded()
+                .getConstructor()
+                .newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not create the calibration probe", e);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package org.infy.profiler.calltree;
+
+import org.infy.profiler.MethodRegistry;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Calling-context tree profiling. Every thread keeps a {@link ShadowStack} and its own tree, so
+ * recording never contends; {@link #snapshot()} merges the per-thread trees by call path.
+ * Depth is bounded per stack and the number of nodes across all threads is capped; calls that
+ * fall outside either bound are counted as truncated and their time stays with the caller.
+ * Snapshots fold the trees of threads that have ended into one retired tree and drop their
+ * stacks, so the budget only keeps paying for call paths no other tree already holds.
+ */
+public class CallTree {
+    private final MethodRegistry registry;
+    private final int maxDepth;
+    private final int maxNodes;
+    private final AtomicInteger nodeCount;
+    private final LongAdder truncatedCalls;
+    private final CopyOnWriteArrayList<ShadowStack> stacks;
+    private final ThreadLocal<ShadowStack> localStack;
+    // Guarded by this: merged trees of ended threads
+    private final MergedNode retired = new MergedNode(-1);
+
+    public CallTree(MethodRegistry registry, int maxDepth, int maxNodes) {
+        this.registry = registry;
+        this.maxDepth = maxDepth;
+        this.maxNodes = maxNodes;
+        this.nodeCount = new AtomicInteger();
+        this.truncatedCalls = new LongAdder();
+        this.stacks = new CopyOnWriteArrayList<>();
+        this.localStack = ThreadLocal.withInitial(this::newStack);
+    }
+
+    private ShadowStack newStack() {
+        ShadowStack stack = new ShadowStack(this, Thread.currentThread(), maxDepth);
+        stacks.add(stack);
+        return stack;
+    }
+
+    public void enter(int methodId) {
+        localStack.get().push(methodId);
+    }
+
+    public void exit(int methodId, long elapsed) {
+        localStack.get().pop(methodId, elapsed);
+    }
+
+    boolean reserveNode() {
+        if (nodeCount.get() >= maxNodes) {
+            return false;
+        }
+        if (nodeCount.incrementAndGet() <= maxNodes) {
+            return true;
+        }
+        // Handed back so that nodes freed by ended threads can be reserved again
+        nodeCount.decrementAndGet();
+        return false;
+    }
+
+    void recordTruncated() {
+        truncatedCalls.increment();
+    }
+
+    public synchronized CallTreeSnapshot snapshot() {
+        for (ShadowStack stack : stacks) {
+            if (!stack.isOwnerAlive()) {
+                // The retired tree's new nodes take the place of the stack's in the budget
+                int added = merge(retired, stack.getRoot());
+                nodeCount.addAndGet(added - stack.getNodeCount());
+                stacks.remove(stack);
+            }
+        }
+        MergedNode root = new MergedNode(-1);
+        merge(root, retired);
+        for (ShadowStack stack : stacks) {
+            merge(root, stack.getRoot());
+        }
+        return root.freeze(registry);
+    }
+
+    // Returns the number of nodes added to target
+    private static int merge(MergedNode target, CallTreeNode source) {
+        int added = 0;
+        for (CallTreeNode child : source.getChildren()) {
+            MergedNode merged = target.children.get(child.methodId);
+            if (merged == null) {
+                merged = new MergedNode(child.methodId);
+                target.children.put(child.methodId, merged);
+                added++;
+            }
+            merged.calls += child.getCalls();
+            merged.totalTime += child.getTotalTime();
+            merged.selfTime += child.getSelfTime();
+            added += merge(merged, child);
+        }
+        return added;
+    }
+
+    private static void merge(MergedNode target, MergedNode source) {
+        for (MergedNode child : source.children.values()) {
+            MergedNode merged = target.children.computeIfAbsent(child.methodId, MergedNode::new);
+            merged.calls += child.calls;
+            merged.totalTime += child.totalTime;
+            merged.selfTime += child.selfTime;
+            merge(merged, child);
+        }
+    }
+
+    public int getNodeCount() {
+        return Math.min(nodeCount.get(), maxNodes);
+    }
+
+    public long getTruncatedCalls() {
+        return truncatedCalls.sum();
+    }
+
+    private static class MergedNode {
+        final int methodId;
+        final Map<Integer, MergedNode> children = new HashMap<>();
+        long calls;
+        long totalTime;
+        long selfTime;
+
+        MergedNode(int methodId) {
+            this.methodId = methodId;
+        }
+
+        CallTreeSnapshot freeze(MethodRegistry registry) {
+            List<CallTreeSnapshot> frozen = new ArrayList<>(children.size());
+            long childrenTotal = 0;
+            long childrenCalls = 0;
+            for (MergedNode child : children.values()) {
+                CallTreeSnapshot snapshot = child.freeze(registry);
+                frozen.add(snapshot);
+                childrenTotal += snapshot.totalTime();
+                childrenCalls += snapshot.calls();
+            }
+            frozen.sort(Comparator.comparingLong(CallTreeSnapshot::totalTime).reversed());
+            if (methodId < 0) {
+                // The synthetic root covers all top-level calls
+                return new CallTreeSnapshot("<root>", childrenCalls, childrenTotal, 0, frozen);
+            }
+            return new CallTreeSnapshot(registry.getSignature(methodId),
+                calls, totalTime, selfTime, frozen);
+        }
+    }
+}
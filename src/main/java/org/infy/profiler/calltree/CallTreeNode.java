@@ -0,0 +1,73 @@
+package org.infy.profiler.calltree;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * A node in one thread's calling-context tree. Only the owning thread creates children and
+ * updates the counters; it publishes them with ordered writes so that snapshot readers on
+ * other threads see complete values without the owner paying for a fence on every exit.
+ */
+class CallTreeNode {
+    private static final AtomicLongFieldUpdater<CallTreeNode> CALLS =
+        AtomicLongFieldUpdater.newUpdater(CallTreeNode.class, "calls");
+    private static final AtomicLongFieldUpdater<CallTreeNode> TOTAL_TIME =
+        AtomicLongFieldUpdater.newUpdater(CallTreeNode.class, "totalTime");
+    private static final AtomicLongFieldUpdater<CallTreeNode> SELF_TIME =
+        AtomicLongFieldUpdater.newUpdater(CallTreeNode.class, "selfTime");
+    private static final CallTreeNode[] NO_CHILDREN = new CallTreeNode[0];
+
+    final int methodId;
+    private volatile long calls;
+    private volatile long totalTime;
+    private volatile long selfTime;
+    private volatile CallTreeNode[] children = NO_CHILDREN;
+
+    CallTreeNode(int methodId) {
+        this.methodId = methodId;
+    }
+
+    // Owner thread only
+    CallTreeNode findChild(int childMethodId) {
+        CallTreeNode[] current = children;
+        for (CallTreeNode child : current) {
+            if (child.methodId == childMethodId) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    // Owner thread only
+    CallTreeNode addChild(int childMethodId) {
+        CallTreeNode child = new CallTreeNode(childMethodId);
+        CallTreeNode[] current = children;
+        CallTreeNode[] grown = Arrays.copyOf(current, current.length + 1);
+        grown[current.length] = child;
+        children = grown;
+        return child;
+    }
+
+    // Owner thread only
+    void record(long inclusive, long exclusive) {
+        CALLS.lazySet(this, calls + 1);
+        TOTAL_TIME.lazySet(this, totalTime + inclusive);
+        SELF_TIME.lazySet(this, selfTime + exclusive);
+    }
+
+    long getCalls() {
+        return calls;
+    }
+
+    long getTotalTime() {
+        return totalTime;
+    }
+
+    long getSelfTime() {
+        return selfTime;
+    }
+
+    CallTreeNode[] getChildren() {
+        return children;
+    }
+}
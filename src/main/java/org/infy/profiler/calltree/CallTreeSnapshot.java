@@ -0,0 +1,15 @@
+package org.infy.profiler.calltree;
+
+import java.util.List;
+
+/**
+ * Merged calling-context tree across all threads. Times are in nanoseconds; {@code selfTime}
+ * excludes time spent in instrumented callees.
+ */
+public record CallTreeSnapshot(
+    String methodName,
+    long calls,
+    long totalTime,
+    long selfTime,
+    List<CallTreeSnapshot> children
+) {}
@@ -0,0 +1,88 @@
+package org.infy.profiler.calltree;
+
+/**
+ * Per-thread mirror of the instrumented part of the call stack. Each frame points at the
+ * thread's tree node for the current calling context and accumulates the inclusive time of
+ * its callees, which is subtracted on exit to get self time.
+ */
+class ShadowStack {
+    private final CallTree tree;
+    private final Thread owner;
+    private final CallTreeNode root;
+    private final CallTreeNode[] nodes;
+    private final int[] methodIds;
+    private final long[] childTime;
+    private int depth;
+    // Frames entered beyond the maximum depth, only counted so that exits stay balanced
+    private int overflow;
+    // Nodes taken from the tree's budget, read once the owner has ended
+    private int nodeCount;
+
+    ShadowStack(CallTree tree, Thread owner, int maxDepth) {
+        this.tree = tree;
+        this.owner = owner;
+        this.root = new CallTreeNode(-1);
+        this.nodes = new CallTreeNode[maxDepth + 1];
+        this.methodIds = new int[maxDepth + 1];
+        this.childTime = new long[maxDepth + 1];
+        this.nodes[0] = root;
+    }
+
+    void push(int methodId) {
+        if (depth + 1 >= nodes.length) {
+            overflow++;
+            tree.recordTruncated();
+            return;
+        }
+        CallTreeNode parent = nodes[depth];
+        CallTreeNode node = null;
+        if (parent != null) {
+            node = parent.findChild(methodId);
+            if (node == null && tree.reserveNode()) {
+                node = parent.addChild(methodId);
+                nodeCount++;
+            }
+            if (node == null) {
+                tree.recordTruncated();
+            }
+        }
+        depth++;
+        nodes[depth] = node;
+        methodIds[depth] = methodId;
+        childTime[depth] = 0;
+    }
+
+    void pop(int methodId, long elapsed) {
+        if (overflow > 0) {
+            overflow--;
+            return;
+        }
+        // Unwind frames whose exits were never seen, e.g. entered before call-tree mode was on
+        while (depth > 0 && methodIds[depth] != methodId) {
+            depth--;
+        }
+        if (depth == 0) {
+            return;
+        }
+        CallTreeNode node = nodes[depth];
+        depth--;
+        if (node != null) {
+            node.record(elapsed, Math.max(0, elapsed - childTime[depth + 1]));
+            childTime[depth] += elapsed;
+        }
+        // Calls without a node of their own stay in the parent's self time
+    }
+
+    CallTreeNode getRoot() {
+        return root;
+    }
+
+    // Seeing the owner ended also makes its last writes visible
+    boolean isOwnerAlive() {
+        return owner.isAlive();
+    }
+
+    int getNodeCount() {
+        return nodeCount;
+    }
+}
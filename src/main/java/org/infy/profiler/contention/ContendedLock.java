@@ -0,0 +1,17 @@
+package org.infy.profiler.contention;
+
+/**
+ * A lock threads were seen waiting for by the contention sampler. {@code kind} is
+ * {@code monitor} for threads BLOCKED entering a {@code synchronized} block or method and
+ * {@code lock} for threads parked on an ownable synchronizer such as a {@code ReentrantLock}.
+ * The wait is estimated as the sampling interval per observation.
+ */
+public record ContendedLock(
+    String lockName,
+    String kind,
+    long samples,
+    long estimatedWaitNanos,
+    String topOwner,
+    long topOwnerSamples
+) {
+}
@@ -0,0 +1,245 @@
+package org.infy.profiler.contention;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples every live thread with the JVM's thread contention monitoring turned on. Each thread's
+ * blocked and waited counts and times are the JVM's own totals, kept as last seen once the thread
+ * ends. Locks are attributed by sampling, counting the threads BLOCKED on a monitor or parked on
+ * an owned synchronizer in each round, together with the thread holding it, and charging each
+ * the time since the previous round. Waits without an owner, such as idle pool threads, are not
+ * contention and are left out of the lock view.
+ *
+ * <p>A round reads every thread's state at a safepoint, so its cost grows with the thread count.
+ * The sampler measures the CPU time of each round and waits long enough before the next one to
+ * stay within {@code overheadBudgetPercent} of one CPU, however many threads there are.
+ */
+public class ContentionCollector {
+    private static final Logger logger = LoggerFactory.getLogger(ContentionCollector.class);
+    // Distinct lock identities kept; when full, the least seen one makes room
+    private static final int MAX_LOCKS = 4096;
+    // Threads kept, including ended ones with their last figures; ended ones go first when full
+    private static final int MAX_THREADS = 4096;
+
+    private final ThreadMXBean threadMXBean;
+    private final long intervalMillis;
+    private final double overheadBudgetPercent;
+    // Guarded by this
+    private final Map<String, LockStats> locks = new HashMap<>();
+    // In access order, so threads that ended longest ago come first
+    private final Map<Long, ThreadContention> threads = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<Long> liveThreads = new HashSet<>();
+    private ScheduledExecutorService executor;
+    private volatile boolean contentionMonitoring;
+    private volatile long currentInterval;
+    private volatile long startNanos;
+    private volatile long samplingCpuNanos;
+    // Sampler thread only
+    private long lastSampleNanos;
+
+    public ContentionCollector(long intervalMillis, double overheadBudgetPercent) {
+        this.threadMXBean = ManagementFactory.getThreadMXBean();
+        this.intervalMillis = intervalMillis;
+        this.overheadBudgetPercent = overheadBudgetPercent;
+        this.currentInterval = intervalMillis;
+    }
+
+    /** Also applies the woven probes' settings; {@code monitorSamplingPeriod} must be a power of two. */
+    public static void configureProbes(int monitorSamplingPeriod, long contentionThresholdNanos) {
+        LockProbes.configure(monitorSamplingPeriod, contentionThresholdNanos);
+    }
+
+    public synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        if (threadMXBean.isThreadContentionMonitoringSupported()) {
+            threadMXBean.setThreadContentionMonitoringEnabled(true);
+            contentionMonitoring = true;
+        } else {
+            logger.warn("This JVM cannot time blocked and waiting threads, only lock samples are kept");
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "profiler-contention-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        startNanos = System.nanoTime();
+        lastSampleNanos = startNanos;
+        executor.schedule(this::round, intervalMillis, TimeUnit.MILLISECONDS);
+        logger.info("Contention sampling every {} ms within {}% of a CPU", intervalMillis, overheadBudgetPercent);
+    }
+
+    public synchronized void stop() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdownNow();
+        executor = null;
+    }
+
+    private void round() {
+        long cpuStart = threadMXBean.getCurrentThreadCpuTime();
+        long wallStart = System.nanoTime();
+        try {
+            sample();
+        } catch (Exception e) {
+            logger.error("Error sampling thread contention", e);
+        }
+        long spent = cpuStart >= 0 ? threadMXBean.getCurrentThreadCpuTime() - cpuStart : System.nanoTime() - wallStart;
+        samplingCpuNanos += spent;
+        // Long enough for this round's cost to stay within the budget, never shorter than configured
+        long budgetMillis = (long) (spent / (overheadBudgetPercent / 100.0) / 1_000_000);
+        currentInterval = Math.max(intervalMillis, budgetMillis);
+        synchronized (this) {
+            if (executor != null) {
+                executor.schedule(this::round, currentInterval, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    // Sampler thread only, apart from the maps, which readers lock
+    private void sample() {
+        long self = Thread.currentThread().getId();
+        ThreadInfo[] infos = threadMXBean.getThreadInfo(threadMXBean.getAllThreadIds());
+        // A thread seen blocked is charged the time since the previous round, which the budget may have stretched
+        long now = System.nanoTime();
+        long waitPerSample = now - lastSampleNanos;
+        lastSampleNanos = now;
+        synchronized (this) {
+            liveThreads.clear();
+            for (ThreadInfo info : infos) {
+                if (info == null || info.getThreadId() == self) {
+                    continue;
+                }
+                liveThreads.add(info.getThreadId());
+                threads.put(info.getThreadId(), new ThreadContention(info.getThreadName(), info.getBlockedCount(),
+                    info.getBlockedTime(), info.getWaitedCount(), info.getWaitedTime()));
+                String lockName = info.getLockName();
+                if (lockName == null) {
+                    continue;
+                }
+                if (info.getThreadState() == Thread.State.BLOCKED) {
+                    lockStats(lockName, "monitor").add(info.getLockOwnerName(), waitPerSample);
+                } else if (info.getLockOwnerName() != null) {
+                    lockStats(lockName, "lock").add(info.getLockOwnerName(), waitPerSample);
+                }
+            }
+            if (threads.size() > MAX_THREADS) {
+                trimThreads();
+            }
+        }
+    }
+
+    // Ended threads go first, oldest first; with more live threads than the cap, the least blocked ones
+    private void trimThreads() {
+        Iterator<Long> ids = threads.keySet().iterator();
+        while (threads.size() > MAX_THREADS && ids.hasNext()) {
+            if (!liveThreads.contains(ids.next())) {
+                ids.remove();
+            }
+        }
+        if (threads.size() > MAX_THREADS) {
+            List<Map.Entry<Long, ThreadContention>> live = new ArrayList<>(threads.entrySet());
+            live.sort(Comparator.comparingLong(entry -> entry.getValue().blockedTimeMillis()));
+            for (int i = 0; threads.size() > MAX_THREADS; i++) {
+                threads.remove(live.get(i).getKey());
+            }
+        }
+    }
+
+    private LockStats lockStats(String lockName, String kind) {
+        LockStats stats = locks.get(lockName);
+        if (stats == null) {
+            if (locks.size() >= MAX_LOCKS) {
+                evictLeastSeen();
+            }
+            stats = new LockStats(kind);
+            locks.put(lockName, stats);
+        }
+        return stats;
+    }
+
+    private void evictLeastSeen() {
+        String least = null;
+        long fewest = Long.MAX_VALUE;
+        for (Map.Entry<String, LockStats> entry : locks.entrySet()) {
+            if (entry.getValue().samples < fewest) {
+                fewest = entry.getValue().samples;
+                least = entry.getKey();
+            }
+        }
+        locks.remove(least);
+    }
+
+    /** The {@code limit} most contended locks, woven sites and threads. */
+    public ContentionSnapshot snapshot(int limit) {
+        List<ContendedLock> topLocks = new ArrayList<>();
+        List<ThreadContention> topThreads;
+        synchronized (this) {
+            locks.forEach((name, stats) -> topLocks.add(stats.toContendedLock(name)));
+            topThreads = new ArrayList<>(threads.values());
+        }
+        topLocks.sort(Comparator.comparingLong(ContendedLock::estimatedWaitNanos).reversed());
+        // Waited time includes idle pool threads, so it only breaks ties
+        topThreads.sort(Comparator.comparingLong(ThreadContention::blockedTimeMillis)
+            .thenComparingLong(ThreadContention::waitedTimeMillis).reversed());
+        return new ContentionSnapshot(contentionMonitoring, currentInterval, getOverheadPercent(),
+            List.copyOf(topLocks.subList(0, Math.min(limit, topLocks.size()))), LockProbes.SITES.top(limit),
+            List.copyOf(topThreads.subList(0, Math.min(limit, topThreads.size()))));
+    }
+
+    /** CPU time spent sampling as a share of the time since sampling started. */
+    public double getOverheadPercent() {
+        long elapsed = System.nanoTime() - startNanos;
+        return elapsed > 0 ? samplingCpuNanos * 100.0 / elapsed : 0.0;
+    }
+
+    private static final class LockStats {
+        private final String kind;
+        private final Map<String, Long> ownerSamples = new HashMap<>();
+        private long samples;
+        private long waitNanos;
+
+        private LockStats(String kind) {
+            this.kind = kind;
+        }
+
+        void add(String owner, long waitPerSample) {
+            samples++;
+            waitNanos += waitPerSample;
+            if (owner != null) {
+                ownerSamples.merge(owner, 1L, Long::sum);
+            }
+        }
+
+        ContendedLock toContendedLock(String lockName) {
+            String topOwner = null;
+            long topOwnerSamples = 0;
+            for (Map.Entry<String, Long> owner : ownerSamples.entrySet()) {
+                if (owner.getValue() > topOwnerSamples) {
+                    topOwner = owner.getKey();
+                    topOwnerSamples = owner.getValue();
+                }
+            }
+            return new ContendedLock(lockName, kind, samples, waitNanos, topOwner, topOwnerSamples);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package org.infy.profiler.contention;
+
+import java.util.List;
+
+/**
+ * The most contended locks, woven lock sites and threads, each sorted by time spent waiting.
+ * {@code samplingInterval} is the sampler's current interval in milliseconds, which grows
+ * beyond the configured one when a round costs more than the overhead budget allows.
+ */
+public record ContentionSnapshot(
+    boolean contentionMonitoring,
+    long samplingInterval,
+    double overheadPercent,
+    List<ContendedLock> locks,
+    List<LockSiteContention> sites,
+    List<ThreadContention> threads
+) {
+}
@@ -0,0 +1,76 @@
+package org.infy.profiler.contention;
+
+import net.bytebuddy.asm.AsmVisitorWrapper;
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.implementation.Implementation;
+import net.bytebuddy.jar.asm.MethodVisitor;
+import net.bytebuddy.jar.asm.Opcodes;
+import net.bytebuddy.jar.asm.Type;
+import net.bytebuddy.pool.TypePool;
+import net.bytebuddy.utility.OpenedClassReader;
+
+import java.util.Set;
+
+/**
+ * Rewrites lock acquisition in woven methods to go through {@link LockProbes}. Every
+ * {@code monitorenter}, which is how {@code synchronized} blocks compile, is bracketed by two
+ * probe calls that pass the start time on the operand stack, and calls to {@code lock()} or
+ * {@code lockInterruptibly()} on a {@code Lock} become static probe calls taking the lock.
+ * {@code synchronized} methods are entered by the JVM before any of their code runs and are
+ * only seen by the sampler.
+ */
+public class LockAcquisitionTimer implements AsmVisitorWrapper.ForDeclaredMethods.MethodVisitorWrapper {
+    private static final String PROBES = Type.getInternalName(LockProbes.class);
+    private static final String LOCK_DESCRIPTOR = "(Ljava/util/concurrent/locks/Lock;I)V";
+    private static final Set<String> LOCK_TYPES = Set.of(
+        "java/util/concurrent/locks/Lock",
+        "java/util/concurrent/locks/ReentrantLock",
+        "java/util/concurrent/locks/ReentrantReadWriteLock$ReadLock",
+        "java/util/concurrent/locks/ReentrantReadWriteLock$WriteLock");
+
+    @Override
+    public MethodVisitor wrap(TypeDescription instrumentedType, MethodDescription instrumentedMethod,
+                              MethodVisitor methodVisitor, Implementation.Context implementationContext,
+                              TypePool typePool, int writerFlags, int readerFlags) {
+        String method = instrumentedType.getName() + "." + instrumentedMethod.getName();
+        return new MethodVisitor(OpenedClassReader.ASM_API, methodVisitor) {
+            private int monitors;
+            private int locks;
+
+            @Override
+            public void visitInsn(int opcode) {
+                if (opcode != Opcodes.MONITORENTER) {
+                    super.visitInsn(opcode);
+                    return;
+                }
+                int site = LockProbes.SITES.register(method + " synchronized #" + ++monitors);
+                // [monitor] -> [monitor, start] -> [start, monitor] -> enter -> [start]
+                super.visitMethodInsn(Opcodes.INVOKESTATIC, PROBES, "beforeMonitorEnter", "()J", false);
+                super.visitInsn(Opcodes.DUP2_X1);
+                super.visitInsn(Opcodes.POP2);
+                super.visitInsn(Opcodes.MONITORENTER);
+                super.visitLdcInsn(site);
+                super.visitMethodInsn(Opcodes.INVOKESTATIC, PROBES, "afterMonitorEnter", "(JI)V", false);
+            }
+
+            @Override
+            public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+                if (opcode != Opcodes.INVOKESTATIC && "()V".equals(descriptor) && LOCK_TYPES.contains(owner)
+                        && ("lock".equals(name) || "lockInterruptibly".equals(name))) {
+                    int site = LockProbes.SITES.register(method + " " + name + "() #" + ++locks);
+                    super.visitLdcInsn(site);
+                    super.visitMethodInsn(Opcodes.INVOKESTATIC, PROBES, name, LOCK_DESCRIPTOR, false);
+                    return;
+                }
+                super.visitMethodInsn(opcode, owner, name, descriptor, isInterface);
+            }
+
+            // The start time sits under a copy of it while the monitor is moved on top
+            @Override
+            public void visitMaxs(int maxStack, int maxLocals) {
+                super.visitMaxs(maxStack + (monitors > 0 ? 4 : 0) + (locks > 0 ? 1 : 0), maxLocals);
+            }
+        };
+    }
+}
@@ -0,0 +1,77 @@
+package org.infy.profiler.contention;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Called from code woven by {@link LockAcquisitionTimer}, so everything reachable from the
+ * probes is public and static. An acquisition that takes longer than the threshold counts as
+ * contended; an uncontended {@code synchronized} entry takes tens of nanoseconds, about what
+ * two clock reads cost.
+ */
+public final class LockProbes {
+    static final LockSites SITES = new LockSites();
+    private static volatile int monitorSamplingMask;
+    private static volatile long contentionThreshold = 1_000;
+
+    private LockProbes() {
+    }
+
+    static void configure(int monitorSamplingPeriod, long contentionThresholdNanos) {
+        if (monitorSamplingPeriod < 1 || Integer.bitCount(monitorSamplingPeriod) != 1) {
+            throw new IllegalArgumentException("Lock sampling period must be a power of two: " + monitorSamplingPeriod);
+        }
+        monitorSamplingMask = monitorSamplingPeriod - 1;
+        contentionThreshold = contentionThresholdNanos;
+    }
+
+    /** Woven before {@code monitorenter}: the start time, or 0 when this entry is not timed. */
+    public static long beforeMonitorEnter() {
+        int mask = monitorSamplingMask;
+        if (mask != 0 && (ThreadLocalRandom.current().nextInt() & mask) != 0) {
+            return 0;
+        }
+        return System.nanoTime();
+    }
+
+    /** Woven after {@code monitorenter}, outside the block's exception range, so it must not throw. */
+    public static void afterMonitorEnter(long start, int site) {
+        if (start != 0) {
+            record(site, System.nanoTime() - start, monitorSamplingMask + 1L);
+        }
+    }
+
+    /** Replaces {@code lock.lock()}: only acquisitions that cannot be had at once read the clock. */
+    public static void lock(Lock lock, int site) {
+        if (tryBarging(lock)) {
+            SITES.recordAcquisitions(site, 1);
+            return;
+        }
+        long start = System.nanoTime();
+        lock.lock();
+        record(site, System.nanoTime() - start, 1);
+    }
+
+    /**
+     * Replaces {@code lock.lockInterruptibly()}. It does not barge, since {@code tryLock()} would
+     * take a free lock for a thread that is already interrupted instead of throwing.
+     */
+    public static void lockInterruptibly(Lock lock, int site) throws InterruptedException {
+        long start = System.nanoTime();
+        lock.lockInterruptibly();
+        record(site, System.nanoTime() - start, 1);
+    }
+
+    // tryLock() takes a free lock even past queued threads, which a fair lock must not do
+    private static boolean tryBarging(Lock lock) {
+        return lock instanceof ReentrantLock reentrant && !reentrant.isFair() && reentrant.tryLock();
+    }
+
+    private static void record(int site, long waitNanos, long acquisitions) {
+        SITES.recordAcquisitions(site, acquisitions);
+        if (waitNanos >= contentionThreshold) {
+            SITES.recordContended(site, waitNanos);
+        }
+    }
+}
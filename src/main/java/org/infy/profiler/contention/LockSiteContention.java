@@ -0,0 +1,15 @@
+package org.infy.profiler.contention;
+
+/**
+ * Acquisitions timed at one woven {@code synchronized} block or {@code lock()} call. Monitor
+ * entries are timed on 1 in N passes, so {@code acquisitions} is scaled up by that period;
+ * {@code contended} and the wait figures cover the acquisitions timed over the threshold.
+ */
+public record LockSiteContention(
+    String site,
+    long acquisitions,
+    long contended,
+    long totalWaitNanos,
+    long maxWaitNanos
+) {
+}
@@ -0,0 +1,76 @@
+package org.infy.profiler.contention;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Woven lock acquisition sites, numbered when a class is transformed. A site keeps its number
+ * when the class is woven again, so the constants in older and newer code count together.
+ */
+final class LockSites {
+    private final Map<String, Integer> ids = new HashMap<>();
+    private volatile Site[] sites = new Site[64];
+    private int size;
+
+    synchronized int register(String description) {
+        Integer id = ids.get(description);
+        if (id != null) {
+            return id;
+        }
+        Site[] current = sites;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        current[size] = new Site(description);
+        sites = current;
+        ids.put(description, size);
+        return size++;
+    }
+
+    void recordAcquisitions(int site, long acquisitions) {
+        sites[site].acquisitions.add(acquisitions);
+    }
+
+    void recordContended(int site, long waitNanos) {
+        Site target = sites[site];
+        target.contended.increment();
+        target.waitNanos.add(waitNanos);
+        target.maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    /** Sites that were contended at all, the longest total wait first. */
+    List<LockSiteContention> top(int limit) {
+        Site[] current = sites;
+        List<LockSiteContention> result = new ArrayList<>();
+        for (Site site : current) {
+            if (site == null) {
+                break;
+            }
+            long contended = site.contended.sum();
+            if (contended > 0) {
+                result.add(new LockSiteContention(site.description, site.acquisitions.sum(), contended,
+                    site.waitNanos.sum(), site.maxWaitNanos.get()));
+            }
+        }
+        result.sort(Comparator.comparingLong(LockSiteContention::totalWaitNanos).reversed());
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    private static final class Site {
+        private final String description;
+        private final LongAdder acquisitions = new LongAdder();
+        private final LongAdder contended = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+
+        private Site(String description) {
+            this.description = description;
+        }
+    }
+}
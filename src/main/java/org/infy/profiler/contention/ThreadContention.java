@@ -0,0 +1,14 @@
+package org.infy.profiler.contention;
+
+/**
+ * A live thread's cumulative blocked and waited figures as the JVM counts them. Times are
+ * milliseconds and -1 when contention monitoring is not available.
+ */
+public record ThreadContention(
+    String threadName,
+    long blockedCount,
+    long blockedTimeMillis,
+    long waitedCount,
+    long waitedTimeMillis
+) {
+}
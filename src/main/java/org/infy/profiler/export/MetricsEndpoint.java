@@ -0,0 +1,154 @@
+package org.infy.profiler.export;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.infy.profiler.MetricsSnapshot;
+import org.infy.profiler.PerformanceProfiler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serves the profiler's metrics at {@code /metrics} in OpenMetrics text format using the JDK's
+ * built-in HTTP server. A scrape renders a fresh snapshot only when the previous rendering is
+ * older than the cache interval; concurrent scrapes wait for that one rendering and then share
+ * its bytes, gzipped once if the client accepts it. Two renderings alternate, and one is only
+ * rendered into again once no scrape is still sending it.
+ */
+public class MetricsEndpoint implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(MetricsEndpoint.class);
+    private static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    private final PerformanceProfiler profiler;
+    private final InetSocketAddress address;
+    private final long cacheNanos;
+    private final Object renderLock = new Object();
+    private Rendering current;
+    private Rendering spare;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public MetricsEndpoint(PerformanceProfiler profiler, String host, int port, long cacheMillis) {
+        this.profiler = profiler;
+        this.address = new InetSocketAddress(host, port);
+        this.cacheNanos = TimeUnit.MILLISECONDS.toNanos(cacheMillis);
+    }
+
+    public void start() throws IOException {
+        server = HttpServer.create(address, 0);
+        AtomicInteger threads = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "profiler-metrics-http-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/metrics", this::handle);
+        server.start();
+        logger.info("OpenMetrics endpoint listening on http://{}:{}/metrics",
+            address.getHostString(), getPort());
+    }
+
+    public int getPort() {
+        return server != null ? server.getAddress().getPort() : address.getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String method = exchange.getRequestMethod();
+            if (!"GET".equals(method) && !"HEAD".equals(method)) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            String encoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            boolean gzip = encoding != null && encoding.contains("gzip");
+            Rendering rendering;
+            try {
+                rendering = acquire(gzip);
+            } catch (RuntimeException e) {
+                logger.error("Error rendering metrics", e);
+                exchange.sendResponseHeaders(500, -1);
+                return;
+            }
+            try {
+                TextBuffer body = gzip ? rendering.gzipped : rendering.text;
+                exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+                if (gzip) {
+                    exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                }
+                if ("HEAD".equals(method)) {
+                    exchange.sendResponseHeaders(200, -1);
+                    return;
+                }
+                exchange.sendResponseHeaders(200, body.length());
+                OutputStream out = exchange.getResponseBody();
+                out.write(body.array(), 0, body.length());
+            } finally {
+                rendering.readers.decrementAndGet();
+            }
+        }
+    }
+
+    private Rendering acquire(boolean gzip) {
+        synchronized (renderLock) {
+            Rendering rendering = current;
+            if (rendering == null || System.nanoTime() - rendering.renderedAt >= cacheNanos) {
+                // Readers only register under this lock, so an idle spare stays idle while reused
+                Rendering next = spare != null && spare.readers.get() == 0 ? spare : new Rendering();
+                next.render(profiler);
+                spare = rendering;
+                current = next;
+                rendering = next;
+            }
+            if (gzip && !rendering.gzipReady) {
+                rendering.compress();
+            }
+            rendering.readers.incrementAndGet();
+            return rendering;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    private static final class Rendering {
+        final TextBuffer text = new TextBuffer(INITIAL_BUFFER_SIZE);
+        final TextBuffer gzipped = new TextBuffer(INITIAL_BUFFER_SIZE);
+        final AtomicInteger readers = new AtomicInteger();
+        long renderedAt;
+        boolean gzipReady;
+
+        void render(PerformanceProfiler profiler) {
+            text.reset();
+            try (MetricsSnapshot snapshot = profiler.snapshot()) {
+                OpenMetricsWriter.write(snapshot, text);
+            }
+            gzipReady = false;
+            renderedAt = System.nanoTime();
+        }
+
+        void compress() {
+            gzipped.reset();
+            try (GZIPOutputStream out = new GZIPOutputStream(gzipped, 8192)) {
+                out.write(text.array(), 0, text.length());
+            } catch (IOException e) {
+                throw new IllegalStateException("Compressing into memory failed", e);
+            }
+            gzipReady = true;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package org.infy.profiler.export;
+
+import org.infy.profiler.MetricsSnapshot;
+import org.infy.profiler.RegistryStats;
+import org.infy.profiler.calibration.OverheadCalibration;
+import org.infy.profiler.monitoring.CpuMetrics;
+import org.infy.profiler.monitoring.GcMetrics;
+import org.infy.profiler.monitoring.MemoryMetrics;
+import org.infy.profiler.monitoring.ThreadMetrics;
+
+/**
+ * Renders a {@link MetricsSnapshot} in the OpenMetrics text format. Method durations become one
+ * histogram per method using {@link MetricsSnapshot#DURATION_BUCKET_BOUNDS}; CPU time and
+ * allocated bytes become counters for methods that track them.
+ */
+final class OpenMetricsWriter {
+    private static final String DURATION = "profiler_method_duration_seconds";
+    private static final String CPU_TIME = "profiler_method_cpu_seconds";
+    private static final String ALLOCATED = "profiler_method_allocated_bytes";
+
+    private OpenMetricsWriter() {
+    }
+
+    static void write(MetricsSnapshot snapshot, TextBuffer out) {
+        writeDurations(snapshot, out);
+        writeCpuTime(snapshot, out);
+        writeAllocations(snapshot, out);
+        writeSystemMetrics(snapshot, out);
+        out.append("# EOF\n");
+    }
+
+    private static void writeDurations(MetricsSnapshot snapshot, TextBuffer out) {
+        header(out, DURATION, "histogram", "seconds", "Wall time of profiled method calls.");
+        long[] bounds = MetricsSnapshot.DURATION_BUCKET_BOUNDS;
+        for (int i = 0; i < snapshot.size(); i++) {
+            long calls = snapshot.getHistogramCount(i);
+            if (calls == 0) {
+                continue;
+            }
+            String method = snapshot.getMethodName(i);
+            for (int b = 0; b < bounds.length; b++) {
+                sample(out, DURATION, "_bucket", method);
+                out.append(",le=\"").appendSeconds(bounds[b]).append("\"} ")
+                    .append(snapshot.getDurationBucketCount(i, b)).append('\n');
+            }
+            sample(out, DURATION, "_bucket", method);
+            out.append(",le=\"+Inf\"} ").append(calls).append('\n');
+            sample(out, DURATION, "_count", method);
+            out.append("} ").append(calls).append('\n');
+            sample(out, DURATION, "_sum", method);
+            out.append("} ").appendSeconds(snapshot.getTotalExecutionTime(i)).append('\n');
+        }
+    }
+
+    private static void writeCpuTime(MetricsSnapshot snapshot, TextBuffer out) {
+        header(out, CPU_TIME, "counter", "seconds", "Thread CPU time of profiled method calls.");
+        for (int i = 0; i < snapshot.size(); i++) {
+            if (snapshot.isCpuTimeTracked(i)) {
+                sample(out, CPU_TIME, "_total", snapshot.getMethodName(i));
+                out.append("} ").appendSeconds(snapshot.getTotalCpuTime(i)).append('\n');
+            }
+        }
+    }
+
+    private static void writeAllocations(MetricsSnapshot snapshot, TextBuffer out) {
+        header(out, ALLOCATED, "counter", "bytes", "Bytes allocated by profiled method calls, callees included.");
+        for (int i = 0; i < snapshot.size(); i++) {
+            if (snapshot.getTotalAllocatedBytes(i) > 0) {
+                sample(out, ALLOCATED, "_total", snapshot.getMethodName(i));
+                out.append("} ").append(snapshot.getTotalAllocatedBytes(i)).append('\n');
+            }
+        }
+    }
+
+    private static void writeSystemMetrics(MetricsSnapshot snapshot, TextBuffer out) {
+        MemoryMetrics memory = snapshot.getMemoryMetrics();
+        if (memory != null) {
+            gauge(out, "profiler_memory_heap_used_bytes", "bytes", memory.heapUsed());
+            gauge(out, "profiler_memory_heap_max_bytes", "bytes", memory.heapMax());
+            gauge(out, "profiler_memory_nonheap_used_bytes", "bytes", memory.nonHeapUsed());
+            gauge(out, "profiler_memory_nonheap_max_bytes", "bytes", memory.nonHeapMax());
+        }
+        CpuMetrics cpu = snapshot.getCpuMetrics();
+        if (cpu != null) {
+            header(out, "profiler_cpu_process_load_ratio", "gauge", "ratio", null);
+            out.append("profiler_cpu_process_load_ratio ").append(cpu.processCpuLoad()).append('\n');
+            header(out, "profiler_cpu_system_load_average", "gauge", null, null);
+            out.append("profiler_cpu_system_load_average ").append(cpu.systemLoadAverage()).append('\n');
+            gauge(out, "profiler_cpu_available_processors", null, cpu.availableProcessors());
+        }
+        ThreadMetrics threads = snapshot.getThreadMetrics();
+        if (threads != null) {
+            gauge(out, "profiler_threads_current", null, threads.currentThreadCount());
+            gauge(out, "profiler_threads_peak", null, threads.peakThreadCount());
+            gauge(out, "profiler_threads_daemon", null, threads.daemonThreadCount());
+            counter(out, "profiler_threads_started", null, threads.totalStartedThreadCount());
+        }
+        GcMetrics gc = snapshot.getGcMetrics();
+        if (gc != null) {
+            counter(out, "profiler_gc_collections", null, gc.collectionCount());
+            header(out, "profiler_gc_pause_seconds", "counter", "seconds", null);
+            out.append("profiler_gc_pause_seconds_total ").appendSeconds(gc.totalPauseTime()).append('\n');
+            counter(out, "profiler_gc_allocated_bytes", "bytes", gc.allocatedBytes());
+            counter(out, "profiler_gc_promoted_bytes", "bytes", gc.promotedBytes());
+        }
+        OverheadCalibration calibration = snapshot.getOverheadCalibration();
+        if (calibration != null) {
+            header(out, "profiler_timing_overhead_seconds", "gauge", "seconds",
+                "Calibrated time the timing advice adds to each recorded call.");
+            out.append("profiler_timing_overhead_seconds ")
+                .appendSeconds(Math.round(calibration.meanNanos())).append('\n');
+            header(out, "profiler_timing_overhead_stddev_seconds", "gauge", "seconds", null);
+            out.append("profiler_timing_overhead_stddev_seconds ")
+                .appendSeconds(Math.round(calibration.stdDevNanos())).append('\n');
+        }
+        RegistryStats registry = snapshot.getRegistryStats();
+        if (registry != null) {
+            gauge(out, "profiler_registry_tracked_methods", null, registry.trackedMethods());
+            gauge(out, "profiler_registry_folded_methods", null, registry.foldedSignatures());
+            counter(out, "profiler_registry_evictions", null, registry.evictions());
+            counter(out, "profiler_registry_promotions", null, registry.promotions());
+            gauge(out, "profiler_registry_tail_max_error", null, registry.tailMaxError());
+            gauge(out, "profiler_registry_memory_bytes", "bytes", registry.estimatedBytes());
+        }
+    }
+
+    private static void header(TextBuffer out, String name, String type, String unit, String help) {
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        if (unit != null) {
+            out.append("# UNIT ").append(name).append(' ').append(unit).append('\n');
+        }
+        if (help != null) {
+            out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        }
+    }
+
+    // Leaves the label set open so callers can add labels or close it
+    private static void sample(TextBuffer out, String name, String suffix, String method) {
+        out.append(name).append(suffix).append("{method=\"").appendLabelValue(method).append('"');
+    }
+
+    private static void gauge(TextBuffer out, String name, String unit, long value) {
+        header(out, name, "gauge", unit, null);
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void counter(TextBuffer out, String name, String unit, long value) {
+        header(out, name, "counter", unit, null);
+        out.append(name).append("_total ").append(value).append('\n');
+    }
+}
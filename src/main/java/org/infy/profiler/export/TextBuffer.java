@@ -0,0 +1,168 @@
+package org.infy.profiler.export;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer that formats text without intermediate strings. Kept between renders, so
+ * once it has grown to the size of a scrape, rendering allocates nothing.
+ */
+final class TextBuffer extends OutputStream {
+    private byte[] bytes;
+    private int length;
+
+    TextBuffer(int initialCapacity) {
+        this.bytes = new byte[initialCapacity];
+    }
+
+    void reset() {
+        length = 0;
+    }
+
+    byte[] array() {
+        return bytes;
+    }
+
+    int length() {
+        return length;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+        }
+    }
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(1);
+        bytes[length++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] source, int offset, int count) {
+        ensureCapacity(count);
+        System.arraycopy(source, offset, bytes, length, count);
+        length += count;
+    }
+
+    TextBuffer append(char c) {
+        write(c);
+        return this;
+    }
+
+    /** Appends UTF-8 encoded text. */
+    TextBuffer append(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            appendCodePoint(text.charAt(i), text, i);
+            if (Character.isHighSurrogate(text.charAt(i)) && i + 1 < text.length()) {
+                i++;
+            }
+        }
+        return this;
+    }
+
+    /** Appends a label value, escaping backslashes, quotes and newlines. */
+    TextBuffer appendLabelValue(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\' || c == '"') {
+                write('\\');
+                write(c);
+            } else if (c == '\n') {
+                write('\\');
+                write('n');
+            } else {
+                appendCodePoint(c, text, i);
+                if (Character.isHighSurrogate(c) && i + 1 < text.length()) {
+                    i++;
+                }
+            }
+        }
+        return this;
+    }
+
+    private void appendCodePoint(char c, String text, int index) {
+        if (c < 0x80) {
+            write(c);
+            return;
+        }
+        int codePoint = Character.codePointAt(text, index);
+        ensureCapacity(4);
+        if (codePoint < 0x800) {
+            bytes[length++] = (byte) (0xC0 | (codePoint >> 6));
+        } else if (codePoint < 0x10000) {
+            bytes[length++] = (byte) (0xE0 | (codePoint >> 12));
+            bytes[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+        } else {
+            bytes[length++] = (byte) (0xF0 | (codePoint >> 18));
+            bytes[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+            bytes[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+        }
+        bytes[length++] = (byte) (0x80 | (codePoint & 0x3F));
+    }
+
+    TextBuffer append(long value) {
+        if (value == Long.MIN_VALUE) {
+            return append("-9223372036854775808");
+        }
+        ensureCapacity(20);
+        if (value < 0) {
+            bytes[length++] = '-';
+            value = -value;
+        }
+        int start = length;
+        do {
+            bytes[length++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        for (int i = start, j = length - 1; i < j; i++, j--) {
+            byte swap = bytes[i];
+            bytes[i] = bytes[j];
+            bytes[j] = swap;
+        }
+        return this;
+    }
+
+    /** Appends a nanosecond count as decimal seconds, without trailing zeros. */
+    TextBuffer appendSeconds(long nanos) {
+        if (nanos < 0 && nanos > -1_000_000_000L) {
+            // The whole seconds are 0, which carries no sign
+            write('-');
+        }
+        append(nanos / 1_000_000_000L);
+        long fraction = Math.abs(nanos % 1_000_000_000L);
+        if (fraction == 0) {
+            return this;
+        }
+        int digits = 9;
+        while (fraction % 10 == 0) {
+            fraction /= 10;
+            digits--;
+        }
+        write('.');
+        for (long scale = pow10(digits - 1); scale > fraction; scale /= 10) {
+            write('0');
+        }
+        return append(fraction);
+    }
+
+    private static long pow10(int exponent) {
+        long value = 1;
+        for (int i = 0; i < exponent; i++) {
+            value *= 10;
+        }
+        return value;
+    }
+
+    // Only used for a handful of gauges per scrape, so Double.toString is fine here
+    TextBuffer append(double value) {
+        if (Double.isNaN(value)) {
+            return append("NaN");
+        }
+        if (Double.isInfinite(value)) {
+            return append(value > 0 ? "+Inf" : "-Inf");
+        }
+        return append(Double.toString(value));
+    }
+}
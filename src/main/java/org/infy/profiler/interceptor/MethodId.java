@@ -0,0 +1,16 @@
+package org.infy.profiler.interceptor;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Binds an advice parameter to the {@link org.infy.profiler.MethodRegistry} id of the
+ * instrumented method. The id is resolved once at transformation time and woven in as
+ * an int constant.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.PARAMETER)
+public @interface MethodId {
+}
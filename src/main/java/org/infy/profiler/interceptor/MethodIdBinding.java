@@ -0,0 +1,35 @@
+package org.infy.profiler.interceptor;
+
+import net.bytebuddy.asm.Advice;
+import net.bytebuddy.description.annotation.AnnotationDescription;
+import net.bytebuddy.description.method.ParameterDescription;
+import org.infy.profiler.MethodRegistry;
+
+/**
+ * Resolves {@link MethodId} parameters by registering the instrumented method with the
+ * {@link MethodRegistry} while the class is being transformed.
+ */
+public class MethodIdBinding implements Advice.OffsetMapping.Factory<MethodId> {
+    private final MethodRegistry registry;
+
+    public MethodIdBinding(MethodRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Class<MethodId> getAnnotationType() {
+        return MethodId.class;
+    }
+
+    @Override
+    public Advice.OffsetMapping make(ParameterDescription.InDefinedShape target,
+                                     AnnotationDescription.Loadable<MethodId> annotation,
+                                     AdviceType adviceType) {
+        if (target.getType().represents(int.class)) {
+            return (instrumentedType, instrumentedMethod, assigner, argumentHandler, sort) ->
+                Advice.OffsetMapping.Target.ForStackManipulation.of(
+                    registry.register(instrumentedType.getName() + "." + instrumentedMethod.getName()));
+        }
+        throw new IllegalStateException("@MethodId must annotate an int parameter: " + target);
+    }
+}
@@ -2,27 +2,196 @@ package org.infy.profiler.interceptor;
 
 import net.bytebuddy.asm.Advice;
 import org.infy.profiler.PerformanceProfiler;
+import org.infy.profiler.async.AsyncContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class MethodInterceptor {
     private static final Logger logger = LoggerFactory.getLogger(MethodInterceptor.class);
+    // Returned from enter when the call is skipped by sampling
+    public static final long NOT_SAMPLED = Long.MIN_VALUE;
 
+    // The sampling period taken at entry is kept in a local until exit
     public static class TimingAdvice {
         @Advice.OnMethodEnter
-        static long enter(@Advice.Origin("#t.#m") String methodName) {
+        static long enter(@MethodId int methodId,
+                          @Advice.Local("period") int period) {
+            period = PerformanceProfiler.getInstance().enterMethod(methodId);
+            return period != 0 ? System.nanoTime() : MethodInterceptor.NOT_SAMPLED;
+        }
+
+        // Also runs when the method throws, so per-thread call stacks stay balanced
+        @Advice.OnMethodExit(onThrowable = Throwable.class)
+        static void exit(@MethodId int methodId,
+                        @Advice.Enter long startTime,
+                        @Advice.Local("period") int period) {
+            if (startTime != MethodInterceptor.NOT_SAMPLED) {
+                try {
+                    PerformanceProfiler.getInstance().exitMethod(methodId, startTime, period);
+                } catch (Exception e) {
+                    MethodInterceptor.recordingFailed(methodId, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Woven instead of {@link TimingAdvice} when slow calls keep their arguments. The arguments
+     * array is only built where it is read, so calls under their threshold do not allocate it.
+     */
+    public static class ArgumentCapturingTimingAdvice {
+        @Advice.OnMethodEnter
+        static long enter(@MethodId int methodId,
+                          @Advice.Local("period") int period) {
+            period = PerformanceProfiler.getInstance().enterMethod(methodId);
+            return period != 0 ? System.nanoTime() : MethodInterceptor.NOT_SAMPLED;
+        }
+
+        @Advice.OnMethodExit(onThrowable = Throwable.class)
+        static void exit(@MethodId int methodId,
+                        @Advice.Enter long startTime,
+                        @Advice.Local("period") int period,
+                        @Advice.AllArguments Object[] arguments) {
+            if (startTime != MethodInterceptor.NOT_SAMPLED) {
+                try {
+                    PerformanceProfiler profiler = PerformanceProfiler.getInstance();
+                    long executionTime = profiler.recordExit(methodId, startTime, period);
+                    if (profiler.isSlowCall(methodId, executionTime)) {
+                        profiler.captureSlowCall(methodId, executionTime, arguments);
+                    }
+                } catch (Exception e) {
+                    MethodInterceptor.recordingFailed(methodId, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Woven instead of {@link TimingAdvice} when CPU time tracking is on. Only calls the timing
+     * advice samples draw for the CPU clock, and both its reads sit outside the wall-time window,
+     * so CPU and wall time describe the same calls without the CPU clock inflating either.
+     */
+    public static class CpuTimingAdvice {
+        @Advice.OnMethodEnter
+        static long enter(@MethodId int methodId,
+                          @Advice.Local("period") int period,
+                          @Advice.Local("cpuWeight") long cpuWeight,
+                          @Advice.Local("cpuStart") long cpuStart) {
+            PerformanceProfiler profiler = PerformanceProfiler.getInstance();
+            period = profiler.enterMethod(methodId);
+            if (period == 0) {
+                return MethodInterceptor.NOT_SAMPLED;
+            }
+            cpuWeight = profiler.cpuTimeWeight(period);
+            cpuStart = cpuWeight != 0 ? ThreadCounters.cpuTime() : 0;
+            return System.nanoTime();
+        }
+
+        @Advice.OnMethodExit(onThrowable = Throwable.class)
+        static void exit(@MethodId int methodId,
+                        @Advice.Enter long startTime,
+                        @Advice.Local("period") int period,
+                        @Advice.Local("cpuWeight") long cpuWeight,
+                        @Advice.Local("cpuStart") long cpuStart) {
+            if (startTime != MethodInterceptor.NOT_SAMPLED) {
+                long executionTime = System.nanoTime() - startTime;
+                long cpuTime = cpuWeight != 0 ? ThreadCounters.cpuTime() - cpuStart : 0;
+                try {
+                    PerformanceProfiler.getInstance().exitMethod(methodId, executionTime, period, cpuTime, cpuWeight);
+                } catch (Exception e) {
+                    MethodInterceptor.recordingFailed(methodId, e);
+                }
+            }
+        }
+    }
+
+    /** {@link CpuTimingAdvice} for when slow calls keep their arguments. */
+    public static class ArgumentCapturingCpuTimingAdvice {
+        @Advice.OnMethodEnter
+        static long enter(@MethodId int methodId,
+                          @Advice.Local("period") int period,
+                          @Advice.Local("cpuWeight") long cpuWeight,
+                          @Advice.Local("cpuStart") long cpuStart) {
+            PerformanceProfiler profiler = PerformanceProfiler.getInstance();
+            period = profiler.enterMethod(methodId);
+            if (period == 0) {
+                return MethodInterceptor.NOT_SAMPLED;
+            }
+            cpuWeight = profiler.cpuTimeWeight(period);
+            cpuStart = cpuWeight != 0 ? ThreadCounters.cpuTime() : 0;
             return System.nanoTime();
         }
 
-        @Advice.OnMethodExit
-        static void exit(@Advice.Origin("#t.#m") String methodName,
-                        @Advice.Enter long startTime) {
-            long executionTime = System.nanoTime() - startTime;
+        @Advice.OnMethodExit(onThrowable = Throwable.class)
+        static void exit(@MethodId int methodId,
+                        @Advice.Enter long startTime,
+                        @Advice.Local("period") int period,
+                        @Advice.Local("cpuWeight") long cpuWeight,
+                        @Advice.Local("cpuStart") long cpuStart,
+                        @Advice.AllArguments Object[] arguments) {
+            if (startTime != MethodInterceptor.NOT_SAMPLED) {
+                long executionTime = System.nanoTime() - startTime;
+                long cpuTime = cpuWeight != 0 ? ThreadCounters.cpuTime() - cpuStart : 0;
+                try {
+                    PerformanceProfiler profiler = PerformanceProfiler.getInstance();
+                    profiler.recordExit(methodId, executionTime, period, cpuTime, cpuWeight);
+                    if (profiler.isSlowCall(methodId, executionTime)) {
+                        profiler.captureSlowCall(methodId, executionTime, arguments);
+                    }
+                } catch (Exception e) {
+                    MethodInterceptor.recordingFailed(methodId, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Woven next to {@link TimingAdvice} when allocation tracking is on. Bytes are counted
+     * inclusively, so a caller's figure contains what its callees allocated.
+     */
+    public static class AllocationAdvice {
+        @Advice.OnMethodEnter
+        static long enter() {
+            return ThreadCounters.allocatedBytes();
+        }
+
+        @Advice.OnMethodExit(onThrowable = Throwable.class)
+        static void exit(@MethodId int methodId,
+                        @Advice.Enter long allocatedBefore) {
             try {
-                PerformanceProfiler.getInstance().recordMethodExecution(methodName, executionTime);
+                PerformanceProfiler.getInstance().recordAllocation(methodId,
+                    ThreadCounters.allocatedBytes() - allocatedBefore);
             } catch (Exception e) {
-                logger.error("Error recording method execution: " + methodName, e);
+                MethodInterceptor.recordingFailed(methodId, e);
             }
         }
     }
-} 
\ No newline at end of file
+
+    /**
+     * Woven next to {@link TimingAdvice} into methods returning a {@code CompletionStage} when
+     * async profiling is on. Makes the method's context current while it runs, so tasks it hands
+     * to a propagating executor are attributed to it, and times the returned stage to completion.
+     */
+    public static class AsyncAdvice {
+        @Advice.OnMethodEnter
+        static AsyncContext enter(@MethodId int methodId) {
+            return PerformanceProfiler.getInstance().enterAsync(methodId);
+        }
+
+        @Advice.OnMethodExit(onThrowable = Throwable.class)
+        static void exit(@MethodId int methodId,
+                        @Advice.Enter AsyncContext context,
+                        @Advice.Return Object returned) {
+            try {
+                PerformanceProfiler.getInstance().exitAsync(context, returned);
+            } catch (Exception e) {
+                MethodInterceptor.recordingFailed(methodId, e);
+            }
+        }
+    }
+
+    // Advice code is inlined into the instrumented class, so it may only reach public members
+    public static void recordingFailed(int methodId, Exception e) {
+        logger.error("Error recording method execution: " + methodId, e);
+    }
+}
@@ -0,0 +1,45 @@
+package org.infy.profiler.interceptor;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Per-thread resource counters read by the advice. They live here rather than behind the
+ * profiler so woven code reaches them with a single static call.
+ */
+public final class ThreadCounters {
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+    private static final com.sun.management.ThreadMXBean THREADS =
+        THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean threads ? threads : null;
+
+    private ThreadCounters() {
+    }
+
+    /** Turns on allocation counting and returns whether this JVM supports it. */
+    public static boolean enableAllocatedBytes() {
+        if (THREADS == null || !THREADS.isThreadAllocatedMemorySupported()) {
+            return false;
+        }
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+        return true;
+    }
+
+    // Only valid once enableAllocatedBytes() has returned true
+    public static long allocatedBytes() {
+        return THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    /** Turns on thread CPU time measurement and returns whether this JVM supports it. */
+    public static boolean enableCpuTime() {
+        if (!THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported()) {
+            return false;
+        }
+        THREAD_MX_BEAN.setThreadCpuTimeEnabled(true);
+        return true;
+    }
+
+    // CPU time of the current thread in ns; only valid once enableCpuTime() has returned true
+    public static long cpuTime() {
+        return THREAD_MX_BEAN.getCurrentThreadCpuTime();
+    }
+}
@@ -0,0 +1,10 @@
+package org.infy.profiler.jfr;
+
+public enum JfrMode {
+    /** No JFR involvement, system metrics are polled from the MXBeans. */
+    OFF,
+    /** Slow calls are also emitted as JFR events and system metrics come from a JFR stream. */
+    EVENTS,
+    /** Method timings go to JFR events only, nothing is aggregated in process. */
+    JFR_ONLY
+}
@@ -0,0 +1,193 @@
+package org.infy.profiler.jfr;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+import org.infy.profiler.monitoring.CpuMetrics;
+import org.infy.profiler.monitoring.GcMetrics;
+import org.infy.profiler.monitoring.MemoryMetrics;
+import org.infy.profiler.monitoring.SystemMetricsCollector;
+import org.infy.profiler.monitoring.ThreadMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Replaces MXBean polling with JFR: a {@link RecordingStream} turns the JVM's own CPU, heap,
+ * GC, allocation and thread events into the profiler's metric records, and an optional disk
+ * recording keeps everything, including {@link MethodTimingEvent}s, for offline analysis.
+ * The recording writes chunks to the JFR repository as it goes, so after a crash they can
+ * still be joined with {@code jfr assemble}.
+ *
+ * <p>Event handlers run on the stream's own thread; results are published through volatile
+ * fields. In this mode non-heap memory covers metaspace only and the system load average is
+ * reported as -1, as JFR has no event for it. Heap use is the figure after the last collection,
+ * with the figure before it alongside, as JFR has no sample between collections.
+ */
+public class JfrSession {
+    private static final Logger logger = LoggerFactory.getLogger(JfrSession.class);
+
+    private final Duration period;
+    private final Path recordingFile;
+    private RecordingStream stream;
+    private Recording recording;
+    private volatile MemoryMetrics latestMemoryMetrics;
+    private volatile CpuMetrics latestCpuMetrics;
+    private volatile ThreadMetrics latestThreadMetrics;
+    private volatile GcMetrics latestGcMetrics;
+    // Stream thread only
+    private long metaspaceUsed;
+    private long metaspaceReserved;
+    private long heapUsedBeforeGc = -1;
+    private long collectionCount;
+    private long totalPauseTime;
+    private long maxPauseTime;
+    private String lastCause = "";
+    private long allocatedBytes;
+    private long lastAllocatedBytes;
+    private Instant lastRateTime;
+
+    public JfrSession(Duration period, Path recordingFile) {
+        this.period = period;
+        this.recordingFile = recordingFile;
+    }
+
+    public synchronized void start() throws IOException {
+        if (stream != null) {
+            return;
+        }
+        if (recordingFile != null) {
+            startRecording();
+        }
+        // Heap figures otherwise only arrive with the first collection
+        latestMemoryMetrics = new SystemMetricsCollector().collectMemoryMetrics();
+        stream = new RecordingStream();
+        stream.enable("jdk.CPULoad").withPeriod(period);
+        stream.enable("jdk.JavaThreadStatistics").withPeriod(period);
+        stream.enable("jdk.GCHeapSummary");
+        stream.enable("jdk.MetaspaceSummary");
+        stream.enable("jdk.GarbageCollection");
+        stream.enable("jdk.ObjectAllocationSample").with("throttle", "150/s");
+        stream.onEvent("jdk.CPULoad", this::onCpuLoad);
+        stream.onEvent("jdk.JavaThreadStatistics", this::onThreadStatistics);
+        stream.onEvent("jdk.GCHeapSummary", this::onHeapSummary);
+        stream.onEvent("jdk.MetaspaceSummary", this::onMetaspaceSummary);
+        stream.onEvent("jdk.GarbageCollection", this::onGarbageCollection);
+        stream.onEvent("jdk.ObjectAllocationSample", event -> allocatedBytes += event.getLong("weight"));
+        stream.startAsync();
+        logger.info("JFR metrics stream started (period {} ms)", period.toMillis());
+    }
+
+    private void startRecording() throws IOException {
+        try {
+            recording = new Recording(Configuration.getConfiguration("default"));
+        } catch (ParseException e) {
+            throw new IOException("Cannot load the default JFR configuration", e);
+        }
+        recording.setName("Performance Profiler");
+        recording.enable(MethodTimingEvent.class);
+        recording.setToDisk(true);
+        Path parent = recordingFile.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        recording.setDestination(recordingFile);
+        recording.setDumpOnExit(true);
+        recording.start();
+        logger.info("JFR recording started, written to {} on shutdown", recordingFile);
+    }
+
+    public synchronized void stop() {
+        if (stream != null) {
+            stream.close();
+            stream = null;
+        }
+        if (recording != null) {
+            // Stopping writes the recording to its destination
+            recording.stop();
+            recording.close();
+            recording = null;
+        }
+    }
+
+    private void onCpuLoad(RecordedEvent event) {
+        latestCpuMetrics = new CpuMetrics(-1,
+            event.getFloat("jvmUser") + event.getFloat("jvmSystem"),
+            Runtime.getRuntime().availableProcessors());
+        // Allocation samples arrive continuously, the CPU tick gives them a steady clock
+        Instant now = event.getEndTime();
+        double rate = 0.0;
+        if (lastRateTime != null) {
+            long nanos = Duration.between(lastRateTime, now).toNanos();
+            rate = nanos > 0 ? (allocatedBytes - lastAllocatedBytes) * 1e9 / nanos : 0.0;
+        }
+        lastRateTime = now;
+        lastAllocatedBytes = allocatedBytes;
+        publishGcMetrics(rate);
+    }
+
+    private void onThreadStatistics(RecordedEvent event) {
+        latestThreadMetrics = new ThreadMetrics(
+            (int) event.getLong("activeCount"),
+            (int) event.getLong("peakCount"),
+            (int) event.getLong("daemonCount"),
+            event.getLong("accumulatedCount"));
+    }
+
+    // Each collection sends a summary before and one after; the first is the heap's high-water mark
+    private void onHeapSummary(RecordedEvent event) {
+        if ("Before GC".equals(event.getString("when"))) {
+            heapUsedBeforeGc = event.getLong("heapUsed");
+            return;
+        }
+        latestMemoryMetrics = new MemoryMetrics(
+            event.getLong("heapUsed"),
+            event.getLong("heapSpace.reservedSize"),
+            metaspaceUsed,
+            metaspaceReserved,
+            heapUsedBeforeGc);
+    }
+
+    private void onMetaspaceSummary(RecordedEvent event) {
+        metaspaceUsed = event.getLong("metaspace.used");
+        metaspaceReserved = event.getLong("metaspace.reserved");
+    }
+
+    private void onGarbageCollection(RecordedEvent event) {
+        collectionCount++;
+        totalPauseTime += event.getDuration("sumOfPauses").toNanos();
+        maxPauseTime = Math.max(maxPauseTime, event.getDuration("longestPause").toNanos());
+        lastCause = event.getString("cause");
+        GcMetrics previous = latestGcMetrics;
+        publishGcMetrics(previous != null ? previous.allocationRate() : 0.0);
+    }
+
+    private void publishGcMetrics(double allocationRate) {
+        // JFR has no collector-independent promotion figure, the notification collector does
+        latestGcMetrics = new GcMetrics(collectionCount, totalPauseTime, maxPauseTime, lastCause,
+            allocatedBytes, allocationRate, 0, 0.0);
+    }
+
+    public MemoryMetrics getLatestMemoryMetrics() {
+        return latestMemoryMetrics;
+    }
+
+    public CpuMetrics getLatestCpuMetrics() {
+        return latestCpuMetrics;
+    }
+
+    public ThreadMetrics getLatestThreadMetrics() {
+        return latestThreadMetrics;
+    }
+
+    public GcMetrics getLatestGcMetrics() {
+        return latestGcMetrics;
+    }
+}
@@ -0,0 +1,35 @@
+package org.infy.profiler.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A profiled call at or above the JFR threshold. The event is created when the call returns,
+ * so its start time marks the exit and the call's own duration is in {@code executionTime}.
+ */
+@Name("org.infy.profiler.MethodTiming")
+@Label("Method Timing")
+@Category("Performance Profiler")
+@Description("A profiled method call that took at least the configured threshold")
+@StackTrace(false)
+public class MethodTimingEvent extends jdk.jfr.Event {
+    @Label("Method")
+    public String method;
+
+    @Label("Execution Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long executionTime;
+
+    public static void emit(String method, long executionTime) {
+        MethodTimingEvent event = new MethodTimingEvent();
+        if (event.isEnabled()) {
+            event.method = method;
+            event.executionTime = executionTime;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package org.infy.profiler.monitoring;
+
+public record BufferPoolMetrics(
+    String name,
+    long count,
+    long memoryUsed,
+    long totalCapacity
+) {}
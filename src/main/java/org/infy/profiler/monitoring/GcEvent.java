@@ -0,0 +1,28 @@
+package org.infy.profiler.monitoring;
+
+import java.util.List;
+
+/**
+ * One collection as reported by a {@code GarbageCollectorMXBean} notification. Times are epoch
+ * milliseconds; the duration is in nanoseconds but only has the millisecond precision the JVM
+ * reports. Rates are bytes per second since the previous collection. Concurrent cycles are
+ * recorded too, with {@code pause} set to false.
+ */
+public record GcEvent(
+    long sequence,
+    String collector,
+    String action,
+    String cause,
+    boolean pause,
+    long startTime,
+    long duration,
+    long heapUsedBefore,
+    long heapUsedAfter,
+    long allocatedBytes,
+    long promotedBytes,
+    double allocationRate,
+    double promotionRate,
+    List<PoolUsage> pools
+) {
+    public record PoolUsage(String pool, long usedBefore, long usedAfter, long committedAfter) {}
+}
@@ -0,0 +1,177 @@
+package org.infy.profiler.monitoring;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.GcInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Records every collection through {@code GarbageCollectorMXBean} notifications instead of
+ * sampling heap totals, so nothing that happens between samples is missed. Allocation is
+ * derived from heap growth between collections (heap used before this one minus heap used
+ * after the previous one) and promotion from old generation growth across young collections.
+ * Events are kept in a bounded history, oldest dropped first.
+ *
+ * <p>Notifications arrive on a JMX thread; readers get copies.
+ */
+public class GcEventCollector implements NotificationListener {
+    private static final Logger logger = LoggerFactory.getLogger(GcEventCollector.class);
+
+    private final int historySize;
+    private final long jvmStartTime;
+    private final Set<String> heapPools = new HashSet<>();
+    private final List<NotificationEmitter> emitters = new ArrayList<>();
+    private final Deque<GcEvent> history = new ArrayDeque<>();
+    private long sequence;
+    private long collectionCount;
+    private long totalPauseTime;
+    private long maxPauseTime;
+    private String lastCause = "";
+    private long allocatedBytes;
+    private long promotedBytes;
+    private double allocationRate;
+    private double promotionRate;
+    private long lastHeapUsedAfter = -1;
+    private long lastEndTime = -1;
+
+    public GcEventCollector(int historySize) {
+        this.historySize = historySize;
+        this.jvmStartTime = ManagementFactory.getRuntimeMXBean().getStartTime();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                heapPools.add(pool.getName());
+            }
+        }
+    }
+
+    public synchronized void start() {
+        if (!emitters.isEmpty()) {
+            return;
+        }
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (bean instanceof NotificationEmitter emitter) {
+                emitter.addNotificationListener(this, null, null);
+                emitters.add(emitter);
+            }
+        }
+        logger.info("Listening for collections from {} garbage collectors", emitters.size());
+    }
+
+    public synchronized void stop() {
+        for (NotificationEmitter emitter : emitters) {
+            try {
+                emitter.removeNotificationListener(this);
+            } catch (ListenerNotFoundException e) {
+                // Already gone
+            }
+        }
+        emitters.clear();
+    }
+
+    @Override
+    public void handleNotification(Notification notification, Object handback) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+        try {
+            record(GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData()));
+        } catch (RuntimeException e) {
+            logger.error("Error recording garbage collection", e);
+        }
+    }
+
+    private synchronized void record(GarbageCollectionNotificationInfo notification) {
+        GcInfo info = notification.getGcInfo();
+        String collector = notification.getGcName();
+        String action = notification.getGcAction();
+        // ZGC and Shenandoah report whole concurrent cycles through their own beans
+        boolean pause = !collector.contains("Concurrent") && !collector.contains("Cycles");
+        Map<String, MemoryUsage> before = info.getMemoryUsageBeforeGc();
+        Map<String, MemoryUsage> after = info.getMemoryUsageAfterGc();
+
+        long heapBefore = 0;
+        long heapAfter = 0;
+        long oldGrowth = 0;
+        List<GcEvent.PoolUsage> pools = new ArrayList<>();
+        for (Map.Entry<String, MemoryUsage> entry : before.entrySet()) {
+            String pool = entry.getKey();
+            MemoryUsage poolAfter = after.get(pool);
+            if (poolAfter == null) {
+                continue;
+            }
+            long usedBefore = entry.getValue().getUsed();
+            pools.add(new GcEvent.PoolUsage(pool, usedBefore, poolAfter.getUsed(), poolAfter.getCommitted()));
+            if (isHeapPool(pool)) {
+                heapBefore += usedBefore;
+                heapAfter += poolAfter.getUsed();
+            }
+            if (isOldPool(pool)) {
+                oldGrowth += poolAfter.getUsed() - usedBefore;
+            }
+        }
+
+        long startTime = jvmStartTime + info.getStartTime();
+        long endTime = jvmStartTime + info.getEndTime();
+        long allocated = lastHeapUsedAfter < 0 ? 0 : Math.max(0, heapBefore - lastHeapUsedAfter);
+        long promoted = action.contains("minor") ? Math.max(0, oldGrowth) : 0;
+        long interval = lastEndTime < 0 ? 0 : endTime - lastEndTime;
+        // Back-to-back collections (young then concurrent start) keep the previous rates
+        if (interval > 0) {
+            allocationRate = allocated * 1000.0 / interval;
+            promotionRate = promoted * 1000.0 / interval;
+        }
+        lastHeapUsedAfter = heapAfter;
+        lastEndTime = endTime;
+
+        long duration = info.getDuration() * 1_000_000;
+        collectionCount++;
+        allocatedBytes += allocated;
+        promotedBytes += promoted;
+        lastCause = notification.getGcCause();
+        if (pause) {
+            totalPauseTime += duration;
+            maxPauseTime = Math.max(maxPauseTime, duration);
+        }
+        if (history.size() == historySize) {
+            history.removeFirst();
+        }
+        history.addLast(new GcEvent(++sequence, collector, action, lastCause, pause, startTime, duration,
+            heapBefore, heapAfter, allocated, promoted, allocationRate, promotionRate, List.copyOf(pools)));
+    }
+
+    private boolean isHeapPool(String pool) {
+        return heapPools.contains(pool);
+    }
+
+    // Pool names differ per collector: "G1 Old Gen", "PS Old Gen", "Tenured Gen"
+    private static boolean isOldPool(String pool) {
+        return pool.contains("Old") || pool.contains("Tenured");
+    }
+
+    public synchronized GcMetrics getGcMetrics() {
+        return new GcMetrics(collectionCount, totalPauseTime, maxPauseTime, lastCause,
+            allocatedBytes, allocationRate, promotedBytes, promotionRate);
+    }
+
+    public synchronized List<GcEvent> getHistory() {
+        return List.copyOf(history);
+    }
+}
@@ -0,0 +1,12 @@
+package org.infy.profiler.monitoring;
+
+public record GcMetrics(
+    long collectionCount,
+    long totalPauseTime,
+    long maxPauseTime,
+    String lastCause,
+    long allocatedBytes,
+    double allocationRate,
+    long promotedBytes,
+    double promotionRate
+) {}
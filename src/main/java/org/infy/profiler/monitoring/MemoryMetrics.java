@@ -1,11 +1,20 @@
 package org.infy.profiler.monitoring;
 
+/**
+ * Heap and non-heap figures. {@code heapUsedBeforeGc} is the heap in use when the last
+ * collection started, -1 where only the current figure is sampled.
+ */
 public record MemoryMetrics(
     long heapUsed,
     long heapMax,
     long nonHeapUsed,
-    long nonHeapMax
+    long nonHeapMax,
+    long heapUsedBeforeGc
 ) {
+    public MemoryMetrics(long heapUsed, long heapMax, long nonHeapUsed, long nonHeapMax) {
+        this(heapUsed, heapMax, nonHeapUsed, nonHeapMax, -1);
+    }
+
     public double getHeapUtilization() {
         return heapMax > 0 ? (double) heapUsed / heapMax : 0.0;
     }
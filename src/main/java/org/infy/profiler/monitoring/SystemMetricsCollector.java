@@ -1,13 +1,18 @@
 package org.infy.profiler.monitoring;
 
+import java.lang.management.BufferPoolMXBean;
 import java.lang.management.ManagementFactory;
 import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
 import java.lang.management.OperatingSystemMXBean;
 import java.lang.management.ThreadMXBean;
 import org.infy.profiler.monitoring.MemoryMetrics;
 import org.infy.profiler.monitoring.CpuMetrics;
 import org.infy.profiler.monitoring.ThreadMetrics;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class SystemMetricsCollector {
     private final MemoryMXBean memoryMXBean;
     private final OperatingSystemMXBean osMXBean;
@@ -20,11 +25,14 @@ public class SystemMetricsCollector {
     }
     
     public MemoryMetrics collectMemoryMetrics() {
+        // Each getter call builds a fresh MemoryUsage by walking every pool, so read each once
+        MemoryUsage heap = memoryMXBean.getHeapMemoryUsage();
+        MemoryUsage nonHeap = memoryMXBean.getNonHeapMemoryUsage();
         return new MemoryMetrics(
-            memoryMXBean.getHeapMemoryUsage().getUsed(),
-            memoryMXBean.getHeapMemoryUsage().getMax(),
-            memoryMXBean.getNonHeapMemoryUsage().getUsed(),
-            memoryMXBean.getNonHeapMemoryUsage().getMax()
+            heap.getUsed(),
+            heap.getMax(),
+            nonHeap.getUsed(),
+            nonHeap.getMax()
         );
     }
     
@@ -44,4 +52,14 @@ public class SystemMetricsCollector {
             threadMXBean.getTotalStartedThreadCount()
         );
     }
-} 
\ No newline at end of file
+    
+    // Direct and mapped buffers have no notifications, so they are read on demand
+    public List<BufferPoolMetrics> collectBufferPoolMetrics() {
+        List<BufferPoolMetrics> pools = new ArrayList<>();
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            pools.add(new BufferPoolMetrics(pool.getName(), pool.getCount(), pool.getMemoryUsed(),
+                pool.getTotalCapacity()));
+        }
+        return pools;
+    }
+}
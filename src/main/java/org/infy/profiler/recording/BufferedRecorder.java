@@ -0,0 +1,97 @@
+package org.infy.profiler.recording;
+
+import org.infy.profiler.MethodRegistry;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records method executions into per-thread {@link RecordingBuffer}s and folds them into the
+ * shared {@code MethodMetrics} in batches from a single drainer thread. Recording threads
+ * never touch the shared atomics unless their buffer overflows under
+ * {@link OverflowPolicy#RECORD_DIRECT}.
+ *
+ * <p>{@link #drain()} must only be called from one thread at a time.
+ */
+public class BufferedRecorder {
+    private final MethodRegistry registry;
+    private final int bufferCapacity;
+    private final OverflowPolicy overflowPolicy;
+    private final CopyOnWriteArrayList<RecordingBuffer> buffers;
+    private final ThreadLocal<RecordingBuffer> localBuffer;
+    private final AtomicLong drainedCount;
+    private final AtomicLong overflowCount;
+    // Drops from buffers whose threads have exited and been unregistered
+    private long retiredDroppedCount;
+
+    public BufferedRecorder(MethodRegistry registry, int bufferCapacity, OverflowPolicy overflowPolicy) {
+        // Checked here, as buffers are only created on each thread's first recorded call
+        if (bufferCapacity < 1 || Integer.bitCount(bufferCapacity) != 1) {
+            throw new IllegalArgumentException("Recording buffer size must be a power of two: " + bufferCapacity);
+        }
+        this.registry = registry;
+        this.bufferCapacity = bufferCapacity;
+        this.overflowPolicy = overflowPolicy;
+        this.buffers = new CopyOnWriteArrayList<>();
+        this.localBuffer = ThreadLocal.withInitial(this::newBuffer);
+        this.drainedCount = new AtomicLong();
+        this.overflowCount = new AtomicLong();
+    }
+
+    private RecordingBuffer newBuffer() {
+        RecordingBuffer buffer = new RecordingBuffer(Thread.currentThread(), bufferCapacity);
+        buffers.add(buffer);
+        return buffer;
+    }
+
+    public void record(int methodId, long executionTime, int period) {
+        RecordingBuffer buffer = localBuffer.get();
+        if (!buffer.offer(methodId, executionTime, period)) {
+            if (overflowPolicy == OverflowPolicy.RECORD_DIRECT) {
+                overflowCount.incrementAndGet();
+                registry.recordSample(methodId, executionTime, period);
+            } else {
+                buffer.recordDrop();
+            }
+        }
+    }
+
+    public synchronized int drain() {
+        int drained = 0;
+        for (RecordingBuffer buffer : buffers) {
+            // Check liveness first so nothing published before the thread exited is missed
+            boolean alive = buffer.isOwnerAlive();
+            drained += buffer.drainTo(registry);
+            if (!alive) {
+                retiredDroppedCount += buffer.getDroppedCount();
+                buffers.remove(buffer);
+            }
+        }
+        drainedCount.addAndGet(drained);
+        return drained;
+    }
+
+    public long getDrainedCount() {
+        return drainedCount.get();
+    }
+
+    public synchronized long getDroppedCount() {
+        long dropped = retiredDroppedCount;
+        for (RecordingBuffer buffer : buffers) {
+            dropped += buffer.getDroppedCount();
+        }
+        return dropped;
+    }
+
+    public long getOverflowCount() {
+        return overflowCount.get();
+    }
+
+    public int getActiveBufferCount() {
+        return buffers.size();
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+}
@@ -0,0 +1,8 @@
+package org.infy.profiler.recording;
+
+public enum OverflowPolicy {
+    /** Discard the sample and count it, so loss is visible in {@link BufferedRecorder#getDroppedCount()}. */
+    DROP,
+    /** Fall back to updating the shared aggregates directly; nothing is lost. */
+    RECORD_DIRECT
+}
@@ -0,0 +1,84 @@
+package org.infy.profiler.recording;
+
+import org.infy.profiler.MethodRegistry;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-producer, single-consumer ring of (method id, duration, sampling period) entries. The
+ * period is the one the call was sampled at, so a change by the controller before the drain
+ * does not rescale calls already taken. The owning thread
+ * is the only producer and the drainer the only consumer, so neither side needs a CAS:
+ * each publishes its position with an ordered write.
+ */
+public class RecordingBuffer {
+    private final Thread owner;
+    private final int[] methodIds;
+    private final long[] durations;
+    private final int[] periods;
+    private final int mask;
+    private final AtomicLong head;
+    private final AtomicLong tail;
+    private final AtomicLong dropped;
+
+    public RecordingBuffer(Thread owner, int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Buffer capacity must be a power of two: " + capacity);
+        }
+        this.owner = owner;
+        this.methodIds = new int[capacity];
+        this.durations = new long[capacity];
+        this.periods = new int[capacity];
+        this.mask = capacity - 1;
+        this.head = new AtomicLong();
+        this.tail = new AtomicLong();
+        this.dropped = new AtomicLong();
+    }
+
+    // Producer side, owner thread only
+    public boolean offer(int methodId, long duration, int period) {
+        long position = tail.get();
+        if (position - head.get() > mask) {
+            return false;
+        }
+        int index = (int) (position & mask);
+        methodIds[index] = methodId;
+        durations[index] = duration;
+        periods[index] = period;
+        tail.lazySet(position + 1);
+        return true;
+    }
+
+    // Producer side, owner thread only
+    void recordDrop() {
+        dropped.lazySet(dropped.get() + 1);
+    }
+
+    // Consumer side, drainer only
+    public int drainTo(MethodRegistry registry) {
+        long start = head.get();
+        long end = tail.get();
+        for (long position = start; position < end; position++) {
+            int index = (int) (position & mask);
+            registry.recordSample(methodIds[index], durations[index], periods[index]);
+        }
+        head.lazySet(end);
+        return (int) (end - start);
+    }
+
+    public boolean isOwnerAlive() {
+        return owner.isAlive();
+    }
+
+    public String getOwnerName() {
+        return owner.getName();
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+}
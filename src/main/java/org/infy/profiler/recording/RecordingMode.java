@@ -0,0 +1,8 @@
+package org.infy.profiler.recording;
+
+public enum RecordingMode {
+    /** Woven code updates the shared {@code MethodMetrics} aggregates directly. */
+    DIRECT,
+    /** Woven code appends to a per-thread ring buffer that a background drainer folds in. */
+    BUFFERED
+}
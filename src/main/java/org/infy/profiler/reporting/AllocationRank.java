@@ -0,0 +1,27 @@
+package org.infy.profiler.reporting;
+
+import org.infy.profiler.MethodMetrics;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+public record AllocationRank(
+    String methodName,
+    long totalBytes,
+    long averageBytesPerCall,
+    long p99BytesPerCall,
+    double bytesPerSecond
+) {
+    /** Methods with tracked allocations, highest allocation rate over {@code seconds} first. */
+    public static List<AllocationRank> rank(Map<String, MethodMetrics> metrics, double seconds, int limit) {
+        return metrics.values().stream()
+            .filter(m -> m.getTotalAllocatedBytes() > 0)
+            .sorted(Comparator.comparingLong(MethodMetrics::getTotalAllocatedBytes).reversed())
+            .limit(limit)
+            .map(m -> new AllocationRank(m.getMethodName(), m.getTotalAllocatedBytes(),
+                m.getAverageAllocatedBytes(), m.getP99AllocatedBytes(),
+                seconds > 0 ? m.getTotalAllocatedBytes() / seconds : 0.0))
+            .toList();
+    }
+}
@@ -0,0 +1,31 @@
+package org.infy.profiler.reporting;
+
+import org.infy.profiler.MethodMetrics;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** Order of the methods in a report. Every key except {@link #NAME} puts the largest first. */
+public enum MetricsSortKey {
+    NAME(Comparator.comparing(MethodMetrics::getMethodName)),
+    INVOCATIONS(Comparator.comparingLong(MethodMetrics::getInvocationCount).reversed()),
+    WALL_TIME(Comparator.comparingLong(MethodMetrics::getTotalExecutionTime).reversed()),
+    CPU_TIME(Comparator.comparingLong(MethodMetrics::getTotalCpuTime).reversed()),
+    WAIT_TIME(Comparator.comparingLong(MethodMetrics::getTotalWaitTime).reversed()),
+    ALLOCATION(Comparator.comparingLong(MethodMetrics::getTotalAllocatedBytes).reversed());
+
+    private final Comparator<MethodMetrics> comparator;
+
+    MetricsSortKey(Comparator<MethodMetrics> comparator) {
+        this.comparator = comparator;
+    }
+
+    public Map<String, MethodMetrics> sort(Map<String, MethodMetrics> metrics) {
+        Map<String, MethodMetrics> sorted = new LinkedHashMap<>();
+        metrics.values().stream()
+            .sorted(comparator)
+            .forEach(m -> sorted.put(m.getMethodName(), m));
+        return sorted;
+    }
+}
@@ -1,11 +1,21 @@
 package org.infy.profiler.reporting;
 
 import org.infy.profiler.MethodMetrics;
+import org.infy.profiler.RegistryStats;
+import org.infy.profiler.calibration.OverheadCalibration;
+import org.infy.profiler.calltree.CallTreeSnapshot;
+import org.infy.profiler.contention.ContentionSnapshot;
+import org.infy.profiler.monitoring.BufferPoolMetrics;
 import org.infy.profiler.monitoring.CpuMetrics;
+import org.infy.profiler.monitoring.GcEvent;
+import org.infy.profiler.monitoring.GcMetrics;
 import org.infy.profiler.monitoring.MemoryMetrics;
 import org.infy.profiler.monitoring.ThreadMetrics;
+import org.infy.profiler.slowcall.SlowCallSummary;
+import org.infy.profiler.window.MetricsWindow;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
 
 public class PerformanceReport {
@@ -14,16 +24,142 @@ public class PerformanceReport {
     private final MemoryMetrics memoryMetrics;
     private final CpuMetrics cpuMetrics;
     private final ThreadMetrics threadMetrics;
+    private final CallTreeSnapshot callTree;
+    private final MetricsWindow window;
+    private final List<AllocationRank> allocationRanking;
+    private final GcMetrics gcMetrics;
+    private final List<GcEvent> gcEvents;
+    private final List<BufferPoolMetrics> bufferPools;
+    private final OverheadCalibration overheadCalibration;
+    private final List<String> methodsWithinNoiseFloor;
+    private final RegistryStats registryStats;
+    private final SlowCallSummary slowCalls;
+    private final ContentionSnapshot contention;
     
     public PerformanceReport(Map<String, MethodMetrics> methodMetrics,
                            MemoryMetrics memoryMetrics,
                            CpuMetrics cpuMetrics,
                            ThreadMetrics threadMetrics) {
+        this(new Builder(methodMetrics)
+            .memoryMetrics(memoryMetrics)
+            .cpuMetrics(cpuMetrics)
+            .threadMetrics(threadMetrics));
+    }
+    
+    private PerformanceReport(Builder builder) {
         this.timestamp = LocalDateTime.now();
-        this.methodMetrics = methodMetrics;
-        this.memoryMetrics = memoryMetrics;
-        this.cpuMetrics = cpuMetrics;
-        this.threadMetrics = threadMetrics;
+        this.methodMetrics = builder.methodMetrics;
+        this.memoryMetrics = builder.memoryMetrics;
+        this.cpuMetrics = builder.cpuMetrics;
+        this.threadMetrics = builder.threadMetrics;
+        this.callTree = builder.callTree;
+        this.window = builder.window;
+        this.allocationRanking = builder.allocationRanking;
+        this.gcMetrics = builder.gcMetrics;
+        this.gcEvents = builder.gcEvents;
+        this.bufferPools = builder.bufferPools;
+        this.overheadCalibration = builder.overheadCalibration;
+        this.methodsWithinNoiseFloor = builder.methodsWithinNoiseFloor;
+        this.registryStats = builder.registryStats;
+        this.slowCalls = builder.slowCalls;
+        this.contention = builder.contention;
+    }
+    
+    /** Sections left unset are null, or empty for lists; the window defaults to all time. */
+    public static class Builder {
+        private final Map<String, MethodMetrics> methodMetrics;
+        private MemoryMetrics memoryMetrics;
+        private CpuMetrics cpuMetrics;
+        private ThreadMetrics threadMetrics;
+        private CallTreeSnapshot callTree;
+        private MetricsWindow window = MetricsWindow.ALL_TIME;
+        private List<AllocationRank> allocationRanking = List.of();
+        private GcMetrics gcMetrics;
+        private List<GcEvent> gcEvents = List.of();
+        private List<BufferPoolMetrics> bufferPools = List.of();
+        private OverheadCalibration overheadCalibration;
+        private List<String> methodsWithinNoiseFloor = List.of();
+        private RegistryStats registryStats;
+        private SlowCallSummary slowCalls;
+        private ContentionSnapshot contention;
+        
+        public Builder(Map<String, MethodMetrics> methodMetrics) {
+            this.methodMetrics = methodMetrics;
+        }
+        
+        public Builder memoryMetrics(MemoryMetrics memoryMetrics) {
+            this.memoryMetrics = memoryMetrics;
+            return this;
+        }
+        
+        public Builder cpuMetrics(CpuMetrics cpuMetrics) {
+            this.cpuMetrics = cpuMetrics;
+            return this;
+        }
+        
+        public Builder threadMetrics(ThreadMetrics threadMetrics) {
+            this.threadMetrics = threadMetrics;
+            return this;
+        }
+        
+        public Builder callTree(CallTreeSnapshot callTree) {
+            this.callTree = callTree;
+            return this;
+        }
+        
+        public Builder window(MetricsWindow window) {
+            this.window = window;
+            return this;
+        }
+        
+        public Builder allocationRanking(List<AllocationRank> allocationRanking) {
+            this.allocationRanking = allocationRanking;
+            return this;
+        }
+        
+        public Builder gcMetrics(GcMetrics gcMetrics) {
+            this.gcMetrics = gcMetrics;
+            return this;
+        }
+        
+        public Builder gcEvents(List<GcEvent> gcEvents) {
+            this.gcEvents = gcEvents;
+            return this;
+        }
+        
+        public Builder bufferPools(List<BufferPoolMetrics> bufferPools) {
+            this.bufferPools = bufferPools;
+            return this;
+        }
+        
+        public Builder overheadCalibration(OverheadCalibration overheadCalibration) {
+            this.overheadCalibration = overheadCalibration;
+            return this;
+        }
+        
+        public Builder methodsWithinNoiseFloor(List<String> methodsWithinNoiseFloor) {
+            this.methodsWithinNoiseFloor = methodsWithinNoiseFloor;
+            return this;
+        }
+        
+        public Builder registryStats(RegistryStats registryStats) {
+            this.registryStats = registryStats;
+            return this;
+        }
+        
+        public Builder slowCalls(SlowCallSummary slowCalls) {
+            this.slowCalls = slowCalls;
+            return this;
+        }
+        
+        public Builder contention(ContentionSnapshot contention) {
+            this.contention = contention;
+            return this;
+        }
+        
+        public PerformanceReport build() {
+            return new PerformanceReport(this);
+        }
     }
     
     // Getters
@@ -32,4 +168,15 @@ public class PerformanceReport {
     public MemoryMetrics getMemoryMetrics() { return memoryMetrics; }
     public CpuMetrics getCpuMetrics() { return cpuMetrics; }
     public ThreadMetrics getThreadMetrics() { return threadMetrics; }
+    public CallTreeSnapshot getCallTree() { return callTree; }
+    public MetricsWindow getWindow() { return window; }
+    public List<AllocationRank> getAllocationRanking() { return allocationRanking; }
+    public GcMetrics getGcMetrics() { return gcMetrics; }
+    public List<GcEvent> getGcEvents() { return gcEvents; }
+    public List<BufferPoolMetrics> getBufferPools() { return bufferPools; }
+    public OverheadCalibration getOverheadCalibration() { return overheadCalibration; }
+    public List<String> getMethodsWithinNoiseFloor() { return methodsWithinNoiseFloor; }
+    public RegistryStats getRegistryStats() { return registryStats; }
+    public SlowCallSummary getSlowCalls() { return slowCalls; }
+    public ContentionSnapshot getContention() { return contention; }
 } 
\ No newline at end of file
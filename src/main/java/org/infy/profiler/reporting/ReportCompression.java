@@ -0,0 +1,41 @@
+package org.infy.profiler.reporting;
+
+import com.github.luben.zstd.ZstdOutputStream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+public enum ReportCompression {
+    NONE(".json"),
+    GZIP(".json.gz"),
+    ZSTD(".json.zst");
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String extension;
+
+    ReportCompression(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    OutputStream wrap(OutputStream out) throws IOException {
+        switch (this) {
+            case GZIP:
+                return new GZIPOutputStream(out, BUFFER_SIZE);
+            case ZSTD:
+                try {
+                    return new ZstdOutputStream(out);
+                } catch (UnsatisfiedLinkError | NoClassDefFoundError | ExceptionInInitializerError e) {
+                    // zstd-jni unpacks native code on first use, which may be missing for this platform or fail to load
+                    throw new IOException("Zstandard is not available on this platform", e);
+                }
+            default:
+                return out;
+        }
+    }
+}
@@ -2,51 +2,321 @@ package org.infy.profiler.reporting;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.infy.profiler.MethodMetrics;
 import org.infy.profiler.PerformanceProfiler;
+import org.infy.profiler.ProfilerConfig;
+import org.infy.profiler.calibration.OverheadCalibration;
+import org.infy.profiler.contention.ContentionSnapshot;
+import org.infy.profiler.slowcall.SlowCallCollector;
+import org.infy.profiler.stacksampling.FlameGraphWriter;
+import org.infy.profiler.monitoring.CpuMetrics;
+import org.infy.profiler.monitoring.MemoryMetrics;
+import org.infy.profiler.stacksampling.StackSampler;
+import org.infy.profiler.store.TimeSeriesStore;
+import org.infy.profiler.store.TimeSeriesVisitor;
+import org.infy.profiler.visualization.DashboardExporter;
 import org.infy.profiler.visualization.PerformanceVisualizer;
+import org.infy.profiler.window.MetricsWindow;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
 
 public class ReportGenerator {
+    private static final Logger logger = LoggerFactory.getLogger(ReportGenerator.class);
+    private static final int ALLOCATION_RANKING_SIZE = 20;
     private final PerformanceProfiler profiler;
     private final ObjectMapper objectMapper;
-    private PerformanceVisualizer visualizer;
+    private final StreamingReportWriter streamingWriter;
+    private volatile PerformanceVisualizer visualizer;
+    private ScheduledExecutorService dashboardRefresher;
+    private final AtomicBoolean refreshQueued = new AtomicBoolean();
+    // Only used on the export thread
+    private DashboardExporter dashboardExporter;
+    private ScheduledExecutorService dashboardExportThread;
+    private ScheduledFuture<?> scheduledDashboardExport;
+    // Only used on the dashboard refresh thread
+    private long shownSlowCalls;
     
     public ReportGenerator(PerformanceProfiler profiler) {
         this.profiler = profiler;
         this.objectMapper = new ObjectMapper()
             .registerModule(new JavaTimeModule());
+        this.streamingWriter = new StreamingReportWriter(profiler, objectMapper);
     }
     
     public void generateReport(String outputPath) throws IOException {
-        PerformanceReport report = new PerformanceReport(
-            profiler.getAllMetrics(),
-            profiler.getLatestMemoryMetrics(),
-            profiler.getLatestCpuMetrics(),
-            profiler.getLatestThreadMetrics()
-        );
+        generateReport(outputPath, MetricsWindow.ALL_TIME);
+    }
+    
+    public void generateReport(String outputPath, MetricsWindow window) throws IOException {
+        generateReport(outputPath, window, MetricsSortKey.WALL_TIME);
+    }
+    
+    public void generateReport(String outputPath, MetricsWindow window, MetricsSortKey sortKey) throws IOException {
+        Map<String, MethodMetrics> metrics = sortKey.sort(profiler.getAllMetrics(window));
+        // Windowed metrics carry no allocation figures, so the ranking always spans the whole run
+        double seconds = profiler.getProfilingDuration().toNanos() / 1e9;
+        OverheadCalibration calibration = profiler.getOverheadCalibration();
+        PerformanceReport report = new PerformanceReport.Builder(metrics)
+            .memoryMetrics(profiler.getLatestMemoryMetrics())
+            .cpuMetrics(profiler.getLatestCpuMetrics())
+            .threadMetrics(profiler.getLatestThreadMetrics())
+            .callTree(profiler.getCallTreeSnapshot())
+            .window(window)
+            .allocationRanking(AllocationRank.rank(profiler.getAllMetrics(), seconds, ALLOCATION_RANKING_SIZE))
+            .gcMetrics(profiler.getLatestGcMetrics())
+            .gcEvents(profiler.getGcHistory())
+            .bufferPools(profiler.getBufferPoolMetrics())
+            .overheadCalibration(calibration)
+            .methodsWithinNoiseFloor(withinNoiseFloor(metrics, calibration))
+            .registryStats(profiler.getRegistryStats())
+            .slowCalls(profiler.getSlowCallSummary())
+            .contention(profiler.getContentionSnapshot())
+            .build();
         
         // Generate JSON report
-        String filename = String.format("performance_report_%s.json",
-            LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")));
-        File outputFile = new File(outputPath, filename);
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+        File outputFile = new File(outputPath, String.format("performance_report_%s.json", timestamp));
         objectMapper.writeValue(outputFile, report);
+        
+        if (profiler.getStackSampler() != null) {
+            generateFlameGraph(outputPath, timestamp);
+        }
+    }
+    
+    private static List<String> withinNoiseFloor(Map<String, MethodMetrics> metrics, OverheadCalibration calibration) {
+        if (calibration == null) {
+            return List.of();
+        }
+        List<String> methods = new ArrayList<>();
+        metrics.forEach((name, methodMetrics) -> {
+            if (methodMetrics.getInvocationCount() > 0
+                    && calibration.isWithinNoiseFloor(methodMetrics.getP50ExecutionTime())) {
+                methods.add(name);
+            }
+        });
+        return methods;
+    }
+    
+    /**
+     * Streams the cumulative metrics to {@code performance_report_<timestamp>.json} (plus the
+     * compression's extension) without building the report in memory first. With
+     * {@code deltaOnly} only methods called since the previous delta report are written, with
+     * their counts and times for that interval. Returns the file written.
+     */
+    public Path streamReport(String outputPath, ReportCompression compression, boolean deltaOnly) throws IOException {
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+        Path file = Path.of(outputPath, "performance_report_" + timestamp + compression.getExtension());
+        streamingWriter.write(file, compression, deltaOnly);
+        return file;
+    }
+    
+    /**
+     * Writes the stack samples gathered so far as {@code flamegraph_<timestamp>.collapsed},
+     * {@code .svg} and {@code .html}. Does nothing when stack sampling is not enabled.
+     */
+    public void generateFlameGraph(String outputPath) throws IOException {
+        generateFlameGraph(outputPath,
+            LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")));
+    }
+    
+    private void generateFlameGraph(String outputPath, String timestamp) throws IOException {
+        StackSampler sampler = profiler.getStackSampler();
+        if (sampler == null) {
+            return;
+        }
+        String title = String.format("Stack samples (%s), every %d ms, sampling overhead %.2f%%",
+            sampler.getStates(), sampler.getIntervalMillis(), sampler.getOverheadPercent());
+        // Render while the trie is locked, which only pauses the sampler thread, then write
+        String[] rendered = sampler.withTrie(trie -> {
+            FlameGraphWriter writer = new FlameGraphWriter(trie, title);
+            return new String[] {writer.toCollapsed(), writer.toSvg()};
+        });
+        Path base = Path.of(outputPath, "flamegraph_" + timestamp);
+        Files.writeString(Path.of(base + ".collapsed"), rendered[0], StandardCharsets.UTF_8);
+        Files.writeString(Path.of(base + ".svg"), rendered[1], StandardCharsets.UTF_8);
+        Files.writeString(Path.of(base + ".html"), FlameGraphWriter.toHtml(title, rendered[1]), StandardCharsets.UTF_8);
     }
     
-    public void showVisualization() {
+    /**
+     * Opens the dashboard and refreshes it every {@code dashboardRefreshInterval} ms on a
+     * background thread, so the EDT only applies finished updates.
+     */
+    public synchronized void showVisualization() {
         if (visualizer == null) {
-            visualizer = new PerformanceVisualizer();
+            ProfilerConfig config = profiler.getConfig();
+            visualizer = new PerformanceVisualizer(config.getDashboardTopMethods(), config.getDashboardMaxPoints());
+            visualizer.setWindowSelectionListener(window -> requestRefresh());
+            backfill(visualizer::addMemoryPoint, visualizer::addCpuPoint);
+            dashboardRefresher = newDaemonScheduler("profiler-dashboard");
+            long interval = config.getDashboardRefreshInterval();
+            dashboardRefresher.scheduleWithFixedDelay(this::refresh, interval, interval, TimeUnit.MILLISECONDS);
         }
         
+        visualizer.setVisible(true);
+        requestRefresh();
+    }
+    
+    // Requests arriving while one is queued, such as quick window changes, are merged into it
+    private void requestRefresh() {
+        if (refreshQueued.compareAndSet(false, true)) {
+            dashboardRefresher.execute(this::refresh);
+        }
+    }
+    
+    private void refresh() {
+        refreshQueued.set(false);
+        try {
+            // A closed window is disposed, there is nothing to draw until it is shown again
+            if (visualizer.isDisplayable()) {
+                updateVisualization();
+            }
+        } catch (Exception e) {
+            logger.error("Error refreshing the dashboard", e);
+        }
+    }
+    
+    /**
+     * Renders the dashboard to {@code dashboard.html} and its PNGs in {@code outputPath} every
+     * {@code dashboardExportInterval} ms, replacing the previous files. Needs no display: the
+     * charts are sampled and drawn on a background thread, never on the application's threads.
+     * Calling it again moves the export to the new path.
+     */
+    public synchronized void startDashboardExport(String outputPath) {
+        ScheduledExecutorService exportThread = dashboardExportThread();
+        if (scheduledDashboardExport != null) {
+            scheduledDashboardExport.cancel(false);
+        }
+        long interval = profiler.getConfig().getDashboardExportInterval();
+        scheduledDashboardExport = exportThread.scheduleWithFixedDelay(() -> {
+            try {
+                exportDashboard(Path.of(outputPath), "dashboard");
+            } catch (Exception e) {
+                logger.error("Error exporting the dashboard", e);
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+    
+    public synchronized void stopDashboardExport() {
+        if (scheduledDashboardExport != null) {
+            scheduledDashboardExport.cancel(false);
+            scheduledDashboardExport = null;
+        }
+    }
+    
+    /**
+     * Renders the dashboard once to {@code dashboard_<timestamp>.html} and its PNGs, without a
+     * display, and returns the page. The charts cover what has been sampled since the first
+     * export, plus the time-series store's history when it is enabled.
+     */
+    public Path exportDashboard(String outputPath) throws IOException {
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+        try {
+            return dashboardExportThread().submit(() -> exportDashboard(Path.of(outputPath), "dashboard_" + timestamp))
+                .get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Dashboard export failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while exporting the dashboard");
+        }
+    }
+    
+    private Path exportDashboard(Path directory, String baseName) throws IOException {
+        sampleDashboard();
+        return dashboardExporter.export(directory, baseName, profiler.getAllMetrics(), MetricsWindow.ALL_TIME);
+    }
+    
+    // Samples on the same refresh schedule as the window, so exported charts have the same resolution
+    private synchronized ScheduledExecutorService dashboardExportThread() {
+        if (dashboardExportThread == null) {
+            ProfilerConfig config = profiler.getConfig();
+            dashboardExporter = new DashboardExporter(config.getDashboardTopMethods(), config.getDashboardMaxPoints());
+            dashboardExportThread = newDaemonScheduler("profiler-dashboard-export");
+            dashboardExportThread.execute(() -> backfill(dashboardExporter::addMemoryPoint, dashboardExporter::addCpuPoint));
+            long interval = config.getDashboardRefreshInterval();
+            dashboardExportThread.scheduleWithFixedDelay(() -> {
+                try {
+                    sampleDashboard();
+                } catch (Exception e) {
+                    logger.error("Error sampling the dashboard", e);
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+        }
+        return dashboardExportThread;
+    }
+    
+    private void sampleDashboard() {
+        dashboardExporter.sample(profiler.getLatestMemoryMetrics(), profiler.getLatestCpuMetrics(),
+            profiler.getGcHistory(), profiler.getBufferPoolMetrics());
+    }
+    
+    private static ScheduledExecutorService newDaemonScheduler(String name) {
+        return Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    // Charts start with the stored history instead of empty, including samples from before a restart
+    private void backfill(BiConsumer<Long, MemoryMetrics> memory, BiConsumer<Long, CpuMetrics> cpu) {
+        TimeSeriesStore store = profiler.getTimeSeriesStore();
+        if (store == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        store.replay(now - MetricsWindow.LAST_15_MINUTES.getDuration().toMillis(), now, new TimeSeriesVisitor() {
+            @Override
+            public void onMemory(long timestamp, MemoryMetrics metrics) {
+                memory.accept(timestamp, metrics);
+            }
+            
+            @Override
+            public void onCpu(long timestamp, CpuMetrics metrics) {
+                cpu.accept(timestamp, metrics);
+            }
+        });
+    }
+    
+    private void updateVisualization() {
         visualizer.updateData(
             profiler.getLatestMemoryMetrics(),
             profiler.getLatestCpuMetrics(),
-            profiler.getAllMetrics()
+            profiler.getAllMetrics(visualizer.getSelectedWindow()),
+            profiler.getCallTreeSnapshot()
         );
-        
-        visualizer.setVisible(true);
+        visualizer.updateGcData(profiler.getGcHistory(), profiler.getBufferPoolMetrics());
+        ContentionSnapshot contention = profiler.getContentionSnapshot();
+        if (contention != null) {
+            visualizer.updateContention(contention);
+        }
+        SlowCallCollector slowCalls = profiler.getSlowCallCollector();
+        // Exemplars only change when one is captured, so most refreshes skip copying them
+        if (slowCalls != null && slowCalls.getCaptured() != shownSlowCalls) {
+            shownSlowCalls = slowCalls.getCaptured();
+            visualizer.updateSlowCalls(slowCalls.getSummary());
+        }
     }
 } 
\ No newline at end of file
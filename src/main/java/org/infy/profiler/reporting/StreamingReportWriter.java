@@ -0,0 +1,262 @@
+package org.infy.profiler.reporting;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.infy.profiler.MethodMetrics;
+import org.infy.profiler.MetricsSnapshot;
+import org.infy.profiler.PerformanceProfiler;
+import org.infy.profiler.calibration.OverheadCalibration;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+/**
+ * Writes reports with Jackson's streaming generator from a {@link MetricsSnapshot}, one method
+ * at a time, instead of copying every method into a {@link PerformanceReport} first. Snapshot
+ * buffers are reused between reports and nothing else is held per method, so the heap used by
+ * a report does not grow with the number of profiled methods. Methods appear in registration
+ * order.
+ *
+ * <p>In delta mode only methods called since the previous delta report are written, and their
+ * counts, times and allocated bytes cover just that interval. Percentiles and the maximum
+ * cannot be taken apart by interval and stay cumulative. The baseline is kept per metrics
+ * object, so a method that takes over a position starts from zero, and only moves on once a
+ * report has been written completely. Metrics that absorbed an evicted method since the last
+ * report are left out of it and only take a new baseline, as the absorbed figures are not calls
+ * made in the interval.
+ */
+public class StreamingReportWriter {
+    private static final int ALLOCATION_RANKING_SIZE = 20;
+
+    private final PerformanceProfiler profiler;
+    private final ObjectMapper objectMapper;
+    // Totals at the last delta report, indexed by snapshot position; next* is filled while writing
+    private MethodMetrics[] lastSources = new MethodMetrics[0];
+    private int[] lastAbsorptions = new int[0];
+    private long[] lastCount = new long[0];
+    private long[] lastTotal = new long[0];
+    private long[] lastCpu = new long[0];
+    private long[] lastAllocated = new long[0];
+    private MethodMetrics[] nextSources = new MethodMetrics[0];
+    private int[] nextAbsorptions = new int[0];
+    private long[] nextCount = new long[0];
+    private long[] nextTotal = new long[0];
+    private long[] nextCpu = new long[0];
+    private long[] nextAllocated = new long[0];
+    private final int[] topAllocators = new int[ALLOCATION_RANKING_SIZE];
+
+    public StreamingReportWriter(PerformanceProfiler profiler, ObjectMapper objectMapper) {
+        this.profiler = profiler;
+        this.objectMapper = objectMapper;
+    }
+
+    /** Writes {@code file}, compressing as it goes. Returns the number of methods written. */
+    public synchronized int write(Path file, ReportCompression compression, boolean deltaOnly) throws IOException {
+        int written;
+        try (MetricsSnapshot snapshot = profiler.snapshot()) {
+            // The file stream is a resource of its own, so it is closed even when wrapping it fails
+            try (OutputStream fileOut = Files.newOutputStream(file);
+                 OutputStream out = compression.wrap(new BufferedOutputStream(fileOut));
+                 JsonGenerator json = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+                written = writeReport(json, snapshot, deltaOnly);
+            } catch (IOException | RuntimeException e) {
+                // A partial report would read as a complete one with methods missing
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException deleteFailure) {
+                    e.addSuppressed(deleteFailure);
+                }
+                throw e;
+            }
+        }
+
+        if (deltaOnly) {
+            swapBaseline();
+        }
+        return written;
+    }
+
+    private int writeReport(JsonGenerator json, MetricsSnapshot snapshot, boolean deltaOnly) throws IOException {
+        int size = snapshot.size();
+        if (deltaOnly) {
+            ensureCapacity(size);
+        }
+        int ranked = 0;
+        int written = 0;
+        json.writeStartObject();
+        json.writeStringField("timestamp", LocalDateTime.now().toString());
+        json.writeBooleanField("delta", deltaOnly);
+        json.writeObjectField("memoryMetrics", snapshot.getMemoryMetrics());
+        json.writeObjectField("cpuMetrics", snapshot.getCpuMetrics());
+        json.writeObjectField("threadMetrics", snapshot.getThreadMetrics());
+        json.writeObjectField("gcMetrics", snapshot.getGcMetrics());
+        OverheadCalibration calibration = snapshot.getOverheadCalibration();
+        json.writeObjectField("overheadCalibration", calibration);
+        json.writeObjectField("registryStats", snapshot.getRegistryStats());
+
+        json.writeObjectFieldStart("methodMetrics");
+        for (int i = 0; i < size; i++) {
+            long count = snapshot.getInvocationCount(i);
+            long total = snapshot.getTotalExecutionTime(i);
+            long cpu = snapshot.getTotalCpuTime(i);
+            long allocated = snapshot.getTotalAllocatedBytes(i);
+            if (allocated > 0) {
+                ranked = rankAllocation(snapshot, i, ranked);
+            }
+            if (deltaOnly) {
+                MethodMetrics source = snapshot.getSource(i);
+                int absorptions = snapshot.getAbsorptions(i);
+                nextSources[i] = source;
+                nextAbsorptions[i] = absorptions;
+                nextCount[i] = count;
+                nextTotal[i] = total;
+                nextCpu[i] = cpu;
+                nextAllocated[i] = allocated;
+                if (source == lastSources[i] && absorptions != lastAbsorptions[i]) {
+                    continue;
+                }
+                // A position handed to other metrics, or figures that went backwards, start a new baseline
+                if (source == lastSources[i] && count >= lastCount[i]) {
+                    if (count == lastCount[i]) {
+                        continue;
+                    }
+                    count -= lastCount[i];
+                    total -= lastTotal[i];
+                    cpu -= lastCpu[i];
+                    allocated -= lastAllocated[i];
+                } else if (count == 0) {
+                    continue;
+                }
+            } else if (count == 0) {
+                continue;
+            }
+            writeMethod(json, snapshot, i, count, total, cpu, allocated, calibration);
+            written++;
+        }
+        json.writeEndObject();
+        if (deltaOnly) {
+            // Positions beyond this snapshot must not match metrics that land there later
+            Arrays.fill(nextSources, size, nextSources.length, null);
+        }
+
+        writeAllocationRanking(json, snapshot, ranked);
+        json.writeObjectField("gcEvents", profiler.getGcHistory());
+        json.writeObjectField("bufferPools", profiler.getBufferPoolMetrics());
+        json.writeObjectField("callTree", profiler.getCallTreeSnapshot());
+        json.writeObjectField("slowCalls", profiler.getSlowCallSummary());
+        json.writeObjectField("contention", profiler.getContentionSnapshot());
+        json.writeEndObject();
+        return written;
+    }
+
+    private static void writeMethod(JsonGenerator json, MetricsSnapshot snapshot, int i, long count, long total,
+                                    long cpu, long allocated, OverheadCalibration calibration) throws IOException {
+        json.writeObjectFieldStart(snapshot.getMethodName(i));
+        json.writeNumberField("invocationCount", count);
+        json.writeNumberField("totalExecutionTime", total);
+        json.writeNumberField("averageExecutionTime", count > 0 ? total / count : 0);
+        json.writeNumberField("minExecutionTime", snapshot.getMinExecutionTime(i));
+        json.writeNumberField("maxExecutionTime", snapshot.getMaxExecutionTime(i));
+        json.writeNumberField("p50ExecutionTime", snapshot.getP50ExecutionTime(i));
+        json.writeNumberField("p90ExecutionTime", snapshot.getP90ExecutionTime(i));
+        json.writeNumberField("p99ExecutionTime", snapshot.getP99ExecutionTime(i));
+        json.writeNumberField("p999ExecutionTime", snapshot.getP999ExecutionTime(i));
+        if (snapshot.isCpuTimeTracked(i)) {
+            // CPU time is sampled, so the interval average uses the cumulative ratio of calls measured
+            long averageCpu = snapshot.getAverageCpuTime(i);
+            json.writeNumberField("totalCpuTime", cpu);
+            json.writeNumberField("averageCpuTime", averageCpu);
+            json.writeNumberField("averageWaitTime", Math.max(0, (count > 0 ? total / count : 0) - averageCpu));
+        }
+        if (allocated > 0) {
+            json.writeNumberField("totalAllocatedBytes", allocated);
+            json.writeNumberField("averageAllocatedBytes", snapshot.getAverageAllocatedBytes(i));
+            json.writeNumberField("p99AllocatedBytes", snapshot.getP99AllocatedBytes(i));
+        }
+        json.writeNumberField("samplingPeriod", snapshot.getSamplingPeriod(i));
+        if (calibration != null && count > 0 && calibration.isWithinNoiseFloor(snapshot.getP50ExecutionTime(i))) {
+            json.writeBooleanField("withinNoiseFloor", true);
+        }
+        json.writeEndObject();
+    }
+
+    // Keeps topAllocators sorted by allocated bytes, largest first, by insertion
+    private int rankAllocation(MetricsSnapshot snapshot, int index, int ranked) {
+        long bytes = snapshot.getTotalAllocatedBytes(index);
+        int position = ranked;
+        while (position > 0 && snapshot.getTotalAllocatedBytes(topAllocators[position - 1]) < bytes) {
+            position--;
+        }
+        if (position == ALLOCATION_RANKING_SIZE) {
+            return ranked;
+        }
+        int last = Math.min(ranked, ALLOCATION_RANKING_SIZE - 1);
+        System.arraycopy(topAllocators, position, topAllocators, position + 1, last - position);
+        topAllocators[position] = index;
+        return Math.min(ranked + 1, ALLOCATION_RANKING_SIZE);
+    }
+
+    private void writeAllocationRanking(JsonGenerator json, MetricsSnapshot snapshot, int ranked) throws IOException {
+        double seconds = profiler.getProfilingDuration().toNanos() / 1e9;
+        json.writeArrayFieldStart("allocationRanking");
+        for (int r = 0; r < ranked; r++) {
+            int i = topAllocators[r];
+            long bytes = snapshot.getTotalAllocatedBytes(i);
+            json.writeStartObject();
+            json.writeStringField("methodName", snapshot.getMethodName(i));
+            json.writeNumberField("totalBytes", bytes);
+            json.writeNumberField("averageBytesPerCall", snapshot.getAverageAllocatedBytes(i));
+            json.writeNumberField("p99BytesPerCall", snapshot.getP99AllocatedBytes(i));
+            json.writeNumberField("bytesPerSecond", seconds > 0 ? bytes / seconds : 0.0);
+            json.writeEndObject();
+        }
+        json.writeEndArray();
+    }
+
+    // Grown to a power of two so a steadily growing registry reallocates only now and then
+    private void ensureCapacity(int size) {
+        if (size <= nextCount.length) {
+            return;
+        }
+        int capacity = Integer.highestOneBit(Math.max(size - 1, 1)) << 1;
+        lastSources = Arrays.copyOf(lastSources, capacity);
+        lastAbsorptions = Arrays.copyOf(lastAbsorptions, capacity);
+        lastCount = Arrays.copyOf(lastCount, capacity);
+        lastTotal = Arrays.copyOf(lastTotal, capacity);
+        lastCpu = Arrays.copyOf(lastCpu, capacity);
+        lastAllocated = Arrays.copyOf(lastAllocated, capacity);
+        nextSources = new MethodMetrics[capacity];
+        nextAbsorptions = new int[capacity];
+        nextCount = new long[capacity];
+        nextTotal = new long[capacity];
+        nextCpu = new long[capacity];
+        nextAllocated = new long[capacity];
+    }
+
+    private void swapBaseline() {
+        MethodMetrics[] sources = lastSources;
+        lastSources = nextSources;
+        nextSources = sources;
+        int[] absorptions = lastAbsorptions;
+        lastAbsorptions = nextAbsorptions;
+        nextAbsorptions = absorptions;
+        long[] swap = lastCount;
+        lastCount = nextCount;
+        nextCount = swap;
+        swap = lastTotal;
+        lastTotal = nextTotal;
+        nextTotal = swap;
+        swap = lastCpu;
+        lastCpu = nextCpu;
+        nextCpu = swap;
+        swap = lastAllocated;
+        lastAllocated = nextAllocated;
+        nextAllocated = swap;
+    }
+}
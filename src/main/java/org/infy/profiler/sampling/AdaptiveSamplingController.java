@@ -0,0 +1,250 @@
+package org.infy.profiler.sampling;
+
+import org.infy.profiler.MethodMetrics;
+import org.infy.profiler.MethodRegistry;
+import org.infy.profiler.ProfilerConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the estimated cost of method timing inside the configured share of process CPU time.
+ *
+ * <p>Every adjustment interval the controller estimates each method's call rate from the
+ * growth of its (already scaled) invocation count and prices it with the measured cost of a
+ * timed call and of a skipped call. While the total is over budget it doubles the sampling
+ * period of the most expensive method; when comfortably under budget it halves periods again,
+ * starting with the least frequently called methods. Methods whose calls stay below the
+ * trivial-cost threshold for several intervals are handed to the de-instrumentation callback.
+ */
+public class AdaptiveSamplingController {
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveSamplingController.class);
+    static final int MAX_SAMPLING_PERIOD = 1 << 16;
+    // Rarely called methods cost little to time and are the ones where every sample counts
+    private static final long MIN_CALLS_FOR_SAMPLING = 1_000;
+    private static final long MIN_CALLS_FOR_DEINSTRUMENT = 1_000;
+
+    private final MethodRegistry registry;
+    private final Consumer<MethodMetrics> deinstrumenter;
+    private final double budgetFraction;
+    private final long trivialThreshold;
+    private final int deinstrumentAfter;
+    private final OperatingSystemMXBean osMXBean;
+    private final double timedCallCost;
+    private final double skippedCallCost;
+
+    // By registry slot; a slot's state restarts when a capped registry hands it to another method
+    private MethodMetrics[] slotOwners = new MethodMetrics[0];
+    private long[] lastInvocations = new long[0];
+    private long[] lastTotalTime = new long[0];
+    private int[] cheapStreak = new int[0];
+    private long lastWallTime;
+    private long lastCpuTime;
+    private volatile double estimatedOverhead;
+    private static volatile int sink;
+
+    public AdaptiveSamplingController(MethodRegistry registry, ProfilerConfig config,
+                                      Consumer<MethodMetrics> deinstrumenter) {
+        this.registry = registry;
+        this.deinstrumenter = deinstrumenter;
+        this.budgetFraction = config.getOverheadBudgetPercent() / 100.0;
+        this.trivialThreshold = config.getDeinstrumentThreshold();
+        this.deinstrumentAfter = config.getDeinstrumentAfterIntervals();
+        this.osMXBean = ManagementFactory.getOperatingSystemMXBean();
+        this.timedCallCost = measureTimedCallCost();
+        this.skippedCallCost = measureSkippedCallCost();
+        this.lastWallTime = System.nanoTime();
+        this.lastCpuTime = processCpuTime();
+        logger.info("Adaptive sampling: timed call ~{} ns, skipped call ~{} ns, budget {}% CPU",
+            String.format("%.1f", timedCallCost), String.format("%.1f", skippedCallCost),
+            config.getOverheadBudgetPercent());
+    }
+
+    public void adjust() {
+        long wallNow = System.nanoTime();
+        long cpuNow = processCpuTime();
+        long cpuSpent = cpuNow - lastCpuTime;
+        if (cpuNow < 0 || cpuSpent <= 0) {
+            cpuSpent = (wallNow - lastWallTime) * Runtime.getRuntime().availableProcessors();
+        }
+        lastWallTime = wallNow;
+        lastCpuTime = cpuNow;
+        double budget = cpuSpent * budgetFraction;
+
+        int count = registry.slotCount();
+        ensureCapacity(count);
+        MethodMetrics[] methods = new MethodMetrics[count];
+        long[] calls = new long[count];
+        double total = 0;
+        for (int id = 0; id < count; id++) {
+            MethodMetrics metrics = registry.getSlot(id);
+            if (metrics == null) {
+                methods = Arrays.copyOf(methods, id);
+                calls = Arrays.copyOf(calls, id);
+                break;
+            }
+            methods[id] = metrics;
+            if (slotOwners[id] != metrics) {
+                slotOwners[id] = metrics;
+                lastInvocations[id] = 0;
+                lastTotalTime[id] = 0;
+                cheapStreak[id] = 0;
+            }
+            long invocations = metrics.getInvocationCount();
+            long totalTime = metrics.getTotalExecutionTime();
+            calls[id] = invocations - lastInvocations[id];
+            long timeSpent = totalTime - lastTotalTime[id];
+            lastInvocations[id] = invocations;
+            lastTotalTime[id] = totalTime;
+            if (!metrics.isInstrumented()) {
+                calls[id] = 0;
+                continue;
+            }
+            total += overhead(calls[id], metrics.getSamplingPeriod());
+            trackTrivialCost(id, metrics, calls[id], timeSpent);
+        }
+
+        if (total > budget) {
+            total = reduceSampling(methods, calls, total, budget);
+        } else if (total < budget / 2) {
+            total = restoreSampling(methods, calls, total, budget);
+        }
+        estimatedOverhead = cpuSpent > 0 ? total / cpuSpent : 0;
+    }
+
+    private double reduceSampling(MethodMetrics[] methods, long[] calls, double total, double budget) {
+        PriorityQueue<Integer> candidates = new PriorityQueue<>(Comparator.comparingDouble(
+            (Integer id) -> overhead(calls[id], methods[id].getSamplingPeriod())).reversed());
+        for (int id = 0; id < calls.length; id++) {
+            if (calls[id] >= MIN_CALLS_FOR_SAMPLING
+                    && methods[id].getSamplingPeriod() < MAX_SAMPLING_PERIOD) {
+                candidates.add(id);
+            }
+        }
+        while (total > budget && !candidates.isEmpty()) {
+            int id = candidates.poll();
+            MethodMetrics metrics = methods[id];
+            int period = metrics.getSamplingPeriod();
+            total += overhead(calls[id], period * 2) - overhead(calls[id], period);
+            metrics.setSamplingPeriod(period * 2);
+            if (period * 2 < MAX_SAMPLING_PERIOD) {
+                candidates.add(id);
+            }
+        }
+        return total;
+    }
+
+    private double restoreSampling(MethodMetrics[] methods, long[] calls, double total, double budget) {
+        Integer[] order = new Integer[calls.length];
+        for (int id = 0; id < order.length; id++) {
+            order[id] = id;
+        }
+        Arrays.sort(order, Comparator.comparingLong(id -> calls[id]));
+        for (int id : order) {
+            MethodMetrics metrics = methods[id];
+            int period = metrics.getSamplingPeriod();
+            if (period == 1 || !metrics.isInstrumented()) {
+                continue;
+            }
+            double delta = overhead(calls[id], period / 2) - overhead(calls[id], period);
+            // Leave headroom so a method does not flip back and forth between two periods
+            if (total + delta <= budget * 0.75) {
+                metrics.setSamplingPeriod(period / 2);
+                total += delta;
+            }
+        }
+        return total;
+    }
+
+    private void trackTrivialCost(int id, MethodMetrics metrics, long calls, long timeSpent) {
+        if (trivialThreshold <= 0 || calls < MIN_CALLS_FOR_DEINSTRUMENT) {
+            return;
+        }
+        if (timeSpent / calls < trivialThreshold) {
+            if (++cheapStreak[id] >= deinstrumentAfter) {
+                logger.info("De-instrumenting {} (average {} ns over {} intervals)",
+                    metrics.getMethodName(), timeSpent / calls, cheapStreak[id]);
+                deinstrumenter.accept(metrics);
+            }
+        } else {
+            cheapStreak[id] = 0;
+        }
+    }
+
+    private double overhead(long calls, int period) {
+        if (period == 1) {
+            return calls * timedCallCost;
+        }
+        return calls * (skippedCallCost + timedCallCost / period);
+    }
+
+    private void ensureCapacity(int count) {
+        if (lastInvocations.length < count) {
+            int capacity = Math.max(count, lastInvocations.length * 2);
+            slotOwners = Arrays.copyOf(slotOwners, capacity);
+            lastInvocations = Arrays.copyOf(lastInvocations, capacity);
+            lastTotalTime = Arrays.copyOf(lastTotalTime, capacity);
+            cheapStreak = Arrays.copyOf(cheapStreak, capacity);
+        }
+    }
+
+    private long processCpuTime() {
+        if (osMXBean instanceof com.sun.management.OperatingSystemMXBean sunBean) {
+            return sunBean.getProcessCpuTime();
+        }
+        return -1;
+    }
+
+    // Fraction of process CPU time spent on timing during the last interval
+    public double getEstimatedOverhead() {
+        return estimatedOverhead;
+    }
+
+    public double getTimedCallCost() {
+        return timedCallCost;
+    }
+
+    public double getSkippedCallCost() {
+        return skippedCallCost;
+    }
+
+    private static double measureTimedCallCost() {
+        MethodMetrics probe = new MethodMetrics("calibration");
+        int iterations = 200_000;
+        double best = Double.MAX_VALUE;
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                long begin = System.nanoTime();
+                probe.recordSample(System.nanoTime() - begin);
+            }
+            best = Math.min(best, (System.nanoTime() - start) / (double) iterations);
+        }
+        return best;
+    }
+
+    private static double measureSkippedCallCost() {
+        MethodMetrics probe = new MethodMetrics("calibration");
+        probe.setSamplingPeriod(MAX_SAMPLING_PERIOD);
+        int iterations = 1_000_000;
+        int sampled = 0;
+        double best = Double.MAX_VALUE;
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                if (probe.shouldSample()) {
+                    sampled++;
+                }
+            }
+            best = Math.min(best, (System.nanoTime() - start) / (double) iterations);
+        }
+        sink = sampled;
+        return best;
+    }
+}
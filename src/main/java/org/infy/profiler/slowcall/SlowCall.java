@@ -0,0 +1,19 @@
+package org.infy.profiler.slowcall;
+
+import java.util.List;
+
+/**
+ * One call that took longer than its method's threshold. The timestamp is epoch milliseconds,
+ * durations are nanoseconds. The stack starts at the slow method itself, and the arguments'
+ * {@code toString} is only kept when argument capture is on, otherwise it is null.
+ */
+public record SlowCall(
+    String methodName,
+    String threadName,
+    long timestamp,
+    long duration,
+    long threshold,
+    List<String> stackTrace,
+    List<String> arguments
+) {
+}
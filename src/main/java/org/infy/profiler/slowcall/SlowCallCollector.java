@@ -0,0 +1,155 @@
+package org.infy.profiler.slowcall;
+
+import org.infy.profiler.MethodMetrics;
+import org.infy.profiler.MethodRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps stack snapshots of calls slower than their method's threshold. A threshold is either
+ * static, per method or for all of them, or derived from the method's live latency percentile
+ * once it has enough calls, and is looked up by method id so the check on every timed call is
+ * an array read. Snapshots are rate limited across all methods, with a burst of one second's
+ * worth; slow calls beyond the limit are only counted, so a latency storm costs one failed
+ * check per call rather than a stack walk.
+ */
+public class SlowCallCollector {
+    // Calls a method needs before its percentile is trusted as a threshold
+    private static final long MIN_CALLS = 100;
+    private static final String PROFILER_PACKAGE = "org.infy.profiler.";
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance();
+
+    private final MethodRegistry registry;
+    private final long threshold;
+    private final Map<String, Long> thresholds;
+    private final double percentile;
+    private final long minThreshold;
+    private final int stackDepth;
+    private final int argumentLength;
+    private final long captureInterval;
+    private final long burstTolerance;
+    private final SlowCallRing ring;
+    // Earliest time, by the rate limit's schedule, at which the next snapshot is due
+    private final AtomicLong nextCapture = new AtomicLong(System.nanoTime());
+    private final LongAdder suppressed = new LongAdder();
+    // By method id; Long.MAX_VALUE until a threshold applies
+    private volatile long[] thresholdsById = new long[0];
+
+    public SlowCallCollector(MethodRegistry registry, long threshold, Map<String, Long> thresholds, double percentile,
+                             long minThreshold, int ratePerSecond, int capacity, int stackDepth, int argumentLength) {
+        if (ratePerSecond < 1) {
+            throw new IllegalArgumentException("Slow call rate must be at least 1 per second: " + ratePerSecond);
+        }
+        if (capacity < 1) {
+            throw new IllegalArgumentException("At least one slow call exemplar must be kept: " + capacity);
+        }
+        if (stackDepth < 0 || argumentLength < 0) {
+            throw new IllegalArgumentException("Slow call stack depth and argument length must not be negative: "
+                + stackDepth + ", " + argumentLength);
+        }
+        this.registry = registry;
+        this.threshold = threshold;
+        this.thresholds = Map.copyOf(thresholds);
+        this.percentile = percentile;
+        this.minThreshold = minThreshold;
+        this.stackDepth = stackDepth;
+        this.argumentLength = argumentLength;
+        this.captureInterval = 1_000_000_000L / ratePerSecond;
+        this.burstTolerance = captureInterval * (ratePerSecond - 1);
+        this.ring = new SlowCallRing(capacity);
+    }
+
+    public long getThreshold(int methodId) {
+        long[] current = thresholdsById;
+        return methodId < current.length ? current[methodId] : Long.MAX_VALUE;
+    }
+
+    /** Recomputes every method's threshold; methods registered since the last run get theirs here. */
+    public void updateThresholds() {
+        int size = registry.size();
+        long[] next = new long[size];
+        for (int id = 0; id < size; id++) {
+            next[id] = resolveThreshold(id);
+        }
+        thresholdsById = next;
+    }
+
+    private long resolveThreshold(int methodId) {
+        Long fixed = thresholds.get(registry.getSignature(methodId));
+        if (fixed != null) {
+            return fixed;
+        }
+        if (threshold > 0) {
+            return threshold;
+        }
+        // Folded methods share the other bucket, whose percentiles say nothing about any one of them
+        if (registry.isFolded(methodId)) {
+            return Long.MAX_VALUE;
+        }
+        MethodMetrics metrics = registry.get(methodId);
+        if (metrics.getInvocationCount() < MIN_CALLS) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(metrics.getPercentileExecutionTime(percentile), minThreshold);
+    }
+
+    /**
+     * Takes a snapshot of the current thread's stack for a call already found slow, unless the
+     * rate limit is used up. {@code arguments} may be null.
+     */
+    public void capture(int methodId, long duration, Object[] arguments) {
+        if (!tryAcquire(System.nanoTime())) {
+            suppressed.increment();
+            return;
+        }
+        // The advice is inlined, so the first frame outside the profiler is the slow method
+        List<String> stack = STACK_WALKER.walk(frames -> frames
+            .dropWhile(frame -> frame.getClassName().startsWith(PROFILER_PACKAGE))
+            .limit(stackDepth)
+            .map(frame -> frame.toStackTraceElement().toString())
+            .toList());
+        ring.add(new SlowCall(registry.getSignature(methodId), Thread.currentThread().getName(),
+            System.currentTimeMillis(), duration, getThreshold(methodId), stack,
+            arguments != null ? describe(arguments) : null));
+    }
+
+    // Generic cell rate algorithm: one read when the limit is used up, one CAS when it is not
+    private boolean tryAcquire(long now) {
+        while (true) {
+            long due = nextCapture.get();
+            if (due - now > burstTolerance) {
+                return false;
+            }
+            if (nextCapture.compareAndSet(due, Math.max(due, now) + captureInterval)) {
+                return true;
+            }
+        }
+    }
+
+    private List<String> describe(Object[] arguments) {
+        List<String> described = new ArrayList<>(arguments.length);
+        for (Object argument : arguments) {
+            String text;
+            try {
+                text = String.valueOf(argument);
+            } catch (RuntimeException e) {
+                text = "<toString failed: " + e.getClass().getName() + ">";
+            }
+            described.add(text.length() > argumentLength ? text.substring(0, argumentLength) + "..." : text);
+        }
+        return described;
+    }
+
+    public SlowCallSummary getSummary() {
+        return new SlowCallSummary(ring.written(), suppressed.sum(), ring.newestFirst());
+    }
+
+    /** Number of exemplars taken so far, which only changes when there is something new to show. */
+    public long getCaptured() {
+        return ring.written();
+    }
+}
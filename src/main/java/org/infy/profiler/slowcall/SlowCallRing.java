@@ -0,0 +1,42 @@
+package org.infy.profiler.slowcall;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fixed-size ring of the latest exemplars. Writers claim a position with one atomic increment
+ * and overwrite whatever was there, so nothing ever blocks; a reader may miss an exemplar whose
+ * position was claimed but not yet written.
+ */
+final class SlowCallRing {
+    private final AtomicReferenceArray<SlowCall> entries;
+    private final AtomicLong written = new AtomicLong();
+
+    SlowCallRing(int capacity) {
+        this.entries = new AtomicReferenceArray<>(capacity);
+    }
+
+    void add(SlowCall call) {
+        long position = written.getAndIncrement();
+        entries.set((int) (position % entries.length()), call);
+    }
+
+    long written() {
+        return written.get();
+    }
+
+    List<SlowCall> newestFirst() {
+        int capacity = entries.length();
+        long end = written.get();
+        List<SlowCall> calls = new ArrayList<>((int) Math.min(end, capacity));
+        for (long position = end - 1; position >= Math.max(0, end - capacity); position--) {
+            SlowCall call = entries.get((int) (position % capacity));
+            if (call != null) {
+                calls.add(call);
+            }
+        }
+        return calls;
+    }
+}
@@ -0,0 +1,11 @@
+package org.infy.profiler.slowcall;
+
+import java.util.List;
+
+/**
+ * The slow calls kept so far, newest first. {@code captured} counts every exemplar taken,
+ * including those overwritten since; {@code suppressed} counts slow calls the rate limit let
+ * through without a snapshot.
+ */
+public record SlowCallSummary(long captured, long suppressed, List<SlowCall> exemplars) {
+}
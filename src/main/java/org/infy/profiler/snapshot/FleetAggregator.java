@@ -0,0 +1,200 @@
+package org.infy.profiler.snapshot;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.infy.profiler.reporting.PerformanceReport;
+import org.infy.profiler.window.MetricsWindow;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Merges the snapshots of many profiled processes into fleet-wide reports. Snapshots are read
+ * from a directory the processes write to, rescanned for changed files, or received on a Unix
+ * domain socket they send to. Every interval the merged figures are written as one report per
+ * window, in the same JSON layout as a single process's report, replacing the previous ones.
+ *
+ * <p>Usage: {@code FleetAggregator dir|socket <path> <output directory> [seconds, default 10]
+ * [minutes before a silent run is dropped, default 60, 0 for never]}. The interval is also taken
+ * as the processes' snapshot interval when deciding whether a run still belongs in a window.
+ */
+public class FleetAggregator {
+    private static final Logger logger = LoggerFactory.getLogger(FleetAggregator.class);
+    private static final int READER_THREADS = 4;
+    // Connections waiting for a reader beyond this are closed, as are those that take too long over a frame
+    private static final int MAX_PENDING_CONNECTIONS = 64;
+    private static final long FRAME_TIMEOUT_MILLIS = 10_000;
+    private static final long DEFAULT_EXPIRE_MINUTES = 60;
+
+    private final SnapshotAggregator aggregator;
+    private final Path output;
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    // Directory mode, scan thread only: modification time and size of each file when last read
+    private final Map<Path, String> seenFiles = new HashMap<>();
+
+    public FleetAggregator(SnapshotAggregator aggregator, Path output) {
+        this.aggregator = aggregator;
+        this.output = output;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3 || !(args[0].equals("dir") || args[0].equals("socket"))) {
+            System.err.println("Usage: FleetAggregator dir|socket <path> <output directory> [seconds] [expire minutes]");
+            System.exit(1);
+        }
+        Path path = Path.of(args[1]);
+        long intervalSeconds = args.length > 3 ? Long.parseLong(args[3]) : 10;
+        long expireMinutes = args.length > 4 ? Long.parseLong(args[4]) : DEFAULT_EXPIRE_MINUTES;
+        long expireMillis = TimeUnit.MINUTES.toMillis(expireMinutes);
+        FleetAggregator fleet = new FleetAggregator(
+            new SnapshotAggregator(expireMillis, TimeUnit.SECONDS.toMillis(intervalSeconds)), Path.of(args[2]));
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        boolean directory = args[0].equals("dir");
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                if (directory) {
+                    fleet.scanDirectory(path);
+                }
+                fleet.writeReports();
+            } catch (Exception e) {
+                logger.error("Error writing fleet reports", e);
+            }
+        }, 0, intervalSeconds, TimeUnit.SECONDS);
+        if (!directory) {
+            fleet.listen(path);
+        }
+    }
+
+    /** Reads the snapshot files that are new or changed since the last scan. */
+    public void scanDirectory(Path directory) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SnapshotFormat.FILE_SUFFIX)) {
+            for (Path file : files) {
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    String version = attributes.lastModifiedTime() + "/" + attributes.size();
+                    if (!version.equals(seenFiles.put(file, version))) {
+                        aggregator.accept(SnapshotFormat.read(file));
+                    }
+                } catch (IOException e) {
+                    // Writers replace files atomically, so this is a foreign or damaged file
+                    logger.warn("Skipping unreadable snapshot {}: {}", file, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Accepts connections until the process ends; each may send any number of snapshots. Each
+     * frame must arrive within {@value #FRAME_TIMEOUT_MILLIS} ms, and connections beyond
+     * {@value #MAX_PENDING_CONNECTIONS} waiting for a reader are turned away, so stalled or
+     * numerous senders cannot hold every reader or grow the queue without bound.
+     */
+    public void listen(Path socket) throws IOException {
+        // A socket file left by a previous aggregator would make the bind fail
+        Files.deleteIfExists(socket);
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService readers = new ThreadPoolExecutor(READER_THREADS, READER_THREADS, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(MAX_PENDING_CONNECTIONS), runnable -> {
+                Thread thread = new Thread(runnable, "fleet-reader-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        ScheduledExecutorService deadlines = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fleet-deadlines");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socket));
+            logger.info("Receiving snapshots on {}", socket);
+            while (true) {
+                SocketChannel channel = server.accept();
+                try {
+                    readers.execute(() -> receive(channel, deadlines));
+                } catch (RejectedExecutionException e) {
+                    logger.warn("Turning away a snapshot connection, {} are already waiting", MAX_PENDING_CONNECTIONS);
+                    closeQuietly(channel);
+                }
+            }
+        }
+    }
+
+    private void receive(SocketChannel channel, ScheduledExecutorService deadlines) {
+        try (channel; InputStream in = new BufferedInputStream(Channels.newInputStream(channel), 64 * 1024)) {
+            while (true) {
+                // Closing the channel fails the blocked read
+                ScheduledFuture<?> deadline = deadlines.schedule(() -> closeQuietly(channel),
+                    FRAME_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                ProfileSnapshot snapshot;
+                try {
+                    snapshot = SnapshotFormat.read(in);
+                } finally {
+                    deadline.cancel(false);
+                }
+                if (snapshot == null) {
+                    return;
+                }
+                aggregator.accept(snapshot);
+            }
+        } catch (AsynchronousCloseException e) {
+            logger.warn("Dropping a snapshot connection that sent no frame within {} ms", FRAME_TIMEOUT_MILLIS);
+        } catch (IOException e) {
+            logger.warn("Dropping a snapshot connection: {}", e.getMessage());
+        }
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.debug("Error closing a snapshot connection", e);
+        }
+    }
+
+    public void writeReports() throws IOException {
+        FleetView view = aggregator.merge();
+        if (view.runs() == 0) {
+            return;
+        }
+        Files.createDirectories(output);
+        for (MetricsWindow window : MetricsWindow.values()) {
+            PerformanceReport report = new PerformanceReport.Builder(view.toMetrics(window))
+                .window(window)
+                .gcMetrics(view.toGcMetrics())
+                .build();
+            String name = "fleet_report_" + window.name().toLowerCase(Locale.ROOT);
+            Path temp = output.resolve(name + ".json.tmp");
+            objectMapper.writeValue(temp.toFile(), report);
+            Files.move(temp, output.resolve(name + ".json"), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        }
+        logger.info("Fleet reports for {} methods from {} sources ({} runs), {} snapshots accepted",
+            view.methods().size(), view.sources(), view.runs(), aggregator.getAccepted());
+    }
+}
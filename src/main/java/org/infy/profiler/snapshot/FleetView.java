@@ -0,0 +1,47 @@
+package org.infy.profiler.snapshot;
+
+import org.infy.profiler.LatencyHistogram;
+import org.infy.profiler.MethodMetrics;
+import org.infy.profiler.monitoring.GcMetrics;
+import org.infy.profiler.window.MetricsWindow;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Every method's figures summed over the latest snapshot of each process run. A window covers
+ * the window each process saw when it last wrote, so it lags by up to one snapshot interval.
+ */
+public record FleetView(
+    int sources,
+    int runs,
+    long newestCaptureMillis,
+    long gcCollections,
+    long gcPauseTime,
+    long gcMaxPauseTime,
+    long gcAllocatedBytes,
+    Map<String, MethodSnapshot> methods
+) {
+    public Map<String, MethodMetrics> toMetrics(MetricsWindow window) {
+        Map<String, MethodMetrics> metrics = new HashMap<>(methods.size() * 2);
+        for (MethodSnapshot method : methods.values()) {
+            if (window.isCumulative()) {
+                metrics.put(method.methodName(), MethodMetrics.fromSnapshot(method));
+                continue;
+            }
+            WindowTotals totals = method.windows().get(window);
+            if (totals != null && totals.count() > 0) {
+                LatencyHistogram histogram = new LatencyHistogram();
+                totals.histogram().addTo(histogram);
+                metrics.put(method.methodName(),
+                    MethodMetrics.fromHistogram(method.methodName(), totals.count(), totals.totalTime(), histogram));
+            }
+        }
+        return metrics;
+    }
+
+    // Rates and causes do not add up across processes and are left empty
+    public GcMetrics toGcMetrics() {
+        return new GcMetrics(gcCollections, gcPauseTime, gcMaxPauseTime, null, gcAllocatedBytes, 0, 0, 0);
+    }
+}
@@ -0,0 +1,50 @@
+package org.infy.profiler.snapshot;
+
+import org.infy.profiler.window.MetricsWindow;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * One method's figures in a form that adds up across processes: counts and sums rather than
+ * averages, extremes, and histogram buckets from which fleet-wide percentiles are read. Min and
+ * max are {@code Long.MAX_VALUE} and {@code Long.MIN_VALUE} while there are no calls, as in
+ * {@link org.infy.profiler.MethodMetrics}, so merging needs no special case.
+ */
+public record MethodSnapshot(
+    String methodName,
+    long count,
+    long totalTime,
+    long minTime,
+    long maxTime,
+    long cpuTime,
+    long cpuTimeCalls,
+    long allocatedBytes,
+    long allocationSamples,
+    SparseHistogram histogram,
+    SparseHistogram allocationHistogram,
+    Map<MetricsWindow, WindowTotals> windows
+) {
+    public MethodSnapshot merge(MethodSnapshot other) {
+        Map<MetricsWindow, WindowTotals> mergedWindows = new EnumMap<>(MetricsWindow.class);
+        mergedWindows.putAll(windows);
+        other.windows.forEach((window, totals) -> mergedWindows.merge(window, totals, WindowTotals::merge));
+        return new MethodSnapshot(methodName, count + other.count, totalTime + other.totalTime,
+            Math.min(minTime, other.minTime), Math.max(maxTime, other.maxTime),
+            cpuTime + other.cpuTime, cpuTimeCalls + other.cpuTimeCalls,
+            allocatedBytes + other.allocatedBytes, allocationSamples + other.allocationSamples,
+            histogram.merge(other.histogram), allocationHistogram.merge(other.allocationHistogram), mergedWindows);
+    }
+
+    public MethodSnapshot withoutWindows(Set<MetricsWindow> dropped) {
+        Map<MetricsWindow, WindowTotals> kept = new EnumMap<>(MetricsWindow.class);
+        windows.forEach((window, totals) -> {
+            if (!dropped.contains(window)) {
+                kept.put(window, totals);
+            }
+        });
+        return new MethodSnapshot(methodName, count, totalTime, minTime, maxTime, cpuTime, cpuTimeCalls,
+            allocatedBytes, allocationSamples, histogram, allocationHistogram, kept);
+    }
+}
@@ -0,0 +1,20 @@
+package org.infy.profiler.snapshot;
+
+import java.util.List;
+
+/**
+ * Everything one process has recorded since it started, as written by {@link SnapshotWriter}.
+ * A process numbers its snapshots, so of two from the same run the higher sequence replaces the
+ * other; runs are told apart by their start time, since each restart begins counting again.
+ */
+public record ProfileSnapshot(
+    String sourceId,
+    long startMillis,
+    long capturedMillis,
+    long sequence,
+    long gcCollections,
+    long gcPauseTime,
+    long gcMaxPauseTime,
+    long gcAllocatedBytes,
+    List<MethodSnapshot> methods
+) {}
@@ -0,0 +1,109 @@
+package org.infy.profiler.snapshot;
+
+import org.infy.profiler.window.MetricsWindow;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the latest snapshot of every process run and merges them on demand. Snapshots are
+ * cumulative, so merging two from the same run would count its calls twice; a newer one
+ * replaces the older instead, and only the latest of each run is ever merged. Runs are keyed by
+ * source and start time, so a restarted process is a new run and the old one's figures stay in
+ * the fleet totals until it expires. A rolling window only takes runs captured within its
+ * duration plus one snapshot interval, so dead runs and a restarted process's previous runs
+ * leave it long before they expire. Accepting a snapshot is a map update, so many threads can
+ * feed one aggregator, and the cost of merging is paid only when a view is asked for.
+ */
+public class SnapshotAggregator {
+    private final Map<String, ProfileSnapshot> runs = new ConcurrentHashMap<>();
+    private final long expireAfterMillis;
+    private final long snapshotIntervalMillis;
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder outOfOrder = new LongAdder();
+
+    /**
+     * Runs not heard from for {@code expireAfterMillis} are dropped; 0 keeps them all.
+     * {@code snapshotIntervalMillis} is how often the processes write snapshots.
+     */
+    public SnapshotAggregator(long expireAfterMillis, long snapshotIntervalMillis) {
+        this.expireAfterMillis = expireAfterMillis;
+        this.snapshotIntervalMillis = snapshotIntervalMillis;
+    }
+
+    /** Returns false when a later snapshot of the same run is already held. */
+    public boolean accept(ProfileSnapshot snapshot) {
+        String run = snapshot.sourceId() + '/' + snapshot.startMillis();
+        ProfileSnapshot kept = runs.merge(run, snapshot,
+            (current, next) -> next.sequence() > current.sequence() ? next : current);
+        if (kept != snapshot) {
+            outOfOrder.increment();
+            return false;
+        }
+        accepted.increment();
+        return true;
+    }
+
+    public FleetView merge() {
+        long now = System.currentTimeMillis();
+        if (expireAfterMillis > 0) {
+            long cutoff = now - expireAfterMillis;
+            runs.values().removeIf(snapshot -> snapshot.capturedMillis() < cutoff);
+        }
+        Map<String, MethodSnapshot> methods = new HashMap<>();
+        Set<String> sources = new HashSet<>();
+        int runCount = 0;
+        long newest = 0;
+        long gcCollections = 0;
+        long gcPauseTime = 0;
+        long gcMaxPauseTime = 0;
+        long gcAllocatedBytes = 0;
+        for (ProfileSnapshot snapshot : runs.values()) {
+            runCount++;
+            sources.add(snapshot.sourceId());
+            newest = Math.max(newest, snapshot.capturedMillis());
+            gcCollections += snapshot.gcCollections();
+            gcPauseTime += snapshot.gcPauseTime();
+            gcMaxPauseTime = Math.max(gcMaxPauseTime, snapshot.gcMaxPauseTime());
+            gcAllocatedBytes += snapshot.gcAllocatedBytes();
+            Set<MetricsWindow> stale = staleWindows(now - snapshot.capturedMillis());
+            for (MethodSnapshot method : snapshot.methods()) {
+                if (!stale.isEmpty()) {
+                    method = method.withoutWindows(stale);
+                }
+                methods.merge(method.methodName(), method, MethodSnapshot::merge);
+            }
+        }
+        return new FleetView(sources.size(), runCount, newest, gcCollections, gcPauseTime, gcMaxPauseTime,
+            gcAllocatedBytes, methods);
+    }
+
+    // The rolling windows a run last captured this long ago no longer overlaps
+    private Set<MetricsWindow> staleWindows(long ageMillis) {
+        Set<MetricsWindow> stale = EnumSet.noneOf(MetricsWindow.class);
+        for (MetricsWindow window : MetricsWindow.values()) {
+            if (!window.isCumulative() && ageMillis > window.getDuration().toMillis() + snapshotIntervalMillis) {
+                stale.add(window);
+            }
+        }
+        return stale;
+    }
+
+    public long getAccepted() {
+        return accepted.sum();
+    }
+
+    /** Snapshots that arrived after a later one of the same run and were dropped. */
+    public long getOutOfOrder() {
+        return outOfOrder.sum();
+    }
+
+    public int getRunCount() {
+        return runs.size();
+    }
+}
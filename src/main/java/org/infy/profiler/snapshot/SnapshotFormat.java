@@ -0,0 +1,346 @@
+package org.infy.profiler.snapshot;
+
+import org.infy.profiler.LatencyHistogram;
+import org.infy.profiler.window.MetricsWindow;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary encoding of a {@link ProfileSnapshot}. A frame is a magic number, the format version,
+ * a flags field (zero), the payload length and the payload's CRC32C, followed by the payload,
+ * so frames can be written back to back on a stream and damage is caught before decoding.
+ * Numbers in the payload are unsigned LEB128 varints, which keeps counts and small bucket
+ * indexes to a byte or two; histograms list only their non-empty buckets, each index as the gap
+ * from the previous one.
+ *
+ * <p>Windows are written as a table of durations at the start of the payload and referred to by
+ * position, so a reader skips windows it has no {@link MetricsWindow} for. Any other change to
+ * the payload needs a new version; readers reject versions they do not know.
+ */
+public final class SnapshotFormat {
+    public static final int MAGIC = 0x50534E50; // "PSNP"
+    public static final short VERSION = 1;
+    public static final String FILE_SUFFIX = ".psnap";
+    static final int HEADER_SIZE = 16;
+    private static final int LENGTH_OFFSET = 8;
+    private static final int CHECKSUM_OFFSET = 12;
+    private static final int MAX_PAYLOAD = 256 * 1024 * 1024;
+    private static final int MAX_STRING_BYTES = 64 * 1024;
+    private static final MetricsWindow[] WINDOWS = windows();
+
+    private SnapshotFormat() {
+    }
+
+    private static MetricsWindow[] windows() {
+        List<MetricsWindow> windows = new ArrayList<>();
+        for (MetricsWindow window : MetricsWindow.values()) {
+            if (!window.isCumulative()) {
+                windows.add(window);
+            }
+        }
+        return windows.toArray(new MetricsWindow[0]);
+    }
+
+    public static byte[] encode(ProfileSnapshot snapshot) {
+        Encoder out = new Encoder(4096 + snapshot.methods().size() * 64);
+        out.putInt(MAGIC);
+        out.putShort(VERSION);
+        out.putShort((short) 0);
+        out.putInt(0);
+        out.putInt(0);
+        out.putString(snapshot.sourceId());
+        out.putVarLong(snapshot.startMillis());
+        out.putVarLong(snapshot.capturedMillis());
+        out.putVarLong(snapshot.sequence());
+        out.putVarLong(snapshot.gcCollections());
+        out.putVarLong(snapshot.gcPauseTime());
+        out.putVarLong(snapshot.gcMaxPauseTime());
+        out.putVarLong(snapshot.gcAllocatedBytes());
+        out.putVarLong(WINDOWS.length);
+        for (MetricsWindow window : WINDOWS) {
+            out.putVarLong(window.getDuration().toMillis());
+        }
+        out.putVarLong(snapshot.methods().size());
+        for (MethodSnapshot method : snapshot.methods()) {
+            out.putString(method.methodName());
+            out.putVarLong(method.count());
+            out.putVarLong(method.totalTime());
+            // Without calls min and max are sentinels, which would take ten bytes each
+            if (method.count() > 0) {
+                out.putVarLong(method.minTime());
+                out.putVarLong(method.maxTime());
+            }
+            out.putVarLong(method.cpuTime());
+            out.putVarLong(method.cpuTimeCalls());
+            out.putVarLong(method.allocatedBytes());
+            out.putVarLong(method.allocationSamples());
+            out.putHistogram(method.histogram());
+            out.putHistogram(method.allocationHistogram());
+            out.putVarLong(method.windows().size());
+            for (int w = 0; w < WINDOWS.length; w++) {
+                WindowTotals totals = method.windows().get(WINDOWS[w]);
+                if (totals != null) {
+                    out.putVarLong(w);
+                    out.putVarLong(totals.count());
+                    out.putVarLong(totals.totalTime());
+                    out.putHistogram(totals.histogram());
+                }
+            }
+        }
+        return out.finish();
+    }
+
+    /** Decodes one whole frame. */
+    public static ProfileSnapshot decode(byte[] frame) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(frame);
+        int length = readHeader(buffer);
+        if (length != buffer.remaining()) {
+            throw new IOException("Snapshot payload is " + buffer.remaining() + " bytes, header says " + length);
+        }
+        verify(frame, HEADER_SIZE, length, buffer.getInt(CHECKSUM_OFFSET));
+        return decodePayload(buffer);
+    }
+
+    /** Reads the next frame from a stream, or returns null if the stream ends before one starts. */
+    public static ProfileSnapshot read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        byte[] header = new byte[HEADER_SIZE];
+        int first = data.read();
+        if (first < 0) {
+            return null;
+        }
+        header[0] = (byte) first;
+        data.readFully(header, 1, HEADER_SIZE - 1);
+        ByteBuffer headerBuffer = ByteBuffer.wrap(header);
+        int length = readHeader(headerBuffer);
+        byte[] payload = new byte[length];
+        data.readFully(payload);
+        verify(payload, 0, length, headerBuffer.getInt(CHECKSUM_OFFSET));
+        return decodePayload(ByteBuffer.wrap(payload));
+    }
+
+    public static ProfileSnapshot read(Path file) throws IOException {
+        return decode(Files.readAllBytes(file));
+    }
+
+    private static int readHeader(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a profiler snapshot");
+        }
+        short version = buffer.getShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version + ", this reader knows " + VERSION);
+        }
+        buffer.getShort();
+        int length = buffer.getInt();
+        if (length < 0 || length > MAX_PAYLOAD) {
+            throw new IOException("Snapshot payload length out of range: " + length);
+        }
+        buffer.getInt();
+        return length;
+    }
+
+    private static int checksum(byte[] bytes, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+
+    private static void verify(byte[] bytes, int offset, int length, int expected) throws IOException {
+        if (checksum(bytes, offset, length) != expected) {
+            throw new IOException("Snapshot checksum mismatch");
+        }
+    }
+
+    private static ProfileSnapshot decodePayload(ByteBuffer buffer) throws IOException {
+        try {
+            String sourceId = getString(buffer);
+            long startMillis = getVarLong(buffer);
+            long capturedMillis = getVarLong(buffer);
+            long sequence = getVarLong(buffer);
+            long gcCollections = getVarLong(buffer);
+            long gcPauseTime = getVarLong(buffer);
+            long gcMaxPauseTime = getVarLong(buffer);
+            long gcAllocatedBytes = getVarLong(buffer);
+            MetricsWindow[] windows = new MetricsWindow[getCount(buffer)];
+            for (int w = 0; w < windows.length; w++) {
+                windows[w] = windowOf(getVarLong(buffer));
+            }
+            int methodCount = getCount(buffer);
+            List<MethodSnapshot> methods = new ArrayList<>(methodCount);
+            for (int m = 0; m < methodCount; m++) {
+                String name = getString(buffer);
+                long count = getVarLong(buffer);
+                long totalTime = getVarLong(buffer);
+                long minTime = count > 0 ? getVarLong(buffer) : Long.MAX_VALUE;
+                long maxTime = count > 0 ? getVarLong(buffer) : Long.MIN_VALUE;
+                long cpuTime = getVarLong(buffer);
+                long cpuTimeCalls = getVarLong(buffer);
+                long allocatedBytes = getVarLong(buffer);
+                long allocationSamples = getVarLong(buffer);
+                SparseHistogram histogram = getHistogram(buffer);
+                SparseHistogram allocationHistogram = getHistogram(buffer);
+                Map<MetricsWindow, WindowTotals> methodWindows = new EnumMap<>(MetricsWindow.class);
+                int windowCount = getCount(buffer);
+                for (int w = 0; w < windowCount; w++) {
+                    int position = getBounded(buffer, windows.length);
+                    WindowTotals totals = new WindowTotals(getVarLong(buffer), getVarLong(buffer), getHistogram(buffer));
+                    if (windows[position] != null) {
+                        methodWindows.put(windows[position], totals);
+                    }
+                }
+                methods.add(new MethodSnapshot(name, count, totalTime, minTime, maxTime, cpuTime, cpuTimeCalls,
+                    allocatedBytes, allocationSamples, histogram, allocationHistogram, methodWindows));
+            }
+            if (buffer.hasRemaining()) {
+                throw new IOException(buffer.remaining() + " bytes left over after the snapshot");
+            }
+            return new ProfileSnapshot(sourceId, startMillis, capturedMillis, sequence, gcCollections, gcPauseTime,
+                gcMaxPauseTime, gcAllocatedBytes, methods);
+        } catch (BufferUnderflowException e) {
+            throw new EOFException("Snapshot ends mid-record");
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Malformed snapshot: " + e.getMessage(), e);
+        }
+    }
+
+    private static MetricsWindow windowOf(long durationMillis) {
+        for (MetricsWindow window : WINDOWS) {
+            if (window.getDuration().toMillis() == durationMillis) {
+                return window;
+            }
+        }
+        return null;
+    }
+
+    private static long getVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("varint longer than 10 bytes");
+    }
+
+    // A count can never exceed the bytes left, which bounds what a corrupt length can allocate
+    private static int getCount(ByteBuffer buffer) {
+        long count = getVarLong(buffer);
+        if (count < 0 || count > buffer.remaining()) {
+            throw new IllegalArgumentException("count out of range: " + count);
+        }
+        return (int) count;
+    }
+
+    private static int getBounded(ByteBuffer buffer, int limit) {
+        long value = getVarLong(buffer);
+        if (value < 0 || value >= limit) {
+            throw new IllegalArgumentException("value " + value + " not below " + limit);
+        }
+        return (int) value;
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = getCount(buffer);
+        if (length > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException("string of " + length + " bytes");
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static SparseHistogram getHistogram(ByteBuffer buffer) {
+        int size = getCount(buffer);
+        int[] indexes = new int[size];
+        long[] counts = new long[size];
+        int index = -1;
+        for (int i = 0; i < size; i++) {
+            index += getBounded(buffer, LatencyHistogram.BUCKET_COUNT) + 1;
+            indexes[i] = index;
+            counts[i] = getVarLong(buffer);
+        }
+        return SparseHistogram.of(indexes, counts);
+    }
+
+    // Not a ByteArrayOutputStream, whose every write takes a lock
+    private static final class Encoder {
+        private byte[] buf;
+        private int count;
+
+        Encoder(int size) {
+            buf = new byte[size];
+        }
+
+        private void ensure(int bytes) {
+            if (count + bytes > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + bytes));
+            }
+        }
+
+        void putInt(int value) {
+            ensure(4);
+            buf[count++] = (byte) (value >>> 24);
+            buf[count++] = (byte) (value >>> 16);
+            buf[count++] = (byte) (value >>> 8);
+            buf[count++] = (byte) value;
+        }
+
+        void putShort(short value) {
+            ensure(2);
+            buf[count++] = (byte) (value >>> 8);
+            buf[count++] = (byte) value;
+        }
+
+        void putVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buf[count++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buf[count++] = (byte) value;
+        }
+
+        void putString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putVarLong(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, count, bytes.length);
+            count += bytes.length;
+        }
+
+        // Gaps rather than indexes, less one since indexes strictly ascend
+        void putHistogram(SparseHistogram histogram) {
+            putVarLong(histogram.size());
+            int previous = -1;
+            for (int i = 0; i < histogram.size(); i++) {
+                putVarLong(histogram.indexAt(i) - previous - 1);
+                putVarLong(histogram.countAt(i));
+                previous = histogram.indexAt(i);
+            }
+        }
+
+        byte[] finish() {
+            ByteBuffer header = ByteBuffer.wrap(buf, 0, HEADER_SIZE);
+            header.putInt(LENGTH_OFFSET, count - HEADER_SIZE);
+            header.putInt(CHECKSUM_OFFSET, checksum(buf, HEADER_SIZE, count - HEADER_SIZE));
+            return Arrays.copyOf(buf, count);
+        }
+    }
+}
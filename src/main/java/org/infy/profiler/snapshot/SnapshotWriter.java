@@ -0,0 +1,128 @@
+package org.infy.profiler.snapshot;
+
+import org.infy.profiler.MethodMetrics;
+import org.infy.profiler.MethodRegistry;
+import org.infy.profiler.PerformanceProfiler;
+import org.infy.profiler.monitoring.GcMetrics;
+import org.infy.profiler.window.MetricsWindow;
+import org.infy.profiler.window.WindowedMetricsCollector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Captures this process's mergeable state and hands it to a fleet aggregator, either as a file
+ * in a shared directory or over a Unix domain socket, or both. Each file is named after the
+ * source and replaced atomically, so a reader never sees half of one and a directory holds one
+ * file per process. The socket is connected for each snapshot, so an aggregator may start, stop
+ * or restart at any time.
+ */
+public class SnapshotWriter {
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotWriter.class);
+
+    private final PerformanceProfiler profiler;
+    private final String sourceId;
+    private final long startMillis;
+    private final Path directory;
+    private final Path socket;
+    private final Path file;
+    private final Path tempFile;
+    // Scheduler thread, then the final write once it has stopped
+    private long sequence;
+    private boolean socketFailing;
+
+    public SnapshotWriter(PerformanceProfiler profiler, String sourceId, Path directory, Path socket) {
+        this.profiler = profiler;
+        this.sourceId = sourceId != null ? sourceId : ManagementFactory.getRuntimeMXBean().getName();
+        this.startMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+        this.directory = directory;
+        this.socket = socket;
+        String fileName = this.sourceId.replaceAll("[^A-Za-z0-9._@-]", "_");
+        this.file = directory != null ? directory.resolve(fileName + SnapshotFormat.FILE_SUFFIX) : null;
+        this.tempFile = directory != null ? directory.resolve(fileName + SnapshotFormat.FILE_SUFFIX + ".tmp") : null;
+    }
+
+    public ProfileSnapshot capture() {
+        Map<MetricsWindow, Map<String, MethodMetrics>> windowed = new EnumMap<>(MetricsWindow.class);
+        WindowedMetricsCollector collector = profiler.getWindowedMetrics();
+        if (collector != null) {
+            for (MetricsWindow window : MetricsWindow.values()) {
+                if (!window.isCumulative()) {
+                    windowed.put(window, collector.getMetrics(window));
+                }
+            }
+        }
+        MethodRegistry registry = profiler.getMethodRegistry();
+        List<MethodSnapshot> methods = new ArrayList<>(registry.slotCount());
+        for (int slot = 0; slot < registry.slotCount(); slot++) {
+            MethodMetrics metrics = registry.getSlot(slot);
+            if (metrics == null) {
+                break;
+            }
+            Map<MetricsWindow, WindowTotals> windows = new EnumMap<>(MetricsWindow.class);
+            windowed.forEach((window, byName) -> {
+                MethodMetrics inWindow = byName.get(metrics.getMethodName());
+                if (inWindow != null) {
+                    windows.put(window, new WindowTotals(inWindow.getInvocationCount(),
+                        inWindow.getTotalExecutionTime(), SparseHistogram.of(inWindow.getHistogram())));
+                }
+            });
+            methods.add(metrics.toSnapshot(windows));
+        }
+        GcMetrics gc = profiler.getLatestGcMetrics();
+        return new ProfileSnapshot(sourceId, startMillis, System.currentTimeMillis(), ++sequence,
+            gc != null ? gc.collectionCount() : 0, gc != null ? gc.totalPauseTime() : 0,
+            gc != null ? gc.maxPauseTime() : 0, gc != null ? gc.allocatedBytes() : 0, methods);
+    }
+
+    public void write() throws IOException {
+        byte[] frame = SnapshotFormat.encode(capture());
+        if (file != null) {
+            Files.createDirectories(directory);
+            Files.write(tempFile, frame);
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        if (socket != null) {
+            send(frame);
+        }
+    }
+
+    // An absent aggregator is logged once, not on every snapshot
+    private void send(byte[] frame) {
+        try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+            ByteBuffer buffer = ByteBuffer.wrap(frame);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (socketFailing) {
+                logger.info("Sending snapshots to {} again", socket);
+                socketFailing = false;
+            }
+        } catch (IOException e) {
+            if (!socketFailing) {
+                logger.warn("Could not send a snapshot to {}, will keep trying: {}", socket, e.getMessage());
+                socketFailing = true;
+            }
+        }
+    }
+
+    public String getSourceId() {
+        return sourceId;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+}
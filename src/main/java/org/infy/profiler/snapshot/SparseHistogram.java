@@ -0,0 +1,96 @@
+package org.infy.profiler.snapshot;
+
+import org.infy.profiler.LatencyHistogram;
+
+import java.util.Arrays;
+
+/**
+ * The non-empty buckets of a {@link LatencyHistogram}, in ascending index order. A method's
+ * calls usually land in a handful of buckets, so this is what snapshots carry and merge rather
+ * than the full bucket array. Immutable.
+ */
+public final class SparseHistogram {
+    public static final SparseHistogram EMPTY = new SparseHistogram(new int[0], new long[0]);
+
+    private final int[] indexes;
+    private final long[] counts;
+
+    private SparseHistogram(int[] indexes, long[] counts) {
+        this.indexes = indexes;
+        this.counts = counts;
+    }
+
+    public static SparseHistogram of(LatencyHistogram histogram) {
+        int[] indexes = new int[16];
+        long[] counts = new long[16];
+        int used = 0;
+        for (int i = 0; i < LatencyHistogram.BUCKET_COUNT; i++) {
+            long count = histogram.getCountAt(i);
+            if (count != 0) {
+                if (used == indexes.length) {
+                    indexes = Arrays.copyOf(indexes, used * 2);
+                    counts = Arrays.copyOf(counts, used * 2);
+                }
+                indexes[used] = i;
+                counts[used] = count;
+                used++;
+            }
+        }
+        return used == 0 ? EMPTY : new SparseHistogram(Arrays.copyOf(indexes, used), Arrays.copyOf(counts, used));
+    }
+
+    // Decoder only; indexes are checked to be ascending and within the histogram's range
+    static SparseHistogram of(int[] indexes, long[] counts) {
+        for (int i = 0; i < indexes.length; i++) {
+            if (indexes[i] < 0 || indexes[i] >= LatencyHistogram.BUCKET_COUNT || (i > 0 && indexes[i] <= indexes[i - 1])) {
+                throw new IllegalArgumentException("Histogram bucket out of order or range: " + indexes[i]);
+            }
+        }
+        return indexes.length == 0 ? EMPTY : new SparseHistogram(indexes, counts);
+    }
+
+    public SparseHistogram merge(SparseHistogram other) {
+        if (other.indexes.length == 0) {
+            return this;
+        }
+        if (indexes.length == 0) {
+            return other;
+        }
+        int[] mergedIndexes = new int[indexes.length + other.indexes.length];
+        long[] mergedCounts = new long[mergedIndexes.length];
+        int a = 0;
+        int b = 0;
+        int used = 0;
+        while (a < indexes.length || b < other.indexes.length) {
+            if (b == other.indexes.length || (a < indexes.length && indexes[a] < other.indexes[b])) {
+                mergedIndexes[used] = indexes[a];
+                mergedCounts[used++] = counts[a++];
+            } else if (a == indexes.length || other.indexes[b] < indexes[a]) {
+                mergedIndexes[used] = other.indexes[b];
+                mergedCounts[used++] = other.counts[b++];
+            } else {
+                mergedIndexes[used] = indexes[a];
+                mergedCounts[used++] = counts[a++] + other.counts[b++];
+            }
+        }
+        return new SparseHistogram(Arrays.copyOf(mergedIndexes, used), Arrays.copyOf(mergedCounts, used));
+    }
+
+    public void addTo(LatencyHistogram histogram) {
+        for (int i = 0; i < indexes.length; i++) {
+            histogram.addAtIndex(indexes[i], counts[i]);
+        }
+    }
+
+    public int size() {
+        return indexes.length;
+    }
+
+    public int indexAt(int i) {
+        return indexes[i];
+    }
+
+    public long countAt(int i) {
+        return counts[i];
+    }
+}
@@ -0,0 +1,12 @@
+package org.infy.profiler.snapshot;
+
+/** One method's calls within a rolling window, as carried by a snapshot. */
+public record WindowTotals(
+    long count,
+    long totalTime,
+    SparseHistogram histogram
+) {
+    public WindowTotals merge(WindowTotals other) {
+        return new WindowTotals(count + other.count, totalTime + other.totalTime, histogram.merge(other.histogram));
+    }
+}
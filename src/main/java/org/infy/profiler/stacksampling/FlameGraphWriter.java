@@ -0,0 +1,122 @@
+package org.infy.profiler.stacksampling;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Writes a {@link StackTrie} as collapsed stacks ({@code frame;frame;frame count}, the input
+ * format of Brendan Gregg's flamegraph.pl and speedscope) and as a self-contained SVG flame
+ * graph, either standalone or embedded in an HTML page. Callers hold the trie lock while rendering.
+ */
+public class FlameGraphWriter {
+    private static final int WIDTH = 1200;
+    private static final int FRAME_HEIGHT = 16;
+    private static final int HEADER_HEIGHT = 40;
+    // Frames narrower than this are not drawn; they would be unreadable slivers
+    private static final double MIN_FRAME_WIDTH = 0.5;
+
+    private final StackTrie trie;
+    private final String title;
+
+    public FlameGraphWriter(StackTrie trie, String title) {
+        this.trie = trie;
+        this.title = title;
+    }
+
+    public String toCollapsed() {
+        StringBuilder out = new StringBuilder();
+        Deque<String> path = new ArrayDeque<>();
+        for (StackTrie.Node child : trie.getRoot().getChildren()) {
+            appendCollapsed(out, child, path);
+        }
+        return out.toString();
+    }
+
+    private void appendCollapsed(StringBuilder out, StackTrie.Node node, Deque<String> path) {
+        path.addLast(trie.getLabel(node));
+        if (node.getSelf() > 0) {
+            out.append(String.join(";", path)).append(' ').append(node.getSelf()).append('\n');
+        }
+        for (StackTrie.Node child : node.getChildren()) {
+            appendCollapsed(out, child, path);
+        }
+        path.removeLast();
+    }
+
+    public static String toHtml(String title, String svg) {
+        return "<!DOCTYPE html>\n<html><head><meta charset=\"utf-8\"><title>" + escape(title)
+            + "</title></head>\n<body style=\"margin:0\">\n" + svg + "</body></html>\n";
+    }
+
+    public String toSvg() {
+        StackTrie.Node root = trie.getRoot();
+        List<Frame> frames = new ArrayList<>();
+        layout(root, 0, 0.0, root.getTotal(), frames);
+        int depth = frames.stream().mapToInt(Frame::level).max().orElse(0);
+        int base = HEADER_HEIGHT + (depth + 1) * FRAME_HEIGHT;
+        StringBuilder svg = new StringBuilder();
+        svg.append("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"").append(WIDTH)
+            .append("\" height=\"").append(base + 10).append("\" font-family=\"Verdana\" font-size=\"11\">\n");
+        svg.append("<rect width=\"100%\" height=\"100%\" fill=\"#f8f8f8\"/>\n");
+        svg.append("<text x=\"").append(WIDTH / 2).append("\" y=\"24\" text-anchor=\"middle\" font-size=\"16\">")
+            .append(escape(title)).append("</text>\n");
+        // The root sits at the bottom and callees stack upwards
+        for (Frame frame : frames) {
+            int y = base - (frame.level() + 1) * FRAME_HEIGHT;
+            String tooltip = String.format(Locale.ROOT, "%s (%d samples, %.2f%%)", frame.label(), frame.samples(),
+                frame.samples() * 100.0 / root.getTotal());
+            svg.append(String.format(Locale.ROOT,
+                "<g><title>%s</title><rect x=\"%.2f\" y=\"%d\" width=\"%.2f\" height=\"%d\" fill=\"%s\" rx=\"2\"/>",
+                escape(tooltip), frame.x(), y, frame.width(), FRAME_HEIGHT - 1, color(frame.label())));
+            svg.append(text(frame.label(), frame.x(), y + FRAME_HEIGHT - 4, frame.width()));
+            svg.append("</g>\n");
+        }
+        svg.append("</svg>\n");
+        return svg.toString();
+    }
+
+    private void layout(StackTrie.Node node, int level, double x, long rootTotal, List<Frame> frames) {
+        if (rootTotal == 0) {
+            return;
+        }
+        double width = (double) node.getTotal() / rootTotal * WIDTH;
+        if (width < MIN_FRAME_WIDTH) {
+            return;
+        }
+        frames.add(new Frame(trie.getLabel(node), level, x, width, node.getTotal()));
+        double childX = x;
+        for (StackTrie.Node child : node.getChildren()) {
+            layout(child, level + 1, childX, rootTotal, frames);
+            childX += (double) child.getTotal() / rootTotal * WIDTH;
+        }
+    }
+
+    private static String text(String label, double x, int y, double width) {
+        // Roughly 7px per character at this font size
+        int fits = (int) ((width - 6) / 7);
+        if (fits < 3) {
+            return "";
+        }
+        String shown = label.length() <= fits ? label : label.substring(0, fits - 2) + "..";
+        return String.format(Locale.ROOT, "<text x=\"%.2f\" y=\"%d\">%s</text>", x + 3, y, escape(shown));
+    }
+
+    // Warm palette keyed by the frame label so a method keeps its colour between exports
+    private static String color(String label) {
+        int hash = label.hashCode();
+        int red = 200 + Math.floorMod(hash, 55);
+        int green = 80 + Math.floorMod(hash >> 8, 150);
+        int blue = 40 + Math.floorMod(hash >> 16, 50);
+        return String.format("#%02x%02x%02x", red, green, blue);
+    }
+
+    private record Frame(String label, int level, double x, double width, long samples) {
+    }
+
+    private static String escape(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+}
@@ -0,0 +1,165 @@
+package org.infy.profiler.stacksampling;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Periodically captures the stacks of every live thread and folds those in the selected states
+ * into a {@link StackTrie}. Unlike the timing advice it sees all code, woven or not. Stacks come
+ * from {@link ThreadMXBean#getThreadInfo(long[], int)}, which stops the JVM at a safepoint, so
+ * samples are biased towards safepoint polls and the cost grows with the thread count; the time
+ * spent sampling is tracked so the overhead can be reported next to the results.
+ */
+public class StackSampler {
+    private static final Logger logger = LoggerFactory.getLogger(StackSampler.class);
+    // Native calls that report RUNNABLE while the thread is really parked in the kernel
+    private static final Set<String> IDLE_NATIVE_FRAMES = Set.of(
+        "java.lang.ref.Reference.waitForReferencePendingList",
+        "sun.nio.ch.EPoll.wait",
+        "sun.nio.ch.KQueue.poll",
+        "sun.nio.ch.WEPoll.wait",
+        "sun.nio.ch.Net.accept",
+        "sun.nio.ch.Net.poll",
+        "sun.nio.ch.SocketDispatcher.read0",
+        "java.net.SocketInputStream.socketRead0",
+        "java.io.FileInputStream.readBytes");
+
+    private final ThreadMXBean threadMXBean;
+    private final long intervalMillis;
+    private final int maxDepth;
+    private final Set<Thread.State> states;
+    private final StackTrie trie = new StackTrie();
+    private ScheduledExecutorService executor;
+    private volatile long samplerThreadId = -1;
+    private volatile long startNanos;
+    private volatile long sampleRounds;
+    private volatile long samplingNanos;
+    private volatile long samplingCpuNanos;
+
+    public StackSampler(long intervalMillis, int maxDepth, Set<Thread.State> states) {
+        this.threadMXBean = ManagementFactory.getThreadMXBean();
+        this.intervalMillis = intervalMillis;
+        this.maxDepth = maxDepth;
+        this.states = states.isEmpty() ? EnumSet.allOf(Thread.State.class) : EnumSet.copyOf(states);
+    }
+
+    public synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "profiler-stack-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        startNanos = System.nanoTime();
+        executor.scheduleAtFixedRate(() -> {
+            try {
+                sample();
+            } catch (Exception e) {
+                logger.error("Error sampling thread stacks", e);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        logger.info("Stack sampling every {} ms for threads in {}", intervalMillis, states);
+    }
+
+    public synchronized void stop() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        executor = null;
+        logger.info("Stack sampling stopped after {} rounds, {} samples, {} ms of CPU spent sampling ({}% overhead)",
+            sampleRounds, getSampleCount(), samplingCpuNanos / 1_000_000, String.format("%.2f", getOverheadPercent()));
+    }
+
+    // Sampler thread only
+    private void sample() {
+        long start = System.nanoTime();
+        long cpuStart = threadMXBean.getCurrentThreadCpuTime();
+        samplerThreadId = Thread.currentThread().getId();
+        ThreadInfo[] infos = threadMXBean.getThreadInfo(threadMXBean.getAllThreadIds(), maxDepth);
+        synchronized (trie) {
+            for (ThreadInfo info : infos) {
+                if (info == null || info.getThreadId() == samplerThreadId) {
+                    continue;
+                }
+                StackTraceElement[] stack = info.getStackTrace();
+                if (stack.length > 0 && states.contains(effectiveState(info.getThreadState(), stack[0]))) {
+                    trie.add(stack);
+                }
+            }
+        }
+        sampleRounds++;
+        samplingCpuNanos += threadMXBean.getCurrentThreadCpuTime() - cpuStart;
+        samplingNanos += System.nanoTime() - start;
+    }
+
+    private static Thread.State effectiveState(Thread.State state, StackTraceElement top) {
+        if (state == Thread.State.RUNNABLE && top.isNativeMethod()
+                && IDLE_NATIVE_FRAMES.contains(top.getClassName() + "." + top.getMethodName())) {
+            return Thread.State.WAITING;
+        }
+        return state;
+    }
+
+    /** Runs the action while holding the trie lock, so the sampler cannot modify it meanwhile. */
+    public <T> T withTrie(Function<StackTrie, T> action) {
+        synchronized (trie) {
+            return action.apply(trie);
+        }
+    }
+
+    public long getSampleCount() {
+        synchronized (trie) {
+            return trie.getSampleCount();
+        }
+    }
+
+    public long getSampleRounds() {
+        return sampleRounds;
+    }
+
+    public long getAverageSampleCost() {
+        long rounds = sampleRounds;
+        return rounds > 0 ? samplingNanos / rounds : 0;
+    }
+
+    public long getSamplingCpuTime() {
+        return samplingCpuNanos;
+    }
+
+    /**
+     * CPU time the sampler thread has used as a share of the time it has been running. Wall time
+     * inside a round is not used because it includes waiting for a core and for the safepoint.
+     * Falls back to wall time when thread CPU time is not supported.
+     */
+    public double getOverheadPercent() {
+        long elapsed = System.nanoTime() - startNanos;
+        long spent = threadMXBean.isCurrentThreadCpuTimeSupported() ? samplingCpuNanos : samplingNanos;
+        return elapsed > 0 ? spent * 100.0 / elapsed : 0.0;
+    }
+
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    public Set<Thread.State> getStates() {
+        return states;
+    }
+}
@@ -0,0 +1,87 @@
+package org.infy.profiler.stacksampling;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Deduplicated prefix tree of sampled stacks, outermost frame first. Frame labels are interned
+ * once and nodes refer to them by id, so a stack seen a million times costs one path of nodes.
+ * Callers synchronize on the trie.
+ */
+public class StackTrie {
+    private final Map<StackTraceElement, Integer> elementIds = new HashMap<>();
+    private final Map<String, Integer> labelIds = new HashMap<>();
+    private final List<String> labels = new ArrayList<>();
+    private final Node root = new Node(-1);
+
+    public void add(StackTraceElement[] stack) {
+        Node node = root;
+        node.total++;
+        for (int i = stack.length - 1; i >= 0; i--) {
+            node = node.child(frameId(stack[i]));
+            node.total++;
+        }
+        node.self++;
+    }
+
+    private int frameId(StackTraceElement element) {
+        Integer id = elementIds.get(element);
+        if (id == null) {
+            String label = element.getClassName() + "." + element.getMethodName();
+            id = labelIds.computeIfAbsent(label, l -> {
+                labels.add(l);
+                return labels.size() - 1;
+            });
+            elementIds.put(element, id);
+        }
+        return id;
+    }
+
+    public Node getRoot() {
+        return root;
+    }
+
+    public String getLabel(Node node) {
+        return node.frame < 0 ? "all" : labels.get(node.frame);
+    }
+
+    public long getSampleCount() {
+        return root.total;
+    }
+
+    public int getFrameCount() {
+        return labels.size();
+    }
+
+    public static class Node {
+        private final int frame;
+        private long total;
+        private long self;
+        private Map<Integer, Node> children;
+
+        private Node(int frame) {
+            this.frame = frame;
+        }
+
+        private Node child(int frame) {
+            if (children == null) {
+                children = new HashMap<>(4);
+            }
+            return children.computeIfAbsent(frame, Node::new);
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public long getSelf() {
+            return self;
+        }
+
+        public Iterable<Node> getChildren() {
+            return children == null ? List.of() : children.values();
+        }
+    }
+}
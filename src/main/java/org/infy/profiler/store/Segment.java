@@ -0,0 +1,100 @@
+package org.infy.profiler.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * One fixed-size, memory-mapped segment file. The header holds a magic number, the format
+ * version, the time of the first record and the committed length; bytes past the committed
+ * length are never read, so a crash mid-append loses at most the record being written.
+ */
+class Segment {
+    static final int MAGIC = 0x50524F46; // "PROF"
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    private static final int CREATED_OFFSET = 8;
+    private static final int COMMITTED_OFFSET = 16;
+
+    private final Path path;
+    private final long sequence;
+    private final MappedByteBuffer buffer;
+
+    private Segment(Path path, long sequence, MappedByteBuffer buffer) {
+        this.path = path;
+        this.sequence = sequence;
+        this.buffer = buffer;
+    }
+
+    static Segment create(Path path, long sequence, int size, long createdMillis) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(0, MAGIC);
+            buffer.putShort(4, VERSION);
+            buffer.putLong(CREATED_OFFSET, createdMillis);
+            buffer.putLong(COMMITTED_OFFSET, HEADER_SIZE);
+            buffer.position(HEADER_SIZE);
+            return new Segment(path, sequence, buffer);
+        }
+    }
+
+    // The mapping outlives the channel, so the file handle is not kept open
+    static Segment open(Path path, long sequence, boolean writable) throws IOException {
+        try (FileChannel channel = writable
+                ? FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(
+                writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt(0) != MAGIC || buffer.getShort(4) != VERSION) {
+                throw new IOException("Not a profiler store segment: " + path);
+            }
+            buffer.position((int) buffer.getLong(COMMITTED_OFFSET));
+            return new Segment(path, sequence, buffer);
+        }
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    long getCreatedMillis() {
+        return buffer.getLong(CREATED_OFFSET);
+    }
+
+    int getCommitted() {
+        return (int) buffer.getLong(COMMITTED_OFFSET);
+    }
+
+    int remaining() {
+        return buffer.capacity() - buffer.position();
+    }
+
+    // Writer side: records are put at the current position and then committed
+    ByteBuffer writer() {
+        return buffer;
+    }
+
+    void commit() {
+        buffer.putLong(COMMITTED_OFFSET, buffer.position());
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    /** An independent read view of the committed bytes. */
+    ByteBuffer reader(int committed) {
+        ByteBuffer view = buffer.duplicate();
+        view.limit(committed);
+        view.position(HEADER_SIZE);
+        return view;
+    }
+}
@@ -0,0 +1,56 @@
+package org.infy.profiler.store;
+
+import org.infy.profiler.monitoring.CpuMetrics;
+import org.infy.profiler.monitoring.MemoryMetrics;
+import org.infy.profiler.monitoring.ThreadMetrics;
+import org.infy.profiler.window.MethodInterval;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Prints a time range of a store as CSV, one line per record, for loading into a spreadsheet or
+ * plotting tool. The store is opened read-only, so it can run while the profiled application
+ * keeps appending, and a mistyped directory is reported rather than created.
+ *
+ * <p>Usage: {@code StoreDump <directory> [minutes back, default 60]}
+ */
+public class StoreDump {
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: StoreDump <directory> [minutes]");
+            System.exit(1);
+        }
+        long to = System.currentTimeMillis();
+        long from = to - Duration.ofMinutes(args.length > 1 ? Long.parseLong(args[1]) : 60).toMillis();
+        try (TimeSeriesStore store = TimeSeriesStore.openReadOnly(Path.of(args[0]))) {
+            System.out.println("type,timestamp,name,a,b,c,d,e,f");
+            store.replay(from, to, new TimeSeriesVisitor() {
+                @Override
+                public void onMethodInterval(MethodInterval interval) {
+                    System.out.printf("method,%d,\"%s\",%d,%d,%d,%d,%d,%d%n", interval.endMillis(),
+                        interval.methodName(), interval.startMillis(), interval.count(), interval.totalTime(),
+                        interval.p50(), interval.p99(), interval.max());
+                }
+
+                @Override
+                public void onMemory(long timestamp, MemoryMetrics metrics) {
+                    System.out.printf("memory,%d,,%d,%d,%d,%d,,%n", timestamp, metrics.heapUsed(),
+                        metrics.heapMax(), metrics.nonHeapUsed(), metrics.nonHeapMax());
+                }
+
+                @Override
+                public void onCpu(long timestamp, CpuMetrics metrics) {
+                    System.out.printf("cpu,%d,,%.4f,%.4f,%d,,,%n", timestamp, metrics.systemLoadAverage(),
+                        metrics.processCpuLoad(), metrics.availableProcessors());
+                }
+
+                @Override
+                public void onThreads(long timestamp, ThreadMetrics metrics) {
+                    System.out.printf("threads,%d,,%d,%d,%d,%d,,%n", timestamp, metrics.currentThreadCount(),
+                        metrics.peakThreadCount(), metrics.daemonThreadCount(), metrics.totalStartedThreadCount());
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package org.infy.profiler.store;
+
+import org.infy.profiler.monitoring.CpuMetrics;
+import org.infy.profiler.monitoring.MemoryMetrics;
+import org.infy.profiler.monitoring.ThreadMetrics;
+import org.infy.profiler.window.MethodInterval;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Append-only store of profiler history in memory-mapped segment files. Each record is a type
+ * byte, a timestamp and a fixed-size payload; method names are written once per segment as a
+ * dictionary record, so every segment can be read on its own. When a segment is full, or has
+ * covered a quarter of the retention period, the next one is started. On every append the oldest
+ * segments are deleted once there are more than the configured maximum or they are older than
+ * the retention period, so history expires even when segments fill slowly.
+ *
+ * <p>Appends are serialized on the store. {@link #replay} walks the mapped files directly and
+ * hands each record to a visitor, so reading a long range does not load it onto the heap.
+ * {@link #openReadOnly} gives a store that can only be replayed.
+ */
+public class TimeSeriesStore implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(TimeSeriesStore.class);
+    private static final String PREFIX = "segment-";
+    private static final String SUFFIX = ".ts";
+
+    static final byte METHOD_NAME = 1;
+    static final byte METHOD_INTERVAL = 2;
+    static final byte MEMORY = 3;
+    static final byte CPU = 4;
+    static final byte THREADS = 5;
+    private static final int RECORD_HEADER = 1 + 8;
+    private static final int MAX_NAME_BYTES = 4096;
+    // Expired records outlive the retention period by at most the span of one segment
+    private static final int SEGMENTS_PER_RETENTION = 4;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final long retentionMillis;
+    private final boolean readOnly;
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private final Map<String, Integer> segmentMethodIds = new HashMap<>();
+    private Segment active;
+    // Highest sequence among the segment files, including any that could not be opened
+    private long lastSequence;
+
+    public TimeSeriesStore(Path directory, int segmentSize, int maxSegments, long retentionMillis) throws IOException {
+        if (segmentSize < Segment.HEADER_SIZE + RECORD_HEADER + 6 + MAX_NAME_BYTES) {
+            throw new IllegalArgumentException("Segment size too small: " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        this.retentionMillis = retentionMillis;
+        this.readOnly = false;
+        Files.createDirectories(directory);
+        openExisting();
+    }
+
+    private TimeSeriesStore(Path directory) {
+        this.directory = directory;
+        this.segmentSize = 0;
+        this.maxSegments = 0;
+        this.retentionMillis = 0;
+        this.readOnly = true;
+    }
+
+    /**
+     * Opens an existing store for replay only. Every segment is mapped read-only and no file is
+     * created, written or deleted, so the store may belong to another user, sit on a read-only
+     * mount or be appended to by a running profiler at the same time. Appends throw
+     * {@link IllegalStateException}.
+     */
+    public static TimeSeriesStore openReadOnly(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            throw new NoSuchFileException(directory.toString(), null, "Not a profiler store directory");
+        }
+        TimeSeriesStore store = new TimeSeriesStore(directory);
+        store.openExisting();
+        return store;
+    }
+
+    private void openExisting() throws IOException {
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            stream.forEach(paths::add);
+        }
+        paths.sort(null);
+        for (int i = 0; i < paths.size(); i++) {
+            Path path = paths.get(i);
+            boolean last = i == paths.size() - 1 && !readOnly;
+            try {
+                long sequence = sequenceOf(path);
+                lastSequence = Math.max(lastSequence, sequence);
+                Segment segment = Segment.open(path, sequence, last);
+                segments.add(segment);
+                if (last) {
+                    active = segment;
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Skipping unreadable store segment {}", path, e);
+            }
+        }
+        if (active != null) {
+            // Continue after the last committed record; its dictionary has to be rebuilt
+            replaySegment(active, Long.MIN_VALUE, Long.MAX_VALUE, new TimeSeriesVisitor() { },
+                segmentMethodIds);
+        }
+        // Otherwise the older segments stay read-only and the first append starts a new one after the damaged file
+        if (!segments.isEmpty()) {
+            logger.info("Reopened profiler store {} with {} segments", directory, segments.size());
+        }
+    }
+
+    private static long sequenceOf(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    public synchronized void appendMethodInterval(MethodInterval interval) throws IOException {
+        int id = methodId(interval.methodName(), interval.endMillis());
+        ByteBuffer out = reserve(METHOD_INTERVAL, interval.endMillis(), 4 + 8 * 6);
+        out.putInt(id)
+            .putLong(interval.startMillis())
+            .putLong(interval.count())
+            .putLong(interval.totalTime())
+            .putLong(interval.p50())
+            .putLong(interval.p99())
+            .putLong(interval.max());
+        active.commit();
+    }
+
+    public synchronized void appendMemory(long timestamp, MemoryMetrics metrics) throws IOException {
+        reserve(MEMORY, timestamp, 8 * 4)
+            .putLong(metrics.heapUsed())
+            .putLong(metrics.heapMax())
+            .putLong(metrics.nonHeapUsed())
+            .putLong(metrics.nonHeapMax());
+        active.commit();
+    }
+
+    public synchronized void appendCpu(long timestamp, CpuMetrics metrics) throws IOException {
+        reserve(CPU, timestamp, 8 + 8 + 4)
+            .putDouble(metrics.systemLoadAverage())
+            .putDouble(metrics.processCpuLoad())
+            .putInt(metrics.availableProcessors());
+        active.commit();
+    }
+
+    public synchronized void appendThreads(long timestamp, ThreadMetrics metrics) throws IOException {
+        reserve(THREADS, timestamp, 4 * 3 + 8)
+            .putInt(metrics.currentThreadCount())
+            .putInt(metrics.peakThreadCount())
+            .putInt(metrics.daemonThreadCount())
+            .putLong(metrics.totalStartedThreadCount());
+        active.commit();
+    }
+
+    private int methodId(String methodName, long timestamp) throws IOException {
+        byte[] name = methodName.getBytes(StandardCharsets.UTF_8);
+        if (name.length > MAX_NAME_BYTES) {
+            name = java.util.Arrays.copyOf(name, MAX_NAME_BYTES);
+        }
+        // Make sure the name and its first sample land in the same segment
+        ensureCapacity(2 * RECORD_HEADER + 6 + name.length + 4 + 8 * 6, timestamp);
+        Integer id = segmentMethodIds.get(methodName);
+        if (id == null) {
+            id = segmentMethodIds.size();
+            segmentMethodIds.put(methodName, id);
+            reserve(METHOD_NAME, timestamp, 4 + 2 + name.length)
+                .putInt(id)
+                .putShort((short) name.length)
+                .put(name);
+            active.commit();
+        }
+        return id;
+    }
+
+    private ByteBuffer reserve(byte type, long timestamp, int payload) throws IOException {
+        ensureCapacity(RECORD_HEADER + payload, timestamp);
+        return active.writer().put(type).putLong(timestamp);
+    }
+
+    private void ensureCapacity(int bytes, long timestamp) throws IOException {
+        if (readOnly) {
+            throw new IllegalStateException("Store " + directory + " is open read-only");
+        }
+        if (active == null || active.remaining() < bytes || spansRetentionSlice(timestamp)) {
+            roll(timestamp);
+        } else {
+            enforceRetention(timestamp);
+        }
+    }
+
+    private boolean spansRetentionSlice(long timestamp) {
+        return retentionMillis > 0
+            && timestamp - active.getCreatedMillis() >= retentionMillis / SEGMENTS_PER_RETENTION;
+    }
+
+    private void roll(long timestamp) throws IOException {
+        if (active != null) {
+            active.force();
+        }
+        long sequence = ++lastSequence;
+        Path path = directory.resolve(String.format("%s%012d%s", PREFIX, sequence, SUFFIX));
+        active = Segment.create(path, sequence, segmentSize, timestamp);
+        segments.add(active);
+        segmentMethodIds.clear();
+        enforceRetention(timestamp);
+    }
+
+    // A segment is expired once the one after it starts before the cutoff, i.e. all its records are older
+    private void enforceRetention(long now) {
+        while (segments.size() > 1) {
+            Segment oldest = segments.get(0);
+            boolean tooMany = maxSegments > 0 && segments.size() > maxSegments;
+            boolean tooOld = retentionMillis > 0 && segments.get(1).getCreatedMillis() < now - retentionMillis;
+            if (!tooMany && !tooOld) {
+                break;
+            }
+            segments.remove(0);
+            try {
+                Files.deleteIfExists(oldest.getPath());
+            } catch (IOException e) {
+                logger.warn("Could not delete expired store segment {}", oldest.getPath(), e);
+            }
+        }
+    }
+
+    /**
+     * Hands every record with a timestamp in {@code [fromMillis, toMillis]} to the visitor, oldest
+     * first. Safe to call while appends continue; records appended during the replay may or may
+     * not be seen.
+     */
+    public void replay(long fromMillis, long toMillis, TimeSeriesVisitor visitor) {
+        List<Segment> snapshot = new ArrayList<>(segments);
+        for (int i = 0; i < snapshot.size(); i++) {
+            Segment segment = snapshot.get(i);
+            if (segment.getCreatedMillis() > toMillis) {
+                break;
+            }
+            // Records in a segment are older than the first record of the next one
+            if (i + 1 < snapshot.size() && snapshot.get(i + 1).getCreatedMillis() < fromMillis) {
+                continue;
+            }
+            replaySegment(segment, fromMillis, toMillis, visitor, new HashMap<>());
+        }
+    }
+
+    private void replaySegment(Segment segment, long fromMillis, long toMillis, TimeSeriesVisitor visitor,
+                               Map<String, Integer> dictionary) {
+        Map<Integer, String> names = new HashMap<>();
+        ByteBuffer in;
+        synchronized (this) {
+            in = segment.reader(segment.getCommitted());
+        }
+        while (in.remaining() >= RECORD_HEADER) {
+            byte type = in.get();
+            long timestamp = in.getLong();
+            boolean inRange = timestamp >= fromMillis && timestamp <= toMillis;
+            switch (type) {
+                case METHOD_NAME -> {
+                    int id = in.getInt();
+                    byte[] name = new byte[in.getShort()];
+                    in.get(name);
+                    String methodName = new String(name, StandardCharsets.UTF_8);
+                    names.put(id, methodName);
+                    dictionary.put(methodName, id);
+                }
+                case METHOD_INTERVAL -> {
+                    int id = in.getInt();
+                    long start = in.getLong();
+                    long count = in.getLong();
+                    long totalTime = in.getLong();
+                    long p50 = in.getLong();
+                    long p99 = in.getLong();
+                    long max = in.getLong();
+                    if (inRange) {
+                        visitor.onMethodInterval(new MethodInterval(names.get(id), start, timestamp,
+                            count, totalTime, p50, p99, max));
+                    }
+                }
+                case MEMORY -> {
+                    MemoryMetrics metrics = new MemoryMetrics(in.getLong(), in.getLong(), in.getLong(), in.getLong());
+                    if (inRange) {
+                        visitor.onMemory(timestamp, metrics);
+                    }
+                }
+                case CPU -> {
+                    CpuMetrics metrics = new CpuMetrics(in.getDouble(), in.getDouble(), in.getInt());
+                    if (inRange) {
+                        visitor.onCpu(timestamp, metrics);
+                    }
+                }
+                case THREADS -> {
+                    ThreadMetrics metrics = new ThreadMetrics(in.getInt(), in.getInt(), in.getInt(), in.getLong());
+                    if (inRange) {
+                        visitor.onThreads(timestamp, metrics);
+                    }
+                }
+                default -> {
+                    logger.warn("Unknown record type {} in {}, skipping the rest of the segment",
+                        type, segment.getPath());
+                    return;
+                }
+            }
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (active != null) {
+            active.force();
+        }
+    }
+}
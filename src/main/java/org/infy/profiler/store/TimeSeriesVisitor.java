@@ -0,0 +1,21 @@
+package org.infy.profiler.store;
+
+import org.infy.profiler.monitoring.CpuMetrics;
+import org.infy.profiler.monitoring.MemoryMetrics;
+import org.infy.profiler.monitoring.ThreadMetrics;
+import org.infy.profiler.window.MethodInterval;
+
+/** Receives replayed records in the order they were written. Every callback is optional. */
+public interface TimeSeriesVisitor {
+    default void onMethodInterval(MethodInterval interval) {
+    }
+
+    default void onMemory(long timestamp, MemoryMetrics metrics) {
+    }
+
+    default void onCpu(long timestamp, CpuMetrics metrics) {
+    }
+
+    default void onThreads(long timestamp, ThreadMetrics metrics) {
+    }
+}
@@ -0,0 +1,46 @@
+package org.infy.profiler.visualization;
+
+import org.infy.profiler.calltree.CallTreeSnapshot;
+
+import javax.swing.*;
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
+import java.awt.*;
+
+public class CallTreeView extends JPanel {
+    private final JTree tree;
+    private final DefaultTreeModel treeModel;
+
+    public CallTreeView() {
+        setLayout(new BorderLayout());
+
+        treeModel = new DefaultTreeModel(new DefaultMutableTreeNode("No call tree data"));
+        tree = new JTree(treeModel);
+        tree.setRootVisible(true);
+
+        add(new JScrollPane(tree), BorderLayout.CENTER);
+    }
+
+    public void updateData(CallTreeSnapshot callTree) {
+        if (callTree == null) {
+            return;
+        }
+        DefaultMutableTreeNode root = toTreeNode(callTree);
+        treeModel.setRoot(root);
+        // Show the top-level calls, deeper levels expand on demand
+        tree.expandRow(0);
+    }
+
+    private DefaultMutableTreeNode toTreeNode(CallTreeSnapshot snapshot) {
+        DefaultMutableTreeNode node = new DefaultMutableTreeNode(String.format(
+            "%s  total %.2f ms | self %.2f ms | %d calls",
+            snapshot.methodName(),
+            snapshot.totalTime() / 1_000_000.0,
+            snapshot.selfTime() / 1_000_000.0,
+            snapshot.calls()));
+        for (CallTreeSnapshot child : snapshot.children()) {
+            node.add(toTreeNode(child));
+        }
+        return node;
+    }
+}
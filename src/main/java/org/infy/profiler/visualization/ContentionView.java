@@ -0,0 +1,49 @@
+package org.infy.profiler.visualization;
+
+import org.infy.profiler.contention.ContendedLock;
+import org.infy.profiler.contention.ContentionSnapshot;
+import org.infy.profiler.contention.LockSiteContention;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+
+/**
+ * Top contended locks: those the sampler saw threads waiting for, then the woven acquisition
+ * sites, each with the time spent waiting. Only used on the EDT.
+ */
+public class ContentionView extends JPanel {
+    private static final String[] COLUMN_NAMES = {"Lock / Site", "Kind", "Waits", "Wait (ms)", "Max (ms)", "Top Owner"};
+    private final DefaultTableModel tableModel = new DefaultTableModel(COLUMN_NAMES, 0) {
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return false;
+        }
+    };
+    private final JLabel header = new JLabel("No contention data");
+
+    public ContentionView() {
+        setLayout(new BorderLayout());
+        JTable table = new JTable(tableModel);
+        table.setFillsViewportHeight(true);
+        table.getColumnModel().getColumn(0).setPreferredWidth(300);
+        add(header, BorderLayout.NORTH);
+        add(new JScrollPane(table), BorderLayout.CENTER);
+    }
+
+    public void updateData(ContentionSnapshot contention) {
+        tableModel.setRowCount(0);
+        for (ContendedLock lock : contention.locks()) {
+            tableModel.addRow(new Object[] {lock.lockName(), lock.kind(), lock.samples() + " samples",
+                String.format("~%.1f", lock.estimatedWaitNanos() / 1_000_000.0), "",
+                lock.topOwner() != null ? lock.topOwner() + " (" + lock.topOwnerSamples() + ")" : ""});
+        }
+        for (LockSiteContention site : contention.sites()) {
+            tableModel.addRow(new Object[] {site.site(), "site", site.contended() + " of " + site.acquisitions(),
+                String.format("%.1f", site.totalWaitNanos() / 1_000_000.0),
+                String.format("%.2f", site.maxWaitNanos() / 1_000_000.0), ""});
+        }
+        header.setText(String.format("Sampling every %d ms, %.2f%% of a CPU%s", contention.samplingInterval(),
+            contention.overheadPercent(), contention.contentionMonitoring() ? "" : ", contention monitoring unavailable"));
+    }
+}
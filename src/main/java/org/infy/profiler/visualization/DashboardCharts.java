@@ -0,0 +1,164 @@
+package org.infy.profiler.visualization;
+
+import org.infy.profiler.monitoring.BufferPoolMetrics;
+import org.infy.profiler.monitoring.CpuMetrics;
+import org.infy.profiler.monitoring.GcEvent;
+import org.infy.profiler.monitoring.MemoryMetrics;
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.axis.NumberAxis;
+import org.jfree.chart.plot.PlotOrientation;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.chart.renderer.xy.XYLineAndShapeRenderer;
+import org.jfree.data.category.DefaultCategoryDataset;
+import org.jfree.data.time.Millisecond;
+import org.jfree.data.time.RegularTimePeriod;
+import org.jfree.data.time.TimeSeries;
+import org.jfree.data.time.TimeSeriesCollection;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The dashboard's datasets and chart definitions, shared by the window and the headless
+ * exporter. Not thread-safe: the window only touches it on the EDT, the exporter on its own
+ * thread.
+ */
+final class DashboardCharts {
+    private static final double DEFAULT_MEMORY_VALUE = 0.0;
+    private static final double DEFAULT_CPU_VALUE = 0.0;
+    private static final double MB = 1024.0 * 1024.0;
+    private final TimeSeries memoryUsageSeries = new TimeSeries("Memory Usage");
+    private final TimeSeries cpuUsageSeries = new TimeSeries("CPU Usage");
+    private final TimeSeries directBufferSeries = new TimeSeries("Direct Buffers");
+    private final TimeSeries mappedBufferSeries = new TimeSeries("Mapped Buffers");
+    private final TimeSeries gcPauseSeries = new TimeSeries("GC Pause (ms)");
+    private final TimeSeries allocationRateSeries = new TimeSeries("Allocation (MB/s)");
+    private final TimeSeries promotionRateSeries = new TimeSeries("Promotion (MB/s)");
+    private final DefaultCategoryDataset methodExecutionDataset = new DefaultCategoryDataset();
+    private long lastGcSequence;
+    private List<String> chartedMethods = List.of();
+
+    DashboardCharts(int maxPoints) {
+        for (TimeSeries series : List.of(memoryUsageSeries, cpuUsageSeries, directBufferSeries, mappedBufferSeries,
+                gcPauseSeries, allocationRateSeries, promotionRateSeries)) {
+            series.setMaximumItemCount(maxPoints);
+        }
+    }
+
+    // Returns the heap used in MB as charted, 0 while there are no metrics yet
+    double addMemory(RegularTimePeriod period, MemoryMetrics memoryMetrics) {
+        double memoryValue = memoryMetrics != null ? memoryMetrics.heapUsed() / MB : DEFAULT_MEMORY_VALUE;
+        memoryUsageSeries.addOrUpdate(period, memoryValue);
+        return memoryValue;
+    }
+
+    // Returns the process CPU load in percent as charted, 0 while there are no metrics yet
+    double addCpu(RegularTimePeriod period, CpuMetrics cpuMetrics) {
+        double cpuValue = cpuMetrics != null ? cpuMetrics.processCpuLoad() * 100 : DEFAULT_CPU_VALUE;
+        cpuUsageSeries.addOrUpdate(period, cpuValue);
+        return cpuValue;
+    }
+
+    /** Adds collections not charted yet and the current direct and mapped buffer usage. */
+    void addGcData(RegularTimePeriod current, List<GcEvent> gcEvents, List<BufferPoolMetrics> bufferPools) {
+        for (GcEvent event : gcEvents) {
+            if (event.sequence() <= lastGcSequence) {
+                continue;
+            }
+            Millisecond time = new Millisecond(new Date(event.startTime()));
+            if (event.pause()) {
+                gcPauseSeries.addOrUpdate(time, event.duration() / 1_000_000.0);
+            }
+            allocationRateSeries.addOrUpdate(time, event.allocationRate() / MB);
+            promotionRateSeries.addOrUpdate(time, event.promotionRate() / MB);
+            lastGcSequence = event.sequence();
+        }
+        for (BufferPoolMetrics pool : bufferPools) {
+            if ("direct".equals(pool.name())) {
+                directBufferSeries.addOrUpdate(current, pool.memoryUsed() / MB);
+            } else if ("mapped".equals(pool.name())) {
+                mappedBufferSeries.addOrUpdate(current, pool.memoryUsed() / MB);
+            }
+        }
+    }
+
+    // Same methods in the same order only need their values replaced; otherwise the categories change
+    void setTopMethods(List<MethodMetricsTable.MethodMetricsRow> top) {
+        List<String> names = top.stream().map(MethodMetricsTable.MethodMetricsRow::methodName).toList();
+        if (!names.equals(chartedMethods)) {
+            methodExecutionDataset.clear();
+            chartedMethods = names;
+        }
+        for (MethodMetricsTable.MethodMetricsRow row : top) {
+            methodExecutionDataset.setValue(row.avgTime(), "Avg", row.methodName());
+            methodExecutionDataset.setValue(row.p50Time(), "P50", row.methodName());
+            methodExecutionDataset.setValue(row.p90Time(), "P90", row.methodName());
+            methodExecutionDataset.setValue(row.p99Time(), "P99", row.methodName());
+            methodExecutionDataset.setValue(row.p999Time(), "P99.9", row.methodName());
+        }
+    }
+
+    JFreeChart createMemoryChart() {
+        TimeSeriesCollection dataset = new TimeSeriesCollection(memoryUsageSeries);
+        dataset.addSeries(directBufferSeries);
+        dataset.addSeries(mappedBufferSeries);
+        return ChartFactory.createTimeSeriesChart(
+            "Memory Usage Over Time",
+            "Time",
+            "Memory (MB)",
+            dataset,
+            true,
+            true,
+            false
+        );
+    }
+
+    JFreeChart createCpuChart() {
+        TimeSeriesCollection dataset = new TimeSeriesCollection(cpuUsageSeries);
+        return ChartFactory.createTimeSeriesChart(
+            "CPU Usage Over Time",
+            "Time",
+            "CPU Usage (%)",
+            dataset,
+            true,
+            true,
+            false
+        );
+    }
+
+    // Pauses are points on the left axis, allocation and promotion rates lines on the right
+    JFreeChart createGcChart() {
+        JFreeChart chart = ChartFactory.createTimeSeriesChart(
+            "Garbage Collection",
+            "Time",
+            "Pause (ms)",
+            new TimeSeriesCollection(gcPauseSeries),
+            true,
+            true,
+            false
+        );
+        XYPlot plot = chart.getXYPlot();
+        plot.setRenderer(0, new XYLineAndShapeRenderer(false, true));
+        TimeSeriesCollection rates = new TimeSeriesCollection(allocationRateSeries);
+        rates.addSeries(promotionRateSeries);
+        plot.setDataset(1, rates);
+        plot.setRangeAxis(1, new NumberAxis("Rate (MB/s)"));
+        plot.mapDatasetToRangeAxis(1, 1);
+        plot.setRenderer(1, new XYLineAndShapeRenderer(true, false));
+        return chart;
+    }
+
+    JFreeChart createMethodExecutionChart() {
+        return ChartFactory.createBarChart(
+            "Top Methods by Execution Time",
+            "Method",
+            "Time (ms)",
+            methodExecutionDataset,
+            PlotOrientation.HORIZONTAL,
+            true,
+            true,
+            false
+        );
+    }
+}
@@ -0,0 +1,143 @@
+package org.infy.profiler.visualization;
+
+import org.infy.profiler.LatencyHistogram;
+import org.infy.profiler.MethodMetrics;
+import org.infy.profiler.monitoring.BufferPoolMetrics;
+import org.infy.profiler.monitoring.CpuMetrics;
+import org.infy.profiler.monitoring.GcEvent;
+import org.infy.profiler.monitoring.MemoryMetrics;
+import org.infy.profiler.window.MetricsWindow;
+import org.jfree.chart.ChartUtils;
+import org.jfree.chart.JFreeChart;
+import org.jfree.data.time.Second;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Renders the dashboard's charts and method table without a display: one PNG per chart and a
+ * self-contained HTML page with the PNGs inlined. The charts are the window's, drawn straight
+ * to images, so no AWT window or EDT is involved. Not thread-safe; each instance should be
+ * used from a single thread.
+ */
+public class DashboardExporter {
+    private static final int CHART_WIDTH = 900;
+    private static final int CHART_HEIGHT = 400;
+    private final DashboardCharts charts;
+    private final JFreeChart memoryChart;
+    private final JFreeChart cpuChart;
+    private final JFreeChart gcChart;
+    private final JFreeChart methodExecutionChart;
+    private final int topMethods;
+    private final long[] histogramScratch = new long[LatencyHistogram.BUCKET_COUNT];
+
+    public DashboardExporter(int topMethods, int maxPoints) {
+        this.topMethods = topMethods;
+        this.charts = new DashboardCharts(maxPoints);
+        this.memoryChart = charts.createMemoryChart();
+        this.cpuChart = charts.createCpuChart();
+        this.gcChart = charts.createGcChart();
+        this.methodExecutionChart = charts.createMethodExecutionChart();
+    }
+
+    /** Adds a stored memory sample, used to backfill the chart from earlier runs. */
+    public void addMemoryPoint(long timestamp, MemoryMetrics memoryMetrics) {
+        charts.addMemory(new Second(new Date(timestamp)), memoryMetrics);
+    }
+
+    /** Adds a stored CPU sample, used to backfill the chart from earlier runs. */
+    public void addCpuPoint(long timestamp, CpuMetrics cpuMetrics) {
+        charts.addCpu(new Second(new Date(timestamp)), cpuMetrics);
+    }
+
+    /** Adds the current figures to the time series, as one dashboard refresh would. */
+    public void sample(MemoryMetrics memoryMetrics, CpuMetrics cpuMetrics, List<GcEvent> gcEvents,
+                       List<BufferPoolMetrics> bufferPools) {
+        Second current = new Second();
+        charts.addMemory(current, memoryMetrics);
+        charts.addCpu(current, cpuMetrics);
+        charts.addGcData(current, gcEvents, bufferPools);
+    }
+
+    /**
+     * Writes {@code <baseName>.html} and {@code <baseName>_memory.png}, {@code _cpu.png},
+     * {@code _gc.png} and {@code _methods.png} to {@code directory}. Each file is written
+     * under a temporary name and moved into place, so a reader never sees half a file.
+     * Returns the HTML page.
+     */
+    public Path export(Path directory, String baseName, Map<String, MethodMetrics> methodMetrics,
+                       MetricsWindow window) throws IOException {
+        List<MethodMetricsTable.MethodMetricsRow> rows = MethodMetricsTable.toRows(methodMetrics, histogramScratch);
+        charts.setTopMethods(MethodMetricsTable.topByAverage(rows, topMethods));
+        rows.sort(Comparator.comparingDouble(MethodMetricsTable.MethodMetricsRow::avgTime).reversed());
+
+        Files.createDirectories(directory);
+        byte[] memory = writeChart(directory, baseName + "_memory.png", memoryChart, CHART_HEIGHT);
+        byte[] cpu = writeChart(directory, baseName + "_cpu.png", cpuChart, CHART_HEIGHT);
+        byte[] gc = writeChart(directory, baseName + "_gc.png", gcChart, CHART_HEIGHT);
+        // Taller with more methods so the bars stay readable
+        byte[] methods = writeChart(directory, baseName + "_methods.png", methodExecutionChart,
+            Math.max(CHART_HEIGHT, 120 + 60 * topMethods));
+
+        StringBuilder html = new StringBuilder();
+        html.append("<!DOCTYPE html>\n<html><head><meta charset=\"utf-8\"><title>Performance Profiler Dashboard</title>\n")
+            .append("<style>body{font-family:sans-serif;margin:16px}img{max-width:100%}")
+            .append("table{border-collapse:collapse;font-size:12px}th,td{border:1px solid #ccc;padding:2px 6px}")
+            .append("td.n{text-align:right}</style></head>\n<body>\n")
+            .append("<h1>Performance Profiler Dashboard</h1>\n<p>Generated ")
+            .append(escape(LocalDateTime.now().toString())).append(" | Window: ").append(escape(String.valueOf(window)))
+            .append(" | Methods: ").append(rows.size()).append("</p>\n");
+        for (byte[] png : List.of(memory, cpu, gc, methods)) {
+            html.append("<img src=\"data:image/png;base64,").append(Base64.getEncoder().encodeToString(png))
+                .append("\">\n");
+        }
+        html.append("<h2>Method Performance Details</h2>\n<table>\n<tr>");
+        for (String column : MethodMetricsTable.COLUMN_NAMES) {
+            html.append("<th>").append(escape(column)).append("</th>");
+        }
+        html.append("</tr>\n");
+        for (MethodMetricsTable.MethodMetricsRow row : rows) {
+            html.append("<tr><td>").append(escape(row.methodName())).append("</td>");
+            for (int column = 1; column < MethodMetricsTable.COLUMN_NAMES.length; column++) {
+                Object value = MethodMetricsTable.columnValue(row, column);
+                html.append("<td class=\"n\">")
+                    .append(value instanceof Double d ? String.format(Locale.ROOT, "%.2f", d) : value)
+                    .append("</td>");
+            }
+            html.append("</tr>\n");
+        }
+        html.append("</table>\n</body></html>\n");
+        Path page = directory.resolve(baseName + ".html");
+        write(page, html.toString().getBytes(StandardCharsets.UTF_8));
+        return page;
+    }
+
+    private static byte[] writeChart(Path directory, String fileName, JFreeChart chart, int height) throws IOException {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ChartUtils.writeChartAsPNG(png, chart, CHART_WIDTH, height);
+        byte[] bytes = png.toByteArray();
+        write(directory.resolve(fileName), bytes);
+        return bytes;
+    }
+
+    private static void write(Path file, byte[] content) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temp, content);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+}
@@ -1,16 +1,29 @@
 package org.infy.profiler.visualization;
 
+import org.infy.profiler.LatencyHistogram;
 import org.infy.profiler.MethodMetrics;
 import javax.swing.*;
 import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.TableRowSorter;
 import java.awt.*;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public class MethodMetricsTable extends JPanel {
+    private static final double[] PERCENTILES = {50.0, 90.0, 99.0, 99.9};
     private final JTable table;
     private final MethodMetricsTableModel tableModel;
+    private final RowTracker directUpdates = new RowTracker();
     
     public MethodMetricsTable() {
         setLayout(new BorderLayout());
@@ -18,6 +31,9 @@ public class MethodMetricsTable extends JPanel {
         tableModel = new MethodMetricsTableModel();
         table = new JTable(tableModel);
         table.setFillsViewportHeight(true);
+        // Cells hold numbers so clicking a header sorts numerically, the renderer formats them
+        table.setRowSorter(new TableRowSorter<>(tableModel));
+        table.setDefaultRenderer(Double.class, new DecimalRenderer());
         
         // Configure table appearance
         table.getColumnModel().getColumn(0).setPreferredWidth(300);
@@ -28,32 +44,150 @@ public class MethodMetricsTable extends JPanel {
         add(scrollPane, BorderLayout.CENTER);
     }
     
+    /** Called on the EDT with the selected method's name, or null when the selection is cleared. */
+    public void setSelectionListener(Consumer<String> listener) {
+        table.getSelectionModel().addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting()) {
+                int row = table.getSelectedRow();
+                listener.accept(row >= 0 ? (String) tableModel.getValueAt(table.convertRowIndexToModel(row), 0) : null);
+            }
+        });
+    }
+    
     public void updateData(Map<String, MethodMetrics> methodMetrics) {
-        tableModel.updateData(methodMetrics);
+        applyChanges(directUpdates.diff(toRows(methodMetrics, new long[LatencyHistogram.BUCKET_COUNT])));
     }
     
-    private static class MethodMetricsTableModel extends AbstractTableModel {
-        private final String[] columnNames = {
-            "Method Name", 
-            "Invocations", 
-            "Avg Time (ms)", 
-            "Max Time (ms)", 
-            "Min Time (ms)"
+    /** The {@code limit} rows with the highest average time, highest first, through a bounded heap. */
+    static List<MethodMetricsRow> topByAverage(List<MethodMetricsRow> rows, int limit) {
+        Comparator<MethodMetricsRow> byAverage = Comparator.comparingDouble(MethodMetricsRow::avgTime);
+        PriorityQueue<MethodMetricsRow> heap = new PriorityQueue<>(limit + 1, byAverage);
+        for (MethodMetricsRow row : rows) {
+            heap.add(row);
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        }
+        List<MethodMetricsRow> top = new ArrayList<>(heap);
+        top.sort(byAverage.reversed());
+        return top;
+    }
+    
+    // Must run on the event dispatch thread
+    void applyChanges(RowChanges changes) {
+        tableModel.applyChanges(changes);
+    }
+    
+    /**
+     * Builds the rows off the event dispatch thread. Percentiles come from one pass over each
+     * histogram into {@code scratch}, instead of a histogram copy per percentile.
+     */
+    static List<MethodMetricsRow> toRows(Map<String, MethodMetrics> methodMetrics, long[] scratch) {
+        List<MethodMetricsRow> rows = new ArrayList<>(methodMetrics.size());
+        long[] percentiles = new long[PERCENTILES.length];
+        methodMetrics.forEach((name, metrics) -> {
+            // Without calls max is still its initial Long.MIN_VALUE, so the percentiles clamp to 0
+            long max = Math.max(metrics.getMaxExecutionTime(), 0);
+            metrics.getHistogram().getValuesAtPercentiles(PERCENTILES, percentiles, scratch);
+            rows.add(new MethodMetricsRow(
+                name,
+                metrics.getInvocationCount(),
+                metrics.getAverageExecutionTime() / 1_000_000.0,
+                metrics.getMaxExecutionTime() / 1_000_000.0,
+                metrics.getMinExecutionTime() / 1_000_000.0,
+                Math.min(percentiles[0], max) / 1_000_000.0,
+                Math.min(percentiles[1], max) / 1_000_000.0,
+                Math.min(percentiles[2], max) / 1_000_000.0,
+                Math.min(percentiles[3], max) / 1_000_000.0,
+                metrics.getAverageCpuTime() / 1_000_000.0,
+                metrics.getAverageWaitTime() / 1_000_000.0,
+                metrics.getAverageAllocatedBytes() / 1024.0,
+                metrics.getTotalAllocatedBytes() / (1024.0 * 1024.0)
+            ));
+        });
+        return rows;
+    }
+    
+    static final String[] COLUMN_NAMES = {
+        "Method Name", 
+        "Invocations", 
+        "Avg Time (ms)", 
+        "Max Time (ms)", 
+        "Min Time (ms)",
+        "P50 (ms)",
+        "P90 (ms)",
+        "P99 (ms)",
+        "P99.9 (ms)",
+        "CPU Avg (ms)",
+        "Wait Avg (ms)",
+        "Alloc/Call (KB)",
+        "Allocated (MB)"
+    };
+    
+    static Object columnValue(MethodMetricsRow row, int column) {
+        return switch (column) {
+            case 0 -> row.methodName;
+            case 1 -> row.invocations;
+            case 2 -> row.avgTime;
+            case 3 -> row.maxTime;
+            case 4 -> row.minTime;
+            case 5 -> row.p50Time;
+            case 6 -> row.p90Time;
+            case 7 -> row.p99Time;
+            case 8 -> row.p999Time;
+            case 9 -> row.cpuTime;
+            case 10 -> row.waitTime;
+            case 11 -> row.allocPerCall;
+            case 12 -> row.allocatedTotal;
+            default -> null;
         };
+    }
+    
+    private static class MethodMetricsTableModel extends AbstractTableModel {
         private final List<MethodMetricsRow> data = new ArrayList<>();
+        private final Map<String, Integer> rowIndexes = new HashMap<>();
         
-        public void updateData(Map<String, MethodMetrics> methodMetrics) {
-            data.clear();
-            methodMetrics.forEach((name, metrics) -> 
-                data.add(new MethodMetricsRow(
-                    name,
-                    metrics.getInvocationCount(),
-                    metrics.getAverageExecutionTime() / 1_000_000.0,
-                    metrics.getMaxExecutionTime() / 1_000_000.0,
-                    metrics.getMinExecutionTime() / 1_000_000.0
-                ))
-            );
-            fireTableDataChanged();
+        /**
+         * Touches only the rows in {@code changes}: changed rows are replaced in place, new methods
+         * are appended and removed ones are swapped with the last row, so the model's work follows
+         * the number of changes rather than of methods.
+         */
+        void applyChanges(RowChanges changes) {
+            for (String name : changes.removed()) {
+                Integer index = rowIndexes.remove(name);
+                if (index == null) {
+                    continue;
+                }
+                int last = data.size() - 1;
+                MethodMetricsRow moved = data.remove(last);
+                fireTableRowsDeleted(last, last);
+                if (index != last) {
+                    data.set(index, moved);
+                    rowIndexes.put(moved.methodName(), index);
+                    fireTableRowsUpdated(index, index);
+                }
+            }
+            int[] updated = new int[changes.changed().size()];
+            int updatedCount = 0;
+            int first = data.size();
+            for (MethodMetricsRow row : changes.changed()) {
+                Integer index = rowIndexes.get(row.methodName());
+                if (index == null) {
+                    rowIndexes.put(row.methodName(), data.size());
+                    data.add(row);
+                } else {
+                    data.set(index, row);
+                    updated[updatedCount++] = index;
+                }
+            }
+            if (updatedCount > 0) {
+                // The row sorter does O(rows) work per event, so one spanning event beats one per row
+                Arrays.sort(updated, 0, updatedCount);
+                fireTableRowsUpdated(updated[0], updated[updatedCount - 1]);
+            }
+            if (data.size() > first) {
+                fireTableRowsInserted(first, data.size() - 1);
+            }
         }
         
         @Override
@@ -63,33 +197,96 @@ public class MethodMetricsTable extends JPanel {
         
         @Override
         public int getColumnCount() {
-            return columnNames.length;
+            return COLUMN_NAMES.length;
         }
         
         @Override
         public String getColumnName(int column) {
-            return columnNames[column];
+            return COLUMN_NAMES[column];
         }
         
         @Override
-        public Object getValueAt(int rowIndex, int columnIndex) {
-            MethodMetricsRow row = data.get(rowIndex);
+        public Class<?> getColumnClass(int columnIndex) {
             return switch (columnIndex) {
-                case 0 -> row.methodName;
-                case 1 -> row.invocations;
-                case 2 -> String.format("%.2f", row.avgTime);
-                case 3 -> String.format("%.2f", row.maxTime);
-                case 4 -> String.format("%.2f", row.minTime);
-                default -> null;
+                case 0 -> String.class;
+                case 1 -> Long.class;
+                default -> Double.class;
             };
         }
+        
+        @Override
+        public Object getValueAt(int rowIndex, int columnIndex) {
+            return columnValue(data.get(rowIndex), columnIndex);
+        }
+    }
+    
+    private static class DecimalRenderer extends DefaultTableCellRenderer {
+        DecimalRenderer() {
+            setHorizontalAlignment(SwingConstants.RIGHT);
+        }
+        
+        @Override
+        protected void setValue(Object value) {
+            setText(value == null ? "" : String.format("%.2f", (Double) value));
+        }
+    }
+    
+    /** Rows that are new or changed, and methods no longer present, relative to the last diff. */
+    record RowChanges(List<MethodMetricsRow> changed, List<String> removed) {
+        /** The changes of applying {@code earlier} and then these, for updates merged before display. */
+        RowChanges after(RowChanges earlier) {
+            Map<String, MethodMetricsRow> rows = new LinkedHashMap<>();
+            earlier.changed().forEach(row -> rows.put(row.methodName(), row));
+            Set<String> gone = new LinkedHashSet<>(earlier.removed());
+            for (String name : removed) {
+                rows.remove(name);
+                gone.add(name);
+            }
+            for (MethodMetricsRow row : changed) {
+                rows.put(row.methodName(), row);
+                gone.remove(row.methodName());
+            }
+            return new RowChanges(new ArrayList<>(rows.values()), new ArrayList<>(gone));
+        }
+    }
+    
+    /** Remembers the rows last diffed so that the next refresh can be reduced to its changes off the EDT. */
+    static final class RowTracker {
+        private Map<String, MethodMetricsRow> shown = new HashMap<>();
+        
+        RowChanges diff(List<MethodMetricsRow> rows) {
+            Map<String, MethodMetricsRow> next = new HashMap<>(rows.size() * 2);
+            List<MethodMetricsRow> changed = new ArrayList<>();
+            for (MethodMetricsRow row : rows) {
+                next.put(row.methodName(), row);
+                if (!row.equals(shown.get(row.methodName()))) {
+                    changed.add(row);
+                }
+            }
+            List<String> removed = new ArrayList<>();
+            for (String name : shown.keySet()) {
+                if (!next.containsKey(name)) {
+                    removed.add(name);
+                }
+            }
+            shown = next;
+            return new RowChanges(changed, removed);
+        }
     }
     
-    private record MethodMetricsRow(
+    record MethodMetricsRow(
         String methodName,
         long invocations,
         double avgTime,
         double maxTime,
-        double minTime
+        double minTime,
+        double p50Time,
+        double p90Time,
+        double p99Time,
+        double p999Time,
+        double cpuTime,
+        double waitTime,
+        double allocPerCall,
+        double allocatedTotal
     ) {}
 } 
\ No newline at end of file
@@ -1,42 +1,64 @@
 package org.infy.profiler.visualization;
 
-import org.jfree.chart.ChartFactory;
 import org.jfree.chart.ChartPanel;
-import org.jfree.chart.JFreeChart;
-import org.jfree.chart.plot.PlotOrientation;
-import org.jfree.data.category.DefaultCategoryDataset;
 import org.jfree.data.time.Second;
-import org.jfree.data.time.TimeSeries;
-import org.jfree.data.time.TimeSeriesCollection;
+import org.infy.profiler.LatencyHistogram;
 import org.infy.profiler.MethodMetrics;
+import org.infy.profiler.calltree.CallTreeSnapshot;
+import org.infy.profiler.contention.ContentionSnapshot;
+import org.infy.profiler.monitoring.BufferPoolMetrics;
 import org.infy.profiler.monitoring.CpuMetrics;
+import org.infy.profiler.monitoring.GcEvent;
 import org.infy.profiler.monitoring.MemoryMetrics;
+import org.infy.profiler.slowcall.SlowCallSummary;
+import org.infy.profiler.window.MetricsWindow;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.Date;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class PerformanceVisualizer extends JFrame {
     private static final Logger logger = LoggerFactory.getLogger(PerformanceVisualizer.class);
-    private final TimeSeries memoryUsageSeries;
-    private final TimeSeries cpuUsageSeries;
-    private final DefaultCategoryDataset methodExecutionDataset;
+    private final DashboardCharts charts;
     private final MethodMetricsTable methodMetricsTable;
+    private final CallTreeView callTreeView;
+    private final SlowCallView slowCallView;
+    private final ContentionView contentionView;
     private final JLabel statusLabel;
-    private static final double DEFAULT_MEMORY_VALUE = 0.0;
-    private static final double DEFAULT_CPU_VALUE = 0.0;
+    private final JComboBox<MetricsWindow> windowSelector;
+    private final int topMethods;
+    // Update not yet applied on the EDT; newer updates are merged into it instead of queueing
+    private final AtomicReference<DashboardUpdate> pendingUpdate = new AtomicReference<>();
+    private final long[] histogramScratch = new long[LatencyHistogram.BUCKET_COUNT];
+    private final MethodMetricsTable.RowTracker rowTracker = new MethodMetricsTable.RowTracker();
+    private volatile CallTreeSnapshot lastCallTree;
+    private volatile MetricsWindow selectedWindow = MetricsWindow.ALL_TIME;
+    private Consumer<MetricsWindow> windowSelectionListener;
+    private static final int DEFAULT_TOP_METHODS = 10;
+    private static final int DEFAULT_MAX_POINTS = 3600;
     
     public PerformanceVisualizer() {
+        this(DEFAULT_TOP_METHODS, DEFAULT_MAX_POINTS);
+    }
+    
+    public PerformanceVisualizer(int topMethods, int maxPoints) {
         super("Performance Profiler Visualization");
+        this.topMethods = topMethods;
         
-        this.memoryUsageSeries = new TimeSeries("Memory Usage");
-        this.cpuUsageSeries = new TimeSeries("CPU Usage");
-        this.methodExecutionDataset = new DefaultCategoryDataset();
+        this.charts = new DashboardCharts(maxPoints);
         this.methodMetricsTable = new MethodMetricsTable();
+        this.callTreeView = new CallTreeView();
+        this.slowCallView = new SlowCallView();
+        this.contentionView = new ContentionView();
         this.statusLabel = new JLabel("Status: Running");
+        this.windowSelector = new JComboBox<>(MetricsWindow.values());
         
         initializeUI();
     }
@@ -53,14 +75,25 @@ public class PerformanceVisualizer extends JFrame {
         // Top panel with charts
         JPanel chartsPanel = new JPanel(new GridLayout(1, 2));
         chartsPanel.add(createMemoryAndCpuPanel());
-        chartsPanel.add(createMethodExecutionChart());
+        chartsPanel.add(new ChartPanel(charts.createMethodExecutionChart()));
         mainSplitPane.setTopComponent(chartsPanel);
         
         // Bottom panel with table
         JPanel bottomPanel = new JPanel(new BorderLayout());
-        bottomPanel.add(new JLabel("Method Performance Details", SwingConstants.CENTER), 
-                       BorderLayout.NORTH);
-        bottomPanel.add(methodMetricsTable, BorderLayout.CENTER);
+        JPanel headerPanel = new JPanel(new BorderLayout());
+        headerPanel.add(new JLabel("Method Performance Details", SwingConstants.CENTER), 
+                       BorderLayout.CENTER);
+        headerPanel.add(createWindowSelector(), BorderLayout.EAST);
+        bottomPanel.add(headerPanel, BorderLayout.NORTH);
+        JTabbedPane methodDetail = new JTabbedPane();
+        methodDetail.addTab("Call Tree", callTreeView);
+        methodDetail.addTab("Slow Calls", slowCallView);
+        methodDetail.addTab("Contention", contentionView);
+        methodMetricsTable.setSelectionListener(slowCallView::setMethod);
+        JSplitPane detailsSplitPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT,
+            methodMetricsTable, methodDetail);
+        detailsSplitPane.setResizeWeight(0.6);
+        bottomPanel.add(detailsSplitPane, BorderLayout.CENTER);
         mainSplitPane.setBottomComponent(bottomPanel);
         
         // Add components to frame
@@ -68,53 +101,25 @@ public class PerformanceVisualizer extends JFrame {
         add(createStatusBar(), BorderLayout.SOUTH);
     }
     
-    private JPanel createMemoryAndCpuPanel() {
-        JPanel panel = new JPanel(new GridLayout(2, 1));
-        panel.add(createMemoryChart());
-        panel.add(createCpuChart());
+    private JPanel createWindowSelector() {
+        JPanel panel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        panel.add(new JLabel("Window:"));
+        windowSelector.addActionListener(e -> {
+            selectedWindow = (MetricsWindow) windowSelector.getSelectedItem();
+            if (windowSelectionListener != null) {
+                windowSelectionListener.accept(selectedWindow);
+            }
+        });
+        panel.add(windowSelector);
         return panel;
     }
     
-    private ChartPanel createMemoryChart() {
-        TimeSeriesCollection dataset = new TimeSeriesCollection(memoryUsageSeries);
-        JFreeChart chart = ChartFactory.createTimeSeriesChart(
-            "Memory Usage Over Time",
-            "Time",
-            "Memory (MB)",
-            dataset,
-            true,
-            true,
-            false
-        );
-        return new ChartPanel(chart);
-    }
-    
-    private ChartPanel createCpuChart() {
-        TimeSeriesCollection dataset = new TimeSeriesCollection(cpuUsageSeries);
-        JFreeChart chart = ChartFactory.createTimeSeriesChart(
-            "CPU Usage Over Time",
-            "Time",
-            "CPU Usage (%)",
-            dataset,
-            true,
-            true,
-            false
-        );
-        return new ChartPanel(chart);
-    }
-    
-    private ChartPanel createMethodExecutionChart() {
-        JFreeChart chart = ChartFactory.createBarChart(
-            "Top Methods by Execution Time",
-            "Method",
-            "Average Time (ms)",
-            methodExecutionDataset,
-            PlotOrientation.HORIZONTAL,
-            true,
-            true,
-            false
-        );
-        return new ChartPanel(chart);
+    private JPanel createMemoryAndCpuPanel() {
+        JPanel panel = new JPanel(new GridLayout(3, 1));
+        panel.add(new ChartPanel(charts.createMemoryChart()));
+        panel.add(new ChartPanel(charts.createCpuChart()));
+        panel.add(new ChartPanel(charts.createGcChart()));
+        return panel;
     }
     
     private JPanel createStatusBar() {
@@ -124,60 +129,129 @@ public class PerformanceVisualizer extends JFrame {
         return statusBar;
     }
     
+    public MetricsWindow getSelectedWindow() {
+        return selectedWindow;
+    }
+    
+    // Called on the event dispatch thread whenever the user picks another window
+    public void setWindowSelectionListener(Consumer<MetricsWindow> listener) {
+        this.windowSelectionListener = listener;
+    }
+    
     public void updateData(MemoryMetrics memoryMetrics, CpuMetrics cpuMetrics, 
                          Map<String, MethodMetrics> methodMetrics) {
+        updateData(memoryMetrics, cpuMetrics, methodMetrics, null);
+    }
+    
+    /**
+     * Prepares an update on the calling thread, which should not be the EDT: table rows and
+     * their diff against the previous update, the top methods through a bounded heap, and
+     * whether the call tree changed. Only the result is handed to the EDT. If the EDT has not
+     * applied the previous update yet, the two are merged rather than queued.
+     */
+    public void updateData(MemoryMetrics memoryMetrics, CpuMetrics cpuMetrics, 
+                         Map<String, MethodMetrics> methodMetrics, CallTreeSnapshot callTree) {
+        DashboardUpdate update;
+        synchronized (histogramScratch) {
+            List<MethodMetricsTable.MethodMetricsRow> rows = methodMetrics != null
+                ? MethodMetricsTable.toRows(methodMetrics, histogramScratch) : null;
+            // Rebuilding the tree view collapses it, so only do it when the tree changed
+            CallTreeSnapshot changedTree = callTree != null && !callTree.equals(lastCallTree) ? callTree : null;
+            lastCallTree = callTree;
+            update = new DashboardUpdate(memoryMetrics, cpuMetrics, rows != null ? rowTracker.diff(rows) : null,
+                rows != null ? MethodMetricsTable.topByAverage(rows, topMethods) : null, changedTree);
+        }
+        if (pendingUpdate.getAndAccumulate(update, DashboardUpdate::after) == null) {
+            SwingUtilities.invokeLater(this::applyPendingUpdate);
+        }
+    }
+    
+    private void applyPendingUpdate() {
+        DashboardUpdate update = pendingUpdate.getAndSet(null);
+        if (update == null) {
+            return;
+        }
+        try {
+            Second current = new Second();
+            double memoryValue = charts.addMemory(current, update.memoryMetrics());
+            double cpuValue = charts.addCpu(current, update.cpuMetrics());
+            
+            if (update.rowChanges() != null) {
+                charts.setTopMethods(update.topRows());
+                methodMetricsTable.applyChanges(update.rowChanges());
+            }
+            callTreeView.updateData(update.callTree());
+            
+            // Update status with safe values
+            String statusText = String.format("Status: Running | Memory: %.1f MB | CPU: %.1f%% | Window: %s",
+                memoryValue,
+                cpuValue,
+                selectedWindow);
+            
+            if (update.memoryMetrics() == null || update.cpuMetrics() == null) {
+                statusText = "Status: Waiting for metrics...";
+            }
+            
+            statusLabel.setText(statusText);
+            
+        } catch (Exception e) {
+            logger.error("Error updating visualization", e);
+            statusLabel.setText("Status: Error updating metrics");
+        }
+    }
+    
+    /** Replaces the slow call exemplars shown for the selected method. */
+    public void updateSlowCalls(SlowCallSummary summary) {
+        SwingUtilities.invokeLater(() -> slowCallView.updateData(summary));
+    }
+    
+    /** Replaces the top contended locks, lock sites and threads. */
+    public void updateContention(ContentionSnapshot contention) {
+        SwingUtilities.invokeLater(() -> contentionView.updateData(contention));
+    }
+    
+    /** Adds a stored memory sample, used to backfill the chart from earlier runs. */
+    public void addMemoryPoint(long timestamp, MemoryMetrics memoryMetrics) {
+        SwingUtilities.invokeLater(() -> charts.addMemory(new Second(new Date(timestamp)), memoryMetrics));
+    }
+    
+    /** Adds a stored CPU sample, used to backfill the chart from earlier runs. */
+    public void addCpuPoint(long timestamp, CpuMetrics cpuMetrics) {
+        SwingUtilities.invokeLater(() -> charts.addCpu(new Second(new Date(timestamp)), cpuMetrics));
+    }
+    
+    /** Adds collections not charted yet and the current direct and mapped buffer usage. */
+    public void updateGcData(List<GcEvent> gcEvents, List<BufferPoolMetrics> bufferPools) {
         SwingUtilities.invokeLater(() -> {
             try {
-                // Update time series
-                Second current = new Second();
-                
-                // Safely handle memory metrics
-                double memoryValue = DEFAULT_MEMORY_VALUE;
-                if (memoryMetrics != null) {
-                    memoryValue = memoryMetrics.heapUsed() / (1024.0 * 1024.0);
-                }
-                memoryUsageSeries.add(current, memoryValue);
-                
-                // Safely handle CPU metrics
-                double cpuValue = DEFAULT_CPU_VALUE;
-                if (cpuMetrics != null) {
-                    cpuValue = cpuMetrics.processCpuLoad() * 100;
-                }
-                cpuUsageSeries.add(current, cpuValue);
-                
-                // Update method execution chart (top 10 methods)
-                methodExecutionDataset.clear();
-                if (methodMetrics != null) {
-                    methodMetrics.entrySet().stream()
-                        .sorted((e1, e2) -> Double.compare(
-                            e2.getValue().getAverageExecutionTime(),
-                            e1.getValue().getAverageExecutionTime()))
-                        .limit(10)
-                        .forEach(entry -> methodExecutionDataset.addValue(
-                            entry.getValue().getAverageExecutionTime() / 1_000_000.0,
-                            "Avg Execution Time",
-                            entry.getKey()
-                        ));
-                    
-                    // Update method metrics table
-                    methodMetricsTable.updateData(methodMetrics);
-                }
-                
-                // Update status with safe values
-                String statusText = String.format("Status: Running | Memory: %.1f MB | CPU: %.1f%%",
-                    memoryValue,
-                    cpuValue);
-                
-                if (memoryMetrics == null || cpuMetrics == null) {
-                    statusText = "Status: Waiting for metrics...";
-                }
-                
-                statusLabel.setText(statusText);
-                
+                charts.addGcData(new Second(), gcEvents, bufferPools);
             } catch (Exception e) {
-                logger.error("Error updating visualization", e);
-                statusLabel.setText("Status: Error updating metrics");
+                logger.error("Error updating GC charts", e);
             }
         });
     }
-} 
\ No newline at end of file
+    
+    private record DashboardUpdate(
+        MemoryMetrics memoryMetrics,
+        CpuMetrics cpuMetrics,
+        MethodMetricsTable.RowChanges rowChanges,
+        List<MethodMetricsTable.MethodMetricsRow> topRows,
+        CallTreeSnapshot callTree
+    ) {
+        // getAndAccumulate passes the pending update first, the new one second
+        static DashboardUpdate after(DashboardUpdate pending, DashboardUpdate next) {
+            if (pending == null) {
+                return next;
+            }
+            MethodMetricsTable.RowChanges changes = next.rowChanges();
+            if (changes == null) {
+                changes = pending.rowChanges();
+            } else if (pending.rowChanges() != null) {
+                changes = changes.after(pending.rowChanges());
+            }
+            return new DashboardUpdate(next.memoryMetrics(), next.cpuMetrics(), changes,
+                next.topRows() != null ? next.topRows() : pending.topRows(),
+                next.callTree() != null ? next.callTree() : pending.callTree());
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package org.infy.profiler.visualization;
+
+import org.infy.profiler.slowcall.SlowCall;
+import org.infy.profiler.slowcall.SlowCallSummary;
+
+import javax.swing.*;
+import java.awt.*;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Slow call exemplars for the method selected in the table, or for all methods when none is,
+ * with the stack and arguments of the exemplar picked from the list. Only used on the EDT.
+ */
+public class SlowCallView extends JPanel {
+    private final DefaultListModel<SlowCall> listModel = new DefaultListModel<>();
+    private final JList<SlowCall> list = new JList<>(listModel);
+    private final JTextArea detail = new JTextArea();
+    private final JLabel header = new JLabel();
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss.SSS");
+    private List<SlowCall> exemplars = List.of();
+    private long suppressed;
+    private String methodName;
+
+    public SlowCallView() {
+        setLayout(new BorderLayout());
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        list.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> source, Object value, int index,
+                                                          boolean selected, boolean focused) {
+                return super.getListCellRendererComponent(source, describe((SlowCall) value), index, selected, focused);
+            }
+        });
+        list.addListSelectionListener(e -> showDetail(list.getSelectedValue()));
+        detail.setEditable(false);
+        detail.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+
+        JSplitPane split = new JSplitPane(JSplitPane.VERTICAL_SPLIT, new JScrollPane(list), new JScrollPane(detail));
+        split.setResizeWeight(0.4);
+        add(header, BorderLayout.NORTH);
+        add(split, BorderLayout.CENTER);
+        refresh();
+    }
+
+    public void updateData(SlowCallSummary summary) {
+        exemplars = summary.exemplars();
+        suppressed = summary.suppressed();
+        refresh();
+    }
+
+    /** Narrows the list to one method; null shows every method's exemplars. */
+    public void setMethod(String methodName) {
+        this.methodName = methodName;
+        refresh();
+    }
+
+    private void refresh() {
+        SlowCall selected = list.getSelectedValue();
+        listModel.clear();
+        for (SlowCall call : exemplars) {
+            if (methodName == null || methodName.equals(call.methodName())) {
+                listModel.addElement(call);
+            }
+        }
+        header.setText(String.format("%d slow calls for %s, %d more not captured (rate limit)",
+            listModel.size(), methodName != null ? methodName : "all methods", suppressed));
+        if (selected != null) {
+            list.setSelectedValue(selected, false);
+        }
+        if (list.getSelectedValue() == null) {
+            showDetail(null);
+        }
+    }
+
+    private String describe(SlowCall call) {
+        String text = String.format("%s  %.2f ms (threshold %.2f ms)  %s",
+            timeFormat.format(new Date(call.timestamp())), call.duration() / 1_000_000.0,
+            call.threshold() / 1_000_000.0, call.threadName());
+        return methodName != null ? text : text + "  " + call.methodName();
+    }
+
+    private void showDetail(SlowCall call) {
+        if (call == null) {
+            detail.setText("");
+            return;
+        }
+        StringBuilder text = new StringBuilder();
+        text.append(call.methodName()).append(" on ").append(call.threadName()).append('\n');
+        if (call.arguments() != null) {
+            for (int i = 0; i < call.arguments().size(); i++) {
+                text.append("  arg").append(i).append(" = ").append(call.arguments().get(i)).append('\n');
+            }
+        }
+        for (String frame : call.stackTrace()) {
+            text.append("    at ").append(frame).append('\n');
+        }
+        detail.setText(text.toString());
+        detail.setCaretPosition(0);
+    }
+}
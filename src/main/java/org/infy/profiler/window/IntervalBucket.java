@@ -0,0 +1,51 @@
+package org.infy.profiler.window;
+
+import org.infy.profiler.LatencyHistogram;
+
+/**
+ * What one method recorded during one collector interval. The latency distribution is kept
+ * as a sparse list of histogram bucket indexes and counts, since a method's calls usually
+ * land in a handful of buckets. Instances are immutable once published to the ring.
+ */
+record IntervalBucket(
+    long startMillis,
+    long endMillis,
+    long count,
+    long totalTime,
+    int[] histogramIndexes,
+    long[] histogramCounts
+) {
+    private static final int[] NO_INDEXES = new int[0];
+    private static final long[] NO_COUNTS = new long[0];
+
+    static IntervalBucket empty(long startMillis, long endMillis) {
+        return new IntervalBucket(startMillis, endMillis, 0, 0, NO_INDEXES, NO_COUNTS);
+    }
+
+    MethodInterval toInterval(String methodName) {
+        long histogramTotal = 0;
+        for (long c : histogramCounts) {
+            histogramTotal += c;
+        }
+        long p50 = 0;
+        long p99 = 0;
+        long seen = 0;
+        long p50Target = Math.max(1, (long) Math.ceil(histogramTotal * 0.50));
+        long p99Target = Math.max(1, (long) Math.ceil(histogramTotal * 0.99));
+        // Indexes were collected in ascending order, so this is a single walk
+        for (int i = 0; i < histogramIndexes.length; i++) {
+            seen += histogramCounts[i];
+            long value = LatencyHistogram.highestEquivalentValue(histogramIndexes[i]);
+            if (p50 == 0 && seen >= p50Target) {
+                p50 = value;
+            }
+            if (seen >= p99Target) {
+                p99 = value;
+                break;
+            }
+        }
+        long max = histogramIndexes.length > 0
+            ? LatencyHistogram.highestEquivalentValue(histogramIndexes[histogramIndexes.length - 1]) : 0;
+        return new MethodInterval(methodName, startMillis, endMillis, count, totalTime, p50, p99, max);
+    }
+}
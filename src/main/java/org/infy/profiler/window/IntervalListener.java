@@ -0,0 +1,7 @@
+package org.infy.profiler.window;
+
+/** Called on the collector thread for every method that was called during a finished interval. */
+@FunctionalInterface
+public interface IntervalListener {
+    void onInterval(MethodInterval interval);
+}
@@ -0,0 +1,13 @@
+package org.infy.profiler.window;
+
+/** What one method did during one collector interval, summarised for export. */
+public record MethodInterval(
+    String methodName,
+    long startMillis,
+    long endMillis,
+    long count,
+    long totalTime,
+    long p50,
+    long p99,
+    long max
+) {}
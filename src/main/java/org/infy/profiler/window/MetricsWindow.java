@@ -0,0 +1,32 @@
+package org.infy.profiler.window;
+
+import java.time.Duration;
+
+public enum MetricsWindow {
+    ALL_TIME("All time", Duration.ZERO),
+    LAST_10_SECONDS("Last 10s", Duration.ofSeconds(10)),
+    LAST_MINUTE("Last 1m", Duration.ofMinutes(1)),
+    LAST_5_MINUTES("Last 5m", Duration.ofMinutes(5)),
+    LAST_15_MINUTES("Last 15m", Duration.ofMinutes(15));
+
+    private final String label;
+    private final Duration duration;
+
+    MetricsWindow(String label, Duration duration) {
+        this.label = label;
+        this.duration = duration;
+    }
+
+    public Duration getDuration() {
+        return duration;
+    }
+
+    public boolean isCumulative() {
+        return duration.isZero();
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
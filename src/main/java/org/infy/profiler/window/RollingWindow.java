@@ -0,0 +1,97 @@
+package org.infy.profiler.window;
+
+import org.infy.profiler.LatencyHistogram;
+import org.infy.profiler.MethodMetrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Ring of per-interval buckets for one method. The collector thread derives each bucket from
+ * the growth of the method's cumulative counters since the previous rotation, so recording
+ * threads are never paused or redirected. Readers walk the ring without locking. When the
+ * metrics absorbed an evicted method since the previous rotation, the growth is taken as the
+ * new baseline and the interval is left empty, as the absorbed figures are not its calls.
+ */
+class RollingWindow {
+    private final AtomicReferenceArray<IntervalBucket> ring;
+    private final MethodMetrics metrics;
+    private volatile int next;
+    // Collector thread only: cumulative values seen at the previous rotation
+    private long lastCount;
+    private long lastTotalTime;
+    private long[] lastHistogram;
+    private int lastAbsorptions;
+
+    RollingWindow(int capacity, MethodMetrics metrics) {
+        this.ring = new AtomicReferenceArray<>(capacity);
+        this.metrics = metrics;
+    }
+
+    MethodMetrics getMetrics() {
+        return metrics;
+    }
+
+    // Collector thread only; scratch arrays are reused across methods. Returns the new bucket.
+    IntervalBucket rotate(long startMillis, long endMillis, int[] indexScratch, long[] countScratch) {
+        int absorptions = metrics.getAbsorptions();
+        long count = metrics.getInvocationCount();
+        long totalTime = metrics.getTotalExecutionTime();
+        IntervalBucket bucket;
+        if (count == lastCount) {
+            bucket = IntervalBucket.empty(startMillis, endMillis);
+        } else {
+            if (lastHistogram == null) {
+                lastHistogram = new long[LatencyHistogram.BUCKET_COUNT];
+            }
+            LatencyHistogram histogram = metrics.getHistogram();
+            int used = 0;
+            for (int i = 0; i < LatencyHistogram.BUCKET_COUNT; i++) {
+                long current = histogram.getCountAt(i);
+                long delta = current - lastHistogram[i];
+                if (delta != 0) {
+                    indexScratch[used] = i;
+                    countScratch[used] = delta;
+                    used++;
+                    lastHistogram[i] = current;
+                }
+            }
+            bucket = new IntervalBucket(startMillis, endMillis, count - lastCount, totalTime - lastTotalTime,
+                Arrays.copyOf(indexScratch, used), Arrays.copyOf(countScratch, used));
+        }
+        if (absorptions != lastAbsorptions || metrics.getAbsorptions() != absorptions) {
+            bucket = IntervalBucket.empty(startMillis, endMillis);
+            // Read during an absorb, the baseline may hold only part of it, so the next rotation starts over too
+            lastAbsorptions = (absorptions & 1) == 0 && metrics.getAbsorptions() == absorptions ? absorptions : -1;
+        }
+        lastCount = count;
+        lastTotalTime = totalTime;
+        int slot = next;
+        ring.set(slot, bucket);
+        next = (slot + 1) % ring.length();
+        return bucket;
+    }
+
+    /**
+     * Folds every bucket that ended after {@code fromMillis} into the given histogram and
+     * returns {count, totalTime}.
+     */
+    long[] aggregate(long fromMillis, LatencyHistogram into) {
+        long count = 0;
+        long totalTime = 0;
+        for (int i = 0; i < ring.length(); i++) {
+            IntervalBucket bucket = ring.get(i);
+            if (bucket == null || bucket.endMillis() <= fromMillis || bucket.count() == 0) {
+                continue;
+            }
+            count += bucket.count();
+            totalTime += bucket.totalTime();
+            int[] indexes = bucket.histogramIndexes();
+            long[] counts = bucket.histogramCounts();
+            for (int j = 0; j < indexes.length; j++) {
+                into.addAtIndex(indexes[j], counts[j]);
+            }
+        }
+        return new long[] {count, totalTime};
+    }
+}
@@ -0,0 +1,109 @@
+package org.infy.profiler.window;
+
+import org.infy.profiler.LatencyHistogram;
+import org.infy.profiler.MethodMetrics;
+import org.infy.profiler.MethodRegistry;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Keeps a rolling window of interval buckets for every registered method. {@link #rotate()}
+ * runs on the profiler's collector thread once per bucket interval; window queries may come
+ * from any thread and only see completed intervals, so a window ends at the last rotation.
+ * Windows follow the metrics objects rather than registry slots, so a method evicted from a
+ * capped registry takes its history with it and the one promoted in its place starts afresh.
+ */
+public class WindowedMetricsCollector {
+    private final MethodRegistry registry;
+    private final long bucketIntervalMillis;
+    private final int bucketCount;
+    private final int[] indexScratch = new int[LatencyHistogram.BUCKET_COUNT];
+    private final long[] countScratch = new long[LatencyHistogram.BUCKET_COUNT];
+    private volatile RollingWindow[] windows = new RollingWindow[0];
+    // Collector thread only
+    private Map<MethodMetrics, RollingWindow> windowsByMetrics = new IdentityHashMap<>();
+    private volatile long lastRotationMillis;
+    private volatile IntervalListener intervalListener;
+
+    public WindowedMetricsCollector(MethodRegistry registry, long bucketIntervalMillis, long retentionMillis) {
+        if (bucketIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Bucket interval must be positive: " + bucketIntervalMillis);
+        }
+        this.registry = registry;
+        this.bucketIntervalMillis = bucketIntervalMillis;
+        this.bucketCount = (int) Math.max(1, (retentionMillis + bucketIntervalMillis - 1) / bucketIntervalMillis);
+        this.lastRotationMillis = System.currentTimeMillis();
+    }
+
+    // Collector thread only
+    public void rotate() {
+        long now = System.currentTimeMillis();
+        long start = lastRotationMillis;
+        int size = registry.slotCount();
+        Map<MethodMetrics, RollingWindow> next = new IdentityHashMap<>(size * 2);
+        RollingWindow[] rotated = new RollingWindow[size];
+        int count = 0;
+        for (int slot = 0; slot < size; slot++) {
+            MethodMetrics metrics = registry.getSlot(slot);
+            if (metrics == null) {
+                break;
+            }
+            RollingWindow window = windowsByMetrics.get(metrics);
+            if (window == null) {
+                window = new RollingWindow(bucketCount, metrics);
+            }
+            next.put(metrics, window);
+            rotated[count++] = window;
+        }
+        windowsByMetrics = next;
+        windows = count == size ? rotated : Arrays.copyOf(rotated, count);
+        IntervalListener listener = intervalListener;
+        for (int i = 0; i < count; i++) {
+            RollingWindow window = rotated[i];
+            IntervalBucket bucket = window.rotate(start, now, indexScratch, countScratch);
+            if (listener != null && bucket.count() > 0) {
+                listener.onInterval(bucket.toInterval(window.getMetrics().getMethodName()));
+            }
+        }
+        lastRotationMillis = now;
+    }
+
+    /**
+     * Returns metrics for every method called inside the window, keyed by signature. Windows
+     * longer than the retention are cut to it; {@link MetricsWindow#ALL_TIME} returns the live
+     * cumulative metrics.
+     */
+    public Map<String, MethodMetrics> getMetrics(MetricsWindow window) {
+        if (window.isCumulative()) {
+            return registry.toMap();
+        }
+        long from = lastRotationMillis - window.getDuration().toMillis();
+        RollingWindow[] current = windows;
+        Map<String, MethodMetrics> result = new HashMap<>();
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (RollingWindow rolling : current) {
+            long[] totals = rolling.aggregate(from, histogram);
+            if (totals[0] > 0) {
+                String name = rolling.getMetrics().getMethodName();
+                result.put(name, MethodMetrics.fromHistogram(name, totals[0], totals[1], histogram));
+                histogram.reset();
+            }
+        }
+        return result;
+    }
+
+    public void setIntervalListener(IntervalListener listener) {
+        this.intervalListener = listener;
+    }
+
+    public long getBucketIntervalMillis() {
+        return bucketIntervalMillis;
+    }
+
+    public long getRetentionMillis() {
+        return bucketCount * bucketIntervalMillis;
+    }
+}
@@ -0,0 +1,122 @@
+package org.infy.profiler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpaceSavingSummaryTest {
+
+    @Test
+    void countsExactlyWhileEveryIdHoldsACounter() {
+        SpaceSavingSummary summary = new SpaceSavingSummary(8);
+        for (int i = 0; i < 100; i++) {
+            summary.offer(i % 5, i % 5 + 1);
+        }
+
+        List<long[]> counters = drain(summary);
+
+        assertEquals(5, counters.size());
+        for (long[] counter : counters) {
+            assertEquals(20 * (counter[0] + 1), counter[1]);
+            assertEquals(0, counter[2]);
+        }
+        assertEquals(4, counters.get(0)[0]);
+    }
+
+    @Test
+    void mergedStripesKeepTheSpaceSavingBounds() throws InterruptedException {
+        int capacity = 16;
+        int threadCount = 8;
+        SpaceSavingSummary summary = new SpaceSavingSummary(capacity, threadCount);
+        List<Map<Integer, Long>> offered = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            Map<Integer, Long> counts = new HashMap<>();
+            offered.add(counts);
+            int thread = t;
+            // Consecutive thread ids land in different stripes; each stripe sees a shared hot id,
+            // a hot id of its own that the others never see, and a long tail that overflows it
+            threads.add(new Thread(() -> {
+                Random random = new Random(thread);
+                for (int i = 0; i < 20_000; i++) {
+                    int id;
+                    if (i % 4 == 0) {
+                        id = 0;
+                    } else if (i % 4 == 1) {
+                        id = 1 + thread;
+                    } else {
+                        id = 100 + random.nextInt(2_000);
+                    }
+                    long weight = 1 + random.nextInt(3);
+                    summary.offer(id, weight);
+                    counts.merge(id, weight, Long::sum);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Map<Integer, Long> exact = new HashMap<>();
+        offered.forEach(counts -> counts.forEach((id, count) -> exact.merge(id, count, Long::sum)));
+        long total = exact.values().stream().mapToLong(Long::longValue).sum();
+        assertEquals(total, summary.total());
+        long maxError = summary.maxError();
+
+        List<long[]> counters = drain(summary);
+
+        Map<Integer, long[]> reported = new HashMap<>();
+        long previous = Long.MAX_VALUE;
+        for (long[] counter : counters) {
+            assertTrue(counter[1] <= previous, "counters in descending count order");
+            previous = counter[1];
+            reported.put((int) counter[0], counter);
+            long actual = exact.getOrDefault((int) counter[0], 0L);
+            assertTrue(counter[1] >= actual, "count never under the true count for id " + counter[0]);
+            assertTrue(counter[1] - counter[2] <= actual, "count less error never over it for id " + counter[0]);
+            assertTrue(counter[2] <= maxError, "error within maxError for id " + counter[0]);
+        }
+        // Each stripe guarantees its own heavy hitters, so the merge must keep every id above total / capacity
+        for (Map.Entry<Integer, Long> entry : exact.entrySet()) {
+            if (entry.getValue() > total / capacity) {
+                assertTrue(reported.containsKey(entry.getKey()), "heavy hitter " + entry.getKey() + " reported");
+            }
+        }
+        assertTrue(reported.containsKey(0));
+        assertEquals(0, counters.get(0)[0]);
+    }
+
+    @Test
+    void drainStartsANewPeriod() {
+        SpaceSavingSummary summary = new SpaceSavingSummary(2);
+        for (int id = 0; id < 10; id++) {
+            summary.offer(id, 1);
+        }
+        drain(summary);
+
+        assertEquals(0, summary.total());
+        assertEquals(0, summary.maxError());
+        assertTrue(drain(summary).isEmpty());
+
+        summary.offer(3, 7);
+        List<long[]> counters = drain(summary);
+        assertEquals(1, counters.size());
+        assertEquals(7, counters.get(0)[1]);
+        assertEquals(0, counters.get(0)[2]);
+    }
+
+    private static List<long[]> drain(SpaceSavingSummary summary) {
+        List<long[]> counters = new ArrayList<>();
+        summary.drainTo((id, count, error) -> counters.add(new long[] {id, count, error}));
+        return counters;
+    }
+}
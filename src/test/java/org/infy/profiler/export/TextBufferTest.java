@@ -0,0 +1,91 @@
+package org.infy.profiler.export;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class TextBufferTest {
+
+    @Test
+    void encodesTextAsUtf8() {
+        // One, two, three and four byte sequences, the last a surrogate pair
+        String text = "a_1 é ß € 中 😀 𝄞";
+
+        assertEquals(text, render(new TextBuffer(1).append(text)));
+    }
+
+    @Test
+    void matchesTheJdkEncoderAcrossTheBmpAndBeyond() {
+        StringBuilder text = new StringBuilder();
+        for (int codePoint = 0; codePoint < 0x11000; codePoint += 7) {
+            if (!Character.isSurrogate((char) codePoint) || codePoint > 0xFFFF) {
+                text.appendCodePoint(codePoint);
+            }
+        }
+        text.appendCodePoint(Character.MAX_CODE_POINT);
+        TextBuffer buffer = new TextBuffer(16).append(text.toString());
+
+        byte[] expected = text.toString().getBytes(StandardCharsets.UTF_8);
+        assertEquals(expected.length, buffer.length());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], buffer.array()[i], "byte " + i);
+        }
+    }
+
+    @Test
+    void escapesLabelValues() {
+        TextBuffer buffer = new TextBuffer(8).appendLabelValue("say \"hi\"\\\nto 世界");
+
+        assertEquals("say \\\"hi\\\"\\\\\\nto 世界", render(buffer));
+    }
+
+    @Test
+    void appendsLongs() {
+        assertEquals("0", render(new TextBuffer(1).append(0L)));
+        assertEquals("-42", render(new TextBuffer(1).append(-42L)));
+        assertEquals(Long.toString(Long.MAX_VALUE), render(new TextBuffer(1).append(Long.MAX_VALUE)));
+        assertEquals(Long.toString(Long.MIN_VALUE), render(new TextBuffer(1).append(Long.MIN_VALUE)));
+    }
+
+    @Test
+    void appendsSecondsWithoutTrailingZeros() {
+        assertEquals("0", seconds(0));
+        assertEquals("1", seconds(1_000_000_000L));
+        assertEquals("1.5", seconds(1_500_000_000L));
+        assertEquals("0.000000001", seconds(1));
+        assertEquals("0.012345", seconds(12_345_000));
+        assertEquals("0.1", seconds(100_000_000));
+        assertEquals("12.000000305", seconds(12_000_000_305L));
+        assertEquals("9223372036.854775807", seconds(Long.MAX_VALUE));
+    }
+
+    @Test
+    void appendsNegativeSeconds() {
+        assertEquals("-1.5", seconds(-1_500_000_000L));
+        assertEquals("-0.5", seconds(-500_000_000L));
+        assertEquals("-0.000000001", seconds(-1));
+        assertEquals("-9223372036.854775808", seconds(Long.MIN_VALUE));
+    }
+
+    @Test
+    void resetKeepsTheGrownArray() {
+        TextBuffer buffer = new TextBuffer(1).append("metric_total 12345\n");
+        byte[] grown = buffer.array();
+        buffer.reset();
+        buffer.append("up 1\n");
+
+        assertEquals("up 1\n", render(buffer));
+        assertSame(grown, buffer.array());
+    }
+
+    private static String seconds(long nanos) {
+        return render(new TextBuffer(4).appendSeconds(nanos));
+    }
+
+    private static String render(TextBuffer buffer) {
+        return new String(buffer.array(), 0, buffer.length(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,243 @@
+package org.infy.profiler.snapshot;
+
+import org.infy.profiler.LatencyHistogram;
+import org.infy.profiler.window.MetricsWindow;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnapshotFormatTest {
+    // Header, then sourceId "node-a" as a length byte and six bytes, then seven one-byte header fields
+    private static final int WINDOW_TABLE = SnapshotFormat.HEADER_SIZE + 1 + 6 + 7;
+
+    @Test
+    void roundTripsEveryField() throws IOException {
+        ProfileSnapshot snapshot = snapshot(List.of(
+            method("com.acme.Orders.place", 3, 4, 9, windows(MetricsWindow.LAST_10_SECONDS, MetricsWindow.LAST_15_MINUTES)),
+            method("com.acme.Orders.cancel", 1, 7, 7, Map.of())));
+
+        ProfileSnapshot decoded = SnapshotFormat.decode(SnapshotFormat.encode(snapshot));
+
+        assertSnapshotEquals(snapshot, decoded);
+    }
+
+    @Test
+    void roundTripsLargeAndNegativeValues() throws IOException {
+        // Ten-byte varints, as a negative time after overhead subtraction would need
+        MethodSnapshot method = new MethodSnapshot("com.acme.Clock.tick", Long.MAX_VALUE, -5, -3, Long.MAX_VALUE,
+            Long.MIN_VALUE, 1L << 62, -1, 0, histogram(0, LatencyHistogram.BUCKET_COUNT - 1),
+            SparseHistogram.EMPTY, Map.of());
+        ProfileSnapshot snapshot = new ProfileSnapshot("host-1", Long.MAX_VALUE, 0, -1, 0, 0, 0, 0, List.of(method));
+
+        assertSnapshotEquals(snapshot, SnapshotFormat.decode(SnapshotFormat.encode(snapshot)));
+    }
+
+    @Test
+    void keepsSentinelMinAndMaxForMethodsWithoutCalls() throws IOException {
+        MethodSnapshot idle = new MethodSnapshot("com.acme.Idle.run", 0, 0, Long.MAX_VALUE, Long.MIN_VALUE,
+            0, 0, 0, 0, SparseHistogram.EMPTY, SparseHistogram.EMPTY, Map.of());
+
+        MethodSnapshot decoded = SnapshotFormat.decode(SnapshotFormat.encode(snapshot(List.of(idle)))).methods().get(0);
+
+        assertEquals(Long.MAX_VALUE, decoded.minTime());
+        assertEquals(Long.MIN_VALUE, decoded.maxTime());
+        assertEquals(0, decoded.histogram().size());
+        assertEquals(0, decoded.allocationHistogram().size());
+    }
+
+    @Test
+    void roundTripsEmptySnapshotAndHistograms() throws IOException {
+        ProfileSnapshot empty = snapshot(List.of());
+        assertSnapshotEquals(empty, SnapshotFormat.decode(SnapshotFormat.encode(empty)));
+
+        Map<MetricsWindow, WindowTotals> windows = new EnumMap<>(MetricsWindow.class);
+        windows.put(MetricsWindow.LAST_MINUTE, new WindowTotals(0, 0, SparseHistogram.EMPTY));
+        MethodSnapshot method = new MethodSnapshot("com.acme.Empty.call", 2, 10, 5, 5, 0, 0, 0, 0,
+            SparseHistogram.EMPTY, SparseHistogram.EMPTY, windows);
+        ProfileSnapshot snapshot = snapshot(List.of(method));
+        assertSnapshotEquals(snapshot, SnapshotFormat.decode(SnapshotFormat.encode(snapshot)));
+    }
+
+    @Test
+    void readsFramesBackToBackFromAStream() throws IOException {
+        ProfileSnapshot first = snapshot(List.of(method("com.acme.A.a", 1, 2, 2, Map.of())));
+        ProfileSnapshot second = snapshot(List.of(method("com.acme.B.b", 5, 1, 8, Map.of())));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(SnapshotFormat.encode(first));
+        out.write(SnapshotFormat.encode(second));
+
+        InputStream in = new ByteArrayInputStream(out.toByteArray());
+        assertSnapshotEquals(first, SnapshotFormat.read(in));
+        assertSnapshotEquals(second, SnapshotFormat.read(in));
+        assertNull(SnapshotFormat.read(in));
+    }
+
+    @Test
+    void rejectsTruncatedFrames() {
+        byte[] frame = SnapshotFormat.encode(snapshot(List.of(method("com.acme.A.a", 3, 1, 9, Map.of()))));
+
+        for (int length : new int[] {1, SnapshotFormat.HEADER_SIZE - 1, SnapshotFormat.HEADER_SIZE, frame.length - 1}) {
+            byte[] truncated = Arrays.copyOf(frame, length);
+            assertThrows(IOException.class, () -> SnapshotFormat.decode(truncated), "decode of " + length + " bytes");
+            assertThrows(EOFException.class, () -> SnapshotFormat.read(new ByteArrayInputStream(truncated)),
+                "read of " + length + " bytes");
+        }
+    }
+
+    @Test
+    void rejectsCorruptPayloadByChecksum() {
+        byte[] frame = SnapshotFormat.encode(snapshot(List.of(method("com.acme.A.a", 3, 1, 9, Map.of()))));
+
+        for (int offset = SnapshotFormat.HEADER_SIZE; offset < frame.length; offset++) {
+            byte[] corrupt = frame.clone();
+            corrupt[offset] ^= 0x10;
+            IOException e = assertThrows(IOException.class, () -> SnapshotFormat.decode(corrupt));
+            assertEquals("Snapshot checksum mismatch", e.getMessage());
+        }
+    }
+
+    @Test
+    void rejectsBadMagicVersionAndLength() {
+        byte[] frame = SnapshotFormat.encode(snapshot(List.of()));
+
+        byte[] badMagic = frame.clone();
+        badMagic[0] = 0;
+        assertThrows(IOException.class, () -> SnapshotFormat.decode(badMagic));
+
+        byte[] badVersion = frame.clone();
+        ByteBuffer.wrap(badVersion).putShort(4, (short) (SnapshotFormat.VERSION + 1));
+        IOException e = assertThrows(IOException.class, () -> SnapshotFormat.decode(badVersion));
+        assertTrue(e.getMessage().startsWith("Unsupported snapshot version"));
+
+        byte[] negativeLength = frame.clone();
+        ByteBuffer.wrap(negativeLength).putInt(8, -1);
+        assertThrows(IOException.class, () -> SnapshotFormat.read(new ByteArrayInputStream(negativeLength)));
+    }
+
+    @Test
+    void rejectsMalformedPayloadWithValidChecksum() {
+        // A count larger than the bytes left must not be trusted for an allocation
+        ProfileSnapshot snapshot = snapshot(List.of(method("com.acme.A.a", 1, 1, 1, Map.of())));
+        byte[] frame = SnapshotFormat.encode(snapshot);
+        // Past the window count and four durations of two, three, three and three bytes
+        int methodCount = WINDOW_TABLE + 1 + 2 + 3 + 3 + 3;
+        assertEquals(1, frame[methodCount]);
+        frame[methodCount] = 0x7F;
+        resign(frame);
+
+        assertThrows(IOException.class, () -> SnapshotFormat.decode(frame));
+    }
+
+    @Test
+    void skipsWindowsTheReaderDoesNotKnow() throws IOException {
+        ProfileSnapshot snapshot = snapshot(List.of(
+            method("com.acme.A.a", 3, 1, 9, windows(MetricsWindow.LAST_10_SECONDS, MetricsWindow.LAST_MINUTE))));
+        byte[] frame = SnapshotFormat.encode(snapshot);
+        // The first window table entry is 10000 ms, written as two varint bytes; make it 7777 ms
+        int first = WINDOW_TABLE + 1;
+        assertArrayEquals(new byte[] {(byte) 0x90, 0x4E}, Arrays.copyOfRange(frame, first, first + 2));
+        frame[first] = (byte) 0xE1;
+        frame[first + 1] = 0x3C;
+        resign(frame);
+
+        MethodSnapshot decoded = SnapshotFormat.decode(frame).methods().get(0);
+
+        assertEquals(List.of(MetricsWindow.LAST_MINUTE), List.copyOf(decoded.windows().keySet()));
+        assertWindowEquals(snapshot.methods().get(0).windows().get(MetricsWindow.LAST_MINUTE),
+            decoded.windows().get(MetricsWindow.LAST_MINUTE));
+        assertEquals(3, decoded.count());
+    }
+
+    private static ProfileSnapshot snapshot(List<MethodSnapshot> methods) {
+        // Every header field below 128, so each takes one varint byte
+        return new ProfileSnapshot("node-a", 1, 2, 3, 4, 5, 6, 7, methods);
+    }
+
+    private static MethodSnapshot method(String name, long count, long min, long max, Map<MetricsWindow, WindowTotals> windows) {
+        return new MethodSnapshot(name, count, count * max, min, max, 11, count, 4096, 2,
+            histogram(3, 17, 40), histogram(12), windows);
+    }
+
+    private static Map<MetricsWindow, WindowTotals> windows(MetricsWindow... windows) {
+        Map<MetricsWindow, WindowTotals> totals = new EnumMap<>(MetricsWindow.class);
+        for (int i = 0; i < windows.length; i++) {
+            totals.put(windows[i], new WindowTotals(i + 1, 100L * (i + 1), histogram(5 + i)));
+        }
+        return totals;
+    }
+
+    private static SparseHistogram histogram(int... indexes) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int index : indexes) {
+            histogram.addAtIndex(index, index + 1);
+        }
+        return SparseHistogram.of(histogram);
+    }
+
+    private static void resign(byte[] frame) {
+        CRC32C crc = new CRC32C();
+        crc.update(frame, SnapshotFormat.HEADER_SIZE, frame.length - SnapshotFormat.HEADER_SIZE);
+        ByteBuffer.wrap(frame).putInt(12, (int) crc.getValue());
+    }
+
+    private static void assertSnapshotEquals(ProfileSnapshot expected, ProfileSnapshot actual) {
+        assertEquals(expected.sourceId(), actual.sourceId());
+        assertEquals(expected.startMillis(), actual.startMillis());
+        assertEquals(expected.capturedMillis(), actual.capturedMillis());
+        assertEquals(expected.sequence(), actual.sequence());
+        assertEquals(expected.gcCollections(), actual.gcCollections());
+        assertEquals(expected.gcPauseTime(), actual.gcPauseTime());
+        assertEquals(expected.gcMaxPauseTime(), actual.gcMaxPauseTime());
+        assertEquals(expected.gcAllocatedBytes(), actual.gcAllocatedBytes());
+        assertEquals(expected.methods().size(), actual.methods().size());
+        for (int i = 0; i < expected.methods().size(); i++) {
+            MethodSnapshot e = expected.methods().get(i);
+            MethodSnapshot a = actual.methods().get(i);
+            assertEquals(e.methodName(), a.methodName());
+            assertEquals(e.count(), a.count());
+            assertEquals(e.totalTime(), a.totalTime());
+            assertEquals(e.minTime(), a.minTime());
+            assertEquals(e.maxTime(), a.maxTime());
+            assertEquals(e.cpuTime(), a.cpuTime());
+            assertEquals(e.cpuTimeCalls(), a.cpuTimeCalls());
+            assertEquals(e.allocatedBytes(), a.allocatedBytes());
+            assertEquals(e.allocationSamples(), a.allocationSamples());
+            assertHistogramEquals(e.histogram(), a.histogram());
+            assertHistogramEquals(e.allocationHistogram(), a.allocationHistogram());
+            assertEquals(e.windows().keySet(), a.windows().keySet());
+            for (MetricsWindow window : e.windows().keySet()) {
+                assertWindowEquals(e.windows().get(window), a.windows().get(window));
+            }
+        }
+    }
+
+    private static void assertWindowEquals(WindowTotals expected, WindowTotals actual) {
+        assertEquals(expected.count(), actual.count());
+        assertEquals(expected.totalTime(), actual.totalTime());
+        assertHistogramEquals(expected.histogram(), actual.histogram());
+    }
+
+    private static void assertHistogramEquals(SparseHistogram expected, SparseHistogram actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.indexAt(i), actual.indexAt(i));
+            assertEquals(expected.countAt(i), actual.countAt(i));
+        }
+    }
+}